@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import jnr.ffi.LibraryLoader;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base state for all benchmarks: selects the invocation path and loads libtest.
+ *
+ * <p>Every {@link Generator} runs in its own forked JVM, so forking must not be disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public abstract class AbstractBenchmark {
+    @Param({ "X86", "FAST_INT", "FAST_LONG", "FAST_NUMERIC", "BUFFER", "REFLECTION" })
+    public Generator generator;
+
+    protected LibBenchmark lib;
+    protected jnr.ffi.Runtime runtime;
+
+    @Setup
+    public final void loadLibrary() {
+        generator.configure();
+        lib = LibraryLoader.create(LibBenchmark.class)
+                .search(System.getProperty("jnr.ffi.benchmark.library.path", "target"))
+                .failImmediately()
+                .load("test");
+        runtime = jnr.ffi.Runtime.getRuntime(lib);
+        setup();
+    }
+
+    protected void setup() {
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.benchmark;
+
+import jnr.ffi.byref.IntByReference;
+import jnr.ffi.byref.PointerByReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Calls with {@link jnr.ffi.byref.ByReference} out parameters.
+ */
+public class ByReferenceBenchmark extends AbstractBenchmark {
+    private final IntByReference intReference = new IntByReference(0);
+    private final PointerByReference pointerReference = new PointerByReference();
+
+    @Benchmark
+    public IntByReference intByReference() {
+        lib.incrementIntByReference(intReference);
+        return intReference;
+    }
+
+    @Benchmark
+    public PointerByReference pointerByReference() {
+        lib.setPointerByReference(pointerReference);
+        return pointerReference;
+    }
+}
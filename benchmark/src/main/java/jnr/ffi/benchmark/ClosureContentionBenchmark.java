@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Many threads passing callbacks to native code at once, to measure contention in closure allocation and lookup.
+ *
+ * <p>Scaling is best seen by comparing runs with different thread counts, e.g. {@code -t 1}, {@code -t 4} and
+ * {@code -t max}.  The invocation path makes little difference here, so {@code -p generator=X86} is enough.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+public class ClosureContentionBenchmark extends AbstractBenchmark {
+
+    @State(Scope.Thread)
+    public static class ThreadCallback {
+        final LibBenchmark.IntCallback callback = new Increment();
+        LibBenchmark.IntCallback last;
+    }
+
+    static final class Increment implements LibBenchmark.IntCallback {
+        public int call(int value) {
+            return value + 1;
+        }
+    }
+
+    /**
+     * Every call uses a new callback object, so each call allocates and registers a new closure.
+     */
+    @Benchmark
+    public int newCallback(ThreadCallback state) {
+        LibBenchmark.IntCallback callback = new Increment();
+        int result = lib.callbackIrI(callback, 1);
+        // Closures only weakly reference their callback, so keep it reachable until the call has returned
+        state.last = callback;
+        return result;
+    }
+
+    /**
+     * Each thread reuses its own callback object, so each call only looks up an existing closure.
+     */
+    @Benchmark
+    public int threadCallback(ThreadCallback state) {
+        return lib.callbackIrI(state.callback, 1);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.benchmark;
+
+/**
+ * The invocation paths that can be selected for a benchmark run.
+ *
+ * <p>Each generator is selected by disabling every faster generator in front of it in the
+ * {@code AsmLibraryLoader} chain, so a signature the selected generator cannot handle falls
+ * through to the next one, exactly as it would in production.
+ *
+ * <p>The selection uses the {@code jnr.ffi.*.enabled} system properties, which are only read
+ * when jnr-ffi is first initialized, so it must be applied before any library is loaded in the
+ * forked benchmark JVM.
+ */
+public enum Generator {
+    X86,
+    FAST_INT("jnr.ffi.x86asm.enabled"),
+    FAST_LONG("jnr.ffi.x86asm.enabled", "jnr.ffi.fast-int.enabled"),
+    FAST_NUMERIC("jnr.ffi.x86asm.enabled", "jnr.ffi.fast-int.enabled", "jnr.ffi.fast-long.enabled"),
+    BUFFER("jnr.ffi.x86asm.enabled", "jnr.ffi.fast-int.enabled", "jnr.ffi.fast-long.enabled",
+            "jnr.ffi.fast-numeric.enabled"),
+    REFLECTION("jnr.ffi.asm.enabled");
+
+    private final String[] disabledProperties;
+
+    Generator(String... disabledProperties) {
+        this.disabledProperties = disabledProperties;
+    }
+
+    void configure() {
+        for (String property : disabledProperties) {
+            System.setProperty(property, "false");
+        }
+    }
+}
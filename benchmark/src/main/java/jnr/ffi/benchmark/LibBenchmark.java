@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.benchmark;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.Struct;
+import jnr.ffi.annotations.Delegate;
+import jnr.ffi.annotations.IgnoreError;
+import jnr.ffi.byref.IntByReference;
+import jnr.ffi.byref.PointerByReference;
+
+/**
+ * The functions from libtest/Benchmark.c used by the benchmarks.
+ */
+@IgnoreError
+public interface LibBenchmark {
+    void returnVoid();
+    void returnVoidI(int arg);
+    int returnInt();
+    int returnIntI(int arg);
+    int returnIntIIIIII(int i1, int i2, int i3, int i4, int i5, int i6);
+    long returnLongL(long arg);
+    double returnDoubleD(double arg);
+
+    Pointer returnPointerP(Pointer arg);
+    Pointer returnPointerPPPPPP(Pointer p1, Pointer p2, Pointer p3, Pointer p4, Pointer p5, Pointer p6);
+
+    int returnIntS(String s);
+    String returnStringS(String s);
+
+    int returnIntStruct(BenchmarkStruct s);
+
+    void incrementIntByReference(IntByReference value);
+    void setPointerByReference(PointerByReference value);
+
+    int callbackIrI(IntCallback closure, int arg);
+
+    int sumVarargsI(int count, Object... varargs);
+
+    public static interface IntCallback {
+        @Delegate int call(int value);
+    }
+
+    public static final class BenchmarkStruct extends Struct {
+        public final Signed32 i = new Signed32();
+        public final Signed64 l = new Signed64();
+        public final Double d = new Double();
+
+        public BenchmarkStruct(Runtime runtime) {
+            super(runtime);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.benchmark;
+
+import jnr.ffi.Memory;
+import jnr.ffi.Pointer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Calls with direct, heap and null {@link Pointer} parameters.
+ */
+public class PointerBenchmark extends AbstractBenchmark {
+    private Pointer direct;
+    private Pointer heap;
+
+    @Override
+    protected void setup() {
+        direct = Memory.allocateDirect(runtime, 64);
+        heap = Memory.allocate(runtime, 64);
+    }
+
+    @Benchmark
+    public Pointer returnPointerDirect() {
+        return lib.returnPointerP(direct);
+    }
+
+    @Benchmark
+    public Pointer returnPointerHeap() {
+        return lib.returnPointerP(heap);
+    }
+
+    @Benchmark
+    public Pointer returnPointerNull() {
+        return lib.returnPointerP(null);
+    }
+
+    @Benchmark
+    public Pointer returnPointer6Direct() {
+        return lib.returnPointerPPPPPP(direct, direct, direct, direct, direct, direct);
+    }
+}
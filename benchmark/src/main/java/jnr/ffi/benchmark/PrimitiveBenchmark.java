@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Calls with only primitive parameters and results.
+ */
+public class PrimitiveBenchmark extends AbstractBenchmark {
+
+    @Benchmark
+    public void returnVoid() {
+        lib.returnVoid();
+    }
+
+    @Benchmark
+    public void returnVoidI() {
+        lib.returnVoidI(1);
+    }
+
+    @Benchmark
+    public int returnInt() {
+        return lib.returnInt();
+    }
+
+    @Benchmark
+    public int returnIntI() {
+        return lib.returnIntI(1);
+    }
+
+    @Benchmark
+    public int returnIntIIIIII() {
+        return lib.returnIntIIIIII(1, 2, 3, 4, 5, 6);
+    }
+
+    @Benchmark
+    public long returnLongL() {
+        return lib.returnLongL(1L);
+    }
+
+    @Benchmark
+    public double returnDoubleD() {
+        return lib.returnDoubleD(1.0d);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Calls with {@link String} parameters and results.
+ */
+public class StringBenchmark extends AbstractBenchmark {
+    @Param({ "16", "256" })
+    public int length;
+
+    private String value;
+
+    @Override
+    protected void setup() {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + (i % 26)));
+        }
+        value = sb.toString();
+    }
+
+    @Benchmark
+    public int stringParameter() {
+        return lib.returnIntS(value);
+    }
+
+    @Benchmark
+    public String stringResult() {
+        return lib.returnStringS(value);
+    }
+}
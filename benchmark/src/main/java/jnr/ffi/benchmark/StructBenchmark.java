@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.benchmark;
+
+import jnr.ffi.Struct;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Calls passing a {@link Struct} by reference, backed by direct and by heap memory.
+ */
+public class StructBenchmark extends AbstractBenchmark {
+    private LibBenchmark.BenchmarkStruct direct;
+    private LibBenchmark.BenchmarkStruct heap;
+
+    @Override
+    protected void setup() {
+        direct = new LibBenchmark.BenchmarkStruct(runtime);
+        direct.useMemory(jnr.ffi.Memory.allocateDirect(runtime, Struct.size(direct)));
+        direct.i.set(1);
+
+        heap = new LibBenchmark.BenchmarkStruct(runtime);
+        heap.i.set(1);
+    }
+
+    @Benchmark
+    public int structDirect() {
+        return lib.returnIntStruct(direct);
+    }
+
+    @Benchmark
+    public int structHeap() {
+        return lib.returnIntStruct(heap);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2018 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Calls to a variadic native function.
+ */
+public class VarargsBenchmark extends AbstractBenchmark {
+
+    @Benchmark
+    public int varargs1() {
+        return lib.sumVarargsI(1, 1);
+    }
+
+    @Benchmark
+    public int varargs4() {
+        return lib.sumVarargsI(4, 1, 2, 3, 4);
+    }
+}
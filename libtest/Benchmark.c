@@ -16,6 +16,8 @@
  * limitations under the License.
  */
 
+#include <stdarg.h>
+
 void returnVoid() {
     
 }
@@ -31,3 +33,70 @@ int returnIntI(int arg) {
     return arg;
 }
 
+
+long long returnLongL(long long arg) {
+    return arg;
+}
+
+double returnDoubleD(double arg) {
+    return arg;
+}
+
+int returnIntIIIIII(int i1, int i2, int i3, int i4, int i5, int i6) {
+    return i1 + i2 + i3 + i4 + i5 + i6;
+}
+
+void* returnPointerP(void* arg) {
+    return arg;
+}
+
+void* returnPointerPPPPPP(void* p1, void* p2, void* p3, void* p4, void* p5, void* p6) {
+    return p6;
+}
+
+int returnIntS(const char* s) {
+    int len = 0;
+    while (s[len] != 0) {
+        len++;
+    }
+    return len;
+}
+
+const char* returnStringS(const char* s) {
+    return s;
+}
+
+struct BenchmarkStruct {
+    int i;
+    long long l;
+    double d;
+};
+
+int returnIntStruct(struct BenchmarkStruct* s) {
+    return s->i;
+}
+
+void incrementIntByReference(int* value) {
+    *value += 1;
+}
+
+void setPointerByReference(void** value) {
+    *value = value;
+}
+
+int callbackIrI(int (*closure)(int), int arg) {
+    return (*closure)(arg);
+}
+
+int sumVarargsI(int count, ...) {
+    va_list ap;
+    int i, sum = 0;
+
+    va_start(ap, count);
+    for (i = 0; i < count; ++i) {
+        sum += va_arg(ap, int);
+    }
+    va_end(ap);
+
+    return sum;
+}
@@ -41,3 +41,17 @@ FUNC(Long, long long);
 FUNC(Float, float);
 FUNC(Double, double);
 
+
+void
+addIntBuffers3(int* dst, const int* a, const int* b, const int* c, int size)
+{
+    int i;
+    for (i = 0; i < size; ++i) dst[i] = a[i] + b[i] + c[i];
+}
+
+void
+addIntBuffers4(int* dst, const int* a, const int* b, const int* c, const int* d, int size)
+{
+    int i;
+    for (i = 0; i < size; ++i) dst[i] = a[i] + b[i] + c[i] + d[i];
+}
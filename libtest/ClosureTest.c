@@ -72,6 +72,11 @@ void testClosureDrV(void (*closure)(double), double a1)
     (*closure)(a1);
 }
 
+int testClosureIrIIIIIII(int (*closure)(int), int a1, int a2, int a3, int a4, int a5, int a6)
+{
+    return (*closure)(a1 + a2 + a3 + a4 + a5 + a6);
+}
+
 struct StructClosureIrV {
     void (*closure)(int);
 };
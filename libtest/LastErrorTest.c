@@ -30,3 +30,13 @@ int setLastError(int error) {
     
     return -1;
 }
+
+int setLastErrorAndReturn(int error, int result) {
+    setLastError(error);
+    return result;
+}
+
+long long setLastErrorAndReturnLongLong(int error, long long result) {
+    setLastError(error);
+    return result;
+}
@@ -68,3 +68,15 @@ TEST(SignedLong);
 TEST(Float32);
 TEST(Float64);
 RET(pointer);
+
+int32_t
+sum_int32_t_8(int32_t a1, int32_t a2, int32_t a3, int32_t a4, int32_t a5, int32_t a6, int32_t a7, int32_t a8)
+{
+    return a1 + a2 + a3 + a4 + a5 + a6 + a7 + a8;
+}
+
+double
+sum_mixed_8(int32_t a1, double a2, int64_t a3, float a4, int8_t a5, double a6, int16_t a7, float a8)
+{
+    return a1 + a2 + a3 + a4 + a5 + a6 + a7 + a8;
+}
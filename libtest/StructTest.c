@@ -77,6 +77,51 @@ struct_make_struct(char b, short s, int i, long long ll, float f, double d)
     return &t;
 }
 
+struct ByValue {
+    char c;
+    int i;
+    long long j;
+    double d;
+};
+
+struct FloatPair {
+    float x;
+    float y;
+};
+
+struct Big {
+    long long a;
+    long long b;
+    long long c;
+};
+
+double
+struct_by_value_sum(struct ByValue s)
+{
+    return s.c + s.i + s.j + s.d;
+}
+
+struct ByValue
+struct_by_value_make(char c, int i, long long j, double d)
+{
+    struct ByValue s = { c, i, j, d };
+    return s;
+}
+
+struct FloatPair
+struct_by_value_scale(struct FloatPair p, float f)
+{
+    struct FloatPair r = { p.x * f, p.y * f };
+    return r;
+}
+
+struct Big
+struct_by_value_rotate(struct Big b)
+{
+    struct Big r = { b.b, b.c, b.a };
+    return r;
+}
+
 struct foo {
   unsigned long l1,l2, l3;
 };
@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects per-function call statistics for libraries loaded with {@link LibraryOption#Instrumentation}.
+ * <p>
+ * For each bound method, the number of calls, the total and a histogram of the call latencies, and
+ * optionally the number of bytes of java heap allocated during the calls (i.e. the temporary objects
+ * used to marshal the parameters and results) are recorded.  The counters are striped across threads,
+ * so concurrent callers do not contend on a single location.
+ * <p>
+ * Example:
+ * <pre>
+ *     CallStatistics stats = new CallStatistics();
+ *     LibC libc = LibraryLoader.create(LibC.class).option(LibraryOption.Instrumentation, stats).load("c");
+ *     ...
+ *     for (CallStatistics.Snapshot s : stats.snapshot()) {
+ *         System.out.println(s.getName() + " " + s.getCallCount() + " " + s.getTotalNanos());
+ *     }
+ * </pre>
+ */
+public final class CallStatistics {
+    /** The number of latency histogram buckets */
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    // The first bucket counts calls taking up to 2^MIN_BUCKET_SHIFT nanoseconds
+    private static final int MIN_BUCKET_SHIFT = 6;
+
+    private static final CallStatistics DEFAULT = new CallStatistics();
+
+    private final ConcurrentMap<Method, Counter> counters = new ConcurrentHashMap<Method, Counter>();
+    private final boolean trackAllocations;
+
+    /**
+     * Creates a new statistics collector which does not track allocations.
+     */
+    public CallStatistics() {
+        this(false);
+    }
+
+    /**
+     * Creates a new statistics collector.
+     *
+     * @param trackAllocations if <tt>true</tt>, also record the java heap allocated during each call.  This
+     * is only supported on JVMs which provide per-thread allocation counters, and adds to the cost of each call.
+     */
+    public CallStatistics(boolean trackAllocations) {
+        this.trackAllocations = trackAllocations && isAllocationTrackingSupported();
+    }
+
+    private static boolean isAllocationTrackingSupported() {
+        try {
+            return AllocationCounter.isSupported();
+        } catch (LinkageError ignored) {
+            // com.sun.management is not available
+            return false;
+        }
+    }
+
+    /**
+     * Gets the statistics collector used by libraries loaded with {@link LibraryOption#Instrumentation}
+     * when the option value is not a {@code CallStatistics} instance.
+     *
+     * @return the shared statistics collector.
+     */
+    public static CallStatistics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Tests if this collector records the java heap allocated during each call.
+     *
+     * @return <tt>true</tt> if allocations are tracked.
+     */
+    public boolean isTrackingAllocations() {
+        return trackAllocations;
+    }
+
+    /**
+     * Gets the counter for a bound method, creating it if needed.
+     * <p>
+     * Libraries loaded more than once with the same collector share the counters for each method.
+     *
+     * @param method the java interface method.
+     * @param functionName the native function the method is bound to.
+     * @return the counter.
+     */
+    public Counter getCounter(Method method, String functionName) {
+        Counter counter = counters.get(method);
+        if (counter == null) {
+            Counter newCounter = new Counter(method, functionName, trackAllocations);
+            counter = counters.putIfAbsent(method, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+
+        return counter;
+    }
+
+    /**
+     * Takes a snapshot of the statistics of every method called at least once.
+     * <p>
+     * The snapshot of each method is not atomic with respect to concurrent calls, so e.g. the call count and
+     * the histogram may differ by a few calls that were in progress.
+     *
+     * @return a list of the statistics, sorted by method name.
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<Snapshot>();
+        for (Counter counter : counters.values()) {
+            Snapshot snapshot = counter.snapshot();
+            if (snapshot.getCallCount() > 0) {
+                snapshots.add(snapshot);
+            }
+        }
+        Collections.sort(snapshots, new java.util.Comparator<Snapshot>() {
+            public int compare(Snapshot s1, Snapshot s2) {
+                return s1.getName().compareTo(s2.getName());
+            }
+        });
+
+        return snapshots;
+    }
+
+    /**
+     * Resets all the counters to zero.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Gets the upper bound of a latency histogram bucket.
+     *
+     * @param bucket the bucket index.
+     * @return the largest latency in nanoseconds counted in the bucket, or {@link Long#MAX_VALUE} for the last bucket.
+     */
+    public static long getBucketUpperBound(int bucket) {
+        if (bucket < 0 || bucket >= HISTOGRAM_BUCKETS) {
+            throw new IndexOutOfBoundsException("invalid bucket " + bucket);
+        }
+        return bucket == HISTOGRAM_BUCKETS - 1 ? Long.MAX_VALUE : (1L << (bucket + MIN_BUCKET_SHIFT)) - 1;
+    }
+
+    static int bucketOf(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(nanos) - MIN_BUCKET_SHIFT;
+        return bucket < 0 ? 0 : bucket >= HISTOGRAM_BUCKETS ? HISTOGRAM_BUCKETS - 1 : bucket;
+    }
+
+    /**
+     * The counters for a single bound method.
+     * <p>
+     * Instrumented methods call {@link #start()} and {@link #startAllocation()} before calling the native
+     * function, and {@link #end(long, long)} afterwards.
+     */
+    public static final class Counter {
+        private static final int CALLS = 0, NANOS = 1, BYTES = 2, HISTOGRAM = 3;
+
+        // Each stripe is padded to a multiple of a 64 byte cache line, so stripes do not share lines
+        private static final int STRIPE_SIZE = (HISTOGRAM + HISTOGRAM_BUCKETS + 7) & ~7;
+        private static final int STRIPES = stripeCount();
+        private static final int STRIPE_MASK = STRIPES - 1;
+
+        private final Method method;
+        private final String functionName;
+        private final boolean trackAllocations;
+        private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIPE_SIZE);
+
+        Counter(Method method, String functionName, boolean trackAllocations) {
+            this.method = method;
+            this.functionName = functionName;
+            this.trackAllocations = trackAllocations;
+        }
+
+        private static int stripeCount() {
+            int cpus = java.lang.Runtime.getRuntime().availableProcessors();
+            int stripes = 1;
+            while (stripes < cpus && stripes < 16) {
+                stripes <<= 1;
+            }
+            return stripes;
+        }
+
+        /**
+         * Marks the start of a call.
+         *
+         * @return the start time, to pass to {@link #end(long, long)}.
+         */
+        public long start() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Marks the start of a call for allocation tracking.
+         *
+         * @return the bytes allocated by the current thread so far, to pass to {@link #end(long, long)}.
+         */
+        public long startAllocation() {
+            return trackAllocations ? AllocationCounter.getAllocatedBytes() : 0L;
+        }
+
+        /**
+         * Records a completed call.
+         *
+         * @param startNanos the value returned by {@link #start()}.
+         * @param startAllocation the value returned by {@link #startAllocation()}.
+         */
+        public void end(long startNanos, long startAllocation) {
+            long nanos = System.nanoTime() - startNanos;
+            int base = ((int) Thread.currentThread().getId() & STRIPE_MASK) * STRIPE_SIZE;
+            counts.incrementAndGet(base + CALLS);
+            counts.addAndGet(base + NANOS, nanos);
+            counts.incrementAndGet(base + HISTOGRAM + bucketOf(nanos));
+            if (trackAllocations) {
+                counts.addAndGet(base + BYTES, AllocationCounter.getAllocatedBytes() - startAllocation);
+            }
+        }
+
+        Snapshot snapshot() {
+            long[] totals = new long[HISTOGRAM + HISTOGRAM_BUCKETS];
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += counts.get(stripe * STRIPE_SIZE + i);
+                }
+            }
+            long[] histogram = new long[HISTOGRAM_BUCKETS];
+            System.arraycopy(totals, HISTOGRAM, histogram, 0, HISTOGRAM_BUCKETS);
+
+            return new Snapshot(method, functionName, totals[CALLS], totals[NANOS],
+                    trackAllocations ? totals[BYTES] : -1L, histogram);
+        }
+
+        void reset() {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0L);
+            }
+        }
+    }
+
+    /**
+     * The statistics for a single bound method at a point in time.
+     */
+    public static final class Snapshot {
+        private final Method method;
+        private final String functionName;
+        private final long callCount;
+        private final long totalNanos;
+        private final long allocatedBytes;
+        private final long[] histogram;
+
+        Snapshot(Method method, String functionName, long callCount, long totalNanos, long allocatedBytes, long[] histogram) {
+            this.method = method;
+            this.functionName = functionName;
+            this.callCount = callCount;
+            this.totalNanos = totalNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.histogram = histogram;
+        }
+
+        /**
+         * Gets the name of the method, as <tt>Interface.method</tt>.
+         *
+         * @return the method name.
+         */
+        public String getName() {
+            return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        }
+
+        /**
+         * Gets the java interface method.
+         *
+         * @return the method.
+         */
+        public Method getMethod() {
+            return method;
+        }
+
+        /**
+         * Gets the name of the native function the method is bound to.
+         *
+         * @return the native function name.
+         */
+        public String getFunctionName() {
+            return functionName;
+        }
+
+        /**
+         * Gets the number of calls.
+         *
+         * @return the call count.
+         */
+        public long getCallCount() {
+            return callCount;
+        }
+
+        /**
+         * Gets the total time spent in the calls, including parameter and result conversion.
+         *
+         * @return the total time in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Gets the number of bytes of java heap allocated during the calls.
+         *
+         * @return the number of bytes, or -1 if allocations are not tracked.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * Gets the latency histogram.  Element <tt>i</tt> is the number of calls which took longer than
+         * the upper bound of bucket <tt>i - 1</tt>, and no longer than {@link CallStatistics#getBucketUpperBound(int)}.
+         *
+         * @return a copy of the histogram counts.
+         */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        @Override
+        public String toString() {
+            return getName() + "[" + functionName + "]: calls=" + callCount + " nanos=" + totalNanos
+                    + (allocatedBytes >= 0 ? " allocated=" + allocatedBytes : "");
+        }
+    }
+
+    /**
+     * Reads the per-thread allocation counter of HotSpot based JVMs, if available.
+     */
+    private static final class AllocationCounter {
+        private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+
+        private static com.sun.management.ThreadMXBean getThreadBean() {
+            try {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (bean instanceof com.sun.management.ThreadMXBean) {
+                    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+                    if (threadBean.isThreadAllocatedMemorySupported()) {
+                        threadBean.setThreadAllocatedMemoryEnabled(true);
+                        return threadBean;
+                    }
+                }
+            } catch (Throwable ignored) {
+                // not a HotSpot based JVM
+            }
+            return null;
+        }
+
+        static boolean isSupported() {
+            return THREAD_BEAN != null;
+        }
+
+        static long getAllocatedBytes() {
+            return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
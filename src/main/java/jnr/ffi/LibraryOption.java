@@ -61,5 +61,51 @@ public enum LibraryOption {
     /**
      * Load the library into memory immediately, instead of lazily loading it
      */
-    LoadNow
+    LoadNow,
+
+    /**
+     * Reuse the buffers used to marshal function parameters, and the per-call session state,
+     * instead of allocating new ones on every call.
+     *
+     * <p>Pooled objects are confined to the calling thread, so this option trades a small amount of
+     * memory per thread for fewer allocations on hot paths.  The option value is ignored.
+     */
+    PoolInvocationBuffers,
+
+    /**
+     * Defer resolving the native symbol and generating the invocation code for each function until
+     * it is first called, instead of doing it for all functions when the library is loaded.
+     *
+     * <p>This reduces the cost of loading libraries with many functions, of which only a few are used.
+     * A function whose symbol cannot be found throws {@link UnsatisfiedLinkError} when it is called,
+     * just as it would without this option.  The option value is ignored.
+     */
+    LazyBinding,
+
+    /**
+     * Resolve the native signatures of the library functions in parallel when the library is loaded.
+     *
+     * <p>Code generation itself still happens on the loading thread, in declaration order.  Any custom
+     * type mappers must be thread-safe.  If the option value is a {@link java.util.concurrent.Executor}
+     * the work is run on it, otherwise a shared pool with one thread per processor is used.
+     */
+    ParallelBinding,
+
+    /**
+     * Record the number of calls, the latency and optionally the allocations of each function call.
+     *
+     * <p>If the option value is a {@link CallStatistics} the statistics are recorded there, otherwise in
+     * {@link CallStatistics#getDefault()}.  Libraries loaded without this option are not instrumented at all.
+     */
+    Instrumentation,
+
+    /**
+     * Carve the temporary native memory for {@link jnr.ffi.byref.ByReference} parameters from a small
+     * per-thread scratch slab, which is rewound after each call, instead of allocating it on every call.
+     *
+     * <p>The scratch memory is direct, so calls with {@code ByReference} parameters can also use the faster
+     * invocation paths.  When the slab is exhausted, e.g. by deeply re-entrant calls, memory is allocated
+     * as usual.  The option value is ignored.
+     */
+    ScratchByReference
 }
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A process-wide index of the versioned shared libraries (e.g. <tt>libfoo.so.1.2</tt>) in each
+ * library search directory.
+ * <p>
+ * Each directory is scanned once, and only rescanned if its modification time changes.  Directories
+ * modified within the last couple of seconds are rescanned on each lookup until they settle, since
+ * file system timestamps may be too coarse to notice a change made just after a scan.
+ * <p>
+ * If the <tt>jnr.ffi.library.index.file</tt> system property names a file, scan results are also
+ * saved there and reused by later processes, as long as the directory modification time still matches.
+ */
+final class LibraryPathIndex {
+    private static final String INDEX_FILE_PROPERTY = "jnr.ffi.library.index.file";
+    private static final String INDEX_FILE_HEADER = "jnr-ffi library index 1";
+    private static final long RACY_INTERVAL = 2000L;
+    private static final LibraryPathIndex INSTANCE = new LibraryPathIndex(getIndexFile());
+
+    private final ConcurrentMap<String, Directory> directories = new ConcurrentHashMap<String, Directory>();
+    private final File indexFile;
+    private Map<String, Directory> persisted;
+
+    LibraryPathIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    static LibraryPathIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A library found in a directory, with its version components (empty for an unversioned library).
+     */
+    static final class Entry {
+        final String fileName;
+        final int[] version;
+
+        Entry(String fileName, int[] version) {
+            this.fileName = fileName;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Gets the highest versioned library named <tt>lib&lt;libName&gt;.so[.N...]</tt> in a directory.
+     *
+     * @param path the directory to search.
+     * @param libName the base name of the library, e.g. <tt>c</tt>.
+     * @return the library entry, or <tt>null</tt> if the directory contains no such library.
+     */
+    Entry find(String path, String libName) {
+        return getDirectory(path).libraries.get(libName);
+    }
+
+    private Directory getDirectory(String path) {
+        Directory directory = directories.get(path);
+        File dir = new File(path);
+        long lastModified = dir.lastModified();
+        if (directory != null && directory.isValid(lastModified)) {
+            return directory;
+        }
+
+        directory = loadPersisted(path, lastModified);
+        if (directory == null) {
+            directory = scan(dir, lastModified);
+            if (!directory.racy) {
+                persist(path, directory);
+            }
+        }
+        directories.put(path, directory);
+
+        return directory;
+    }
+
+    private static Directory scan(File dir, long lastModified) {
+        long scannedAt = System.currentTimeMillis();
+        String[] fileNames = dir.list();
+
+        return new Directory(lastModified, scannedAt - lastModified < RACY_INTERVAL,
+                fileNames != null ? fileNames : new String[0]);
+    }
+
+    private static final class Directory {
+        final long lastModified;
+        final boolean racy;
+        final Map<String, Entry> libraries;
+
+        Directory(long lastModified, boolean racy, String[] fileNames) {
+            this.lastModified = lastModified;
+            this.racy = racy;
+            Map<String, Entry> libraries = new HashMap<String, Entry>();
+            for (String fileName : fileNames) {
+                addLibrary(libraries, fileName);
+            }
+            this.libraries = libraries;
+        }
+
+        boolean isValid(long lastModified) {
+            return !racy && this.lastModified == lastModified;
+        }
+    }
+
+    private static void addLibrary(Map<String, Entry> libraries, String fileName) {
+        if (!fileName.startsWith("lib") || fileName.indexOf('\n') >= 0) {
+            return;
+        }
+
+        // Strip any trailing .N version components, then there must be a .so suffix
+        int end = fileName.length();
+        int versionCount = 0;
+        for (int dot = fileName.lastIndexOf('.'); dot > 0; dot = fileName.lastIndexOf('.', end - 1)) {
+            if (!isNumber(fileName, dot + 1, end)) {
+                break;
+            }
+            end = dot;
+            versionCount++;
+        }
+
+        if (!fileName.startsWith(".so", end - 3) || end - 3 <= 3) {
+            return;
+        }
+
+        int[] version = new int[versionCount];
+        int start = end + 1;
+        for (int i = 0; i < versionCount; i++) {
+            int next = fileName.indexOf('.', start);
+            if (next < 0) next = fileName.length();
+            try {
+                version[i] = Integer.parseInt(fileName.substring(start, next));
+            } catch (NumberFormatException ex) {
+                return;
+            }
+            start = next + 1;
+        }
+
+        String libName = fileName.substring(3, end - 3);
+        Entry current = libraries.get(libName);
+        if (current == null || compareVersions(version, current.version) > 0) {
+            libraries.put(libName, new Entry(fileName, version));
+        }
+    }
+
+    private static boolean isNumber(String s, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares two library versions.  Components are compared in turn, and if all the common components
+     * are equal, the version with fewer components is smaller (i.e. libc.so.6 is preferred over libc.so).
+     * A <tt>null</tt> version is smaller than any other.
+     */
+    static int compareVersions(int[] version1, int[] version2) {
+        if (version1 == null) {
+            return version2 == null ? 0 : -1;
+        }
+        if (version2 == null) {
+            return 1;
+        }
+
+        int commonLength = Math.min(version1.length, version2.length);
+        for (int i = 0; i < commonLength; i++) {
+            if (version1[i] != version2[i]) {
+                return version1[i] < version2[i] ? -1 : 1;
+            }
+        }
+
+        return version1.length < version2.length ? -1 : version1.length > version2.length ? 1 : 0;
+    }
+
+    private synchronized Directory loadPersisted(String path, long lastModified) {
+        if (indexFile == null) {
+            return null;
+        }
+
+        if (persisted == null) {
+            persisted = readIndexFile(indexFile);
+        }
+
+        Directory directory = persisted.get(path);
+        return directory != null && directory.isValid(lastModified) ? directory : null;
+    }
+
+    private synchronized void persist(String path, Directory directory) {
+        if (indexFile == null) {
+            return;
+        }
+
+        if (persisted == null) {
+            persisted = readIndexFile(indexFile);
+        }
+        persisted.put(path, directory);
+        writeIndexFile(indexFile, persisted);
+    }
+
+    private static Map<String, Directory> readIndexFile(File file) {
+        Map<String, Directory> directories = new HashMap<String, Directory>();
+        if (!file.isFile()) {
+            return directories;
+        }
+
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            if (!INDEX_FILE_HEADER.equals(in.readLine())) {
+                return directories;
+            }
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                // <lastModified> <file count> <path>, followed by one file name per line
+                String[] fields = line.split(" ", 3);
+                if (fields.length != 3) {
+                    directories.clear();
+                    break;
+                }
+                String[] fileNames = new String[Integer.parseInt(fields[1])];
+                for (int i = 0; i < fileNames.length; i++) {
+                    fileNames[i] = in.readLine();
+                }
+                directories.put(fields[2], new Directory(Long.parseLong(fields[0]), false, fileNames));
+            }
+
+        } catch (IOException ignored) {
+        } catch (RuntimeException ignored) {
+            // a corrupt index is simply rebuilt
+            directories.clear();
+        } finally {
+            if (in != null) {
+                try { in.close(); }
+                catch (IOException ignored) {}
+            }
+        }
+
+        return directories;
+    }
+
+    private static void writeIndexFile(File file, Map<String, Directory> directories) {
+        File tmp = null;
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            tmp = File.createTempFile(file.getName(), ".tmp", parent);
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            try {
+                out.println(INDEX_FILE_HEADER);
+                for (Map.Entry<String, Directory> e : directories.entrySet()) {
+                    // only the best match for each library is needed to rebuild the index
+                    Map<String, Entry> libraries = e.getValue().libraries;
+                    out.println(e.getValue().lastModified + " " + libraries.size() + " " + e.getKey());
+                    for (Entry entry : libraries.values()) {
+                        out.println(entry.fileName);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+
+            if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+                return;
+            }
+            tmp = null;
+
+        } catch (IOException ignored) {
+        } catch (SecurityException ignored) {
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static File getIndexFile() {
+        try {
+            String path = System.getProperty(INDEX_FILE_PROPERTY);
+            return path != null ? new File(path) : null;
+        } catch (SecurityException se) {
+            return null;
+        }
+    }
+}
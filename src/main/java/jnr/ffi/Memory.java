@@ -18,6 +18,10 @@
 
 package jnr.ffi;
 
+import jnr.ffi.provider.Arena;
+import jnr.ffi.provider.ArenaMemoryManager;
+import jnr.ffi.provider.MemoryManager;
+
 /**
  * A utility for allocating memory that can be passed to native functions.
  */
@@ -175,4 +179,22 @@ public final class Memory {
     public static Pointer allocateTemporary(Runtime runtime, NativeType type, boolean clear) {
         return runtime.getMemoryManager().allocateTemporary(runtime.findType(type).size(), clear);
     }
+
+    /**
+     * Opens a new {@link Arena} on the calling thread, nested inside any arena that is
+     * already open on that thread.
+     *
+     * @param runtime The current runtime.
+     *
+     * @return a new {@code Arena}.
+     * @throws UnsupportedOperationException if the memory manager of {@code runtime} does not support arenas.
+     */
+    public static Arena openArena(Runtime runtime) {
+        MemoryManager memoryManager = runtime.getMemoryManager();
+        if (!(memoryManager instanceof ArenaMemoryManager)) {
+            throw new UnsupportedOperationException("arenas are not supported by " + memoryManager.getClass().getName());
+        }
+
+        return ((ArenaMemoryManager) memoryManager).openArena();
+    }
 }
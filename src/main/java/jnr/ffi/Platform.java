@@ -19,11 +19,7 @@
 package jnr.ffi;
 
 import java.io.File;
-import java.io.FilenameFilter;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public abstract class Platform {
@@ -464,101 +460,35 @@ public abstract class Platform {
             super(OS.LINUX);
         }
 
+        // there are /libx32 directories in wild on ubuntu 14.04 and the
+        // oracle-java8-installer package
+        private static final Pattern EXCLUDE_32 = Pattern.compile(".*(lib[a-z]*32|i[0-9]86).*");
+        private static final Pattern EXCLUDE_64 = Pattern.compile(".*(lib[a-z]*64|amd64|x86_64).*");
+
         @Override
         public String locateLibrary(final String libName, List<String> libraryPaths) {
-            Pattern exclude;
-            // there are /libx32 directories in wild on ubuntu 14.04 and the
-            // oracle-java8-installer package
-            if (getCPU() == CPU.X86_64) {
-                exclude = Pattern.compile(".*(lib[a-z]*32|i[0-9]86).*");
-            }
-            else {
-                exclude = Pattern.compile(".*(lib[a-z]*64|amd64|x86_64).*");
-            }
-
-            final Pattern versionedLibPattern = Pattern.compile("lib" + libName + "\\.so((?:\\.[0-9]+)*)$");
-
-            FilenameFilter filter = new FilenameFilter() {
-                public boolean accept(File dir, String name) {
-                    return versionedLibPattern.matcher(name).matches();
-                }
-            };
-
-            Map<String, int[]> matches = new LinkedHashMap<String, int[]>();
-            for (String path : libraryPaths) {
-                if (exclude.matcher(path).matches()) {
-                    continue;
-                }
-
-                File libraryPath = new File(path);
-                File[] files = libraryPath.listFiles(filter);
-                if (files == null) {
-                    continue;
-                }
-
-                for (File file : files) {
-                    Matcher matcher = versionedLibPattern.matcher(file.getName());
-                    String versionString = matcher.matches() ? matcher.group(1) : "";
-                    int[] version;
-                    if (versionString == null || versionString.isEmpty()) {
-                        version = new int[0];
-                    } else {
-                        String[] parts = versionString.split("\\.");
-                        version = new int[parts.length - 1];
-                        for (int i = 1; i < parts.length; i++) {
-                            version[i - 1] = Integer.parseInt(parts[i]);
-                        }
-                    }
-                    matches.put(file.getAbsolutePath(), version);
-                }
-            }
+            Pattern exclude = getCPU() == CPU.X86_64 ? EXCLUDE_32 : EXCLUDE_64;
+            LibraryPathIndex index = LibraryPathIndex.getInstance();
 
             //
-            // Search through the results and return the highest numbered version
+            // Search through the library paths and return the highest numbered version
             // i.e. libc.so.6 is preferred over libc.so.5
             //
             int[] bestVersion = null;
             String bestMatch = null;
-            for (Map.Entry<String,int[]> entry : matches.entrySet()) {
-                String file = entry.getKey();
-                int[] fileVersion = entry.getValue();
-
-                if (compareVersions(fileVersion, bestVersion) > 0) {
-                    bestMatch = file;
-                    bestVersion = fileVersion;
+            for (String path : libraryPaths) {
+                if (exclude.matcher(path).matches()) {
+                    continue;
                 }
-            }
 
-            return bestMatch != null ? bestMatch : mapLibraryName(libName);
-        }
-
-        private static int compareVersions(int[] version1, int[] version2) {
-            // Null is always smallest
-            if (version1 == null) {
-                return version2 == null ? 0 : -1;
-            }
-            if (version2 == null) {
-                return 1;
-            }
-
-            // Compare component by component
-            int commonLength = Math.min(version1.length, version2.length);
-            for (int i = 0; i < commonLength; i++) {
-                if (version1[i] < version2[i]) {
-                    return -1;
-                } else if (version1[i] > version2[i]) {
-                    return 1;
+                LibraryPathIndex.Entry entry = index.find(path, libName);
+                if (entry != null && LibraryPathIndex.compareVersions(entry.version, bestVersion) > 0) {
+                    bestMatch = new File(path, entry.fileName).getAbsolutePath();
+                    bestVersion = entry.version;
                 }
             }
 
-            // If all components are equal, version with fewest components is smallest
-            if (version1.length < version2.length) {
-                return -1;
-            } else if (version1.length > version2.length) {
-                return 1;
-            } else {
-                return 0;
-            }
+            return bestMatch != null ? bestMatch : mapLibraryName(libName);
         }
 
         @Override
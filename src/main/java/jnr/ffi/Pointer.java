@@ -715,6 +715,312 @@ abstract public class Pointer {
         }
     }
 
+    /**
+     * Bulk get method for multiple {@code byte} values spaced {@code stride} bytes apart.
+     *
+     * This method reads one {@code byte} value from each of {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value,
+     * and stores them in consecutive elements of an array.  This can be used to gather a
+     * single field out of an array of structs into a java primitive array.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be read.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param dst The array into which values are to be stored.
+     * @param idx the start index in the {@code dst} array to begin storing the values.
+     * @param len the number of values to be read.
+     */
+    public void getStrided(long offset, long stride, byte[] dst, int idx, int len) {
+        if (stride == 1) {
+            get(offset, dst, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            dst[idx + i] = getByte(offset + (i * stride));
+        }
+    }
+
+    /**
+     * Bulk put method for multiple {@code byte} values spaced {@code stride} bytes apart.
+     *
+     * This method writes consecutive elements of an array to {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value.
+     * This can be used to scatter a java primitive array into a single field of an array of structs.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be written.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param src The array to get values from.
+     * @param idx The start index in the {@code src} array to begin reading values.
+     * @param len The number of values to be written.
+     */
+    public void putStrided(long offset, long stride, byte[] src, int idx, int len) {
+        if (stride == 1) {
+            put(offset, src, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            putByte(offset + (i * stride), src[idx + i]);
+        }
+    }
+
+    /**
+     * Bulk get method for multiple {@code short} values spaced {@code stride} bytes apart.
+     *
+     * This method reads one {@code short} value from each of {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value,
+     * and stores them in consecutive elements of an array.  This can be used to gather a
+     * single field out of an array of structs into a java primitive array.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be read.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param dst The array into which values are to be stored.
+     * @param idx the start index in the {@code dst} array to begin storing the values.
+     * @param len the number of values to be read.
+     */
+    public void getStrided(long offset, long stride, short[] dst, int idx, int len) {
+        if (stride == 2) {
+            get(offset, dst, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            dst[idx + i] = getShort(offset + (i * stride));
+        }
+    }
+
+    /**
+     * Bulk put method for multiple {@code short} values spaced {@code stride} bytes apart.
+     *
+     * This method writes consecutive elements of an array to {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value.
+     * This can be used to scatter a java primitive array into a single field of an array of structs.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be written.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param src The array to get values from.
+     * @param idx The start index in the {@code src} array to begin reading values.
+     * @param len The number of values to be written.
+     */
+    public void putStrided(long offset, long stride, short[] src, int idx, int len) {
+        if (stride == 2) {
+            put(offset, src, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            putShort(offset + (i * stride), src[idx + i]);
+        }
+    }
+
+    /**
+     * Bulk get method for multiple {@code int} values spaced {@code stride} bytes apart.
+     *
+     * This method reads one {@code int} value from each of {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value,
+     * and stores them in consecutive elements of an array.  This can be used to gather a
+     * single field out of an array of structs into a java primitive array.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be read.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param dst The array into which values are to be stored.
+     * @param idx the start index in the {@code dst} array to begin storing the values.
+     * @param len the number of values to be read.
+     */
+    public void getStrided(long offset, long stride, int[] dst, int idx, int len) {
+        if (stride == 4) {
+            get(offset, dst, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            dst[idx + i] = getInt(offset + (i * stride));
+        }
+    }
+
+    /**
+     * Bulk put method for multiple {@code int} values spaced {@code stride} bytes apart.
+     *
+     * This method writes consecutive elements of an array to {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value.
+     * This can be used to scatter a java primitive array into a single field of an array of structs.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be written.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param src The array to get values from.
+     * @param idx The start index in the {@code src} array to begin reading values.
+     * @param len The number of values to be written.
+     */
+    public void putStrided(long offset, long stride, int[] src, int idx, int len) {
+        if (stride == 4) {
+            put(offset, src, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            putInt(offset + (i * stride), src[idx + i]);
+        }
+    }
+
+    /**
+     * Bulk get method for multiple {@code long} values spaced {@code stride} bytes apart.
+     *
+     * This method reads one {@code long} value from each of {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value,
+     * and stores them in consecutive elements of an array.  This can be used to gather a
+     * single field out of an array of structs into a java primitive array.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be read.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param dst The array into which values are to be stored.
+     * @param idx the start index in the {@code dst} array to begin storing the values.
+     * @param len the number of values to be read.
+     */
+    public void getStrided(long offset, long stride, long[] dst, int idx, int len) {
+        if (stride == 8) {
+            get(offset, dst, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            dst[idx + i] = getLongLong(offset + (i * stride));
+        }
+    }
+
+    /**
+     * Bulk put method for multiple {@code long} values spaced {@code stride} bytes apart.
+     *
+     * This method writes consecutive elements of an array to {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value.
+     * This can be used to scatter a java primitive array into a single field of an array of structs.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be written.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param src The array to get values from.
+     * @param idx The start index in the {@code src} array to begin reading values.
+     * @param len The number of values to be written.
+     */
+    public void putStrided(long offset, long stride, long[] src, int idx, int len) {
+        if (stride == 8) {
+            put(offset, src, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            putLongLong(offset + (i * stride), src[idx + i]);
+        }
+    }
+
+    /**
+     * Bulk get method for multiple {@code float} values spaced {@code stride} bytes apart.
+     *
+     * This method reads one {@code float} value from each of {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value,
+     * and stores them in consecutive elements of an array.  This can be used to gather a
+     * single field out of an array of structs into a java primitive array.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be read.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param dst The array into which values are to be stored.
+     * @param idx the start index in the {@code dst} array to begin storing the values.
+     * @param len the number of values to be read.
+     */
+    public void getStrided(long offset, long stride, float[] dst, int idx, int len) {
+        if (stride == 4) {
+            get(offset, dst, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            dst[idx + i] = getFloat(offset + (i * stride));
+        }
+    }
+
+    /**
+     * Bulk put method for multiple {@code float} values spaced {@code stride} bytes apart.
+     *
+     * This method writes consecutive elements of an array to {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value.
+     * This can be used to scatter a java primitive array into a single field of an array of structs.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be written.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param src The array to get values from.
+     * @param idx The start index in the {@code src} array to begin reading values.
+     * @param len The number of values to be written.
+     */
+    public void putStrided(long offset, long stride, float[] src, int idx, int len) {
+        if (stride == 4) {
+            put(offset, src, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            putFloat(offset + (i * stride), src[idx + i]);
+        }
+    }
+
+    /**
+     * Bulk get method for multiple {@code double} values spaced {@code stride} bytes apart.
+     *
+     * This method reads one {@code double} value from each of {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value,
+     * and stores them in consecutive elements of an array.  This can be used to gather a
+     * single field out of an array of structs into a java primitive array.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be read.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param dst The array into which values are to be stored.
+     * @param idx the start index in the {@code dst} array to begin storing the values.
+     * @param len the number of values to be read.
+     */
+    public void getStrided(long offset, long stride, double[] dst, int idx, int len) {
+        if (stride == 8) {
+            get(offset, dst, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            dst[idx + i] = getDouble(offset + (i * stride));
+        }
+    }
+
+    /**
+     * Bulk put method for multiple {@code double} values spaced {@code stride} bytes apart.
+     *
+     * This method writes consecutive elements of an array to {@code len} addresses,
+     * beginning at the given offset and advancing by {@code stride} bytes after each value.
+     * This can be used to scatter a java primitive array into a single field of an array of structs.
+     *
+     * @param offset The offset from the start of the memory this {@code Pointer} represents at which the first value will be written.
+     * @param stride The distance in bytes between the start of consecutive values.  Must not be negative.
+     * @param src The array to get values from.
+     * @param idx The start index in the {@code src} array to begin reading values.
+     * @param len The number of values to be written.
+     */
+    public void putStrided(long offset, long stride, double[] src, int idx, int len) {
+        if (stride == 8) {
+            put(offset, src, idx, len);
+            return;
+        }
+        checkStride(stride);
+        for (int i = 0; i < len; i++) {
+            putDouble(offset + (i * stride), src[idx + i]);
+        }
+    }
+
+    /**
+     * Checks that a stride passed to one of the strided bulk transfer methods is valid.
+     *
+     * @param stride The stride to check.
+     * @throws IllegalArgumentException if {@code stride} is negative.
+     */
+    protected static void checkStride(long stride) {
+        if (stride < 0) {
+            throw new IllegalArgumentException("negative stride " + stride);
+        }
+    }
+
     public String[] getNullTerminatedStringArray(long offset) {
 
         Pointer ptr;
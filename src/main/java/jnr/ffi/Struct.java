@@ -29,11 +29,15 @@ package jnr.ffi;
 
 import jnr.ffi.provider.ParameterFlags;
 import jnr.ffi.provider.jffi.ArrayMemoryIO;
+import jnr.ffi.provider.jffi.StructAccessorGenerator;
 import jnr.ffi.util.EnumMapper;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Representation of C structures in java.
@@ -49,20 +53,27 @@ public abstract class Struct {
         private jnr.ffi.Pointer memory = null;
         Struct enclosing = null;
         int offset = 0; // offset within enclosing Struct
+        long position = 0; // offset within memory, when this Struct is positioned over an array of structs
 
         int size = 0;
         int minAlign = 1;
         boolean isUnion = false;
         int currentSize = -1; // only used when this is an enum and add array elements
+        boolean containsUnion = false;
 
         Alignment alignment = new Alignment(0);
 
+        // offsets and native types of the scalar fields, used to describe the struct when passed by value
+        int fieldCount = 0;
+        int[] fieldOffsets = new int[8];
+        NativeType[] fieldTypes = new NativeType[8];
+
         public Info(Runtime runtime) {
             this.runtime = runtime;
         }
 
-        public final int getOffset() {
-            return enclosing == null ? 0 : offset + enclosing.__info.getOffset();
+        public final long getOffset() {
+            return enclosing == null ? position : offset + enclosing.__info.getOffset();
         }
 
         public final jnr.ffi.Pointer getMemory(int flags) {
@@ -73,6 +84,10 @@ public abstract class Struct {
             return getMemory(ParameterFlags.TRANSIENT);
         }
 
+        final jnr.ffi.Pointer getStructMemory(int flags) {
+            return enclosing == null && position != 0 ? getMemory(flags).slice(position, size()) : getMemory(flags);
+        }
+
         final boolean isDirect() {
             return (enclosing != null && enclosing.__info.isDirect()) || (memory != null && memory.isDirect());
         }
@@ -109,6 +124,12 @@ public abstract class Struct {
 
         public final void useMemory(jnr.ffi.Pointer io) {
             this.memory = io;
+            this.position = 0;
+        }
+
+        final void useMemory(jnr.ffi.Pointer io, long position) {
+            this.memory = io;
+            this.position = position;
         }
 
         protected final int addField(int sizeBits, int alignBits, Offset offset) {
@@ -124,6 +145,69 @@ public abstract class Struct {
             this.minAlign = Math.max(this.minAlign, alignment);
             return offset;
         }
+
+        protected final int addField(Type type) {
+            return addScalarField(addField(type.size() * 8, type.alignment() * 8), type.getNativeType());
+        }
+
+        protected final int addField(Type type, Offset offset) {
+            return addScalarField(addField(type.size() * 8, type.alignment() * 8, offset), type.getNativeType());
+        }
+
+        final int addScalarField(int offset, NativeType nativeType) {
+            if (fieldCount == fieldTypes.length) {
+                fieldOffsets = Arrays.copyOf(fieldOffsets, fieldCount * 2);
+                fieldTypes = Arrays.copyOf(fieldTypes, fieldCount * 2);
+            }
+            fieldOffsets[fieldCount] = offset;
+            fieldTypes[fieldCount] = nativeType;
+            ++fieldCount;
+
+            return offset;
+        }
+
+        final NativeType[] getNativeLayout() {
+            if (isUnion || containsUnion) {
+                throw new UnsupportedOperationException("unions have no by-value layout");
+            }
+
+            int[] offsets = Arrays.copyOf(fieldOffsets, fieldCount);
+            NativeType[] types = Arrays.copyOf(fieldTypes, fieldCount);
+
+            // Fields are normally added in order, but explicit offsets can place them anywhere
+            for (int i = 1; i < fieldCount; ++i) {
+                for (int j = i; j > 0 && offsets[j - 1] > offsets[j]; --j) {
+                    int offset = offsets[j]; offsets[j] = offsets[j - 1]; offsets[j - 1] = offset;
+                    NativeType type = types[j]; types[j] = types[j - 1]; types[j - 1] = type;
+                }
+            }
+
+            List<NativeType> layout = new ArrayList<NativeType>(fieldCount);
+            int cursor = 0, maxAlign = 1;
+            for (int i = 0; i < fieldCount; ++i) {
+                Type t = runtime.findType(types[i]);
+                // Overlapping and packed (misaligned) fields are left to be described as raw bytes
+                if (offsets[i] < cursor || offsets[i] % t.alignment() != 0) {
+                    continue;
+                }
+                fillLayout(layout, cursor, offsets[i], t.alignment());
+                layout.add(types[i]);
+                cursor = offsets[i] + t.size();
+                maxAlign = Math.max(maxAlign, t.alignment());
+            }
+            fillLayout(layout, cursor, size(), maxAlign);
+
+            return layout.toArray(new NativeType[layout.size()]);
+        }
+
+        private static void fillLayout(List<NativeType> layout, int cursor, int offset, int alignment) {
+            // Natural alignment padding is implied by the layout; anything else is made up of bytes
+            if (align(cursor, alignment) != offset) {
+                for (; cursor < offset; ++cursor) {
+                    layout.add(NativeType.UCHAR);
+                }
+            }
+        }
     }
     final Info __info;
 
@@ -170,12 +254,29 @@ public abstract class Struct {
         __info.useMemory(address);
     }
 
+    /**
+     * Uses part of the specified memory as the backing store for this structure.
+     * <p>
+     * Unlike {@code useMemory(address.slice(offset))}, this does not allocate, so a single {@code Struct}
+     * can be cheaply moved over each element of an array of structures.
+     *
+     * @param address the native memory area.
+     * @param offset the offset of the structure within the memory area.
+     * @see StructArray
+     */
+    public final void useMemory(jnr.ffi.Pointer address, long offset) {
+        if (__info.enclosing != null) {
+            throw new UnsupportedOperationException("cannot reposition an inner struct");
+        }
+        __info.useMemory(address, offset);
+    }
+
     public static jnr.ffi.Pointer getMemory(Struct struct) {
-        return struct.__info.getMemory(0);
+        return struct.__info.getStructMemory(0);
     }
 
     public static jnr.ffi.Pointer getMemory(Struct struct, int flags) {
-        return struct.__info.getMemory(flags);
+        return struct.__info.getStructMemory(flags);
     }
 
     public static int size(Struct struct) {
@@ -190,10 +291,79 @@ public abstract class Struct {
         return struct.__info.isDirect();
     }
 
+    /**
+     * Gets the native types that make up the memory layout of a struct, in offset order.
+     *
+     * <p>Parts of the struct that are not covered by a scalar field, such as strings and padding
+     * members, are described as {@link NativeType#UCHAR} elements.</p>
+     *
+     * @param struct the struct to describe.
+     * @return the native types of the struct members.
+     * @throws UnsupportedOperationException if the struct is, or contains, a union.
+     */
+    public static NativeType[] getNativeLayout(Struct struct) {
+        return struct.__info.getNativeLayout();
+    }
+
     private static int align(int offset, int align) {
         return (offset + align - 1) & ~(align - 1);
     }
 
+    /**
+     * Creates a generated accessor for the scalar fields of a struct class.
+     * <p>
+     * The accessor interface declares a getter and/or setter for each field it accesses, named after the
+     * public field of the struct class, e.g. for a struct with a {@code Signed32 count} field:
+     * <pre>
+     *     public interface Accessor {
+     *         int count(Pointer memory);
+     *         void count(Pointer memory, int value);
+     *         int count(long address);
+     *         void count(long address, int value);
+     *     }
+     * </pre>
+     * Each method reads or writes the field at a constant offset, either in the memory of a {@link jnr.ffi.Pointer}
+     * or at an absolute native address, without the per-field objects and offset calculations of a
+     * {@code Struct} instance.  Values are converted to the declared java type the same way as by
+     * the struct fields, e.g. unsigned fields are zero extended.  Generating an accessor is costly, so
+     * accessors should be created once and reused.
+     *
+     * @param runtime the runtime the struct is used with.
+     * @param type the struct class.  It must have a public constructor that takes a {@link Runtime}.
+     * @param accessorInterface the accessor interface to implement.
+     * @param <A> the accessor interface type.
+     * @return an accessor instance.
+     * @throws IllegalArgumentException if an accessor method does not match a scalar field of the struct.
+     */
+    public static <A> A accessorOf(Runtime runtime, Class<? extends Struct> type, Class<A> accessorInterface) {
+        Struct struct;
+        try {
+            struct = type.getConstructor(Runtime.class).newInstance(runtime);
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+
+        List<StructAccessorGenerator.Field> fields = new ArrayList<StructAccessorGenerator.Field>();
+        for (java.lang.reflect.Field field : type.getFields()) {
+            Object member;
+            try {
+                member = field.get(struct);
+            } catch (IllegalAccessException ex) {
+                continue;
+            }
+            if (member instanceof NumberField && ((NumberField) member).struct() == struct) {
+                NumberField numberField = (NumberField) member;
+                fields.add(new StructAccessorGenerator.Field(field.getName(), numberField.offset(),
+                        numberField.type.getNativeType()));
+            }
+        }
+
+        return StructAccessorGenerator.generate(runtime, accessorInterface,
+                fields.toArray(new StructAccessorGenerator.Field[fields.size()]));
+    }
+
     @SuppressWarnings("unchecked")
     public static <T extends Struct> T[] arrayOf(Runtime runtime, Class<T> type, int length) {
         try {
@@ -703,6 +873,10 @@ public abstract class Struct {
         struct.__info.offset = offset;
         __info.size = Math.max(__info.size, offset + struct.__info.size);
         __info.minAlign = Math.max(__info.minAlign, alignment);
+        __info.containsUnion |= struct.__info.isUnion || struct.__info.containsUnion;
+        for (int i = 0; i < struct.__info.fieldCount; ++i) {
+            __info.addScalarField(offset + struct.__info.fieldOffsets[i], struct.__info.fieldTypes[i]);
+        }
         return struct;
     }
 
@@ -722,13 +896,11 @@ public abstract class Struct {
         }
 
         protected AbstractMember(NativeType type) {
-            final Type t = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8);
+            this.offset = __info.addField(getRuntime().findType(type));
         }
 
         protected AbstractMember(NativeType type, Offset offset) {
-            final Type t = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8, offset);
+            this.offset = __info.addField(getRuntime().findType(type), offset);
         }
 
         public final jnr.ffi.Pointer getMemory() {
@@ -885,22 +1057,22 @@ public abstract class Struct {
 
         protected NumberField(NativeType type) {
             Type t = this.type = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8);
+            this.offset = __info.addField(t);
         }
 
         protected NumberField(NativeType type, Offset offset) {
             Type t = this.type = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8, offset);
+            this.offset = __info.addField(t, offset);
         }
 
         protected NumberField(TypeAlias type) {
             Type t = this.type = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8);
+            this.offset = __info.addField(t);
         }
 
         protected NumberField(TypeAlias type, Offset offset) {
             Type t = this.type = getRuntime().findType(type);
-            this.offset = __info.addField(t.size() * 8, t.alignment() * 8, offset);
+            this.offset = __info.addField(t, offset);
         }
 
 
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi;
+
+import java.lang.reflect.Constructor;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A contiguous array of native structures, accessed through a single {@link Struct} instance.
+ * <p>
+ * Unlike {@link Struct#arrayOf(Runtime, Class, int)}, which creates a {@code Struct} for every element,
+ * a {@code StructArray} moves one <i>flyweight</i> {@code Struct} over the elements, so reading or
+ * writing any number of elements does not allocate.
+ * <p>
+ * The flyweight returned by {@link #get(int)} and the iterator is only valid until the array is next
+ * positioned, so it must not be kept, and a {@code StructArray} must not be shared between threads.
+ * <pre>
+ *     StructArray&lt;EpollEvent&gt; events = StructArray.allocate(runtime, EpollEvent.class, 1024);
+ *     int n = libc.epoll_wait(epfd, events.getMemory(), events.length(), -1);
+ *     for (int i = 0; i &lt; n; i++) {
+ *         EpollEvent event = events.get(i);
+ *         ...
+ *     }
+ * </pre>
+ *
+ * @param <T> the type of the structures.
+ */
+public final class StructArray<T extends Struct> implements Iterable<T> {
+    private final T flyweight;
+    private final Pointer memory;
+    private final int length;
+    private final int stride;
+
+    private StructArray(T flyweight, Pointer memory, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length " + length);
+        }
+        this.flyweight = flyweight;
+        this.memory = memory;
+        this.length = length;
+        this.stride = stride(flyweight);
+    }
+
+    /**
+     * Allocates direct memory for an array of structures.
+     *
+     * @param runtime the runtime to allocate the memory in.
+     * @param type the class of the structures.  It must have a public constructor that takes a {@link Runtime}.
+     * @param length the number of structures.
+     * @param <T> the type of the structures.
+     * @return a new array.
+     */
+    public static <T extends Struct> StructArray<T> allocate(Runtime runtime, Class<T> type, int length) {
+        T flyweight = newInstance(runtime, type);
+        return new StructArray<T>(flyweight, runtime.getMemoryManager().allocateDirect(stride(flyweight) * length, true), length);
+    }
+
+    /**
+     * Creates an array over existing memory, e.g. an array of structures returned by a native function.
+     *
+     * @param flyweight the {@code Struct} to access the elements through.  Its own memory is not used.
+     * @param memory the memory containing the structures.
+     * @param length the number of structures.
+     * @param <T> the type of the structures.
+     * @return a new array.
+     */
+    public static <T extends Struct> StructArray<T> wrap(T flyweight, Pointer memory, int length) {
+        return new StructArray<T>(flyweight, memory, length);
+    }
+
+    /**
+     * Creates an array over existing memory.
+     *
+     * @param runtime the runtime of the memory.
+     * @param type the class of the structures.  It must have a public constructor that takes a {@link Runtime}.
+     * @param memory the memory containing the structures.
+     * @param length the number of structures.
+     * @param <T> the type of the structures.
+     * @return a new array.
+     */
+    public static <T extends Struct> StructArray<T> wrap(Runtime runtime, Class<T> type, Pointer memory, int length) {
+        return new StructArray<T>(newInstance(runtime, type), memory, length);
+    }
+
+    /**
+     * Positions the flyweight over an element of the array.
+     *
+     * @param index the index of the element.
+     * @return the flyweight {@code Struct}, positioned over the element.
+     */
+    public T get(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+        }
+        flyweight.useMemory(memory, (long) index * stride);
+        return flyweight;
+    }
+
+    /**
+     * Gets the number of structures in the array.
+     *
+     * @return the array length.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Gets the distance in bytes between consecutive structures, i.e. the size of the structure rounded
+     * up to its alignment.
+     *
+     * @return the element stride.
+     */
+    public int stride() {
+        return stride;
+    }
+
+    /**
+     * Gets the memory containing the structures, e.g. to pass the array to a native function.
+     *
+     * @return the array memory.
+     */
+    public Pointer getMemory() {
+        return memory;
+    }
+
+    /**
+     * Iterates over the elements of the array, positioning the flyweight over each one in turn.
+     *
+     * @return an iterator which returns the flyweight for every element.
+     */
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index = 0;
+
+            public boolean hasNext() {
+                return index < length;
+            }
+
+            public T next() {
+                if (index >= length) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("remove");
+            }
+        };
+    }
+
+    private static int stride(Struct struct) {
+        int alignment = Struct.alignment(struct);
+        return (Struct.size(struct) + alignment - 1) & ~(alignment - 1);
+    }
+
+    private static <T extends Struct> T newInstance(Runtime runtime, Class<T> type) {
+        try {
+            Constructor<T> c = type.getConstructor(Runtime.class);
+            return c.newInstance(runtime);
+
+        } catch (RuntimeException ex) {
+            throw ex;
+
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
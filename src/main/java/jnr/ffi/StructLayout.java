@@ -18,6 +18,9 @@
 
 package jnr.ffi;
 
+import jnr.ffi.provider.AbstractMemoryIO;
+import jnr.ffi.provider.BoundedMemoryIO;
+import jnr.ffi.provider.ShareMemoryIO;
 import jnr.ffi.util.EnumMapper;
 
 import java.lang.reflect.Constructor;
@@ -96,6 +99,276 @@ public class StructLayout extends Type {
         return sb.toString();
     }
 
+    /**
+     * Creates a cursor over an array of structures with this layout.
+     * <p>
+     * The fields of a {@code StructLayout} are read and written through a {@link Pointer}; the cursor provides
+     * a single {@code Pointer} which is moved over each element of the array, so accessing any number of
+     * elements does not allocate.
+     *
+     * @param memory the memory containing the structures.
+     * @param length the number of structures.
+     * @return a new cursor.
+     */
+    public final Cursor cursor(jnr.ffi.Pointer memory, int length) {
+        return new Cursor(memory, length, align(size(), alignment()));
+    }
+
+    /**
+     * A flyweight {@link Pointer} which can be moved over each element of an array of structures.
+     * <p>
+     * The pointer returned by {@link #get(int)} is only valid until the cursor is next positioned, and
+     * it has no native address, so it cannot be passed to native functions; use {@link #getMemory()} and
+     * {@link #stride()} for that.  A cursor must not be shared between threads.
+     */
+    public static final class Cursor {
+        private final jnr.ffi.Pointer memory;
+        private final CursorMemoryIO cursor;
+        private final int length;
+        private final int stride;
+
+        Cursor(jnr.ffi.Pointer memory, int length, int stride) {
+            if (length < 0) {
+                throw new IllegalArgumentException("negative length " + length);
+            }
+            this.memory = memory;
+            this.cursor = new CursorMemoryIO(memory);
+            this.length = length;
+            this.stride = stride;
+        }
+
+        /**
+         * Positions the cursor over an element of the array.
+         *
+         * @param index the index of the element.
+         * @return the cursor {@code Pointer}, positioned over the element.
+         */
+        public jnr.ffi.Pointer get(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+            }
+            cursor.base = (long) index * stride;
+            return cursor;
+        }
+
+        /**
+         * Gets the number of structures in the array.
+         *
+         * @return the array length.
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Gets the distance in bytes between consecutive structures.
+         *
+         * @return the element stride.
+         */
+        public int stride() {
+            return stride;
+        }
+
+        /**
+         * Gets the memory containing the structures.
+         *
+         * @return the array memory.
+         */
+        public jnr.ffi.Pointer getMemory() {
+            return memory;
+        }
+    }
+
+    /**
+     * Accesses memory at a movable offset from the start of an array.
+     */
+    private static final class CursorMemoryIO extends AbstractMemoryIO {
+        private final jnr.ffi.Pointer ptr;
+        long base;
+
+        CursorMemoryIO(jnr.ffi.Pointer ptr) {
+            super(ptr.getRuntime(), 0L, false);
+            this.ptr = ptr;
+        }
+
+        public long size() {
+            return ptr.size() - base;
+        }
+
+        public boolean hasArray() {
+            return ptr.hasArray();
+        }
+
+        public Object array() {
+            return ptr.array();
+        }
+
+        public int arrayOffset() {
+            return ptr.arrayOffset() + (int) base;
+        }
+
+        public int arrayLength() {
+            return ptr.arrayLength() - (int) base;
+        }
+
+        public byte getByte(long offset) {
+            return ptr.getByte(base + offset);
+        }
+
+        public short getShort(long offset) {
+            return ptr.getShort(base + offset);
+        }
+
+        public int getInt(long offset) {
+            return ptr.getInt(base + offset);
+        }
+
+        public long getLongLong(long offset) {
+            return ptr.getLongLong(base + offset);
+        }
+
+        public float getFloat(long offset) {
+            return ptr.getFloat(base + offset);
+        }
+
+        public double getDouble(long offset) {
+            return ptr.getDouble(base + offset);
+        }
+
+        public long getAddress(long offset) {
+            return ptr.getAddress(base + offset);
+        }
+
+        public jnr.ffi.Pointer getPointer(long offset) {
+            return ptr.getPointer(base + offset);
+        }
+
+        public jnr.ffi.Pointer getPointer(long offset, long size) {
+            return ptr.getPointer(base + offset, size);
+        }
+
+        public java.lang.String getString(long offset) {
+            return ptr.getString(base + offset);
+        }
+
+        public java.lang.String getString(long offset, int maxLength, Charset cs) {
+            return ptr.getString(base + offset, maxLength, cs);
+        }
+
+        public void putByte(long offset, byte value) {
+            ptr.putByte(base + offset, value);
+        }
+
+        public void putShort(long offset, short value) {
+            ptr.putShort(base + offset, value);
+        }
+
+        public void putInt(long offset, int value) {
+            ptr.putInt(base + offset, value);
+        }
+
+        public void putLongLong(long offset, long value) {
+            ptr.putLongLong(base + offset, value);
+        }
+
+        public void putFloat(long offset, float value) {
+            ptr.putFloat(base + offset, value);
+        }
+
+        public void putDouble(long offset, double value) {
+            ptr.putDouble(base + offset, value);
+        }
+
+        public void putAddress(long offset, long value) {
+            ptr.putAddress(base + offset, value);
+        }
+
+        public void putPointer(long offset, jnr.ffi.Pointer value) {
+            ptr.putPointer(base + offset, value);
+        }
+
+        public void putString(long offset, java.lang.String string, int maxLength, Charset cs) {
+            ptr.putString(base + offset, string, maxLength, cs);
+        }
+
+        public void get(long offset, byte[] dst, int idx, int len) {
+            ptr.get(base + offset, dst, idx, len);
+        }
+
+        public void put(long offset, byte[] src, int idx, int len) {
+            ptr.put(base + offset, src, idx, len);
+        }
+
+        public void get(long offset, short[] dst, int idx, int len) {
+            ptr.get(base + offset, dst, idx, len);
+        }
+
+        public void put(long offset, short[] src, int idx, int len) {
+            ptr.put(base + offset, src, idx, len);
+        }
+
+        public void get(long offset, int[] dst, int idx, int len) {
+            ptr.get(base + offset, dst, idx, len);
+        }
+
+        public void put(long offset, int[] src, int idx, int len) {
+            ptr.put(base + offset, src, idx, len);
+        }
+
+        public void get(long offset, long[] dst, int idx, int len) {
+            ptr.get(base + offset, dst, idx, len);
+        }
+
+        public void put(long offset, long[] src, int idx, int len) {
+            ptr.put(base + offset, src, idx, len);
+        }
+
+        public void get(long offset, float[] dst, int idx, int len) {
+            ptr.get(base + offset, dst, idx, len);
+        }
+
+        public void put(long offset, float[] src, int idx, int len) {
+            ptr.put(base + offset, src, idx, len);
+        }
+
+        public void get(long offset, double[] dst, int idx, int len) {
+            ptr.get(base + offset, dst, idx, len);
+        }
+
+        public void put(long offset, double[] src, int idx, int len) {
+            ptr.put(base + offset, src, idx, len);
+        }
+
+        public int indexOf(long offset, byte value, int maxlen) {
+            return ptr.indexOf(base + offset, value, maxlen);
+        }
+
+        public void setMemory(long offset, long size, byte value) {
+            ptr.setMemory(base + offset, size, value);
+        }
+
+        public void checkBounds(long offset, long size) {
+            ptr.checkBounds(base + offset, size);
+        }
+
+        public void transferTo(long offset, jnr.ffi.Pointer dst, long dstOffset, long count) {
+            ptr.transferTo(base + offset, dst, dstOffset, count);
+        }
+
+        public void transferFrom(long offset, jnr.ffi.Pointer src, long srcOffset, long count) {
+            ptr.transferFrom(base + offset, src, srcOffset, count);
+        }
+
+        // Slices are fixed at the current position
+        public AbstractMemoryIO slice(long offset) {
+            return new ShareMemoryIO(ptr, base + offset);
+        }
+
+        public AbstractMemoryIO slice(long offset, long size) {
+            return new BoundedMemoryIO(ptr, base + offset, size);
+        }
+    }
+
     private static int align(int offset, int alignment) {
         return (offset + alignment - 1) & ~(alignment - 1);
     }
@@ -454,6 +727,175 @@ public class StructLayout extends Type {
         public java.lang.String toString(jnr.ffi.Pointer ptr) {
             return java.lang.Integer.toString(intValue(ptr), 10);
         }
+
+        /**
+         * Reads this field from each of {@code len} consecutive structures into a {@code byte} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param dst The array into which values are to be stored.
+         * @param idx the start index in the {@code dst} array to begin storing the values.
+         * @param len the number of structures to read the field from.
+         */
+        public final void getColumn(jnr.ffi.Pointer ptr, byte[] dst, int idx, int len) {
+            checkColumnType(1, false);
+            ptr.getStrided(offset(), stride(), dst, idx, len);
+        }
+
+        /**
+         * Writes this field of each of {@code len} consecutive structures from a {@code byte} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param src The array to get values from.
+         * @param idx The start index in the {@code src} array to begin reading values.
+         * @param len the number of structures to write the field to.
+         */
+        public final void putColumn(jnr.ffi.Pointer ptr, byte[] src, int idx, int len) {
+            checkColumnType(1, false);
+            ptr.putStrided(offset(), stride(), src, idx, len);
+        }
+
+        /**
+         * Reads this field from each of {@code len} consecutive structures into a {@code short} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param dst The array into which values are to be stored.
+         * @param idx the start index in the {@code dst} array to begin storing the values.
+         * @param len the number of structures to read the field from.
+         */
+        public final void getColumn(jnr.ffi.Pointer ptr, short[] dst, int idx, int len) {
+            checkColumnType(2, false);
+            ptr.getStrided(offset(), stride(), dst, idx, len);
+        }
+
+        /**
+         * Writes this field of each of {@code len} consecutive structures from a {@code short} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param src The array to get values from.
+         * @param idx The start index in the {@code src} array to begin reading values.
+         * @param len the number of structures to write the field to.
+         */
+        public final void putColumn(jnr.ffi.Pointer ptr, short[] src, int idx, int len) {
+            checkColumnType(2, false);
+            ptr.putStrided(offset(), stride(), src, idx, len);
+        }
+
+        /**
+         * Reads this field from each of {@code len} consecutive structures into a {@code int} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param dst The array into which values are to be stored.
+         * @param idx the start index in the {@code dst} array to begin storing the values.
+         * @param len the number of structures to read the field from.
+         */
+        public final void getColumn(jnr.ffi.Pointer ptr, int[] dst, int idx, int len) {
+            checkColumnType(4, false);
+            ptr.getStrided(offset(), stride(), dst, idx, len);
+        }
+
+        /**
+         * Writes this field of each of {@code len} consecutive structures from a {@code int} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param src The array to get values from.
+         * @param idx The start index in the {@code src} array to begin reading values.
+         * @param len the number of structures to write the field to.
+         */
+        public final void putColumn(jnr.ffi.Pointer ptr, int[] src, int idx, int len) {
+            checkColumnType(4, false);
+            ptr.putStrided(offset(), stride(), src, idx, len);
+        }
+
+        /**
+         * Reads this field from each of {@code len} consecutive structures into a {@code long} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param dst The array into which values are to be stored.
+         * @param idx the start index in the {@code dst} array to begin storing the values.
+         * @param len the number of structures to read the field from.
+         */
+        public final void getColumn(jnr.ffi.Pointer ptr, long[] dst, int idx, int len) {
+            checkColumnType(8, false);
+            ptr.getStrided(offset(), stride(), dst, idx, len);
+        }
+
+        /**
+         * Writes this field of each of {@code len} consecutive structures from a {@code long} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param src The array to get values from.
+         * @param idx The start index in the {@code src} array to begin reading values.
+         * @param len the number of structures to write the field to.
+         */
+        public final void putColumn(jnr.ffi.Pointer ptr, long[] src, int idx, int len) {
+            checkColumnType(8, false);
+            ptr.putStrided(offset(), stride(), src, idx, len);
+        }
+
+        /**
+         * Reads this field from each of {@code len} consecutive structures into a {@code float} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param dst The array into which values are to be stored.
+         * @param idx the start index in the {@code dst} array to begin storing the values.
+         * @param len the number of structures to read the field from.
+         */
+        public final void getColumn(jnr.ffi.Pointer ptr, float[] dst, int idx, int len) {
+            checkColumnType(4, true);
+            ptr.getStrided(offset(), stride(), dst, idx, len);
+        }
+
+        /**
+         * Writes this field of each of {@code len} consecutive structures from a {@code float} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param src The array to get values from.
+         * @param idx The start index in the {@code src} array to begin reading values.
+         * @param len the number of structures to write the field to.
+         */
+        public final void putColumn(jnr.ffi.Pointer ptr, float[] src, int idx, int len) {
+            checkColumnType(4, true);
+            ptr.putStrided(offset(), stride(), src, idx, len);
+        }
+
+        /**
+         * Reads this field from each of {@code len} consecutive structures into a {@code double} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param dst The array into which values are to be stored.
+         * @param idx the start index in the {@code dst} array to begin storing the values.
+         * @param len the number of structures to read the field from.
+         */
+        public final void getColumn(jnr.ffi.Pointer ptr, double[] dst, int idx, int len) {
+            checkColumnType(8, true);
+            ptr.getStrided(offset(), stride(), dst, idx, len);
+        }
+
+        /**
+         * Writes this field of each of {@code len} consecutive structures from a {@code double} array.
+         *
+         * @param ptr The pointer to the first structure of the array.
+         * @param src The array to get values from.
+         * @param idx The start index in the {@code src} array to begin reading values.
+         * @param len the number of structures to write the field to.
+         */
+        public final void putColumn(jnr.ffi.Pointer ptr, double[] src, int idx, int len) {
+            checkColumnType(8, true);
+            ptr.putStrided(offset(), stride(), src, idx, len);
+        }
+
+        private int stride() {
+            return align(StructLayout.this.size(), StructLayout.this.alignment());
+        }
+
+        private void checkColumnType(int elementSize, boolean floatingPoint) {
+            boolean isFloatingPoint = type.getNativeType() == NativeType.FLOAT || type.getNativeType() == NativeType.DOUBLE;
+            if (type.size() != elementSize || isFloatingPoint != floatingPoint) {
+                throw new IllegalArgumentException("field of type " + type.getNativeType()
+                        + " cannot be transferred to or from an array of " + (floatingPoint ? "floating point" : "integer")
+                        + " values of size " + elementSize);
+            }
+        }
     }
 
     public abstract class IntegerAlias extends NumberField {
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2008-2010 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that a {@link jnr.ffi.Struct} parameter or result is passed by value,
+ * rather than as a pointer to the struct memory.
+ *
+ * <p>When applied to a parameter, the contents of the struct are copied into the
+ * native call frame.  When applied to a method, the struct returned by the native
+ * function is copied into a new instance of the declared {@code Struct} subclass,
+ * which must have a public constructor taking a single {@link jnr.ffi.Runtime} argument.
+ *
+ * <p>Unions cannot be passed by value.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.PARAMETER, ElementType.METHOD })
+public @interface ByValue {
+
+}
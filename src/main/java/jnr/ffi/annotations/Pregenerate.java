@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requests that the implementation of a library interface be generated at build time by
+ * {@link jnr.ffi.processor.PregeneratedBindingProcessor}, instead of when the library is loaded.
+ *
+ * <p>Only interfaces whose methods use primitive parameter and result types, and take at most six
+ * parameters, can be pregenerated; other interfaces are left to be generated at runtime.
+ *
+ * <p>A pregenerated implementation saves the cost of generating the implementation when the library is
+ * loaded, but its methods call through jffi's generic invokers.  Where the runtime generator can compile
+ * direct native stubs (e.g. on x86_64), a pregenerated method can be slower to call than a runtime
+ * generated one, so only pregenerate interfaces where load time matters more than call overhead.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Pregenerate {
+}
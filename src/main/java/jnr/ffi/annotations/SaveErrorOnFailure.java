@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2008-2010 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Tags a library method as only requiring the error code, as returned by errno on unix
+ * or GetLastError on windows, when the call fails.
+ *
+ * <p>A call fails when the function returns {@link #value()}.  The value is compared with the native result
+ * truncated to the size of the native result type, so the default of {@code -1} matches an all-ones result of
+ * any size, and {@code 0} matches {@code NULL}.
+ *
+ * <p>A method with this annotation always has its error code available after a failed call, just as if it
+ * was annotated with {@link SaveError}.  Where the call is made through a compiled native stub, the error code
+ * is only saved when the call fails, so successful calls do no error bookkeeping at all, and the last error
+ * after a successful call is left unchanged.
+ *
+ * <p>For example,
+ * <pre>
+ * {@code
+ * interface LibC {
+ *     @SaveErrorOnFailure(returnErrno = true)
+ *     long read(int fd, @Out ByteBuffer dst, @size_t long len);
+ * }
+ * }
+ * </pre>
+ * returns the number of bytes read, or the negated errno if the read failed.
+ *
+ * @see SaveError
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SaveErrorOnFailure {
+    /**
+     * The native result which signals that the call failed.
+     *
+     * @return the failure result.
+     */
+    long value() default -1;
+
+    /**
+     * Whether a failed call returns the negated error code in place of the failure result, so that the result
+     * and error code are returned together without looking up the last error separately.  Only applies to
+     * methods returning {@code int} or {@code long}.  The error code itself is still read back from the saved
+     * last error, but only when the call has failed.
+     *
+     * @return true if a failed call returns the negated error code.
+     */
+    boolean returnErrno() default false;
+}
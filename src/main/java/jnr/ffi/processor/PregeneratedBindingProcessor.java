@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation processor which generates the implementation of library interfaces annotated with
+ * {@link jnr.ffi.annotations.Pregenerate} at build time.
+ * <p>
+ * For an interface <tt>Foo</tt>, a class named <tt>Foo$jnr$ffi$Pregenerated</tt> is generated in the same
+ * package.  When the library is loaded, the native symbols are looked up and the generated class is
+ * used instead of generating the implementation at runtime.
+ * <p>
+ * The processor is not registered as a service, so it must be named explicitly, e.g. with the
+ * <tt>-processor</tt> option of javac, or in the <tt>annotationProcessors</tt> configuration of
+ * the maven compiler plugin.
+ */
+@SupportedAnnotationTypes("jnr.ffi.annotations.Pregenerate")
+public class PregeneratedBindingProcessor extends AbstractProcessor {
+    private static final String CLASS_SUFFIX = "$jnr$ffi$Pregenerated";
+    private static final String FUNCTION_CLASS = "jnr.ffi.provider.jffi.PregeneratedFunction";
+    private static final String LIBRARY_CLASS = "jnr.ffi.provider.jffi.PregeneratedLibrary";
+    /** The most parameters {@link #FUNCTION_CLASS} can take without allocating on every call */
+    private static final int MAX_PARAMETERS = 6;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.INTERFACE) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "@Pregenerate can only be applied to library interfaces", element);
+                    continue;
+                }
+
+                generate((TypeElement) element);
+            }
+        }
+
+        return true;
+    }
+
+    private void generate(TypeElement interfaceElement) {
+        if (interfaceElement.getModifiers().contains(Modifier.PRIVATE)) {
+            warn(interfaceElement, "private interfaces cannot be pregenerated");
+            return;
+        }
+
+        Map<String, ExecutableElement> methods = new LinkedHashMap<String, ExecutableElement>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(interfaceElement))) {
+            if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE || !method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+
+            if (!isSupported(method)) {
+                warn(interfaceElement, "method " + method + " has types which cannot be pregenerated");
+                return;
+            }
+
+            if (method.getParameters().size() > MAX_PARAMETERS) {
+                warn(interfaceElement, "method " + method + " has more than " + MAX_PARAMETERS
+                        + " parameters, so the interface is left to be generated at runtime");
+                return;
+            }
+
+            String key = method.getSimpleName() + processingEnv.getTypeUtils().erasure(method.asType()).toString();
+            if (!methods.containsKey(key)) {
+                methods.put(key, method);
+            }
+        }
+
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(interfaceElement);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(interfaceElement).toString();
+        String className = (packageName.length() > 0 ? binaryName.substring(packageName.length() + 1) : binaryName) + CLASS_SUFFIX;
+
+        try {
+            Writer writer = processingEnv.getFiler().createSourceFile(binaryName + CLASS_SUFFIX, interfaceElement).openWriter();
+            try {
+                write(new PrintWriter(writer), packageName, className, interfaceElement.getQualifiedName().toString(),
+                        new ArrayList<ExecutableElement>(methods.values()));
+            } finally {
+                writer.close();
+            }
+
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "failed to write pregenerated implementation: " + ex, interfaceElement);
+        }
+    }
+
+    private static boolean isSupported(ExecutableElement method) {
+        if (method.isVarArgs() || !method.getTypeParameters().isEmpty()) {
+            return false;
+        }
+
+        TypeKind returnKind = method.getReturnType().getKind();
+        if (returnKind != TypeKind.VOID && !isSupported(method.getReturnType())) {
+            return false;
+        }
+
+        for (VariableElement parameter : method.getParameters()) {
+            if (!isSupported(parameter.asType())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isSupported(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private void write(PrintWriter out, String packageName, String className, String interfaceName, List<ExecutableElement> methods) {
+        if (packageName.length() > 0) {
+            out.println("package " + packageName + ";");
+            out.println();
+        }
+        out.println("/**");
+        out.println(" * Implementation of {@link " + interfaceName + "} generated by " + getClass().getName());
+        out.println(" */");
+        out.println("public final class " + className + " extends " + LIBRARY_CLASS + " implements " + interfaceName + " {");
+
+        for (int i = 0; i < methods.size(); i++) {
+            out.println("    private final " + FUNCTION_CLASS + " f" + i + ";");
+        }
+        out.println();
+
+        out.println("    public " + className + "(" + LIBRARY_CLASS + ".Binder binder) {");
+        out.println("        super(binder);");
+        for (int i = 0; i < methods.size(); i++) {
+            ExecutableElement method = methods.get(i);
+            StringBuilder sb = new StringBuilder();
+            sb.append("        this.f").append(i).append(" = binder.function(\"").append(method.getSimpleName()).append('"');
+            for (VariableElement parameter : method.getParameters()) {
+                sb.append(", ").append(parameter.asType()).append(".class");
+            }
+            out.println(sb.append(");"));
+        }
+        out.println("    }");
+
+        for (int i = 0; i < methods.size(); i++) {
+            out.println();
+            writeMethod(out, methods.get(i), "f" + i);
+        }
+
+        out.println("}");
+        out.flush();
+    }
+
+    private static void writeMethod(PrintWriter out, ExecutableElement method, String field) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        StringBuilder sb = new StringBuilder();
+        sb.append("    public ").append(method.getReturnType()).append(' ').append(method.getSimpleName()).append('(');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(parameters.get(i).asType()).append(" a").append(i);
+        }
+        out.println(sb.append(") {"));
+
+        StringBuilder call = new StringBuilder();
+        call.append(field).append(".invoke(");
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) call.append(", ");
+            call.append(toLong(parameters.get(i).asType().getKind(), "a" + i));
+        }
+        call.append(')');
+
+        out.println("        " + fromLong(method.getReturnType().getKind(), call.toString()) + ";");
+        out.println("    }");
+    }
+
+    private static String toLong(TypeKind kind, String value) {
+        switch (kind) {
+            case BOOLEAN:
+                return "(" + value + " ? 1L : 0L)";
+
+            case FLOAT:
+                return "(long) Float.floatToRawIntBits(" + value + ")";
+
+            case DOUBLE:
+                return "Double.doubleToRawLongBits(" + value + ")";
+
+            case LONG:
+                return value;
+
+            default:
+                return "(long) " + value;
+        }
+    }
+
+    private static String fromLong(TypeKind kind, String value) {
+        switch (kind) {
+            case VOID:
+                return value;
+
+            case BOOLEAN:
+                return "return " + value + " != 0L";
+
+            case BYTE:
+                return "return (byte) " + value;
+
+            case SHORT:
+                return "return (short) " + value;
+
+            case INT:
+                return "return (int) " + value;
+
+            case FLOAT:
+                return "return Float.intBitsToFloat((int) " + value + ")";
+
+            case DOUBLE:
+                return "return Double.longBitsToDouble(" + value + ")";
+
+            default:
+                return "return " + value;
+        }
+    }
+
+    private void warn(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+}
@@ -248,6 +248,162 @@ public abstract class AbstractArrayMemoryIO extends AbstractMemoryIO {
         }
     }
 
+    @Override
+    public final void getStrided(long offset, long stride, byte[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 1);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = buffer[begin + (i * step)];
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, byte[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 1);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            buffer[begin + (i * step)] = src[off + i];
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, short[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 2);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = io.getInt16(buffer, begin + (i * step));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, short[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 2);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            io.putInt16(buffer, begin + (i * step), src[off + i]);
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, int[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 4);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = io.getInt32(buffer, begin + (i * step));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, int[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 4);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            io.putInt32(buffer, begin + (i * step), src[off + i]);
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, long[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 8);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = io.getInt64(buffer, begin + (i * step));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, long[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 8);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            io.putInt64(buffer, begin + (i * step), src[off + i]);
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, float[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 4);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = io.getFloat32(buffer, begin + (i * step));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, float[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 4);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            io.putFloat32(buffer, begin + (i * step), src[off + i]);
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, double[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 8);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = io.getFloat64(buffer, begin + (i * step));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, double[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(offset, (len - 1) * stride + 8);
+        }
+        final int begin = index(offset);
+        final int step = (int) stride;
+        for (int i = 0; i < len; ++i) {
+            io.putFloat64(buffer, begin + (i * step), src[off + i]);
+        }
+    }
+
     @Override
     public final int indexOf(long offset, byte value) {
         int off = index(offset);
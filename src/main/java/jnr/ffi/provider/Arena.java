@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider;
+
+import jnr.ffi.Pointer;
+
+/**
+ * A scope for native memory allocations that are released all at once, opened with
+ * {@link jnr.ffi.Memory#openArena(jnr.ffi.Runtime)}.
+ *
+ * <p>Memory is bump-allocated out of large native slabs, so allocation is cheap and
+ * creates no garbage collector work. All memory handed out by an arena is freed
+ * when {@link #close()} is called, and any {@link Pointer} obtained from it must
+ * not be used after that.
+ *
+ * <p>Arenas are confined to the thread that opened them. Arenas opened while
+ * another arena is open on the same thread are nested inside it, and must be closed
+ * before the enclosing arena. A typical use is:
+ * <pre>
+ *     Arena arena = Memory.openArena(runtime);
+ *     try {
+ *         Pointer buf = arena.allocate(4096);
+ *         ...
+ *     } finally {
+ *         arena.close();
+ *     }
+ * </pre>
+ */
+public interface Arena {
+    /**
+     * Allocates a block of native memory with undefined contents.
+     *
+     * @param size the size of the block in bytes.
+     * @return a {@link Pointer} to the allocated memory.
+     */
+    public abstract Pointer allocate(int size);
+
+    /**
+     * Allocates a block of native memory.
+     *
+     * @param size the size of the block in bytes.
+     * @param clear whether the memory should be zeroed.
+     * @return a {@link Pointer} to the allocated memory.
+     */
+    public abstract Pointer allocate(int size, boolean clear);
+
+    /**
+     * Frees all memory allocated from this arena, and from any arenas nested inside it
+     * that are still open.
+     *
+     * <p>Closing an arena that is already closed has no effect.
+     */
+    public abstract void close();
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider;
+
+/**
+ * A {@link MemoryManager} which can also allocate memory from {@link Arena}s.
+ *
+ * <p>This is a separate interface so that existing {@link MemoryManager} implementations
+ * do not have to provide arenas.  Use {@link jnr.ffi.Memory#openArena(jnr.ffi.Runtime)} to open an arena.
+ */
+public interface ArenaMemoryManager extends MemoryManager {
+    /**
+     * Opens a new {@link Arena} on the calling thread, nested inside any arena that is
+     * already open on that thread.
+     *
+     * @return a new {@code Arena}.
+     */
+    public abstract Arena openArena();
+}
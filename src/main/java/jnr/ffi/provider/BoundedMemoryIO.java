@@ -302,4 +302,112 @@ public final class BoundedMemoryIO extends AbstractMemoryIO implements Delegatin
         checkBounds(this.size, base + offset, count);
         getDelegatedMemoryIO().transferTo(offset, other, otherOffset, count);
     }
+    @Override
+    public void getStrided(long offset, long stride, byte[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 1);
+        }
+        io.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, byte[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 1);
+        }
+        io.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, short[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 2);
+        }
+        io.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, short[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 2);
+        }
+        io.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, int[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 4);
+        }
+        io.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, int[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 4);
+        }
+        io.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, long[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 8);
+        }
+        io.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, long[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 8);
+        }
+        io.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, float[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 4);
+        }
+        io.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, float[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 4);
+        }
+        io.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, double[] dst, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 8);
+        }
+        io.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, double[] src, int off, int len) {
+        checkStride(stride);
+        if (len > 0) {
+            checkBounds(size, offset, (len - 1) * stride + 8);
+        }
+        io.putStrided(base + offset, stride, src, off, len);
+    }
+
 }
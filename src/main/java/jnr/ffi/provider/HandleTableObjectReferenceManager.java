@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider;
+
+import jnr.ffi.ObjectReferenceManager;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An {@link ObjectReferenceManager} that stores references in a table of numbered slots.
+ *
+ * <p>The native address handed out for a reference encodes its slot index and the slot's generation, so
+ * {@link #get(Pointer)} is a pair of array reads with no allocation, and {@link #remove(Pointer)} releases the
+ * slot in constant time for reuse.  Bumping the generation on removal means a stale address never resolves
+ * to an object added later in the same slot.
+ *
+ * <p>Free slots are kept on a shared list.  With per-thread slabs enabled, each thread also keeps a small cache
+ * of free slots and only touches the shared list to refill or spill a batch of them, which avoids contention when
+ * many threads add and remove references at once.  The free slots cached by a thread that has died are moved
+ * back to the shared list once the thread has been collected, before the table grows any further.
+ */
+public final class HandleTableObjectReferenceManager<T> extends ObjectReferenceManager<T> {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /** The number of free slots moved between a thread slab and the shared free list at once */
+    private static final int SLAB_BATCH = 32;
+
+    private final Runtime runtime;
+    private final int indexBits;
+    private final long indexMask;
+    private final int generationMask;
+    private final ThreadLocal<Slab> slabs;
+    /** Keeps the slab of every thread reachable, so its free slots can be reclaimed after the thread dies */
+    private final Set<SlabReference> slabReferences = new HashSet<SlabReference>();
+    private final ReferenceQueue<Thread> deadThreads = new ReferenceQueue<Thread>();
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private final Object lock = new Object();
+    private int[] freeSlots = new int[SLAB_BATCH];
+    private int freeCount;
+    private int slotCount;
+
+    /**
+     * Creates a new handle table with a shared free list only.
+     *
+     * @param runtime The runtime to create reference pointers for.
+     */
+    public HandleTableObjectReferenceManager(Runtime runtime) {
+        this(runtime, false);
+    }
+
+    /**
+     * Creates a new handle table.
+     *
+     * @param runtime The runtime to create reference pointers for.
+     * @param threadSlabs Whether each thread should keep its own cache of free slots.
+     */
+    public HandleTableObjectReferenceManager(Runtime runtime, boolean threadSlabs) {
+        this.runtime = runtime;
+        // 32 bit addresses are split 20:12 between index and generation, 64 bit ones 32:24
+        this.indexBits = runtime.addressSize() == 4 ? 20 : 32;
+        this.indexMask = (1L << indexBits) - 1;
+        this.generationMask = runtime.addressSize() == 4 ? 0xfff : 0xffffff;
+        this.slabs = threadSlabs ? new ThreadLocal<Slab>() {
+            @Override
+            protected Slab initialValue() {
+                Slab slab = new Slab();
+                synchronized (lock) {
+                    slabReferences.add(new SlabReference(Thread.currentThread(), slab, deadThreads));
+                }
+                return slab;
+            }
+        } : null;
+    }
+
+    public Pointer add(T object) {
+        if (object == null) {
+            throw new IllegalArgumentException("reference to null value not allowed");
+        }
+
+        int slot = allocateSlot();
+        Chunk chunk = chunks[slot >>> CHUNK_SHIFT];
+        chunk.referents.set(slot & CHUNK_MASK, object);
+
+        return new HandlePointer(runtime, handle(slot, chunk.generations.get(slot & CHUNK_MASK)));
+    }
+
+    public boolean remove(Pointer reference) {
+        long handle = reference.address();
+        int slot = (int) ((handle & indexMask) - 1);
+        Chunk[] chunks = this.chunks;
+        if (slot < 0 || (slot >>> CHUNK_SHIFT) >= chunks.length) {
+            return false;
+        }
+
+        Chunk chunk = chunks[slot >>> CHUNK_SHIFT];
+        int generation = (int) (handle >>> indexBits);
+        // Only one remover can move the slot on to the next generation, so a slot is never freed twice
+        if (!chunk.generations.compareAndSet(slot & CHUNK_MASK, generation, (generation + 1) & generationMask)) {
+            return false;
+        }
+        chunk.referents.set(slot & CHUNK_MASK, null);
+        freeSlot(slot);
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(Pointer reference) {
+        long handle = reference.address();
+        int slot = (int) ((handle & indexMask) - 1);
+        Chunk[] chunks = this.chunks;
+        if (slot < 0 || (slot >>> CHUNK_SHIFT) >= chunks.length) {
+            return null;
+        }
+
+        Chunk chunk = chunks[slot >>> CHUNK_SHIFT];
+        Object referent = chunk.referents.get(slot & CHUNK_MASK);
+
+        // The slot may have been removed and reused since the referent was read
+        return chunk.generations.get(slot & CHUNK_MASK) == (int) (handle >>> indexBits) ? (T) referent : null;
+    }
+
+    private long handle(int slot, int generation) {
+        // Slot numbers are biased by one so no handle is ever a NULL address
+        return (((long) generation << indexBits) | (slot + 1L)) & runtime.addressMask();
+    }
+
+    private int allocateSlot() {
+        if (slabs != null) {
+            Slab slab = slabs.get();
+            if (slab.count == 0) {
+                synchronized (lock) {
+                    while (slab.count < SLAB_BATCH) {
+                        slab.slots[slab.count++] = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+                    }
+                }
+            }
+
+            return slab.slots[--slab.count];
+        }
+
+        synchronized (lock) {
+            return freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+        }
+    }
+
+    private void freeSlot(int slot) {
+        if (slabs != null) {
+            Slab slab = slabs.get();
+            if (slab.count < slab.slots.length) {
+                slab.slots[slab.count++] = slot;
+                return;
+            }
+
+            // Slab is full; hand half of it back to the shared free list along with this slot
+            synchronized (lock) {
+                while (slab.count > SLAB_BATCH) {
+                    pushFreeSlot(slab.slots[--slab.count]);
+                }
+                pushFreeSlot(slot);
+            }
+            return;
+        }
+
+        synchronized (lock) {
+            pushFreeSlot(slot);
+        }
+    }
+
+    private void pushFreeSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int newSlot() {
+        if (slabs != null && reclaimDeadSlabs()) {
+            return freeSlots[--freeCount];
+        }
+
+        if (slotCount >= indexMask) {
+            throw new IllegalStateException("too many object references");
+        }
+
+        int slot = slotCount++;
+        if ((slot & CHUNK_MASK) == 0) {
+            Chunk[] newChunks = Arrays.copyOf(chunks, chunks.length + 1);
+            newChunks[newChunks.length - 1] = new Chunk();
+            chunks = newChunks;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Moves the free slots cached by collected threads back to the shared free list.
+     *
+     * @return true if any slots were reclaimed.
+     */
+    private boolean reclaimDeadSlabs() {
+        SlabReference ref;
+        while ((ref = (SlabReference) deadThreads.poll()) != null) {
+            slabReferences.remove(ref);
+            Slab slab = ref.slab;
+            while (slab.count > 0) {
+                pushFreeSlot(slab.slots[--slab.count]);
+            }
+        }
+
+        return freeCount > 0;
+    }
+
+    private static final class Chunk {
+        final AtomicReferenceArray<Object> referents = new AtomicReferenceArray<Object>(CHUNK_SIZE);
+        final AtomicIntegerArray generations = new AtomicIntegerArray(CHUNK_SIZE);
+    }
+
+    private static final class Slab {
+        final int[] slots = new int[SLAB_BATCH * 2];
+        int count;
+    }
+
+    private static final class SlabReference extends WeakReference<Thread> {
+        final Slab slab;
+
+        SlabReference(Thread thread, Slab slab, ReferenceQueue<Thread> queue) {
+            super(thread, queue);
+            this.slab = slab;
+        }
+    }
+
+    private static final class HandlePointer extends InAccessibleMemoryIO {
+        HandlePointer(Runtime runtime, long address) {
+            super(runtime, address, true);
+        }
+
+        public long size() {
+            return 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (address() ^ (address() >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Pointer && ((Pointer) obj).address() == address();
+        }
+    }
+}
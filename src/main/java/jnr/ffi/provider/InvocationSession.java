@@ -39,6 +39,19 @@ public class InvocationSession {
             } catch (Throwable t) {}
         }
     }
+
+    /**
+     * Discards all post-invoke actions and kept alive objects, so the session can be reused.
+     */
+    public void reset() {
+        if (list != null) {
+            list.clear();
+        }
+        if (liveObjects != null) {
+            liveObjects.clear();
+        }
+    }
+
     public void addPostInvoke(PostInvoke postInvoke) {
         if (list == null) {
             list = new ArrayList<PostInvoke>();
@@ -21,6 +21,7 @@ package jnr.ffi.provider;
 import jnr.ffi.CallingConvention;
 import jnr.ffi.annotations.IgnoreError;
 import jnr.ffi.annotations.SaveError;
+import jnr.ffi.annotations.SaveErrorOnFailure;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
@@ -74,7 +75,7 @@ public final class NativeFunction {
     }
 
     public static boolean hasSaveError(Method method) {
-        return method.getAnnotation(SaveError.class) != null;
+        return method.getAnnotation(SaveError.class) != null || method.getAnnotation(SaveErrorOnFailure.class) != null;
     }
 
     public static boolean hasIgnoreError(Method method) {
@@ -232,4 +232,64 @@ public class ShareMemoryIO extends AbstractMemoryIO implements DelegatingMemoryI
     public void setMemory(long offset, long size, byte value) {
         ptr.setMemory(base + offset, size, value);
     }
+    @Override
+    public void getStrided(long offset, long stride, byte[] dst, int off, int len) {
+        ptr.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, byte[] src, int off, int len) {
+        ptr.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, short[] dst, int off, int len) {
+        ptr.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, short[] src, int off, int len) {
+        ptr.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, int[] dst, int off, int len) {
+        ptr.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, int[] src, int off, int len) {
+        ptr.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, long[] dst, int off, int len) {
+        ptr.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, long[] src, int off, int len) {
+        ptr.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, float[] dst, int off, int len) {
+        ptr.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, float[] src, int off, int len) {
+        ptr.putStrided(base + offset, stride, src, off, len);
+    }
+
+    @Override
+    public void getStrided(long offset, long stride, double[] dst, int off, int len) {
+        ptr.getStrided(base + offset, stride, dst, off, len);
+    }
+
+    @Override
+    public void putStrided(long offset, long stride, double[] src, int off, int len) {
+        ptr.putStrided(base + offset, stride, src, off, len);
+    }
+
 }
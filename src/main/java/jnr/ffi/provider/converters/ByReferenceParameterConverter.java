@@ -20,6 +20,7 @@ package jnr.ffi.provider.converters;
 
 import jnr.ffi.Memory;
 import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
 import jnr.ffi.byref.ByReference;
 import jnr.ffi.mapper.ToNativeContext;
 import jnr.ffi.mapper.ToNativeConverter;
@@ -33,6 +34,9 @@ public class ByReferenceParameterConverter implements ToNativeConverter<ByRefere
     private static final ToNativeConverter<ByReference, Pointer> IN = new ByReferenceParameterConverter(ParameterFlags.IN);
     private static final ToNativeConverter<ByReference, Pointer> OUT = new ByReferenceParameterConverter.Out(ParameterFlags.OUT);
     private static final ToNativeConverter<ByReference, Pointer> INOUT = new ByReferenceParameterConverter.Out(ParameterFlags.IN | ParameterFlags.OUT);
+    private static final ToNativeConverter<ByReference, Pointer> SCRATCH_IN = new ByReferenceParameterConverter.Scratch(ParameterFlags.IN);
+    private static final ToNativeConverter<ByReference, Pointer> SCRATCH_OUT = new ByReferenceParameterConverter.Scratch(ParameterFlags.OUT);
+    private static final ToNativeConverter<ByReference, Pointer> SCRATCH_INOUT = new ByReferenceParameterConverter.Scratch(ParameterFlags.IN | ParameterFlags.OUT);
     private final int parameterFlags;
 
     private ByReferenceParameterConverter(int parameterFlags) {
@@ -44,12 +48,24 @@ public class ByReferenceParameterConverter implements ToNativeConverter<ByRefere
         return ParameterFlags.isOut(parameterFlags) ? ParameterFlags.isIn(parameterFlags) ? INOUT : OUT : IN;
     }
 
+    /**
+     * Gets a converter which carves the temporary memory for the parameter from a per-thread scratch slab,
+     * and releases it again after the call.
+     *
+     * @param toNativeContext the parameter context.
+     * @return a converter.
+     */
+    public static ToNativeConverter<ByReference, Pointer> getScratchInstance(ToNativeContext toNativeContext) {
+        int parameterFlags = ParameterFlags.parse(toNativeContext.getAnnotations());
+        return ParameterFlags.isOut(parameterFlags) ? ParameterFlags.isIn(parameterFlags) ? SCRATCH_INOUT : SCRATCH_OUT : SCRATCH_IN;
+    }
+
     public Pointer toNative(ByReference value, ToNativeContext context) {
         if (value == null) {
             return null;
         }
 
-        Pointer memory =  Memory.allocate(context.getRuntime(), value.nativeSize(context.getRuntime()));
+        Pointer memory = allocate(context.getRuntime(), value.nativeSize(context.getRuntime()));
         if (ParameterFlags.isIn(parameterFlags)) {
             value.toNative(context.getRuntime(), memory, 0);
         }
@@ -57,6 +73,10 @@ public class ByReferenceParameterConverter implements ToNativeConverter<ByRefere
         return memory;
     }
 
+    Pointer allocate(Runtime runtime, int size) {
+        return Memory.allocate(runtime, size);
+    }
+
     public Class<Pointer> nativeType() {
         return Pointer.class;
     }
@@ -72,4 +92,47 @@ public class ByReferenceParameterConverter implements ToNativeConverter<ByRefere
             }
         }
     }
+
+    public static final class Scratch extends ByReferenceParameterConverter implements ToNativeConverter.PostInvocation<ByReference, Pointer> {
+        private final boolean isOut;
+
+        public Scratch(int parameterFlags) {
+            super(parameterFlags);
+            this.isOut = ParameterFlags.isOut(parameterFlags);
+        }
+
+        /**
+         * Marks the start of a call which may use scratch memory on the current thread.  Every call to
+         * this must be paired with a call to {@link #exit()} in a finally block.
+         */
+        public static void enter() {
+            ScratchMemory.enter();
+        }
+
+        /**
+         * Marks the end of a call started by {@link #enter()}, and reclaims the scratch memory it used.
+         */
+        public static void exit() {
+            ScratchMemory.exit();
+        }
+
+        @Override
+        Pointer allocate(Runtime runtime, int size) {
+            ScratchMemory scratch = ScratchMemory.getInstance(runtime);
+            Pointer memory = scratch != null ? scratch.allocate(size) : null;
+            return memory != null ? memory : super.allocate(runtime, size);
+        }
+
+        public void postInvoke(ByReference byReference, Pointer pointer, ToNativeContext context) {
+            if (byReference != null && pointer != null) {
+                if (isOut) {
+                    byReference.fromNative(context.getRuntime(), pointer, 0);
+                }
+                ScratchMemory scratch = ScratchMemory.getInstance(context.getRuntime());
+                if (scratch != null) {
+                    scratch.release(pointer);
+                }
+            }
+        }
+    }
 }
@@ -18,78 +18,51 @@
 
 package jnr.ffi.provider.converters;
 
-import jnr.ffi.annotations.Encoding;
 import jnr.ffi.annotations.In;
 import jnr.ffi.annotations.NulTerminate;
-import jnr.ffi.mapper.MethodParameterContext;
 import jnr.ffi.mapper.ToNativeContext;
 import jnr.ffi.mapper.ToNativeConverter;
 
-import java.lang.annotation.Annotation;
-import java.lang.ref.Reference;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.*;
-import java.util.Arrays;
-import java.util.Collection;
 
-import static jnr.ffi.provider.converters.StringUtil.getEncoder;
-import static jnr.ffi.provider.converters.StringUtil.throwException;
+import static jnr.ffi.provider.converters.StringUtil.*;
 
 /**
- * Converts a CharSequence (e.g. String) to a primitive ByteBuffer array parameter
+ * Converts a CharSequence (e.g. String) to a primitive ByteBuffer array parameter.
+ * <p>
+ * Strings in US-ASCII, ISO-8859-1 or UTF-8 are encoded without a CharsetEncoder.  Short ones are
+ * encoded straight into a reusable direct buffer, so only its address is passed to native code; all
+ * other strings are encoded into a heap buffer which is copied to native memory by the invoker.
  */
 @ToNativeConverter.NoContext
 @ToNativeConverter.Cacheable
-public class CharSequenceParameterConverter implements ToNativeConverter<CharSequence, ByteBuffer> {
-    private static final ToNativeConverter<CharSequence, ByteBuffer> DEFAULT = new CharSequenceParameterConverter(Charset.defaultCharset());
-    private final ThreadLocal<Reference<CharsetEncoder>> localEncoder = new ThreadLocal<Reference<CharsetEncoder>>();
+public class CharSequenceParameterConverter implements ToNativeConverter<CharSequence, ByteBuffer>,
+        ToNativeConverter.PostInvocation<CharSequence, ByteBuffer> {
+    private static final StringUtil.ConverterCache<CharSequenceParameterConverter> CACHE
+            = new StringUtil.ConverterCache<CharSequenceParameterConverter>();
+    private static final CharSequenceParameterConverter DEFAULT = new CharSequenceParameterConverter(Charset.defaultCharset());
 
     private final Charset charset;
-
+    private final int fastEncoding;
 
     public static ToNativeConverter<CharSequence, ByteBuffer> getInstance(Charset charset, ToNativeContext toNativeContext) {
-        return Charset.defaultCharset().equals(charset) ? DEFAULT : new CharSequenceParameterConverter(charset);
-    }
-
-    public static ToNativeConverter<CharSequence, ByteBuffer> getInstance(ToNativeContext toNativeContext) {
-        Charset charset = Charset.defaultCharset();
-
-        if (toNativeContext instanceof MethodParameterContext) {
-            // See if the interface class has a global @Encoding declaration
-            Charset cs = getEncodingCharset(Arrays.asList(((MethodParameterContext) toNativeContext).getMethod().getDeclaringClass().getAnnotations()));
-            if (cs != null) {
-                charset = cs;
-            }
-
-            // Allow each method to override the default
-            cs = getEncodingCharset(Arrays.asList(((MethodParameterContext) toNativeContext).getMethod().getAnnotations()));
-            if (cs != null) {
-                charset = cs;
-            }
+        if (Charset.defaultCharset().equals(charset)) {
+            return DEFAULT;
         }
 
-        // Override on a per-parameter basis
-        Charset cs = getEncodingCharset(toNativeContext.getAnnotations());
-        if (cs != null) {
-            charset = cs;
-        }
-
-        return getInstance(charset, toNativeContext);
+        CharSequenceParameterConverter converter = CACHE.get(charset, 0);
+        return converter != null ? converter : CACHE.intern(charset, 0, new CharSequenceParameterConverter(charset));
     }
 
-    private static Charset getEncodingCharset(Collection<Annotation> annotations) {
-        for (Annotation a : annotations) {
-            if (a instanceof Encoding) {
-                return Charset.forName(((Encoding) a).value());
-            }
-        }
-
-        return null;
+    public static ToNativeConverter<CharSequence, ByteBuffer> getInstance(ToNativeContext toNativeContext) {
+        return getInstance(getCharset(toNativeContext), toNativeContext);
     }
 
     private CharSequenceParameterConverter(Charset charset) {
         this.charset = charset;
+        this.fastEncoding = fastEncoding(charset);
     }
 
     @Override
@@ -98,7 +71,12 @@ public class CharSequenceParameterConverter implements ToNativeConverter<CharSeq
             return null;
         }
 
-        CharsetEncoder encoder = getEncoder(charset, localEncoder);
+        if (fastEncoding != SLOW) {
+            ByteBuffer buffer = encodeDirect(string);
+            return buffer != null ? buffer : encodeHeap(string);
+        }
+
+        CharsetEncoder encoder = getEncoder(charset);
         ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[(int) (string.length() * encoder.averageBytesPerChar()) + 4]);
         CharBuffer charBuffer = CharBuffer.wrap(string);
 
@@ -127,6 +105,45 @@ public class CharSequenceParameterConverter implements ToNativeConverter<CharSeq
         return byteBuffer;
     }
 
+    /**
+     * Encodes the string into a transient direct buffer, including the NUL terminator.
+     *
+     * @return the direct buffer, or null if the string is too long to be encoded this way.
+     */
+    private ByteBuffer encodeDirect(CharSequence string) {
+        final int length = string.length();
+        // Worst case for UTF-8 is 3 bytes per UTF-16 char (surrogate pairs encode as 4 bytes per 2 chars)
+        final int maxLength = (fastEncoding == UTF8 ? length * 3 : length) + 1;
+        if (length > TransientDirectBuffers.MAX_SIZE || maxLength > TransientDirectBuffers.MAX_SIZE) {
+            return null;
+        }
+
+        final ByteBuffer buffer = TransientDirectBuffers.acquire(maxLength);
+        int pos = encode(string, buffer, fastEncoding);
+        buffer.put(pos++, (byte) 0);
+        buffer.limit(pos);
+
+        return buffer;
+    }
+
+    /**
+     * Encodes a string which is too long for a transient direct buffer into a heap buffer of exactly the
+     * right size, including the NUL terminator.
+     */
+    private ByteBuffer encodeHeap(CharSequence string) {
+        final ByteBuffer buffer = ByteBuffer.wrap(new byte[encodedLength(string, fastEncoding) + 1]);
+        encode(string, buffer, fastEncoding);
+
+        return buffer;
+    }
+
+    @Override
+    public void postInvoke(CharSequence string, ByteBuffer buffer, ToNativeContext context) {
+        if (buffer != null && buffer.isDirect()) {
+            TransientDirectBuffers.release(buffer);
+        }
+    }
+
     private static ByteBuffer grow(ByteBuffer oldBuffer) {
         ByteBuffer buf = ByteBuffer.wrap(new byte[oldBuffer.capacity() * 2]);
         oldBuffer.flip();
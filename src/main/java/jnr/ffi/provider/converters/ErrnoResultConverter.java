@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.converters;
+
+import jnr.ffi.NativeType;
+import jnr.ffi.mapper.FromNativeContext;
+import jnr.ffi.mapper.FromNativeConverter;
+
+/**
+ * Replaces the failure result of a {@link jnr.ffi.annotations.SaveErrorOnFailure} method with the negated
+ * error code of the call.
+ *
+ * <p>The error code is still read back with {@link jnr.ffi.Runtime#getLastError()}, from the thread-local
+ * slot the native stub saved it in.  Generated methods with a primitive result call the primitive
+ * {@code fromNative} overloads, so only reflective invocations and boxed results box the value.
+ */
+public final class ErrnoResultConverter {
+    private ErrnoResultConverter() {
+    }
+
+    /**
+     * Gets a converter for a method result.
+     *
+     * @param resultClass the java type of the result.
+     * @param nativeType the native type of the result.
+     * @param size the size in bytes of the native result type.
+     * @param failure the native result which signals that the call failed.
+     * @return a converter, or {@code null} if the result is not an {@code int} or {@code long}.
+     */
+    public static FromNativeConverter getInstance(Class resultClass, NativeType nativeType, int size, long failure) {
+        long value = failureValue(nativeType, size, failure);
+        if (int.class == resultClass || Integer.class == resultClass) {
+            return new IntResult((int) value);
+
+        } else if (long.class == resultClass || Long.class == resultClass) {
+            return new LongResult(value);
+
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Truncates a failure result to the size of the native type, then extends it back to 64 bits according
+     * to the signedness of the type, giving the value as it is seen in java.
+     */
+    static long failureValue(NativeType nativeType, int size, long failure) {
+        if (size >= 8) {
+            return failure;
+        }
+
+        int shift = 64 - (size * 8);
+        switch (nativeType) {
+            case UCHAR:
+            case USHORT:
+            case UINT:
+            case ULONG:
+            case ULONGLONG:
+            case ADDRESS:
+                return (failure << shift) >>> shift;
+
+            default:
+                return (failure << shift) >> shift;
+        }
+    }
+
+    public static final class IntResult implements FromNativeConverter<Integer, Integer> {
+        private final int failure;
+
+        IntResult(int failure) {
+            this.failure = failure;
+        }
+
+        public Integer fromNative(Integer nativeValue, FromNativeContext context) {
+            return fromNative(nativeValue.intValue(), context);
+        }
+
+        public int fromNative(int nativeValue, FromNativeContext context) {
+            return nativeValue != failure ? nativeValue : -context.getRuntime().getLastError();
+        }
+
+        public Class<Integer> nativeType() {
+            return Integer.class;
+        }
+    }
+
+    public static final class LongResult implements FromNativeConverter<Long, Long> {
+        private final long failure;
+
+        LongResult(long failure) {
+            this.failure = failure;
+        }
+
+        public Long fromNative(Long nativeValue, FromNativeContext context) {
+            return fromNative(nativeValue.longValue(), context);
+        }
+
+        public long fromNative(long nativeValue, FromNativeContext context) {
+            return nativeValue != failure ? nativeValue : (long) -context.getRuntime().getLastError();
+        }
+
+        public Class<Long> nativeType() {
+            return Long.class;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.converters;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+
+/**
+ * A small per-thread slab of native memory from which the temporary memory for
+ * {@link jnr.ffi.byref.ByReference} parameters is carved.
+ *
+ * <p>The slab is divided into fixed size units, each with a pre-built {@link Pointer}, so carving a region
+ * allocates nothing.  Regions are not freed individually - the whole slab is rewound once every region carved
+ * from it has been released, i.e. when the outermost call on the thread completes.  A re-entrant call
+ * (e.g. from a callback) carves above the regions of the calls still in progress.
+ *
+ * <p>Generated methods which use the slab also bracket the whole call with {@link #enter()} and {@link #exit()},
+ * which rewind the slab to where it was when the call started.  So a region that is never released, because
+ * the call was abandoned by an exception part way through converting its parameters, is reclaimed at the end
+ * of that call rather than pinning the slab forever.
+ *
+ * <p>If the slab is exhausted, {@link #allocate(int)} returns {@code null} and callers fall back to allocating
+ * memory as usual.
+ */
+final class ScratchMemory {
+    /** The granularity of allocations, which is also the alignment of every region */
+    static final int UNIT_SIZE = 8;
+
+    /** The number of units in each thread's slab */
+    static final int UNIT_COUNT = 64;
+
+    private static final ThreadLocal<ScratchMemory> scratch = new ThreadLocal<ScratchMemory>() {
+        @Override
+        protected ScratchMemory initialValue() {
+            return new ScratchMemory();
+        }
+    };
+
+    private final Pointer[] units = new Pointer[UNIT_COUNT];
+    private Runtime runtime;
+    private Pointer memory;
+    private int top;
+    private int live;
+
+    /** The top and live count of the slab when each enclosing call was entered */
+    private int[] scopes = new int[8];
+    private int depth;
+
+    private ScratchMemory() {
+    }
+
+    /**
+     * Gets the scratch slab of the current thread.
+     *
+     * @param runtime the runtime the memory is for.
+     * @return the slab, or {@code null} if this thread's slab belongs to a different runtime.
+     */
+    static ScratchMemory getInstance(Runtime runtime) {
+        ScratchMemory memory = scratch.get();
+        if (memory.runtime == null) {
+            memory.memory = runtime.getMemoryManager().allocateDirect(UNIT_COUNT * UNIT_SIZE, false);
+            memory.runtime = runtime;
+        }
+
+        return memory.runtime == runtime ? memory : null;
+    }
+
+    /**
+     * Marks the start of a call on the current thread which may carve regions from the slab.
+     */
+    static void enter() {
+        scratch.get().enterScope();
+    }
+
+    /**
+     * Marks the end of a call started by {@link #enter()}, whether it completed normally or not.
+     * Every region carved since then is reclaimed, including any that were never released.
+     */
+    static void exit() {
+        scratch.get().exitScope();
+    }
+
+    void enterScope() {
+        if (depth * 2 == scopes.length) {
+            int[] grown = new int[scopes.length * 2];
+            System.arraycopy(scopes, 0, grown, 0, scopes.length);
+            scopes = grown;
+        }
+        scopes[depth * 2] = top;
+        scopes[depth * 2 + 1] = live;
+        depth++;
+    }
+
+    void exitScope() {
+        if (depth > 0) {
+            depth--;
+            top = scopes[depth * 2];
+            live = scopes[depth * 2 + 1];
+        }
+    }
+
+    /**
+     * Carves a zero-filled region from the slab.
+     *
+     * @param size the size of the region in bytes.
+     * @return a pointer to the region, or {@code null} if the slab does not have enough free space.
+     */
+    Pointer allocate(int size) {
+        int count = Math.max(1, (size + UNIT_SIZE - 1) / UNIT_SIZE);
+        if (top + count > UNIT_COUNT) {
+            return null;
+        }
+
+        Pointer region = units[top];
+        if (region == null) {
+            units[top] = region = memory.slice(top * UNIT_SIZE);
+        }
+        region.setMemory(0, count * UNIT_SIZE, (byte) 0);
+        top += count;
+        live++;
+
+        return region;
+    }
+
+    /**
+     * Releases a region, if it was carved from this slab.
+     *
+     * @param region the pointer returned from {@link #allocate(int)}, or any other pointer.
+     * @return {@code true} if the region belonged to this slab.
+     */
+    boolean release(Pointer region) {
+        if (!owns(region)) {
+            return false;
+        }
+
+        if (live > 0 && --live == 0) {
+            top = 0;
+        }
+
+        return true;
+    }
+
+    private boolean owns(Pointer region) {
+        if (!region.isDirect()) {
+            return false;
+        }
+
+        long offset = region.address() - memory.address();
+        return offset >= 0 && offset < UNIT_COUNT * UNIT_SIZE && units[(int) (offset / UNIT_SIZE)] == region;
+    }
+}
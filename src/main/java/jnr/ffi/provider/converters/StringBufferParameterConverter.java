@@ -30,6 +30,8 @@ import java.nio.charset.Charset;
 @ToNativeConverter.NoContext
 @ToNativeConverter.Cacheable
 public class StringBufferParameterConverter implements ToNativeConverter<StringBuffer, ByteBuffer>, ToNativeConverter.PostInvocation<StringBuffer, ByteBuffer> {
+    private static final StringUtil.ConverterCache<StringBufferParameterConverter> CACHE
+            = new StringUtil.ConverterCache<StringBufferParameterConverter>();
     private final Charset charset;
     private final int parameterFlags;
 
@@ -43,11 +45,12 @@ public class StringBufferParameterConverter implements ToNativeConverter<StringB
     }
 
     public static StringBufferParameterConverter getInstance(int parameterFlags, ToNativeContext toNativeContext) {
-        return new StringBufferParameterConverter(Charset.defaultCharset(), parameterFlags);
+        return getInstance(Charset.defaultCharset(), parameterFlags, toNativeContext);
     }
 
     public static StringBufferParameterConverter getInstance(Charset charset, int parameterFlags, ToNativeContext toNativeContext) {
-        return new StringBufferParameterConverter(charset, parameterFlags);
+        StringBufferParameterConverter converter = CACHE.get(charset, parameterFlags);
+        return converter != null ? converter : CACHE.intern(charset, parameterFlags, new StringBufferParameterConverter(charset, parameterFlags));
     }
 
     public ByteBuffer toNative(StringBuffer parameter, ToNativeContext context) {
@@ -23,7 +23,6 @@ import jnr.ffi.mapper.ToNativeConverter;
 import jnr.ffi.provider.ParameterFlags;
 import jnr.ffi.util.BufferUtil;
 
-import java.lang.ref.Reference;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.*;
@@ -33,8 +32,8 @@ import static jnr.ffi.provider.converters.StringUtil.*;
 @ToNativeConverter.NoContext
 @ToNativeConverter.Cacheable
 public class StringBuilderParameterConverter implements ToNativeConverter<StringBuilder, ByteBuffer>, ToNativeConverter.PostInvocation<StringBuilder, ByteBuffer> {
-    private final ThreadLocal<Reference<CharsetEncoder>> localEncoder = new ThreadLocal<Reference<CharsetEncoder>>();
-    private final ThreadLocal<Reference<CharsetDecoder>> localDecoder = new ThreadLocal<Reference<CharsetDecoder>>();
+    private static final ConverterCache<StringBuilderParameterConverter> CACHE
+            = new ConverterCache<StringBuilderParameterConverter>();
     private final Charset charset;
     private final int parameterFlags;
     private final int terminatorWidth;
@@ -50,11 +49,12 @@ public class StringBuilderParameterConverter implements ToNativeConverter<String
     }
 
     public static StringBuilderParameterConverter getInstance(int parameterFlags, ToNativeContext toNativeContext) {
-        return new StringBuilderParameterConverter(getCharset(toNativeContext), parameterFlags);
+        return getInstance(getCharset(toNativeContext), parameterFlags, toNativeContext);
     }
 
     public static StringBuilderParameterConverter getInstance(Charset charset, int parameterFlags, ToNativeContext toNativeContext) {
-        return new StringBuilderParameterConverter(charset, parameterFlags);
+        StringBuilderParameterConverter converter = CACHE.get(charset, parameterFlags);
+        return converter != null ? converter : CACHE.intern(charset, parameterFlags, new StringBuilderParameterConverter(charset, parameterFlags));
     }
 
     public ByteBuffer toNative(StringBuilder parameter, ToNativeContext context) {
@@ -62,7 +62,7 @@ public class StringBuilderParameterConverter implements ToNativeConverter<String
             return null;
 
         } else {
-            CharsetEncoder encoder = getEncoder(charset, localEncoder);
+            CharsetEncoder encoder = getEncoder(charset);
             ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[parameter.capacity() * (int) Math.ceil(encoder.maxBytesPerChar()) + 4]);
 
             if (ParameterFlags.isIn(parameterFlags)) {
@@ -85,7 +85,7 @@ public class StringBuilderParameterConverter implements ToNativeConverter<String
         if (ParameterFlags.isOut(parameterFlags) && stringBuilder != null && buf != null) {
             buf.limit(stringLength(buf, terminatorWidth));
             try {
-                stringBuilder.delete(0, stringBuilder.length()).append(getDecoder(charset, localDecoder).reset().decode(buf));
+                stringBuilder.delete(0, stringBuilder.length()).append(getDecoder(charset).reset().decode(buf));
             } catch (CharacterCodingException cce) {
                 throw new RuntimeException(cce);
             }
@@ -19,17 +19,11 @@
 package jnr.ffi.provider.converters;
 
 import jnr.ffi.Pointer;
-import jnr.ffi.annotations.Encoding;
 import jnr.ffi.mapper.*;
 
-import java.lang.annotation.Annotation;
-import java.lang.ref.Reference;
 import java.nio.ByteBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.util.Arrays;
-import java.util.Collection;
 
 import static jnr.ffi.provider.converters.StringUtil.getDecoder;
 
@@ -39,8 +33,9 @@ import static jnr.ffi.provider.converters.StringUtil.getDecoder;
 @FromNativeConverter.NoContext
 @FromNativeConverter.Cacheable
 public class StringResultConverter implements FromNativeConverter<String, Pointer> {
-    private static final FromNativeConverter<String, Pointer> DEFAULT = new StringResultConverter(Charset.defaultCharset());
-    private final ThreadLocal<Reference<CharsetDecoder>> localDecoder = new ThreadLocal<Reference<CharsetDecoder>>();
+    private static final StringUtil.ConverterCache<StringResultConverter> CACHE
+            = new StringUtil.ConverterCache<StringResultConverter>();
+    private static final StringResultConverter DEFAULT = new StringResultConverter(Charset.defaultCharset());
     private final Charset charset;
     private final int terminatorWidth;
 
@@ -50,27 +45,16 @@ public class StringResultConverter implements FromNativeConverter<String, Pointe
     }
 
     public static FromNativeConverter<String, Pointer> getInstance(Charset cs) {
-        return Charset.defaultCharset().equals(cs) ? DEFAULT : new StringResultConverter(cs);
-    }
-
-    public static FromNativeConverter<String, Pointer> getInstance(FromNativeContext fromNativeContext) {
-        Charset charset = Charset.defaultCharset();
-
-        if (fromNativeContext instanceof MethodResultContext) {
-            // See if the interface class has a global @Encoding declaration
-            Encoding e = getEncoding(Arrays.asList(((MethodResultContext) fromNativeContext).getMethod().getDeclaringClass().getAnnotations()));
-            if (e != null) {
-                charset = Charset.forName(e.value());
-            }
+        if (Charset.defaultCharset().equals(cs)) {
+            return DEFAULT;
         }
 
-        // Allow each method to override the default
-        Encoding e = getEncoding(fromNativeContext.getAnnotations());
-        if (e != null) {
-            charset = Charset.forName(e.value());
-        }
+        StringResultConverter converter = CACHE.get(cs, 0);
+        return converter != null ? converter : CACHE.intern(cs, 0, new StringResultConverter(cs));
+    }
 
-        return getInstance(charset);
+    public static FromNativeConverter<String, Pointer> getInstance(FromNativeContext fromNativeContext) {
+        return getInstance(StringUtil.getCharset(fromNativeContext));
     }
 
     @Override
@@ -79,6 +63,11 @@ public class StringResultConverter implements FromNativeConverter<String, Pointe
             return null;
         }
 
+        if (terminatorWidth == 1) {
+            // native memory finds the terminator a word at a time and decodes without intermediate buffers
+            return pointer.getString(0, (int) Math.min(pointer.size(), Integer.MAX_VALUE), charset);
+        }
+
         Search: for (int idx = 0; ; ) {
             idx += pointer.indexOf(idx, (byte) 0);
             for (int tcount = 1; tcount < terminatorWidth; tcount++) {
@@ -91,7 +80,7 @@ public class StringResultConverter implements FromNativeConverter<String, Pointe
             byte[] bytes = new byte[idx];
             pointer.get(0, bytes, 0, bytes.length);
             try {
-                return getDecoder(charset, localDecoder).reset().decode(ByteBuffer.wrap(bytes)).toString();
+                return getDecoder(charset).reset().decode(ByteBuffer.wrap(bytes)).toString();
             } catch (CharacterCodingException cce) {
                 throw new RuntimeException(cce);
             }
@@ -102,14 +91,4 @@ public class StringResultConverter implements FromNativeConverter<String, Pointe
     public Class<Pointer> nativeType() {
         return Pointer.class;
     }
-
-    private static Encoding getEncoding(Collection<Annotation> annotations) {
-        for (Annotation a : annotations) {
-            if (a instanceof Encoding) {
-                return (Encoding) a;
-            }
-        }
-
-        return null;
-    }
 }
@@ -19,86 +19,293 @@
 package jnr.ffi.provider.converters;
 
 import jnr.ffi.annotations.Encoding;
+import jnr.ffi.mapper.FromNativeContext;
 import jnr.ffi.mapper.MethodParameterContext;
+import jnr.ffi.mapper.MethodResultContext;
 import jnr.ffi.mapper.ToNativeContext;
 
 import java.lang.annotation.Annotation;
-import java.lang.ref.Reference;
-import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.charset.*;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 final class StringUtil {
     private StringUtil() {}
 
-    static CharsetEncoder getEncoder(Charset charset, ThreadLocal<Reference<CharsetEncoder>> localEncoder) {
-        Reference<CharsetEncoder> ref = localEncoder.get();
-        CharsetEncoder encoder;
-        return ref != null && (encoder = ref.get()) != null && encoder.charset() == charset
-                ? encoder : initEncoder(charset, localEncoder);
-    }
+    static final int SLOW = 0;
+    static final int ASCII = 1;
+    static final int LATIN1 = 2;
+    static final int UTF8 = 3;
+
+    /** The number of encoders and decoders each thread keeps for reuse */
+    private static final int CODER_CACHE_SIZE = 4;
+
+    private static final ConcurrentMap<String, Charset> CHARSETS = new ConcurrentHashMap<String, Charset>();
+
+    private static final ThreadLocal<Coders> localCoders = new ThreadLocal<Coders>() {
+        @Override
+        protected Coders initialValue() {
+            return new Coders();
+        }
+    };
 
-    static CharsetDecoder getDecoder(Charset charset, ThreadLocal<Reference<CharsetDecoder>> localDecoder) {
-        Reference<CharsetDecoder> ref = localDecoder.get();
-        CharsetDecoder decoder;
-        return ref != null && (decoder = ref.get()) != null && decoder.charset() == charset
-                ? decoder : initDecoder(charset, localDecoder);
+    /**
+     * The encoders and decoders used by one thread.  They are strongly held, and when the cache is full the
+     * oldest one is replaced, so a thread never holds more than {@link #CODER_CACHE_SIZE} of each.
+     */
+    private static final class Coders {
+        final CharsetEncoder[] encoders = new CharsetEncoder[CODER_CACHE_SIZE];
+        final CharsetDecoder[] decoders = new CharsetDecoder[CODER_CACHE_SIZE];
+        int nextEncoder, nextDecoder;
     }
 
-    private static CharsetEncoder initEncoder(Charset charset, ThreadLocal<Reference<CharsetEncoder>> localEncoder) {
+    static CharsetEncoder getEncoder(Charset charset) {
+        Coders coders = localCoders.get();
+        for (CharsetEncoder encoder : coders.encoders) {
+            if (encoder != null && encoder.charset().equals(charset)) {
+                return encoder;
+            }
+        }
+
         CharsetEncoder encoder = charset.newEncoder();
         encoder.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
-        localEncoder.set(new SoftReference<CharsetEncoder>(encoder));
+        coders.encoders[coders.nextEncoder] = encoder;
+        coders.nextEncoder = (coders.nextEncoder + 1) % CODER_CACHE_SIZE;
 
         return encoder;
     }
 
-    private static CharsetDecoder initDecoder(Charset charset, ThreadLocal<Reference<CharsetDecoder>> localDecoder) {
+    static CharsetDecoder getDecoder(Charset charset) {
+        Coders coders = localCoders.get();
+        for (CharsetDecoder decoder : coders.decoders) {
+            if (decoder != null && decoder.charset().equals(charset)) {
+                return decoder;
+            }
+        }
+
         CharsetDecoder decoder = charset.newDecoder();
         decoder.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
-        localDecoder.set(new SoftReference<CharsetDecoder>(decoder));
+        coders.decoders[coders.nextDecoder] = decoder;
+        coders.nextDecoder = (coders.nextDecoder + 1) % CODER_CACHE_SIZE;
 
         return decoder;
     }
 
-    static Charset getCharset(ToNativeContext toNativeContext) {
-        Charset charset = Charset.defaultCharset();
-
-        if (toNativeContext instanceof MethodParameterContext) {
-            // See if the interface class has a global @Encoding declaration
-            Charset cs = getEncodingCharset(Arrays.asList(((MethodParameterContext) toNativeContext).getMethod().getDeclaringClass().getAnnotations()));
-            if (cs != null) {
-                charset = cs;
-            }
-
-            // Allow each method to override the default
-            cs = getEncodingCharset(Arrays.asList(((MethodParameterContext) toNativeContext).getMethod().getAnnotations()));
+    /**
+     * Looks up a charset by name, caching the result so each {@code @Encoding} name is only resolved once.
+     */
+    static Charset forName(String name) {
+        Charset charset = CHARSETS.get(name);
+        if (charset == null) {
+            Charset cs = CHARSETS.putIfAbsent(name, charset = Charset.forName(name));
             if (cs != null) {
                 charset = cs;
             }
         }
 
-        // Override on a per-parameter basis
-        Charset cs = getEncodingCharset(toNativeContext.getAnnotations());
-        if (cs != null) {
-            charset = cs;
+        return charset;
+    }
+
+    static Charset getCharset(ToNativeContext toNativeContext) {
+        Method method = toNativeContext instanceof MethodParameterContext
+                ? ((MethodParameterContext) toNativeContext).getMethod() : null;
+
+        return getCharset(toNativeContext.getAnnotations(), method);
+    }
+
+    static Charset getCharset(FromNativeContext fromNativeContext) {
+        Method method = fromNativeContext instanceof MethodResultContext
+                ? ((MethodResultContext) fromNativeContext).getMethod() : null;
+
+        return getCharset(fromNativeContext.getAnnotations(), method);
+    }
+
+    /**
+     * Finds the {@code @Encoding} which applies, looking at the parameter or result first, then the method
+     * and finally the interface class, and stopping at the first one found.
+     */
+    private static Charset getCharset(Collection<Annotation> annotations, Method method) {
+        Encoding encoding = getEncoding(annotations);
+        if (encoding == null && method != null) {
+            encoding = method.getAnnotation(Encoding.class);
+            if (encoding == null) {
+                encoding = method.getDeclaringClass().getAnnotation(Encoding.class);
+            }
         }
 
-        return charset;
+        return encoding != null ? forName(encoding.value()) : Charset.defaultCharset();
     }
 
-    private static Charset getEncodingCharset(Collection<Annotation> annotations) {
+    private static Encoding getEncoding(Collection<Annotation> annotations) {
         for (Annotation a : annotations) {
             if (a instanceof Encoding) {
-                return Charset.forName(((Encoding) a).value());
+                return (Encoding) a;
             }
         }
 
         return null;
     }
 
+    /**
+     * Returns which of the hand written encoders can be used for the charset, or {@link #SLOW} if a
+     * {@link CharsetEncoder} is needed.
+     */
+    static int fastEncoding(Charset charset) {
+        String name = charset.name();
+        if ("US-ASCII".equals(name)) {
+            return ASCII;
+
+        } else if ("ISO-8859-1".equals(name)) {
+            return LATIN1;
+
+        } else if ("UTF-8".equals(name)) {
+            return UTF8;
+
+        } else {
+            return SLOW;
+        }
+    }
+
+    /**
+     * Returns the number of bytes the string encodes to using one of the hand written encoders.
+     */
+    static int encodedLength(CharSequence string, int fastEncoding) {
+        final int length = string.length();
+        final boolean utf8 = fastEncoding == UTF8;
+        int encodedLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                // a surrogate pair encodes as 4 UTF-8 bytes or a single '?', and a lone surrogate as a single '?'
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    encodedLength += utf8 ? 2 : -1;
+                    i++;
+                } else if (utf8 && c < 0x800) {
+                    encodedLength += 1;
+                } else if (utf8 && (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE)) {
+                    encodedLength += 2;
+                }
+            }
+        }
+
+        return encodedLength;
+    }
+
+    /**
+     * Encodes the string at the start of the buffer using one of the hand written encoders.
+     *
+     * @return the number of bytes written.
+     */
+    static int encode(CharSequence string, ByteBuffer buffer, int fastEncoding) {
+        switch (fastEncoding) {
+            case ASCII:
+                return encodeSingleByte(string, buffer, 0x80);
+
+            case LATIN1:
+                return encodeSingleByte(string, buffer, 0x100);
+
+            case UTF8:
+                return encodeUTF8(string, buffer);
+
+            default:
+                throw new IllegalArgumentException("no fast encoder for " + fastEncoding);
+        }
+    }
+
+    private static int encodeSingleByte(CharSequence string, ByteBuffer buffer, int limit) {
+        final int length = string.length();
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < limit) {
+                buffer.put(pos++, (byte) c);
+
+            } else {
+                // unmappable characters (including a whole surrogate pair) are replaced, as the CharsetEncoder would do
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    ++i;
+                }
+                buffer.put(pos++, (byte) '?');
+            }
+        }
+
+        return pos;
+    }
+
+    private static int encodeUTF8(CharSequence string, ByteBuffer buffer) {
+        final int length = string.length();
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                buffer.put(pos++, (byte) c);
+
+            } else if (c < 0x800) {
+                buffer.put(pos++, (byte) (0xc0 | (c >> 6)));
+                buffer.put(pos++, (byte) (0x80 | (c & 0x3f)));
+
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, string.charAt(++i));
+                    buffer.put(pos++, (byte) (0xf0 | (cp >> 18)));
+                    buffer.put(pos++, (byte) (0x80 | ((cp >> 12) & 0x3f)));
+                    buffer.put(pos++, (byte) (0x80 | ((cp >> 6) & 0x3f)));
+                    buffer.put(pos++, (byte) (0x80 | (cp & 0x3f)));
+                } else {
+                    // malformed input is replaced, as the CharsetEncoder would do
+                    buffer.put(pos++, (byte) '?');
+                }
+
+            } else {
+                buffer.put(pos++, (byte) (0xe0 | (c >> 12)));
+                buffer.put(pos++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put(pos++, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+
+        return pos;
+    }
+
+    /**
+     * Interns string converters by charset and parameter flags, so each combination is only created once and
+     * shared by every method which uses it.
+     */
+    static final class ConverterCache<T> {
+        private final ConcurrentMap<Key, T> converters = new ConcurrentHashMap<Key, T>();
+
+        T get(Charset charset, int parameterFlags) {
+            return converters.get(new Key(charset, parameterFlags));
+        }
+
+        T intern(Charset charset, int parameterFlags, T converter) {
+            T existing = converters.putIfAbsent(new Key(charset, parameterFlags), converter);
+            return existing != null ? existing : converter;
+        }
+
+        private static final class Key {
+            private final Charset charset;
+            private final int parameterFlags;
+
+            Key(Charset charset, int parameterFlags) {
+                this.charset = charset;
+                this.parameterFlags = parameterFlags;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof Key && ((Key) o).charset.equals(charset) && ((Key) o).parameterFlags == parameterFlags;
+            }
+
+            @Override
+            public int hashCode() {
+                return 31 * charset.hashCode() + parameterFlags;
+            }
+        }
+    }
+
     static void throwException(CoderResult result) {
         try {
             result.throwException();
@@ -109,7 +316,7 @@ final class StringUtil {
         }
     }
 
-    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
     private static final Charset USASCII = Charset.forName("US-ASCII");
     private static final Charset ISO8859_1 = Charset.forName("ISO-8859-1");
     private static final Charset UTF16 = Charset.forName("UTF-16");
@@ -117,7 +324,7 @@ final class StringUtil {
     private static final Charset UTF16BE = Charset.forName("UTF-16BE");
 
     static int terminatorWidth(Charset charset) {
-        if (charset.equals(UTF8) || charset.equals(USASCII) || charset.equals(ISO8859_1)) {
+        if (charset.equals(UTF_8) || charset.equals(USASCII) || charset.equals(ISO8859_1)) {
             return 1;
 
         } else if (charset.equals(UTF16) || charset.equals(UTF16LE) || charset.equals(UTF16BE)) {
@@ -88,9 +88,15 @@ public class StructArrayParameterConverter implements ToNativeConverter<Struct[]
                 try {
                     int off = 0;
                     for (int i = 0; i < structs.length; i++) {
-                        structs[i] = constructor.newInstance(runtime);
-                        int structSize = align(Struct.size(structs[i]), Struct.alignment(structs[i]));
-                        structs[i].useMemory(primitive.slice(off = align(off, Struct.alignment(structs[i])), structSize));
+                        // Elements of an array allocated by Struct.arrayOf() are already backed by the parameter memory
+                        Struct struct = structs[i] != null && structs[i].getClass() == constructor.getDeclaringClass()
+                                ? structs[i] : constructor.newInstance(runtime);
+                        int structSize = align(Struct.size(struct), Struct.alignment(struct));
+                        off = align(off, Struct.alignment(struct));
+                        if (struct != structs[i] || !isBackedBy(struct, primitive, off)) {
+                            structs[i] = struct != structs[i] ? struct : constructor.newInstance(runtime);
+                            structs[i].useMemory(primitive.slice(off, structSize));
+                        }
                         off += structSize;
                     }
                 } catch (InstantiationException ie) {
@@ -102,6 +108,13 @@ public class StructArrayParameterConverter implements ToNativeConverter<Struct[]
                 }
             }
         }
+
+        private static boolean isBackedBy(Struct struct, Pointer memory, int offset) {
+            Pointer structMemory = Struct.getMemory(struct);
+            return structMemory instanceof DelegatingMemoryIO
+                    && ((DelegatingMemoryIO) structMemory).getDelegatedMemoryIO() == memory
+                    && memory.isDirect() && structMemory.address() == memory.address() + offset;
+        }
     }
 
     private static int align(int offset, int align) {
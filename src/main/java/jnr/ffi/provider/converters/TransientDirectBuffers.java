@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.converters;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Small per-thread pool of direct {@link ByteBuffer}s used to hold parameter data
+ * for the duration of a single native call.
+ * <p>
+ * Since direct buffers are passed to native code by address, encoding into one of these
+ * avoids both the heap array allocation and the copy into native memory done by the
+ * invocation buffer.  Buffers are handed back via {@link #release(ByteBuffer)} once the
+ * call completes; a buffer that is never released is simply reclaimed by the GC.
+ */
+final class TransientDirectBuffers {
+    /** Largest buffer that will be pooled - anything larger goes via the heap path */
+    static final int MAX_SIZE = 4096;
+    private static final int MIN_SIZE = 256;
+    private static final int MAX_POOLED = 8;
+
+    private static final ThreadLocal<TransientDirectBuffers> localBuffers = new ThreadLocal<TransientDirectBuffers>() {
+        @Override
+        protected TransientDirectBuffers initialValue() {
+            return new TransientDirectBuffers();
+        }
+    };
+
+    private final ByteBuffer[] free = new ByteBuffer[MAX_POOLED];
+    private int count;
+
+    private TransientDirectBuffers() {}
+
+    /**
+     * Gets a direct buffer with at least <tt>size</tt> bytes of capacity.
+     *
+     * @param size the minimum capacity of the buffer.
+     * @return a cleared direct buffer, or <tt>null</tt> if <tt>size</tt> exceeds {@link #MAX_SIZE}.
+     */
+    static ByteBuffer acquire(int size) {
+        return size <= MAX_SIZE ? localBuffers.get().get(size) : null;
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire(int)} to the current thread's pool.
+     *
+     * @param buffer the buffer to return.
+     */
+    static void release(ByteBuffer buffer) {
+        localBuffers.get().put(buffer);
+    }
+
+    private ByteBuffer get(int size) {
+        for (int i = count - 1; i >= 0; --i) {
+            ByteBuffer buffer = free[i];
+            if (buffer.capacity() >= size) {
+                free[i] = free[--count];
+                free[count] = null;
+                buffer.clear();
+                return buffer;
+            }
+        }
+
+        int capacity = MIN_SIZE;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    private void put(ByteBuffer buffer) {
+        if (count < free.length) {
+            free[count++] = buffer;
+        }
+    }
+}
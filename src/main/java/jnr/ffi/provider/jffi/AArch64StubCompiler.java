@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.CallContext;
+import com.kenai.jffi.Function;
+import com.kenai.jffi.Invoker;
+import com.kenai.jffi.MemoryIO;
+import com.kenai.jffi.NativeMethod;
+import com.kenai.jffi.NativeMethods;
+import com.kenai.jffi.PageManager;
+import com.kenai.jffi.Type;
+import jnr.ffi.CallingConvention;
+import jnr.ffi.NativeType;
+import jnr.ffi.provider.ParameterType;
+import jnr.ffi.provider.ResultType;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static jnr.ffi.provider.jffi.CodegenUtils.sig;
+import static jnr.ffi.provider.jffi.NumberUtil.sizeof;
+
+/**
+ * Compiles JNI stubs for AArch64 Linux, following the AAPCS64 calling convention.
+ *
+ * <p>A JNI function is called as {@code foo(JNIEnv* env, jclass self, arg...)}.  Integer arguments are passed in
+ * {@code x0..x7} and floating point arguments in {@code v0..v7}, so a stub only has to move the integer arguments
+ * down over {@code env} and {@code self}, then jump to the native function.  If errno must be saved, or the
+ * result needs to be sign/zero extended, the stub calls the function instead and fixes up afterwards.
+ *
+ * <p>There is no assembler library for AArch64 available, so instructions are encoded directly.
+ *
+ * <p>The stubs are only used when the {@code jnr.ffi.aarch64asm.enabled} system property is {@code true};
+ * run the tests with {@code -Paarch64-qemu} to check them without AArch64 hardware.
+ */
+final class AArch64StubCompiler extends StubCompiler {
+    private static final boolean DEBUG = AbstractX86StubCompiler.DEBUG;
+
+    /** Integer arguments beyond this would be passed on the stack by the JVM */
+    static final int MAX_INTEGER_PARAMETERS = 6;
+
+    /** Floating point arguments beyond this would be passed on the stack */
+    static final int MAX_FLOAT_PARAMETERS = 8;
+
+    // Register numbers
+    private static final int X0 = 0, X9 = 9, X16 = 16, X17 = 17, SP = 31;
+
+    /** {@code void __clear_cache(void* begin, void* end)} */
+    private static final CallContext CLEAR_CACHE_CONTEXT = CallContext.getCallContext(Type.VOID,
+            new Type[] { Type.POINTER, Type.POINTER }, com.kenai.jffi.CallingConvention.DEFAULT, false);
+
+    private final List<Stub> stubs = new LinkedList<Stub>();
+
+    static final class Stub {
+        final String name;
+        final String signature;
+        final int[] code;
+
+        Stub(String name, String signature, int[] code) {
+            this.name = name;
+            this.signature = signature;
+            this.code = code;
+        }
+    }
+
+    @Override
+    boolean canCompile(ResultType returnType, ParameterType[] parameterTypes, CallingConvention convention) {
+        if (convention != CallingConvention.DEFAULT || !isSupportedType(returnType.getNativeType())) {
+            return false;
+        }
+
+        int iCount = 0, fCount = 0;
+        for (ParameterType t : parameterTypes) {
+            NativeType nativeType = t.getNativeType();
+            if (nativeType == NativeType.VOID || !isSupportedType(nativeType)) {
+                return false;
+            }
+
+            if (isFloat(nativeType)) {
+                ++fCount;
+            } else {
+                ++iCount;
+            }
+        }
+
+        // Everything must be passed in registers, both by the JVM and to the native function
+        return iCount <= MAX_INTEGER_PARAMETERS && fCount <= MAX_FLOAT_PARAMETERS;
+    }
+
+    @Override
+    void compile(Function function, String name, ResultType resultType, ParameterType[] parameterTypes,
+                 Class resultClass, Class[] parameterClasses, CallingConvention convention, boolean saveErrno) {
+        NativeType[] nativeParameterTypes = new NativeType[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            nativeParameterTypes[i] = parameterTypes[i].getNativeType();
+        }
+
+        int[] code = generate(function.getFunctionAddress(), resultType.getNativeType(), resultClass,
+                nativeParameterTypes, parameterClasses, saveErrno ? errnoFunctionAddress : 0L, getFailureResult(resultType));
+        stubs.add(new Stub(name, sig(resultClass, parameterClasses), code));
+    }
+
+    /**
+     * Generates the code for a stub.
+     *
+     * @param function the address of the native function.
+     * @param resultType the native type of the result.
+     * @param resultClass the java class of the JNI result.
+     * @param parameterTypes the native types of the parameters.
+     * @param parameterClasses the java classes of the JNI parameters.
+     * @param errnoFunction the address of the function which saves errno, or zero if errno is not saved.
+     * @param failureResult the result which signals failure, if errno is only saved when the call fails, else {@code null}.
+     * @return the instructions, followed by the literal pool holding the function addresses.
+     */
+    static int[] generate(long function, NativeType resultType, Class resultClass,
+                          NativeType[] parameterTypes, Class[] parameterClasses, long errnoFunction, Long failureResult) {
+        Code a = new Code();
+        boolean canJumpToTarget = errnoFunction == 0L && !needsResultConversion(resultType, resultClass);
+
+        if (!canJumpToTarget) {
+            // Save the frame pointer and link register, plus 16 bytes to save the result in around the errno call
+            a.emit(0xa9be7bfd); // stp x29, x30, [sp, #-32]!
+            a.emit(0x910003fd); // mov x29, sp
+        }
+
+        // Shuffle the integer args down over env and self.  The destination is always below the source, so
+        // moving them in ascending order never overwrites a source before it is read.
+        int reg = 0;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (!isFloat(parameterTypes[i])) {
+                emitParameterConversion(a, reg, reg + 2, parameterTypes[i], parameterClasses[i]);
+                reg++;
+            }
+        }
+
+        int functionLiteral = a.ldrLiteral(X16);
+        if (canJumpToTarget) {
+            a.emit(0xd61f0000 | (X16 << 5)); // br x16
+
+        } else {
+            a.emit(0xd63f0000 | (X16 << 5)); // blr x16
+
+            int errnoLiteral = -1;
+            if (errnoFunction != 0L) {
+                a.emit(0xf9000000 | (2 << 10) | (SP << 5) | X0); // str x0, [sp, #16]
+                a.emit(0xfd000000 | (3 << 10) | (SP << 5));      // str d0, [sp, #24]
+                if (failureResult != null) {
+                    emitFailureCompare(a, resultType, failureResult);
+                    a.emit(0x54000001 | (3 << 5));               // b.ne over the errno call
+                }
+                errnoLiteral = a.ldrLiteral(X16);
+                a.emit(0xd63f0000 | (X16 << 5));                 // blr x16
+                a.emit(0xf9400000 | (2 << 10) | (SP << 5) | X0); // ldr x0, [sp, #16]
+                a.emit(0xfd400000 | (3 << 10) | (SP << 5));      // ldr d0, [sp, #24]
+            }
+
+            emitResultConversion(a, resultType, resultClass);
+
+            a.emit(0xa8c27bfd); // ldp x29, x30, [sp], #32
+            a.emit(0xd65f03c0); // ret
+
+            if (errnoLiteral >= 0) {
+                a.literal(errnoLiteral, errnoFunction);
+            }
+        }
+        a.literal(functionLiteral, function);
+
+        return a.toArray();
+    }
+
+    private static void emitParameterConversion(Code a, int dst, int src, NativeType nativeType, Class parameterClass) {
+        switch (nativeType) {
+            case SCHAR:
+                a.emit(0x13001c00 | (src << 5) | dst); // sxtb wDst, wSrc
+                break;
+
+            case UCHAR:
+                a.emit(0x53001c00 | (src << 5) | dst); // uxtb wDst, wSrc
+                break;
+
+            case SSHORT:
+                a.emit(0x13003c00 | (src << 5) | dst); // sxth wDst, wSrc
+                break;
+
+            case USHORT:
+                a.emit(0x53003c00 | (src << 5) | dst); // uxth wDst, wSrc
+                break;
+
+            default:
+                if (long.class == parameterClass || sizeof(nativeType) <= 4 || isUnsigned(nativeType)) {
+                    // a mov to a 32 bit register zero extends to 64 bits
+                    a.emit((long.class == parameterClass ? 0xaa0003e0 : 0x2a0003e0) | (src << 16) | dst); // mov
+                } else {
+                    a.emit(0x93407c00 | (src << 5) | dst); // sxtw xDst, wSrc
+                }
+                break;
+        }
+    }
+
+    /**
+     * Compares the result of the function, which is still in x0, with the result which signals failure.
+     */
+    private static void emitFailureCompare(Code a, NativeType resultType, long failure) {
+        int size = sizeof(resultType);
+        int src = X0;
+        long value = failure;
+        if (size < 4) {
+            // The upper bits of a small result are undefined, so extend it before comparing
+            src = X9;
+            emitParameterConversion(a, X9, X0, resultType, int.class);
+            value = size == 1
+                    ? (isUnsigned(resultType) ? failure & 0xffL : (byte) failure)
+                    : (isUnsigned(resultType) ? failure & 0xffffL : (short) failure);
+        }
+
+        a.literal(a.ldrLiteral(X17), value);
+        a.emit((size <= 4 ? 0x6b00001f : 0xeb00001f) | (X17 << 16) | (src << 5)); // cmp src, x17
+    }
+
+    private static void emitResultConversion(Code a, NativeType resultType, Class resultClass) {
+        switch (resultType) {
+            case SCHAR:
+                a.emit(0x13001c00); // sxtb w0, w0
+                break;
+
+            case UCHAR:
+                a.emit(0x53001c00); // uxtb w0, w0
+                break;
+
+            case SSHORT:
+                a.emit(0x13003c00); // sxth w0, w0
+                break;
+
+            case USHORT:
+                a.emit(0x53003c00); // uxth w0, w0
+                break;
+
+            default:
+                if (long.class == resultClass && sizeof(resultType) <= 4) {
+                    a.emit(isUnsigned(resultType) ? 0x2a0003e0 : 0x93407c00); // mov w0, w0 : sxtw x0, w0
+                }
+                break;
+        }
+    }
+
+    private static boolean needsResultConversion(NativeType resultType, Class resultClass) {
+        switch (resultType) {
+            case SCHAR:
+            case UCHAR:
+            case SSHORT:
+            case USHORT:
+                return true;
+
+            case VOID:
+            case FLOAT:
+            case DOUBLE:
+                return false;
+
+            default:
+                return long.class == resultClass && sizeof(resultType) <= 4;
+        }
+    }
+
+    private static boolean isSupportedType(NativeType type) {
+        switch (type) {
+            case VOID:
+            case SCHAR:
+            case UCHAR:
+            case SSHORT:
+            case USHORT:
+            case SINT:
+            case UINT:
+            case SLONG:
+            case ULONG:
+            case SLONGLONG:
+            case ULONGLONG:
+            case FLOAT:
+            case DOUBLE:
+            case ADDRESS:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isFloat(NativeType type) {
+        return type == NativeType.FLOAT || type == NativeType.DOUBLE;
+    }
+
+    private static boolean isUnsigned(NativeType type) {
+        switch (type) {
+            case UCHAR:
+            case USHORT:
+            case UINT:
+            case ULONG:
+            case ULONGLONG:
+            case ADDRESS:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    void attach(Class clazz) {
+        if (stubs.isEmpty()) {
+            return;
+        }
+
+        long codeSize = 0;
+        for (Stub stub : stubs) {
+            // every stub starts on an 8 byte boundary, so its literal pool is aligned
+            codeSize += AbstractX86StubCompiler.align(stub.code.length * 4L, 8);
+        }
+
+        PageManager pm = PageManager.getInstance();
+
+        long npages = (codeSize + pm.pageSize() - 1) / pm.pageSize();
+        long code = pm.allocatePages((int) npages, PageManager.PROT_READ | PageManager.PROT_WRITE);
+        if (code == 0) {
+            throw new OutOfMemoryError("allocatePages failed for codeSize=" + codeSize);
+        }
+        PageHolder page = new PageHolder(pm, code, npages);
+
+        List<NativeMethod> methods = new ArrayList<NativeMethod>(stubs.size());
+        MemoryIO io = MemoryIO.getInstance();
+        PrintStream dbg = System.err;
+        long fn = code;
+        for (Stub stub : stubs) {
+            for (int i = 0; i < stub.code.length; i++) {
+                io.putInt(fn + (i * 4L), stub.code[i]);
+            }
+
+            if (DEBUG) {
+                dbg.println(clazz.getName() + "." + stub.name + " " + stub.signature);
+                for (int i = 0; i < stub.code.length; i++) {
+                    dbg.printf("%8x: %08x\n", i * 4, stub.code[i]);
+                }
+                dbg.println();
+            }
+            methods.add(new NativeMethod(fn, stub.name, stub.signature));
+            fn += AbstractX86StubCompiler.align(stub.code.length * 4L, 8);
+        }
+
+        // The instruction cache is not coherent with the data cache the code was written through
+        Invoker.getInstance().invokeN2(CLEAR_CACHE_CONTEXT, clearCacheFunctionAddress, code, code + codeSize);
+        pm.protectPages(code, (int) npages, PageManager.PROT_READ | PageManager.PROT_EXEC);
+
+        NativeMethods.register(clazz, methods);
+        retainPages(clazz, page);
+    }
+
+    /**
+     * A buffer of AArch64 instructions, followed by a pool of 64 bit literals.
+     */
+    private static final class Code {
+        private final List<Integer> instructions = new ArrayList<Integer>();
+        private final List<Integer> literalLoads = new ArrayList<Integer>();
+        private final List<Long> literals = new ArrayList<Long>();
+
+        void emit(int instruction) {
+            instructions.add(instruction);
+        }
+
+        /**
+         * Emits a {@code ldr xN, =literal} whose literal is filled in later by {@link #literal(int, long)}.
+         *
+         * @return a handle for the literal.
+         */
+        int ldrLiteral(int register) {
+            literalLoads.add(instructions.size());
+            literals.add(0L);
+            emit(0x58000000 | register);
+            return literals.size() - 1;
+        }
+
+        void literal(int handle, long value) {
+            literals.set(handle, value);
+        }
+
+        int[] toArray() {
+            // The literal pool starts on an 8 byte boundary, relative to the start of the stub
+            int poolStart = (instructions.size() + 1) & ~1;
+            int[] code = new int[poolStart + (literals.size() * 2)];
+            for (int i = 0; i < instructions.size(); i++) {
+                code[i] = instructions.get(i);
+            }
+            for (int i = instructions.size(); i < poolStart; i++) {
+                code[i] = 0xd503201f; // nop
+            }
+
+            for (int i = 0; i < literals.size(); i++) {
+                int index = poolStart + (i * 2);
+                code[index] = (int) literals.get(i).longValue();
+                code[index + 1] = (int) (literals.get(i) >>> 32);
+
+                int load = literalLoads.get(i);
+                code[load] |= (index - load) << 5; // imm19 is the word offset from the load
+            }
+
+            return code;
+        }
+    }
+}
@@ -30,9 +30,6 @@ import java.io.PrintStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * Base class for most X86_32/X86_64 stub compilers
@@ -49,11 +46,6 @@ abstract class AbstractX86StubCompiler extends StubCompiler {
         return runtime;
     }
 
-    private static final class StaticDataHolder {
-        // Keep a reference from the loaded class to the pages holding the code for that class.
-        static final Map<Class, PageHolder> PAGES
-                = Collections.synchronizedMap(new WeakHashMap<Class, PageHolder>());
-    }
     final List<Stub> stubs = new LinkedList<Stub>();
 
 
@@ -69,37 +61,6 @@ abstract class AbstractX86StubCompiler extends StubCompiler {
         }
     }
 
-    static final AtomicIntegerFieldUpdater<PageHolder> PAGE_HOLDER_UPDATER = AtomicIntegerFieldUpdater.newUpdater(PageHolder.class, "disposed");
-
-    static final class PageHolder {
-        final PageManager pm;
-        final long memory;
-        final long pageCount;
-        volatile int disposed;
-
-        public PageHolder(PageManager pm, long memory, long pageCount) {
-            this.pm = pm;
-            this.memory = memory;
-            this.pageCount = pageCount;
-        }
-
-        @Override
-        protected void finalize() throws Throwable {
-            try {
-                int disposed = PAGE_HOLDER_UPDATER.getAndSet(this, 1);
-                if (disposed == 0) {
-                    pm.freePages(memory, (int) pageCount);
-                }
-            } catch (Throwable t) {
-                Logger.getLogger(getClass().getName()).log(Level.WARNING, 
-                    "Exception when freeing native pages: %s", t.getLocalizedMessage());
-            } finally {
-                super.finalize();
-            }
-        }
-
-    }
-
     @Override
     void attach(Class clazz) {
 
@@ -163,7 +124,7 @@ abstract class AbstractX86StubCompiler extends StubCompiler {
         pm.protectPages(code, (int) npages, PageManager.PROT_READ | PageManager.PROT_EXEC);
 
         NativeMethods.register(clazz, methods);
-        StaticDataHolder.PAGES.put(clazz, page);
+        retainPages(clazz, page);
     }
 
     static int align(int offset, int align) {
@@ -20,10 +20,8 @@ package jnr.ffi.provider.jffi;
 
 import jnr.ffi.Runtime;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-
 class AllocatedDirectMemoryIO extends DirectMemoryIO {
-    private final AtomicBoolean allocated = new AtomicBoolean(true);
+    private final NativeMemoryCleaner.Cleanup cleanup;
     private final int size;
     
     public AllocatedDirectMemoryIO(Runtime runtime, int size, boolean clear) {
@@ -32,6 +30,7 @@ class AllocatedDirectMemoryIO extends DirectMemoryIO {
         if (address() == 0L) {
             throw new OutOfMemoryError("Failed to allocate " + size + " bytes");
         }
+        this.cleanup = NativeMemoryCleaner.register(this, address(), size);
     }
 
     @Override
@@ -55,19 +54,6 @@ class AllocatedDirectMemoryIO extends DirectMemoryIO {
     }
 
     public final void dispose() {
-        if (allocated.getAndSet(false)) {
-            IO.freeMemory(address());
-        }
-    }
-
-    @Override
-    protected void finalize() throws Throwable {
-        try {
-            if (allocated.getAndSet(false)) {
-                IO.freeMemory(address());
-            }
-        } finally {
-            super.finalize();
-        }
+        cleanup.clean();
     }
 }
@@ -23,23 +23,33 @@ import static jnr.ffi.provider.jffi.CodegenUtils.ci;
 import static jnr.ffi.provider.jffi.CodegenUtils.p;
 import static jnr.ffi.provider.jffi.CodegenUtils.sig;
 import static jnr.ffi.provider.jffi.InvokerUtil.getCallContext;
+import static jnr.ffi.provider.jffi.InvokerUtil.getCallStatistics;
 import static jnr.ffi.provider.jffi.InvokerUtil.getCallingConvention;
 import static jnr.ffi.provider.jffi.InvokerUtil.getParameterTypes;
 import static jnr.ffi.provider.jffi.InvokerUtil.getResultType;
+import static jnr.ffi.provider.jffi.InvokerUtil.isScratchScoped;
 import static jnr.ffi.util.Annotations.sortedAnnotationCollection;
 import static org.objectweb.asm.Opcodes.ACC_FINAL;
 import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
 import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
 import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_VOLATILE;
 import static org.objectweb.asm.Opcodes.V1_6;
 
 import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicLong;
 
+import jnr.ffi.CallStatistics;
 import jnr.ffi.CallingConvention;
 import jnr.ffi.LibraryOption;
 import jnr.ffi.annotations.Synchronized;
@@ -61,11 +71,13 @@ import jnr.ffi.provider.NativeVariable;
 import jnr.ffi.provider.NullTypeMapper;
 import jnr.ffi.provider.ParameterType;
 import jnr.ffi.provider.ResultType;
+import jnr.ffi.provider.converters.ByReferenceParameterConverter;
 import jnr.ffi.provider.jffi.AsmBuilder.ObjectField;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 
 import com.kenai.jffi.Function;
 
@@ -86,14 +98,37 @@ public class AsmLibraryLoader extends LibraryLoader {
             classLoader.set(new AsmClassLoader(interfaceClass.getClassLoader()));
         }
         try {
-            return generateInterfaceImpl(library, interfaceClass, libraryOptions, classLoader.get());
+            return generateInterfaceImpl(new LibraryContext(runtime, library, interfaceClass, libraryOptions, classLoader.get()),
+                    interfaceClass, null);
         } finally {
             if (oldClassLoader == null) classLoader.remove();
         }
     }
 
-    private <T> T generateInterfaceImpl(final NativeLibrary library, Class<T> interfaceClass, Map<LibraryOption, ?> libraryOptions,
-                                        AsmClassLoader classLoader) {
+    /**
+     * Generates an implementation of the interface which only binds a single method.
+     * <p>
+     * This is used to complete the binding of methods deferred by {@link LibraryOption#LazyBinding}.  The type
+     * mappers, closure manager and invoker factory of the library are reused, so binding a method only
+     * analyzes and generates that one method.
+     */
+    Object bindMethod(LibraryContext context, Method method) {
+        AsmClassLoader oldClassLoader = classLoader.get();
+
+        if (oldClassLoader == null) {
+            classLoader.set(context.classLoader);
+        }
+        try {
+            return generateInterfaceImpl(context, context.interfaceClass, method);
+        } finally {
+            if (oldClassLoader == null) classLoader.remove();
+        }
+    }
+
+    private <T> T generateInterfaceImpl(LibraryContext context, Class<T> interfaceClass, Method boundMethod) {
+        final NativeLibrary library = context.library;
+        Map<LibraryOption, ?> libraryOptions = context.libraryOptions;
+        AsmClassLoader classLoader = context.classLoader;
 
         boolean debug = DEBUG && !interfaceClass.isAnnotationPresent(NoTrace.class);
         ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
@@ -104,34 +139,12 @@ public class AsmLibraryLoader extends LibraryLoader {
         cv.visit(V1_6, ACC_PUBLIC | ACC_FINAL, builder.getClassNamePath(), null, p(AbstractAsmLibraryInterface.class),
                 new String[] { p(interfaceClass) });
 
-        FunctionMapper functionMapper = libraryOptions.containsKey(LibraryOption.FunctionMapper)
-                ? (FunctionMapper) libraryOptions.get(LibraryOption.FunctionMapper) : IdentityFunctionMapper.getInstance();
-
-        SignatureTypeMapper typeMapper;
-        if (libraryOptions.containsKey(LibraryOption.TypeMapper)) {
-            Object tm = libraryOptions.get(LibraryOption.TypeMapper);
-            if (tm instanceof SignatureTypeMapper) {
-                typeMapper = (SignatureTypeMapper) tm;
-            } else if (tm instanceof TypeMapper) {
-                typeMapper = new SignatureTypeMapperAdapter((TypeMapper) tm);
-            } else {
-                throw new IllegalArgumentException("TypeMapper option is not a valid TypeMapper instance");
-            }
-        } else {
-            typeMapper = new NullTypeMapper();
-        }
-
-        CompositeTypeMapper closureTypeMapper = new CompositeTypeMapper(typeMapper, 
-                new CachingTypeMapper(new InvokerTypeMapper(null, classLoader, NativeLibraryLoader.ASM_ENABLED)),
-                new CachingTypeMapper(new AnnotationTypeMapper()));
-        
-        typeMapper = new CompositeTypeMapper(typeMapper, 
-                new CachingTypeMapper(new InvokerTypeMapper(new NativeClosureManager(runtime, closureTypeMapper, classLoader), classLoader, NativeLibraryLoader.ASM_ENABLED)),
-                new CachingTypeMapper(new AnnotationTypeMapper()));
-        
-        CallingConvention libraryCallingConvention = getCallingConvention(interfaceClass, libraryOptions);
+        FunctionMapper functionMapper = context.functionMapper;
+        SignatureTypeMapper typeMapper = context.typeMapper;
+        CallingConvention libraryCallingConvention = context.callingConvention;
 
         StubCompiler compiler = StubCompiler.newCompiler(runtime);
+        boolean poolInvocationBuffers = libraryOptions.containsKey(LibraryOption.PoolInvocationBuffers);
 
         final MethodGenerator[] generators = {
                 !interfaceClass.isAnnotationPresent(NoX86.class)
@@ -139,55 +152,89 @@ public class AsmLibraryLoader extends LibraryLoader {
                 new FastIntMethodGenerator(),
                 new FastLongMethodGenerator(),
                 new FastNumericMethodGenerator(),
-                new BufferMethodGenerator()
+                new BufferMethodGenerator(poolInvocationBuffers)
         };
         
-        DefaultInvokerFactory invokerFactory = new DefaultInvokerFactory(runtime, library, typeMapper, functionMapper, libraryCallingConvention, libraryOptions, interfaceClass.isAnnotationPresent(Synchronized.class));
+        boolean libraryIsSynchronized = context.synchronizedLibrary;
+        DefaultInvokerFactory invokerFactory = context.invokerFactory;
         InterfaceScanner scanner = new InterfaceScanner(interfaceClass, typeMapper, libraryCallingConvention);
 
+        VariadicMethodGenerator variadicGenerator = new VariadicMethodGenerator(poolInvocationBuffers);
+        boolean lazyBinding = boundMethod == null && libraryOptions.containsKey(LibraryOption.LazyBinding);
+        CallStatistics callStatistics = getCallStatistics(libraryOptions);
+
+        List<NativeFunction> functions = new ArrayList<NativeFunction>();
         for (NativeFunction function : scanner.functions()) {
-            if (function.getMethod().isVarArgs()) {
-                ObjectField field = builder.getObjectField(invokerFactory.createInvoker(function.getMethod()), Invoker.class);
-                generateVarargsInvocation(builder, function.getMethod(), field);
-                continue;
+            if (boundMethod == null || boundMethod.equals(function.getMethod())) {
+                functions.add(function);
             }
+        }
 
-            String functionName = functionMapper.mapFunctionName(function.name(), new NativeFunctionMapperContext(library, function.annotations()));
+        FunctionAnalysis[] analyses = new FunctionAnalysis[functions.size()];
+        if (!lazyBinding) {
+            for (int i = 0; i < analyses.length; i++) {
+                NativeFunction function = functions.get(i);
+                if (!function.getMethod().isVarArgs() || !(libraryIsSynchronized || function.getMethod().isAnnotationPresent(Synchronized.class))) {
+                    String functionName = functionMapper.mapFunctionName(function.name(), new NativeFunctionMapperContext(library, function.annotations()));
+                    analyses[i] = new FunctionAnalysis(function, functionName);
+                }
+            }
+            analyze(library, analyses, typeMapper, libraryOptions, classLoader);
+        }
 
-            try {
-                long functionAddress = library.findSymbolAddress(functionName);
-                
-                FromNativeContext resultContext = new MethodResultContext(runtime, function.getMethod());
-                SignatureType signatureType = DefaultSignatureType.create(function.getMethod().getReturnType(), resultContext);
-                ResultType resultType = getResultType(runtime, function.getMethod().getReturnType(),
-                        resultContext.getAnnotations(), typeMapper.getFromNativeType(signatureType, resultContext),
-                        resultContext);
+        for (int i = 0; i < analyses.length; i++) {
+            NativeFunction function = functions.get(i);
+            FunctionAnalysis analysis = analyses[i];
 
-                ParameterType[] parameterTypes = getParameterTypes(runtime, typeMapper, function.getMethod());
+            if (lazyBinding) {
+                LazyMethodBinder binder = new LazyMethodBinder(this, context, function.getMethod());
+                generateLazyInvocation(builder, interfaceClass, function.getMethod(), builder.getObjectField(binder, LazyMethodBinder.class));
 
-                boolean saveError = jnr.ffi.LibraryLoader.saveError(libraryOptions, function.hasSaveError(), function.hasIgnoreError());
+            } else if (analysis == null) {
+                ObjectField field = builder.getObjectField(invokerFactory.createInvoker(function.getMethod()), Invoker.class);
+                generateVarargsInvocation(builder, function.getMethod(), field);
 
-                Function jffiFunction = new Function(functionAddress, 
-                        getCallContext(resultType, parameterTypes,function.convention(), saveError));
+            } else if (analysis.error != null) {
+                String errorFieldName = "error_" + uniqueId.incrementAndGet();
+                cv.visitField(ACC_PRIVATE | ACC_FINAL | ACC_STATIC, errorFieldName, ci(String.class), null, analysis.error);
+                generateFunctionNotFound(cv, builder.getClassNamePath(), errorFieldName, analysis.functionName,
+                        function.getMethod().getReturnType(), function.getMethod().getParameterTypes());
 
+            } else if (function.getMethod().isVarArgs()) {
+                if (variadicGenerator.isSupported(analysis.resultType, analysis.parameterTypes)) {
+                    String methodName = getGeneratedMethodName(function.getMethod(), callStatistics);
+                    String implName = getScratchScopedMethodName(methodName,
+                            isScratchScoped(libraryOptions, function.getMethod(), analysis.parameterTypes));
+                    variadicGenerator.generate(builder, implName,
+                            new VariadicFunction(runtime, typeMapper, analysis.parameterTypes, analysis.functionAddress,
+                                    analysis.resultType, analysis.saveError, function.convention()),
+                            analysis.resultType, analysis.parameterTypes);
+                    generateScratchScope(builder, function.getMethod(), methodName, implName);
+                    generateInstrumentedInvocation(builder, function.getMethod(), methodName, callStatistics, analysis.functionName);
+                } else {
+                    ObjectField field = builder.getObjectField(invokerFactory.createInvoker(function.getMethod()), Invoker.class);
+                    generateVarargsInvocation(builder, function.getMethod(), field);
+                }
+
+            } else {
+                String methodName = getGeneratedMethodName(function.getMethod(), callStatistics);
+                String implName = getScratchScopedMethodName(methodName,
+                        isScratchScoped(libraryOptions, function.getMethod(), analysis.parameterTypes));
                 for (MethodGenerator g : generators) {
-                    if (g.isSupported(resultType, parameterTypes, function.convention())) {
-                        g.generate(builder, function.getMethod().getName(), jffiFunction, resultType, parameterTypes, !saveError);
+                    if (g.isSupported(analysis.resultType, analysis.parameterTypes, function.convention())) {
+                        g.generate(builder, implName, analysis.jffiFunction, analysis.resultType,
+                                analysis.parameterTypes, !analysis.saveError);
+                        generateScratchScope(builder, function.getMethod(), methodName, implName);
+                        generateInstrumentedInvocation(builder, function.getMethod(), methodName, callStatistics, analysis.functionName);
                         break;
                     }
                 }
-
-            } catch (SymbolNotFoundError ex) {
-                String errorFieldName = "error_" + uniqueId.incrementAndGet();
-                cv.visitField(ACC_PRIVATE | ACC_FINAL | ACC_STATIC, errorFieldName, ci(String.class), null, ex.getMessage());
-                generateFunctionNotFound(cv, builder.getClassNamePath(), errorFieldName, functionName, 
-                        function.getMethod().getReturnType(), function.getMethod().getParameterTypes());
             }
         }
 
         // generate global variable accessors
         VariableAccessorGenerator variableAccessorGenerator = new VariableAccessorGenerator(runtime);
-        for (NativeVariable v : scanner.variables()) {
+        for (NativeVariable v : boundMethod == null ? scanner.variables() : Collections.<NativeVariable>emptyList()) {
             Method m = v.getMethod();
             java.lang.reflect.Type variableType = ((ParameterizedType) m.getGenericReturnType()).getActualTypeArguments()[0];
             if (!(variableType instanceof Class)) {
@@ -248,6 +295,120 @@ public class AsmLibraryLoader extends LibraryLoader {
         }
     }
 
+    /**
+     * Resolves the symbols, and works out the native signature of each function.
+     * <p>
+     * The symbols are looked up as a batch; the rest of the analysis runs in parallel when the
+     * {@link LibraryOption#ParallelBinding} option is set.
+     */
+    private void analyze(NativeLibrary library, final FunctionAnalysis[] analyses, final SignatureTypeMapper typeMapper,
+                         final Map<LibraryOption, ?> libraryOptions, final AsmClassLoader asmClassLoader) {
+        int count = 0;
+        for (FunctionAnalysis analysis : analyses) {
+            if (analysis != null) count++;
+        }
+
+        String[] names = new String[count];
+        for (int i = 0, n = 0; i < analyses.length; i++) {
+            if (analyses[i] != null) names[n++] = analyses[i].functionName;
+        }
+        long[] addresses = new long[count];
+        String[] errors = new String[count];
+        library.findSymbolAddresses(names, addresses, errors);
+        for (int i = 0, n = 0; i < analyses.length; i++) {
+            if (analyses[i] != null) {
+                analyses[i].functionAddress = addresses[n];
+                analyses[i].error = errors[n++];
+            }
+        }
+
+        Executor executor = count > 1 ? ParallelBinding.getExecutor(libraryOptions) : null;
+        if (executor == null) {
+            for (FunctionAnalysis analysis : analyses) {
+                if (analysis != null && analysis.error == null) {
+                    analysis.analyze(runtime, typeMapper, libraryOptions);
+                }
+            }
+            return;
+        }
+
+        List<FutureTask<Object>> tasks = new ArrayList<FutureTask<Object>>(count);
+        for (final FunctionAnalysis analysis : analyses) {
+            if (analysis != null && analysis.error == null) {
+                FutureTask<Object> task = new FutureTask<Object>(new Runnable() {
+                    public void run() {
+                        AsmClassLoader oldClassLoader = classLoader.get();
+                        if (oldClassLoader == null) classLoader.set(asmClassLoader);
+                        try {
+                            analysis.analyze(runtime, typeMapper, libraryOptions);
+                        } finally {
+                            if (oldClassLoader == null) classLoader.remove();
+                        }
+                    }
+                }, null);
+                tasks.add(task);
+                executor.execute(task);
+            }
+        }
+
+        // Run any tasks the executor has not started yet on this thread, so a busy (or nested) executor
+        // never leaves the loading thread waiting on work which has not been started.
+        for (FutureTask<Object> task : tasks) {
+            task.run();
+            try {
+                task.get();
+
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /**
+     * The native signature of a function, worked out before any code is generated for it.
+     */
+    private static final class FunctionAnalysis {
+        final NativeFunction function;
+        final String functionName;
+        long functionAddress;
+        String error;
+        ResultType resultType;
+        ParameterType[] parameterTypes;
+        boolean saveError;
+        Function jffiFunction;
+
+        FunctionAnalysis(NativeFunction function, String functionName) {
+            this.function = function;
+            this.functionName = functionName;
+        }
+
+        void analyze(NativeRuntime runtime, SignatureTypeMapper typeMapper, Map<LibraryOption, ?> libraryOptions) {
+            Method method = function.getMethod();
+            FromNativeContext resultContext = new MethodResultContext(runtime, method);
+            SignatureType signatureType = DefaultSignatureType.create(method.getReturnType(), resultContext);
+            resultType = getResultType(runtime, method.getReturnType(),
+                    resultContext.getAnnotations(), typeMapper.getFromNativeType(signatureType, resultContext),
+                    resultContext);
+            parameterTypes = getParameterTypes(runtime, typeMapper, method);
+            saveError = jnr.ffi.LibraryLoader.saveError(libraryOptions, function.hasSaveError(), function.hasIgnoreError());
+
+            if (!method.isVarArgs()) {
+                jffiFunction = new Function(functionAddress,
+                        getCallContext(resultType, parameterTypes, function.convention(), saveError));
+            }
+        }
+    }
+
     private void generateFunctionNotFound(ClassVisitor cv, String className, String errorFieldName, String functionName,
                                                 Class returnType, Class[] parameterTypes) {
         SkinnyMethodAdapter mv = new SkinnyMethodAdapter(cv, ACC_PUBLIC | ACC_FINAL, functionName,
@@ -260,6 +421,153 @@ public class AsmLibraryLoader extends LibraryLoader {
         mv.visitEnd();
     }
 
+    /**
+     * Generates a trampoline which binds the real implementation of the method on first use, and thereafter
+     * calls straight through to it.  The call site only ever sees a single receiver class, so the JIT can
+     * inline the bound implementation into the trampoline.
+     */
+    private void generateLazyInvocation(AsmBuilder builder, Class interfaceClass, Method m, ObjectField binderField) {
+        String targetFieldName = "lazy_" + uniqueId.incrementAndGet();
+        // Volatile, so a thread which sees the bound implementation also sees it fully initialized
+        builder.getClassVisitor().visitField(ACC_PRIVATE | ACC_VOLATILE, targetFieldName, ci(interfaceClass), null, null);
+
+        Class[] parameterTypes = m.getParameterTypes();
+        SkinnyMethodAdapter mv = new SkinnyMethodAdapter(builder.getClassVisitor(), ACC_PUBLIC | ACC_FINAL,
+                m.getName(),
+                sig(m.getReturnType(), parameterTypes), null, null);
+        mv.start();
+
+        mv.aload(0);
+        mv.getfield(builder.getClassNamePath(), targetFieldName, ci(interfaceClass));
+        mv.dup();
+        Label bound = new Label();
+        mv.ifnonnull(bound);
+
+        // First call - bind the method, and cache the bound implementation
+        mv.pop();
+        mv.aload(0);
+        mv.aload(0);
+        mv.getfield(builder.getClassNamePath(), binderField.name, ci(binderField.klass));
+        mv.invokevirtual(LazyMethodBinder.class, "bind", Object.class);
+        mv.checkcast(interfaceClass);
+        mv.dup_x1();
+        mv.putfield(builder.getClassNamePath(), targetFieldName, ci(interfaceClass));
+
+        mv.label(bound);
+        LocalVariable[] parameters = AsmUtil.getParameterVariables(parameterTypes);
+        for (int i = 0; i < parameterTypes.length; i++) {
+            AsmUtil.load(mv, parameterTypes[i], parameters[i]);
+        }
+        mv.invokeinterface(interfaceClass, m.getName(), m.getReturnType(), parameterTypes);
+        AsmUtil.emitReturnOp(mv, m.getReturnType());
+
+        mv.visitMaxs(100, AsmUtil.calculateLocalVariableSpace(parameterTypes) + 1);
+        mv.visitEnd();
+    }
+
+    /**
+     * Gets the name to generate the implementation of a method under.  Instrumented methods are generated under
+     * a different name, and called from a wrapper which records the call.
+     */
+    private static String getGeneratedMethodName(Method m, CallStatistics callStatistics) {
+        return callStatistics != null ? m.getName() + "$jnr$raw$" + uniqueId.incrementAndGet() : m.getName();
+    }
+
+    /**
+     * Generates a wrapper which records each call of the method implementation in the call statistics.
+     * Nothing is generated if the library is not instrumented.
+     */
+    private void generateInstrumentedInvocation(final AsmBuilder builder, final Method m, final String implName,
+                                                CallStatistics callStatistics, String functionName) {
+        if (callStatistics == null) {
+            return;
+        }
+
+        final ObjectField counterField = builder.getObjectField(callStatistics.getCounter(m, functionName), CallStatistics.Counter.class);
+        final Class[] parameterTypes = m.getParameterTypes();
+        final SkinnyMethodAdapter mv = new SkinnyMethodAdapter(builder.getClassVisitor(), ACC_PUBLIC | ACC_FINAL,
+                m.getName(),
+                sig(m.getReturnType(), parameterTypes), null, null);
+        mv.start();
+
+        final LocalVariable start = new LocalVariable(long.class, AsmUtil.calculateLocalVariableSpace(parameterTypes) + 1);
+        final LocalVariable startAllocation = new LocalVariable(long.class, start.idx + 2);
+        AsmUtil.getfield(mv, builder, counterField);
+        mv.invokevirtual(CallStatistics.Counter.class, "start", long.class);
+        mv.lstore(start);
+        AsmUtil.getfield(mv, builder, counterField);
+        mv.invokevirtual(CallStatistics.Counter.class, "startAllocation", long.class);
+        mv.lstore(startAllocation);
+
+        AsmUtil.tryfinally(mv, new Runnable() {
+            public void run() {
+                mv.aload(0);
+                LocalVariable[] parameters = AsmUtil.getParameterVariables(parameterTypes);
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    AsmUtil.load(mv, parameterTypes[i], parameters[i]);
+                }
+                mv.invokevirtual(builder.getClassNamePath(), implName, sig(m.getReturnType(), parameterTypes));
+            }
+        }, new Runnable() {
+            public void run() {
+                AsmUtil.getfield(mv, builder, counterField);
+                mv.lload(start);
+                mv.lload(startAllocation);
+                mv.invokevirtual(CallStatistics.Counter.class, "end", void.class, long.class, long.class);
+            }
+        });
+        AsmUtil.emitReturnOp(mv, m.getReturnType());
+
+        mv.visitMaxs(100, startAllocation.idx + 2);
+        mv.visitEnd();
+    }
+
+    /**
+     * Methods which may carve {@link LibraryOption#ScratchByReference} memory are generated under another name,
+     * and called from a wrapper generated by {@link #generateScratchScope}.
+     */
+    private static String getScratchScopedMethodName(String methodName, boolean scratchScoped) {
+        return scratchScoped ? methodName + "$jnr$scratch" : methodName;
+    }
+
+    /**
+     * Generates a wrapper which brackets the whole call, including parameter conversion, with
+     * {@link ByReferenceParameterConverter.Scratch#enter()} and {@link ByReferenceParameterConverter.Scratch#exit()},
+     * so scratch memory is reclaimed even if the call is abandoned before its regions are released.
+     * Nothing is generated if the method does not use scratch memory.
+     */
+    private static void generateScratchScope(final AsmBuilder builder, final Method m, String methodName, final String implName) {
+        if (methodName.equals(implName)) {
+            return;
+        }
+
+        final Class[] parameterTypes = m.getParameterTypes();
+        final SkinnyMethodAdapter mv = new SkinnyMethodAdapter(builder.getClassVisitor(), ACC_PUBLIC | ACC_FINAL,
+                methodName,
+                sig(m.getReturnType(), parameterTypes), null, null);
+        mv.start();
+
+        mv.invokestatic(ByReferenceParameterConverter.Scratch.class, "enter", void.class);
+        AsmUtil.tryfinally(mv, new Runnable() {
+            public void run() {
+                mv.aload(0);
+                LocalVariable[] parameters = AsmUtil.getParameterVariables(parameterTypes);
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    AsmUtil.load(mv, parameterTypes[i], parameters[i]);
+                }
+                mv.invokevirtual(builder.getClassNamePath(), implName, sig(m.getReturnType(), parameterTypes));
+            }
+        }, new Runnable() {
+            public void run() {
+                mv.invokestatic(ByReferenceParameterConverter.Scratch.class, "exit", void.class);
+            }
+        });
+        AsmUtil.emitReturnOp(mv, m.getReturnType());
+
+        mv.visitMaxs(100, AsmUtil.calculateLocalVariableSpace(parameterTypes) + 1);
+        mv.visitEnd();
+    }
+
     private void generateVarargsInvocation(AsmBuilder builder, Method m, ObjectField field) {
         Class[] parameterTypes = m.getParameterTypes();
         SkinnyMethodAdapter mv = new SkinnyMethodAdapter(builder.getClassVisitor(), ACC_PUBLIC | ACC_FINAL,
@@ -365,4 +673,58 @@ public class AsmLibraryLoader extends LibraryLoader {
         mv.visitMaxs(100, AsmUtil.calculateLocalVariableSpace(parameterTypes) + 1);
         mv.visitEnd();
     }
+
+    /**
+     * The state shared by every class generated for a library: its function mapper, type mappers, closure manager
+     * and invoker factory.  Methods bound lazily reuse it instead of building their own.
+     */
+    static final class LibraryContext {
+        final NativeLibrary library;
+        final Class interfaceClass;
+        final Map<LibraryOption, ?> libraryOptions;
+        final AsmClassLoader classLoader;
+        final FunctionMapper functionMapper;
+        final SignatureTypeMapper typeMapper;
+        final CallingConvention callingConvention;
+        final boolean synchronizedLibrary;
+        final DefaultInvokerFactory invokerFactory;
+
+        LibraryContext(NativeRuntime runtime, NativeLibrary library, Class interfaceClass, Map<LibraryOption, ?> libraryOptions,
+                       AsmClassLoader classLoader) {
+            this.library = library;
+            this.interfaceClass = interfaceClass;
+            this.libraryOptions = libraryOptions;
+            this.classLoader = classLoader;
+            this.functionMapper = libraryOptions.containsKey(LibraryOption.FunctionMapper)
+                    ? (FunctionMapper) libraryOptions.get(LibraryOption.FunctionMapper) : IdentityFunctionMapper.getInstance();
+
+            SignatureTypeMapper typeMapper;
+            if (libraryOptions.containsKey(LibraryOption.TypeMapper)) {
+                Object tm = libraryOptions.get(LibraryOption.TypeMapper);
+                if (tm instanceof SignatureTypeMapper) {
+                    typeMapper = (SignatureTypeMapper) tm;
+                } else if (tm instanceof TypeMapper) {
+                    typeMapper = new SignatureTypeMapperAdapter((TypeMapper) tm);
+                } else {
+                    throw new IllegalArgumentException("TypeMapper option is not a valid TypeMapper instance");
+                }
+            } else {
+                typeMapper = new NullTypeMapper();
+            }
+
+            CompositeTypeMapper closureTypeMapper = new CompositeTypeMapper(typeMapper,
+                    new CachingTypeMapper(new InvokerTypeMapper(null, classLoader, NativeLibraryLoader.ASM_ENABLED)),
+                    new CachingTypeMapper(new AnnotationTypeMapper()));
+
+            this.typeMapper = new CompositeTypeMapper(typeMapper,
+                    new CachingTypeMapper(new InvokerTypeMapper(new NativeClosureManager(runtime, closureTypeMapper, classLoader), classLoader, NativeLibraryLoader.ASM_ENABLED,
+                            libraryOptions.containsKey(LibraryOption.ScratchByReference))),
+                    new CachingTypeMapper(new AnnotationTypeMapper()));
+
+            this.callingConvention = getCallingConvention(interfaceClass, libraryOptions);
+            this.synchronizedLibrary = interfaceClass.isAnnotationPresent(Synchronized.class);
+            this.invokerFactory = new DefaultInvokerFactory(runtime, library, this.typeMapper, functionMapper, callingConvention,
+                    libraryOptions, synchronizedLibrary);
+        }
+    }
 }
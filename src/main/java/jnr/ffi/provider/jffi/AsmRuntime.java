@@ -52,6 +52,34 @@ public final class AsmRuntime {
         return new HeapInvocationBuffer(callContext, objCount);
     }
 
+    public static HeapInvocationBuffer acquireHeapInvocationBuffer(CallContext callContext) {
+        return InvocationBufferPool.getInstance().acquireBuffer(callContext);
+    }
+
+    public static void releaseHeapInvocationBuffer(CallContext callContext, HeapInvocationBuffer buffer) {
+        InvocationBufferPool.getInstance().releaseBuffer(callContext, buffer);
+    }
+
+    public static InvocationSession acquireInvocationSession() {
+        return InvocationBufferPool.getInstance().acquireSession();
+    }
+
+    public static void finishInvocationSession(InvocationSession session) {
+        try {
+            session.finish();
+        } finally {
+            InvocationBufferPool.getInstance().releaseSession(session);
+        }
+    }
+
+    public static jnr.ffi.Struct structValue(byte[] data, StructByValueType structType) {
+        return structType.newInstance(data);
+    }
+
+    public static void putStruct(HeapInvocationBuffer buffer, jnr.ffi.Struct struct, StructByValueType structType) {
+        structType.marshal(buffer, struct);
+    }
+
     public static Pointer pointerValue(long ptr, jnr.ffi.Runtime runtime) {
         return ptr != 0 ? new DirectMemoryIO(runtime, ptr) : null;
     }
@@ -27,6 +27,7 @@ import jnr.ffi.mapper.FromNativeConverter;
 import jnr.ffi.mapper.ToNativeContext;
 import jnr.ffi.mapper.ToNativeConverter;
 import jnr.ffi.provider.*;
+import jnr.ffi.provider.converters.ErrnoResultConverter;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
@@ -513,7 +514,25 @@ final class AsmUtil {
     static void emitFromNativeConversion(AsmBuilder builder, SkinnyMethodAdapter mv, FromNativeType fromNativeType, Class nativeClass) {
         // If there is a result converter, retrieve it and put on the stack
         FromNativeConverter fromNativeConverter = fromNativeType.getFromNativeConverter();
-        if (fromNativeConverter != null) {
+        if (isPrimitiveErrnoResult(fromNativeType)) {
+            // Call the primitive fromNative() of the converter, so the result is never boxed
+            Class resultClass = fromNativeType.getDeclaredType();
+            convertPrimitive(mv, nativeClass, resultClass, fromNativeType.getNativeType());
+            getfield(mv, builder, builder.getFromNativeConverterField(fromNativeConverter));
+            if (long.class == resultClass) {
+                mv.dup_x2();
+                mv.pop();
+            } else {
+                mv.swap();
+            }
+            if (fromNativeType.getFromNativeContext() != null) {
+                getfield(mv, builder, builder.getFromNativeContextField(fromNativeType.getFromNativeContext()));
+            } else {
+                mv.aconst_null();
+            }
+            mv.invokevirtual(fromNativeConverter.getClass(), "fromNative", resultClass, resultClass, FromNativeContext.class);
+
+        } else if (fromNativeConverter != null) {
             convertPrimitive(mv, nativeClass, unboxedType(fromNativeConverter.nativeType()), fromNativeType.getNativeType());
             boxValue(builder, mv, fromNativeConverter.nativeType(), nativeClass);
 
@@ -552,6 +571,12 @@ final class AsmUtil {
         }
     }
 
+    private static boolean isPrimitiveErrnoResult(FromNativeType fromNativeType) {
+        FromNativeConverter fromNativeConverter = fromNativeType.getFromNativeConverter();
+        return (fromNativeConverter instanceof ErrnoResultConverter.IntResult && int.class == fromNativeType.getDeclaredType())
+                || (fromNativeConverter instanceof ErrnoResultConverter.LongResult && long.class == fromNativeType.getDeclaredType());
+    }
+
     static Method getToNativeMethod(ToNativeType toNativeType, AsmClassLoader classLoader) {
         ToNativeConverter toNativeConverter = toNativeType.getToNativeConverter();
         if (toNativeConverter == null) {
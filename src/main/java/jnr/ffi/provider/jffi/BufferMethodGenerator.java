@@ -23,10 +23,12 @@ import com.kenai.jffi.HeapInvocationBuffer;
 import com.kenai.jffi.Invoker;
 import com.kenai.jffi.ObjectParameterStrategy;
 import jnr.ffi.NativeType;
+import jnr.ffi.Struct;
 import jnr.ffi.provider.InvocationSession;
 import jnr.ffi.CallingConvention;
 import jnr.ffi.provider.ParameterType;
 import jnr.ffi.provider.ResultType;
+import jnr.ffi.provider.SigType;
 
 import java.util.Collections;
 import java.util.EnumMap;
@@ -43,7 +45,7 @@ import static jnr.ffi.provider.jffi.NumberUtil.sizeof;
  *
  */
 final class BufferMethodGenerator extends BaseMethodGenerator {
-    private static abstract class Operation {
+    static abstract class Operation {
         final String methodName;
         final Class primitiveClass;
 
@@ -59,7 +61,7 @@ final class BufferMethodGenerator extends BaseMethodGenerator {
         }
     }
 
-    private static final class InvokeOp extends Operation {
+    static final class InvokeOp extends Operation {
         private InvokeOp(String methodName, Class primitiveClass) {
             super("invoke" + methodName, primitiveClass);
         }
@@ -112,6 +114,21 @@ final class BufferMethodGenerator extends BaseMethodGenerator {
         invokeOps = Collections.unmodifiableMap(iops);
     }
 
+    static final InvokeOp STRUCT_INVOKE_OP = new InvokeOp("Struct", byte[].class);
+
+    private final boolean pooled;
+
+    BufferMethodGenerator() {
+        this(false);
+    }
+
+    /**
+     * @param pooled true if the invocation buffers should be taken from the per-thread {@link InvocationBufferPool}.
+     */
+    BufferMethodGenerator(boolean pooled) {
+        this.pooled = pooled;
+    }
+
     @Override
     void generate(AsmBuilder builder, SkinnyMethodAdapter mv, LocalVariableAllocator localVariableAllocator, CallContext callContext, ResultType resultType, ParameterType[] parameterTypes, boolean ignoreError) {
         generateBufferInvocation(builder, mv, localVariableAllocator, callContext, resultType, parameterTypes);
@@ -147,68 +164,125 @@ final class BufferMethodGenerator extends BaseMethodGenerator {
         return false;
     }
 
+    /**
+     * Marshals a single parameter into the HeapInvocationBuffer on top of the stack, consuming it.
+     *
+     * @return the local variable holding the converted parameter value.
+     */
+    static LocalVariable emitMarshalParameter(AsmBuilder builder, SkinnyMethodAdapter mv, LocalVariableAllocator localVariableAllocator,
+                                              LocalVariable parameter, ParameterType parameterType, LocalVariable session) {
+        if (isSessionRequired(parameterType)) {
+            mv.aload(session);
+        }
+        LocalVariable converted = loadAndConvertParameter(builder, mv, localVariableAllocator, parameter, parameterType);
+
+        final Class javaParameterType = parameterType.effectiveJavaType();
+        ToNativeOp op = ToNativeOp.get(parameterType);
+        if (op != null && op.isPrimitive()) {
+            emitPrimitiveOp(mv, parameterType, op);
+
+        } else if (parameterType.getNativeType() == NativeType.STRUCT) {
+            AsmUtil.getfield(mv, builder, builder.getObjectField(getStructByValueType(parameterType), StructByValueType.class));
+            mv.invokestatic(AsmRuntime.class, "putStruct", void.class, HeapInvocationBuffer.class, Struct.class, StructByValueType.class);
+
+        } else if (hasPointerParameterStrategy(javaParameterType)) {
+            emitParameterStrategyLookup(mv, javaParameterType);
+            LocalVariable strategy = localVariableAllocator.allocate(PointerParameterStrategy.class);
+            mv.astore(strategy);
+
+            mv.aload(converted);
+            mv.aload(strategy);
+            mv.pushInt(AsmUtil.getNativeArrayFlags(parameterType.annotations()));
+            mv.invokevirtual(HeapInvocationBuffer.class, "putObject", void.class, Object.class, ObjectParameterStrategy.class, int.class);
+
+        } else {
+            throw new IllegalArgumentException("unsupported parameter type " + parameterType);
+        }
+
+        return converted;
+    }
+
+    static boolean isSupportedParameter(ParameterType parameterType) {
+        ToNativeOp op = ToNativeOp.get(parameterType);
+        return op != null && op.isPrimitive()
+                ? marshalOps.containsKey(parameterType.getNativeType())
+                : parameterType.getNativeType() == NativeType.STRUCT || hasPointerParameterStrategy(parameterType.effectiveJavaType());
+    }
+
+    static StructByValueType getStructByValueType(SigType sigType) {
+        return StructByValueType.getInstance(NativeRuntime.getInstance(), sigType.effectiveJavaType().asSubclass(Struct.class));
+    }
+
     void generateBufferInvocation(final AsmBuilder builder, final SkinnyMethodAdapter mv, LocalVariableAllocator localVariableAllocator, CallContext callContext, final ResultType resultType, final ParameterType[] parameterTypes) {
         // [ stack contains: Invoker, Function ]
         final boolean sessionRequired = isSessionRequired(parameterTypes);
         final LocalVariable session = localVariableAllocator.allocate(InvocationSession.class);
 
         if (sessionRequired) {
-            mv.newobj(p(InvocationSession.class));
-            mv.dup();
-            mv.invokespecial(InvocationSession.class, "<init>", void.class);
+            if (pooled) {
+                mv.invokestatic(AsmRuntime.class, "acquireInvocationSession", InvocationSession.class);
+            } else {
+                mv.newobj(p(InvocationSession.class));
+                mv.dup();
+                mv.invokespecial(InvocationSession.class, "<init>", void.class);
+            }
             mv.astore(session);
         }
 
-        // Create a new InvocationBuffer
+        // Create a new InvocationBuffer, or take one from the pool
+        final LocalVariable buffer = pooled ? localVariableAllocator.allocate(HeapInvocationBuffer.class) : null;
         mv.aload(0);
         mv.getfield(builder.getClassNamePath(), builder.getCallContextFieldName(callContext), ci(CallContext.class));
-        mv.invokestatic(AsmRuntime.class, "newHeapInvocationBuffer", HeapInvocationBuffer.class, CallContext.class);
+        if (pooled) {
+            mv.invokestatic(AsmRuntime.class, "acquireHeapInvocationBuffer", HeapInvocationBuffer.class, CallContext.class);
+            mv.dup();
+            mv.astore(buffer);
+        } else {
+            mv.invokestatic(AsmRuntime.class, "newHeapInvocationBuffer", HeapInvocationBuffer.class, CallContext.class);
+        }
         // [ stack contains: Invoker, Function, HeapInvocationBuffer ]
 
         final LocalVariable[] parameters = AsmUtil.getParameterVariables(parameterTypes);
         final LocalVariable[] converted = new LocalVariable[parameterTypes.length];
-        LocalVariable[] strategies = new LocalVariable[parameterTypes.length];
 
         for (int i = 0; i < parameterTypes.length; ++i) {
             mv.dup(); // dup ref to HeapInvocationBuffer
-
-            if (isSessionRequired(parameterTypes[i])) {
-                mv.aload(session);
-            }
-            converted[i] = loadAndConvertParameter(builder, mv, localVariableAllocator, parameters[i], parameterTypes[i]);
-
-            final Class javaParameterType = parameterTypes[i].effectiveJavaType();
-            ToNativeOp op = ToNativeOp.get(parameterTypes[i]);
-            if (op != null && op.isPrimitive()) {
-                emitPrimitiveOp(mv, parameterTypes[i], op);
-
-            } else if (hasPointerParameterStrategy(javaParameterType)) {
-                emitParameterStrategyLookup(mv, javaParameterType);
-                mv.astore(strategies[i] = localVariableAllocator.allocate(PointerParameterStrategy.class));
-
-                mv.aload(converted[i]);
-                mv.aload(strategies[i]);
-                mv.pushInt(AsmUtil.getNativeArrayFlags(parameterTypes[i].annotations()));
-                mv.invokevirtual(HeapInvocationBuffer.class, "putObject", void.class, Object.class, ObjectParameterStrategy.class, int.class);
-
-            } else {
-                throw new IllegalArgumentException("unsupported parameter type " + parameterTypes[i]);
-            }
+            converted[i] = emitMarshalParameter(builder, mv, localVariableAllocator, parameters[i], parameterTypes[i], session);
         }
 
-        InvokeOp iop = invokeOps.get(resultType.getNativeType());
+        final boolean structResult = resultType.getNativeType() == NativeType.STRUCT;
+        InvokeOp iop = structResult ? STRUCT_INVOKE_OP : invokeOps.get(resultType.getNativeType());
         if (iop == null) {
             throw new IllegalArgumentException("unsupported return type " + resultType.getDeclaredType());
         }
 
         mv.invokevirtual(Invoker.class, iop.methodName, iop.primitiveClass, CallContext.class, long.class, HeapInvocationBuffer.class);
 
-        // box and/or narrow/widen the return value if needed
-        convertPrimitive(mv, iop.primitiveClass, unboxedReturnType(resultType.effectiveJavaType()), resultType.getNativeType());
+        if (pooled) {
+            // The buffer is only returned to the pool once the call completes normally
+            mv.aload(0);
+            mv.getfield(builder.getClassNamePath(), builder.getCallContextFieldName(callContext), ci(CallContext.class));
+            mv.aload(buffer);
+            mv.invokestatic(AsmRuntime.class, "releaseHeapInvocationBuffer", void.class, CallContext.class, HeapInvocationBuffer.class);
+        }
+
+        if (structResult) {
+            // wrap the returned struct value in a new instance of the declared Struct subclass
+            AsmUtil.getfield(mv, builder, builder.getObjectField(getStructByValueType(resultType), StructByValueType.class));
+            mv.invokestatic(AsmRuntime.class, "structValue", Struct.class, byte[].class, StructByValueType.class);
+            mv.checkcast(p(resultType.effectiveJavaType()));
+        } else {
+            // box and/or narrow/widen the return value if needed
+            convertPrimitive(mv, iop.primitiveClass, unboxedReturnType(resultType.effectiveJavaType()), resultType.getNativeType());
+        }
         emitEpilogue(builder, mv, resultType, parameterTypes, parameters, converted, sessionRequired ? new Runnable() {
             public void run() {
                 mv.aload(session);
-                mv.invokevirtual(p(InvocationSession.class), "finish", "()V");
+                if (pooled) {
+                    mv.invokestatic(AsmRuntime.class, "finishInvocationSession", void.class, InvocationSession.class);
+                } else {
+                    mv.invokevirtual(p(InvocationSession.class), "finish", "()V");
+                }
             }
         } : null);
     }
@@ -34,20 +34,18 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
 import jnr.ffi.Address;
+import jnr.ffi.CallStatistics;
 import jnr.ffi.CallingConvention;
 import jnr.ffi.LibraryLoader;
 import jnr.ffi.LibraryOption;
 import jnr.ffi.NativeType;
 import jnr.ffi.Pointer;
 import jnr.ffi.Runtime;
-import jnr.ffi.annotations.Meta;
+import jnr.ffi.Struct;
 import jnr.ffi.annotations.StdCall;
 import jnr.ffi.annotations.Synchronized;
 import jnr.ffi.mapper.DataConverter;
@@ -60,14 +58,12 @@ import jnr.ffi.mapper.SignatureType;
 import jnr.ffi.mapper.SignatureTypeMapper;
 import jnr.ffi.mapper.ToNativeContext;
 import jnr.ffi.mapper.ToNativeConverter;
-import jnr.ffi.mapper.ToNativeType;
 import jnr.ffi.provider.InvocationSession;
 import jnr.ffi.provider.Invoker;
 import jnr.ffi.provider.NativeFunction;
 import jnr.ffi.provider.ParameterType;
 import jnr.ffi.provider.ResultType;
-import jnr.ffi.provider.SigType;
-import jnr.ffi.util.AnnotationProxy;
+import jnr.ffi.provider.converters.ByReferenceParameterConverter;
 
 import com.kenai.jffi.Function;
 import com.kenai.jffi.HeapInvocationBuffer;
@@ -82,6 +78,8 @@ final class DefaultInvokerFactory {
     private final jnr.ffi.CallingConvention libraryCallingConvention;
     private final boolean libraryIsSynchronized;
     private final Map<LibraryOption, ?> libraryOptions;
+    private final boolean poolInvocationBuffers;
+    private final CallStatistics callStatistics;
 
     public DefaultInvokerFactory(
             Runtime runtime,
@@ -99,6 +97,8 @@ final class DefaultInvokerFactory {
         this.libraryCallingConvention = libraryCallingConvention;
         this.libraryIsSynchronized = libraryIsSynchronized;
         this.libraryOptions = libraryOptions;
+        this.poolInvocationBuffers = libraryOptions.containsKey(LibraryOption.PoolInvocationBuffers);
+        this.callStatistics = InvokerUtil.getCallStatistics(libraryOptions);
     }
 
     public Invoker createInvoker(Method method) {
@@ -129,7 +129,9 @@ final class DefaultInvokerFactory {
         
         Invoker invoker;
         if (method.isVarArgs()) {
-            invoker = new VariadicInvoker(runtime, functionInvoker, typeMapper, parameterTypes, functionAddress, resultType, saveError, callingConvention);
+            invoker = scope(new VariadicInvoker(runtime, functionInvoker,
+                    new VariadicFunction(runtime, typeMapper, parameterTypes, functionAddress, resultType, saveError, callingConvention),
+                    parameterTypes, poolInvocationBuffers), method, parameterTypes);
         } else {
             Function function = new Function(functionAddress,
                     getCallContext(resultType, parameterTypes, callingConvention, saveError));
@@ -139,15 +141,25 @@ final class DefaultInvokerFactory {
                 marshallers[i] = getMarshaller(parameterTypes[i]);
             }
 
-            return new DefaultInvoker(runtime, library, function, functionInvoker, marshallers);
+            return instrument(scope(new DefaultInvoker(runtime, library, function, functionInvoker, marshallers, poolInvocationBuffers),
+                    method, parameterTypes), method, functionName);
         }
 
         //
         // If either the method or the library is specified as requiring
         // synchronization, then wrap the raw invoker in a synchronized proxy
         //
-        return libraryIsSynchronized || method.isAnnotationPresent(Synchronized.class)
-                ? new SynchronizedInvoker(invoker) : invoker;
+        return instrument(libraryIsSynchronized || method.isAnnotationPresent(Synchronized.class)
+                ? new SynchronizedInvoker(invoker) : invoker, method, functionName);
+    }
+
+    private Invoker scope(Invoker invoker, Method method, ParameterType[] parameterTypes) {
+        return InvokerUtil.isScratchScoped(libraryOptions, method, parameterTypes) ? new ScratchScopedInvoker(invoker) : invoker;
+    }
+
+    private Invoker instrument(Invoker invoker, Method method, String functionName) {
+        return callStatistics != null
+                ? new InstrumentedInvoker(invoker, callStatistics.getCounter(method, functionName)) : invoker;
     }
 
     private static FunctionInvoker getFunctionInvoker(ResultType resultType) {
@@ -165,6 +177,9 @@ final class DefaultInvokerFactory {
         } else if (Pointer.class.isAssignableFrom(returnType)) {
             return PointerInvoker.INSTANCE;
 
+        } else if (resultType.getNativeType() == NativeType.STRUCT) {
+            return new StructByValueInvoker(StructByValueType.getInstance(NativeRuntime.getInstance(), returnType.asSubclass(Struct.class)));
+
         } else {
             throw new IllegalArgumentException("Unknown return type: " + returnType);
         }
@@ -285,6 +300,9 @@ final class DefaultInvokerFactory {
 
         } else if (type.isArray() && type.getComponentType() == boolean.class) {
             return new PrimitiveArrayMarshaller(PrimitiveArrayParameterStrategy.BOOLEAN, annotations);
+
+        } else if (nativeType == NativeType.STRUCT) {
+            return new StructByValueMarshaller(StructByValueType.getInstance(NativeRuntime.getInstance(), type.asSubclass(Struct.class)));
         
         } else {
             throw new IllegalArgumentException("Unsupported parameter type: " + type);
@@ -294,117 +312,67 @@ final class DefaultInvokerFactory {
     static class VariadicInvoker implements jnr.ffi.provider.Invoker {
         private final jnr.ffi.Runtime runtime;
         private final FunctionInvoker functionInvoker;
-        private final SignatureTypeMapper typeMapper;
-        private final ParameterType[] fixedParameterTypes;
-        private final long functionAddress;
-        private final SigType resultType;
-        private final boolean requiresErrno;
-        private final CallingConvention callingConvention;
-
-        VariadicInvoker(Runtime runtime,
-                FunctionInvoker functionInvoker, SignatureTypeMapper typeMapper,
-                ParameterType[] fixedParameterTypes, long functionAddress,
-                SigType resultType, boolean requiresErrno,
-                CallingConvention callingConvention) {
+        private final VariadicFunction function;
+        private final Marshaller[] fixedMarshallers;
+        private final boolean pooled;
+
+        VariadicInvoker(Runtime runtime, FunctionInvoker functionInvoker, VariadicFunction function,
+                ParameterType[] fixedParameterTypes, boolean pooled) {
             super();
             this.runtime = runtime;
             this.functionInvoker = functionInvoker;
-            this.typeMapper = typeMapper;
-            this.fixedParameterTypes = fixedParameterTypes;
-            this.functionAddress = functionAddress;
-            this.resultType = resultType;
-            this.requiresErrno = requiresErrno;
-            this.callingConvention = callingConvention;
+            this.function = function;
+            this.pooled = pooled;
+
+            // The last fixed parameter is the Object[] holding the variable arguments
+            this.fixedMarshallers = new Marshaller[fixedParameterTypes.length - 1];
+            for (int i = 0; i < fixedMarshallers.length; ++i) {
+                fixedMarshallers[i] = getMarshaller(fixedParameterTypes[i]);
+            }
         }
 
         public final Object invoke(Object self, Object[] parameters) {
             Object[] varParam = (Object[])parameters[parameters.length - 1];
-            ParameterType[] argTypes = new ParameterType[fixedParameterTypes.length + varParam.length];
-            System.arraycopy(fixedParameterTypes, 0, argTypes, 0, fixedParameterTypes.length - 1);
-
-            Object[] variableArgs = new Object[varParam.length + 1];
-            int variableArgsCount = 0;
-            List<Class<? extends Annotation>> paramAnnotations = new ArrayList<Class<? extends Annotation>>();
-
-            for (Object arg : varParam) {
-                if (arg instanceof Class && Annotation.class.isAssignableFrom((Class)arg)) {
-                    paramAnnotations.add((Class)arg);
-                } else {
-                    Class<?> argClass;
-                    ToNativeConverter<?, ?> toNativeConverter = null;
-                    Collection<Annotation> annos = getAnnotations(paramAnnotations);
-                    paramAnnotations.clear();
-                    ToNativeContext toNativeContext = new SimpleNativeContext(runtime, annos);
-
-                    if (arg != null) {
-                        ToNativeType toNativeType = typeMapper.getToNativeType(DefaultSignatureType.create(arg.getClass(), toNativeContext), toNativeContext);
-                        toNativeConverter = toNativeType == null ? null : toNativeType.getToNativeConverter();
-                        argClass = toNativeConverter == null ? arg.getClass() : toNativeConverter.nativeType();
-                        variableArgs[variableArgsCount] = arg;
-                    } else {
-                        argClass = Pointer.class;
-                        variableArgs[variableArgsCount] = arg;
-                    }
-
-                    argTypes[fixedParameterTypes.length + variableArgsCount - 1] = new ParameterType(
-                            argClass, 
-                            Types.getType(runtime, argClass, annos).getNativeType(), 
-                            annos, 
-                            toNativeConverter, 
-                            new SimpleNativeContext(runtime, annos));
-                    variableArgsCount++;
-                }
+            VariadicFunction.Plan plan = function.getPlan(varParam);
+            if (pooled) {
+                return invokePooled(plan, parameters, varParam);
             }
-            
-            //Add one extra vararg of NULL to meet the common convention of ending
-            //varargs with a NULL.  Functions that get a length from the fixed arguments
-            //will ignore the extra, and funtions that expect the extra NULL will get it.
-            //This matches what JNA does.
-            argTypes[fixedParameterTypes.length + variableArgsCount - 1] = new ParameterType(
-                    Pointer.class, 
-                    Types.getType(runtime, Pointer.class, Collections.<Annotation>emptyList()).getNativeType(), 
-                    Collections.<Annotation>emptyList(), 
-                    null, 
-                    new SimpleNativeContext(runtime, Collections.<Annotation>emptyList()));
-            variableArgs[variableArgsCount] = null;
-            variableArgsCount++;
 
-            Function function = new Function(functionAddress,
-                    getCallContext(resultType, argTypes, variableArgsCount + fixedParameterTypes.length - 1, callingConvention, requiresErrno));
-            HeapInvocationBuffer buffer = new HeapInvocationBuffer(function.getCallContext());
+            HeapInvocationBuffer buffer = new HeapInvocationBuffer(plan.getCallContext());
 
             InvocationSession session = new InvocationSession();
             try {
-                if (parameters != null) for (int i = 0; i < parameters.length - 1; ++i) {
-                    getMarshaller(argTypes[i]).marshal(session, buffer, parameters[i]);
-                }
-                
-                for (int i = 0; i < variableArgsCount; ++i) {
-                    getMarshaller(argTypes[i + fixedParameterTypes.length - 1]).marshal(session, buffer, variableArgs[i]);
+                for (int i = 0; i < fixedMarshallers.length; ++i) {
+                    fixedMarshallers[i].marshal(session, buffer, parameters[i]);
                 }
+                plan.marshal(session, buffer, varParam);
 
-                return functionInvoker.invoke(runtime, function, buffer);
+                return functionInvoker.invoke(runtime, plan.getFunction(), buffer);
             } finally {
                 session.finish();
             }
         }
-        
-        private static Collection<Annotation> getAnnotations(Collection<Class<? extends Annotation>> klasses) {
-            List<Annotation> ret = new ArrayList<Annotation>();
-            for (Class<? extends Annotation> klass : klasses) {
-                if (klass.getAnnotation(Meta.class) != null) {
-                    for (Annotation anno : klass.getAnnotations()) {
-                        if (anno.annotationType().getName().startsWith("java") 
-                                || Meta.class.equals(anno.annotationType())) {
-                            continue;
-                        }
-                        ret.add(anno);
-                    }
-                } else {
-                    ret.add(AnnotationProxy.newProxy(klass));
+
+        private Object invokePooled(VariadicFunction.Plan plan, Object[] parameters, Object[] varParam) {
+            InvocationBufferPool pool = InvocationBufferPool.getInstance();
+            HeapInvocationBuffer buffer = pool.acquireBuffer(plan.getCallContext());
+            InvocationSession session = pool.acquireSession();
+            try {
+                for (int i = 0; i < fixedMarshallers.length; ++i) {
+                    fixedMarshallers[i].marshal(session, buffer, parameters[i]);
+                }
+                plan.marshal(session, buffer, varParam);
+
+                Object result = functionInvoker.invoke(runtime, plan.getFunction(), buffer);
+                pool.releaseBuffer(plan.getCallContext(), buffer);
+                return result;
+            } finally {
+                try {
+                    session.finish();
+                } finally {
+                    pool.releaseSession(session);
                 }
             }
-            return ret;
         }
     }
 
@@ -414,16 +382,23 @@ final class DefaultInvokerFactory {
         final FunctionInvoker functionInvoker;
         final Marshaller[] marshallers;
         final NativeLibrary nativeLibrary;
+        final boolean pooled;
 
-        DefaultInvoker(jnr.ffi.Runtime runtime, NativeLibrary nativeLibrary, Function function, FunctionInvoker invoker, Marshaller[] marshallers) {
+        DefaultInvoker(jnr.ffi.Runtime runtime, NativeLibrary nativeLibrary, Function function, FunctionInvoker invoker, Marshaller[] marshallers,
+                       boolean pooled) {
             this.runtime = runtime;
             this.nativeLibrary = nativeLibrary;
             this.function = function;
             this.functionInvoker = invoker;
             this.marshallers = marshallers;
+            this.pooled = pooled;
         }
 
         public final Object invoke(Object self, Object[] parameters) {
+            if (pooled) {
+                return invokePooled(parameters);
+            }
+
             InvocationSession session = new InvocationSession();
             HeapInvocationBuffer buffer = new HeapInvocationBuffer(function.getCallContext());
             try {
@@ -436,6 +411,27 @@ final class DefaultInvokerFactory {
                 session.finish();
             }
         }
+
+        private Object invokePooled(Object[] parameters) {
+            InvocationBufferPool pool = InvocationBufferPool.getInstance();
+            HeapInvocationBuffer buffer = pool.acquireBuffer(function.getCallContext());
+            InvocationSession session = pool.acquireSession();
+            try {
+                if (parameters != null) for (int i = 0; i < parameters.length; ++i) {
+                    marshallers[i].marshal(session, buffer, parameters[i]);
+                }
+
+                Object result = functionInvoker.invoke(runtime, function, buffer);
+                pool.releaseBuffer(function.getCallContext(), buffer);
+                return result;
+            } finally {
+                try {
+                    session.finish();
+                } finally {
+                    pool.releaseSession(session);
+                }
+            }
+        }
     }
 
     private static final class SynchronizedInvoker implements Invoker {
@@ -452,6 +448,43 @@ final class DefaultInvokerFactory {
         }
     }
 
+    private static final class InstrumentedInvoker implements Invoker {
+        private final Invoker invoker;
+        private final CallStatistics.Counter counter;
+
+        InstrumentedInvoker(Invoker invoker, CallStatistics.Counter counter) {
+            this.invoker = invoker;
+            this.counter = counter;
+        }
+
+        public Object invoke(Object self, Object[] parameters) {
+            long start = counter.start();
+            long startAllocation = counter.startAllocation();
+            try {
+                return invoker.invoke(self, parameters);
+            } finally {
+                counter.end(start, startAllocation);
+            }
+        }
+    }
+
+    private static final class ScratchScopedInvoker implements Invoker {
+        private final Invoker invoker;
+
+        ScratchScopedInvoker(Invoker invoker) {
+            this.invoker = invoker;
+        }
+
+        public Object invoke(Object self, Object[] parameters) {
+            ByReferenceParameterConverter.Scratch.enter();
+            try {
+                return invoker.invoke(self, parameters);
+            } finally {
+                ByReferenceParameterConverter.Scratch.exit();
+            }
+        }
+    }
+
     private static final class FunctionNotFoundInvoker implements Invoker {
         private final Method method;
         private final String functionName;
@@ -544,6 +577,18 @@ final class DefaultInvokerFactory {
         }
     }
 
+    static class StructByValueInvoker extends BaseInvoker {
+        private final StructByValueType structType;
+
+        StructByValueInvoker(StructByValueType structType) {
+            this.structType = structType;
+        }
+
+        public final Object invoke(Runtime runtime, Function function, HeapInvocationBuffer buffer) {
+            return structType.newInstance(invoker.invokeStruct(function, buffer));
+        }
+    }
+
     /* ---------------------------------------------------------------------- */
     static class BooleanMarshaller implements Marshaller {
         static final Marshaller INSTANCE = new BooleanMarshaller();
@@ -650,6 +695,18 @@ final class DefaultInvokerFactory {
         }
     }
 
+    static class StructByValueMarshaller implements Marshaller {
+        private final StructByValueType structType;
+
+        StructByValueMarshaller(StructByValueType structType) {
+            this.structType = structType;
+        }
+
+        public final void marshal(InvocationSession session, HeapInvocationBuffer buffer, Object parameter) {
+            structType.marshal(buffer, (Struct) parameter);
+        }
+    }
+
     static class ToNativeConverterMarshaller implements Marshaller {
         private final ToNativeConverter converter;
         private final ToNativeContext context;
@@ -180,13 +180,12 @@ class DirectMemoryIO extends AbstractMemoryIO {
     }
 
     public String getString(long offset) {
-        return Charset.defaultCharset().decode(ByteBuffer.wrap(IO.getZeroTerminatedByteArray(address() + offset))).toString();
+        return NativeStrings.getString(address() + offset, Integer.MAX_VALUE, Charset.defaultCharset());
     }
 
 
     public String getString(long offset, int maxLength, Charset cs) {
-        final byte[] bytes = IO.getZeroTerminatedByteArray(address() + offset, maxLength);
-        return cs.decode(ByteBuffer.wrap(bytes)).toString();
+        return NativeStrings.getString(address() + offset, maxLength, cs);
     }
 
     public void putString(long offset, String string, int maxLength, Charset cs) {
@@ -208,4 +207,160 @@ class DirectMemoryIO extends AbstractMemoryIO {
         IO.setMemory(this.address() + offset, size, value);
     }
 
+    @Override
+    public final void getStrided(long offset, long stride, byte[] dst, int off, int len) {
+        if (stride == 1) {
+            IO.getByteArray(address() + offset, dst, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = IO.getByte(address + (i * stride));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, byte[] src, int off, int len) {
+        if (stride == 1) {
+            IO.putByteArray(address() + offset, src, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            IO.putByte(address + (i * stride), src[off + i]);
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, short[] dst, int off, int len) {
+        if (stride == 2) {
+            IO.getShortArray(address() + offset, dst, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = IO.getShort(address + (i * stride));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, short[] src, int off, int len) {
+        if (stride == 2) {
+            IO.putShortArray(address() + offset, src, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            IO.putShort(address + (i * stride), src[off + i]);
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, int[] dst, int off, int len) {
+        if (stride == 4) {
+            IO.getIntArray(address() + offset, dst, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = IO.getInt(address + (i * stride));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, int[] src, int off, int len) {
+        if (stride == 4) {
+            IO.putIntArray(address() + offset, src, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            IO.putInt(address + (i * stride), src[off + i]);
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, long[] dst, int off, int len) {
+        if (stride == 8) {
+            IO.getLongArray(address() + offset, dst, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = IO.getLong(address + (i * stride));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, long[] src, int off, int len) {
+        if (stride == 8) {
+            IO.putLongArray(address() + offset, src, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            IO.putLong(address + (i * stride), src[off + i]);
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, float[] dst, int off, int len) {
+        if (stride == 4) {
+            IO.getFloatArray(address() + offset, dst, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = IO.getFloat(address + (i * stride));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, float[] src, int off, int len) {
+        if (stride == 4) {
+            IO.putFloatArray(address() + offset, src, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            IO.putFloat(address + (i * stride), src[off + i]);
+        }
+    }
+
+    @Override
+    public final void getStrided(long offset, long stride, double[] dst, int off, int len) {
+        if (stride == 8) {
+            IO.getDoubleArray(address() + offset, dst, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            dst[off + i] = IO.getDouble(address + (i * stride));
+        }
+    }
+
+    @Override
+    public final void putStrided(long offset, long stride, double[] src, int off, int len) {
+        if (stride == 8) {
+            IO.putDoubleArray(address() + offset, src, off, len);
+            return;
+        }
+        checkStride(stride);
+        final long address = address() + offset;
+        for (int i = 0; i < len; ++i) {
+            IO.putDouble(address + (i * stride), src[off + i]);
+        }
+    }
+
 }
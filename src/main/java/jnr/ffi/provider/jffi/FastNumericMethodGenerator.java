@@ -137,7 +137,7 @@ class FastNumericMethodGenerator extends AbstractFastNumericMethodGenerator {
             || (parameterType.getNativeType() == NativeType.ADDRESS && isSupportedPointerParameterType(parameterType.effectiveJavaType()));
     }
 
-    private static boolean isSupportedPointerParameterType(Class javaParameterType) {
+    static boolean isSupportedPointerParameterType(Class javaParameterType) {
         return Pointer.class.isAssignableFrom(javaParameterType)
                 || ByteBuffer.class.isAssignableFrom(javaParameterType)
                 || ShortBuffer.class.isAssignableFrom(javaParameterType)
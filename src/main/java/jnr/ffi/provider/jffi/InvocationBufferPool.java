@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import jnr.ffi.provider.InvocationSession;
+
+import com.kenai.jffi.CallContext;
+import com.kenai.jffi.HeapInvocationBuffer;
+
+/**
+ * A thread-confined pool of {@link HeapInvocationBuffer} and {@link InvocationSession} instances,
+ * used when a library is loaded with {@link jnr.ffi.LibraryOption#PoolInvocationBuffers}.
+ *
+ * <p>Pooled objects are checked out for the duration of a call, so a re-entrant call on the same thread
+ * (e.g. from a callback) never sees a buffer or session that is still in use.  A buffer is reset when it is
+ * released, so an idle buffer does not keep the arrays and buffers of its last call reachable, and a buffer
+ * that was abandoned part way through marshalling by an exception is never reused in a dirty state - it is
+ * simply not returned to the pool.
+ */
+final class InvocationBufferPool {
+    /** The maximum number of distinct call contexts a thread keeps a buffer for */
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    /** The maximum number of idle sessions a thread keeps */
+    private static final int MAX_POOLED_SESSIONS = 8;
+
+    private static final ThreadLocal<InvocationBufferPool> pool = new ThreadLocal<InvocationBufferPool>() {
+        @Override
+        protected InvocationBufferPool initialValue() {
+            return new InvocationBufferPool();
+        }
+    };
+
+    private final Map<CallContext, HeapInvocationBuffer> buffers = new IdentityHashMap<CallContext, HeapInvocationBuffer>();
+    private final InvocationSession[] sessions = new InvocationSession[MAX_POOLED_SESSIONS];
+    private int sessionCount;
+
+    private InvocationBufferPool() {
+    }
+
+    static InvocationBufferPool getInstance() {
+        return pool.get();
+    }
+
+    HeapInvocationBuffer acquireBuffer(CallContext callContext) {
+        HeapInvocationBuffer buffer = BufferResetter.ENABLED ? buffers.remove(callContext) : null;
+
+        return buffer != null ? buffer : new HeapInvocationBuffer(callContext);
+    }
+
+    void releaseBuffer(CallContext callContext, HeapInvocationBuffer buffer) {
+        if (BufferResetter.ENABLED && buffers.size() < MAX_POOLED_BUFFERS && !buffers.containsKey(callContext)
+                && BufferResetter.reset(buffer)) {
+            buffers.put(callContext, buffer);
+        }
+    }
+
+    InvocationSession acquireSession() {
+        if (sessionCount > 0) {
+            InvocationSession session = sessions[--sessionCount];
+            sessions[sessionCount] = null;
+            return session;
+        }
+
+        return new InvocationSession();
+    }
+
+    /**
+     * Returns a session to the pool.  The session must already have been finished.
+     */
+    void releaseSession(InvocationSession session) {
+        session.reset();
+        if (sessionCount < sessions.length) {
+            sessions[sessionCount++] = session;
+        }
+    }
+
+    /**
+     * Rewinds a {@link HeapInvocationBuffer} so it can be filled again.
+     *
+     * <p>jffi does not expose a way to reset a buffer, so this is done by resetting its private state.
+     * Buffers are only pooled if the mutable fields of the buffer are exactly the ones known to be reset
+     * here, with the expected types, so a jffi version with a different layout just disables pooling.
+     */
+    private static final class BufferResetter {
+        private static final Field paramOffset;
+        private static final Field paramIndex;
+        private static final Field objectBuffer;
+        static final boolean ENABLED;
+
+        static {
+            Field offset = null, index = null, objects = null;
+            try {
+                if (hasExpectedLayout()) {
+                    offset = accessibleField("paramOffset");
+                    index = accessibleField("paramIndex");
+                    objects = accessibleField("objectBuffer");
+                }
+            } catch (Throwable t) {
+                offset = index = objects = null;
+            }
+
+            paramOffset = offset;
+            paramIndex = index;
+            objectBuffer = objects;
+            ENABLED = objects != null;
+        }
+
+        private static boolean hasExpectedLayout() {
+            int mutableFields = 0;
+            for (Field field : HeapInvocationBuffer.class.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+                    continue;
+                }
+                mutableFields++;
+
+                String name = field.getName();
+                boolean expected = ("paramOffset".equals(name) || "paramIndex".equals(name))
+                        ? field.getType() == int.class
+                        : "objectBuffer".equals(name) && "com.kenai.jffi.ObjectBuffer".equals(field.getType().getName());
+                if (!expected) {
+                    return false;
+                }
+            }
+
+            return mutableFields == 3;
+        }
+
+        private static Field accessibleField(String name) throws NoSuchFieldException {
+            Field field = HeapInvocationBuffer.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        }
+
+        static boolean reset(HeapInvocationBuffer buffer) {
+            try {
+                paramOffset.setInt(buffer, 0);
+                paramIndex.setInt(buffer, 0);
+                objectBuffer.set(buffer, null);
+                return true;
+            } catch (IllegalAccessException ex) {
+                return false;
+            }
+        }
+    }
+}
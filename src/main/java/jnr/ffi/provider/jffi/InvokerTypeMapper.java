@@ -21,7 +21,9 @@ package jnr.ffi.provider.jffi;
 import jnr.ffi.NativeLong;
 import jnr.ffi.Pointer;
 import jnr.ffi.Struct;
+import jnr.ffi.annotations.ByValue;
 import jnr.ffi.annotations.Delegate;
+import jnr.ffi.annotations.SaveErrorOnFailure;
 import jnr.ffi.byref.ByReference;
 import jnr.ffi.mapper.*;
 import jnr.ffi.mapper.FromNativeType;
@@ -29,6 +31,7 @@ import jnr.ffi.mapper.ToNativeType;
 import jnr.ffi.provider.ParameterFlags;
 import jnr.ffi.provider.converters.*;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.EnumSet;
 import java.util.Set;
@@ -37,12 +40,18 @@ final class InvokerTypeMapper extends AbstractSignatureTypeMapper implements Sig
     private final NativeClosureManager closureManager;
     private final AsmClassLoader classLoader;
     private final StructByReferenceResultConverterFactory structResultConverterFactory;
+    private final boolean scratchByReference;
     
 
     public InvokerTypeMapper(NativeClosureManager closureManager, AsmClassLoader classLoader, boolean asmEnabled) {
+        this(closureManager, classLoader, asmEnabled, false);
+    }
+
+    public InvokerTypeMapper(NativeClosureManager closureManager, AsmClassLoader classLoader, boolean asmEnabled, boolean scratchByReference) {
         this.closureManager = closureManager;
         this.classLoader = classLoader;
         this.structResultConverterFactory = new StructByReferenceResultConverterFactory(classLoader, asmEnabled);
+        this.scratchByReference = scratchByReference;
     }
 
     public FromNativeConverter getFromNativeConverter(SignatureType signatureType, FromNativeContext fromNativeContext) {
@@ -51,7 +60,8 @@ final class InvokerTypeMapper extends AbstractSignatureTypeMapper implements Sig
         if (Enum.class.isAssignableFrom(signatureType.getDeclaredType())) {
             return EnumConverter.getInstance(signatureType.getDeclaredType().asSubclass(Enum.class));
 
-        } else if (Struct.class.isAssignableFrom(signatureType.getDeclaredType())) {
+        } else if (Struct.class.isAssignableFrom(signatureType.getDeclaredType())
+                && !InvokerUtil.hasAnnotation(fromNativeContext.getAnnotations(), ByValue.class)) {
             return structResultConverterFactory.get(signatureType.getDeclaredType().asSubclass(Struct.class), fromNativeContext);
 
         } else if (closureManager != null && isDelegate(signatureType.getDeclaredType())) {
@@ -66,12 +76,32 @@ final class InvokerTypeMapper extends AbstractSignatureTypeMapper implements Sig
         } else if ((Set.class == signatureType.getDeclaredType() || EnumSet.class == signatureType.getDeclaredType()) && (converter = EnumSetConverter.getFromNativeConverter(signatureType, fromNativeContext)) != null) {
             return converter;
 
+        } else if ((converter = getErrnoResultConverter(signatureType, fromNativeContext)) != null) {
+            return converter;
+
         } else {
             return null;
         }
 
     }
 
+    private static FromNativeConverter getErrnoResultConverter(SignatureType signatureType, FromNativeContext fromNativeContext) {
+        Class javaType = signatureType.getDeclaredType();
+        if (int.class != javaType && Integer.class != javaType && long.class != javaType && Long.class != javaType) {
+            return null;
+        }
+
+        for (Annotation annotation : fromNativeContext.getAnnotations()) {
+            if (annotation instanceof SaveErrorOnFailure && ((SaveErrorOnFailure) annotation).returnErrno()) {
+                jnr.ffi.Type type = Types.getType(fromNativeContext.getRuntime(), javaType, fromNativeContext.getAnnotations());
+                return ErrnoResultConverter.getInstance(javaType, type.getNativeType(), type.size(),
+                        ((SaveErrorOnFailure) annotation).value());
+            }
+        }
+
+        return null;
+    }
+
     public ToNativeConverter getToNativeConverter(SignatureType signatureType, ToNativeContext context) {
         Class javaType = signatureType.getDeclaredType();
         ToNativeConverter converter;
@@ -86,9 +116,11 @@ final class InvokerTypeMapper extends AbstractSignatureTypeMapper implements Sig
             return closureManager.newClosureSite(javaType);
 
         } else if (ByReference.class.isAssignableFrom(javaType)) {
-            return ByReferenceParameterConverter.getInstance(context);
+            return scratchByReference
+                    ? ByReferenceParameterConverter.getScratchInstance(context)
+                    : ByReferenceParameterConverter.getInstance(context);
 
-        } else if (Struct.class.isAssignableFrom(javaType)) {
+        } else if (Struct.class.isAssignableFrom(javaType) && !InvokerUtil.hasAnnotation(context.getAnnotations(), ByValue.class)) {
             return StructByReferenceToNativeConverter.getInstance(context);
 
         } else if (NativeLong.class.isAssignableFrom(javaType)) {
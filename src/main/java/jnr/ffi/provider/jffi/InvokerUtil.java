@@ -21,6 +21,7 @@ package jnr.ffi.provider.jffi;
 import com.kenai.jffi.CallContext;
 import com.kenai.jffi.CallContextCache;
 import com.kenai.jffi.Type;
+import jnr.ffi.CallStatistics;
 import jnr.ffi.CallingConvention;
 import jnr.ffi.LibraryOption;
 import jnr.ffi.NativeType;
@@ -32,6 +33,7 @@ import jnr.ffi.provider.NativeFunction;
 import jnr.ffi.provider.ParameterType;
 import jnr.ffi.provider.ResultType;
 import jnr.ffi.provider.SigType;
+import jnr.ffi.provider.converters.ByReferenceParameterConverter;
 import jnr.ffi.util.Annotations;
 
 import java.lang.annotation.Annotation;
@@ -64,6 +66,37 @@ final class InvokerUtil {
         return jnr.ffi.CallingConvention.DEFAULT;
     }
 
+    /**
+     * Gets the statistics collector to record calls in.
+     *
+     * @return the collector, or <tt>null</tt> if the library is not instrumented.
+     */
+    static CallStatistics getCallStatistics(Map<LibraryOption, ?> libraryOptions) {
+        if (!libraryOptions.containsKey(LibraryOption.Instrumentation)) {
+            return null;
+        }
+        Object statistics = libraryOptions.get(LibraryOption.Instrumentation);
+        return statistics instanceof CallStatistics ? (CallStatistics) statistics : CallStatistics.getDefault();
+    }
+
+    /**
+     * Checks if calls of a method may carve {@link LibraryOption#ScratchByReference} memory, and so need to be
+     * bracketed by {@link ByReferenceParameterConverter.Scratch#enter()} and {@link ByReferenceParameterConverter.Scratch#exit()}.
+     */
+    static boolean isScratchScoped(Map<LibraryOption, ?> libraryOptions, Method method, ParameterType[] parameterTypes) {
+        if (!libraryOptions.containsKey(LibraryOption.ScratchByReference)) {
+            return false;
+        }
+
+        // The variable arguments of a variadic method are only converted at call time, so may be ByReference too
+        boolean scratch = method.isVarArgs();
+        for (ParameterType parameterType : parameterTypes) {
+            scratch |= parameterType.getToNativeConverter() instanceof ByReferenceParameterConverter.Scratch;
+        }
+
+        return scratch;
+    }
+
     public static jnr.ffi.CallingConvention getCallingConvention(Class interfaceClass, Map<LibraryOption, ?> options) {
         if (interfaceClass.isAnnotationPresent(StdCall.class)) {
             return jnr.ffi.CallingConvention.STDCALL;
@@ -112,6 +145,15 @@ final class InvokerUtil {
         throw new IllegalArgumentException("unsupported parameter type: " + jnrType);
     }
 
+    static Type jffiType(SigType sigType) {
+        if (sigType.getNativeType() == NativeType.STRUCT) {
+            return StructByValueType.getInstance(NativeRuntime.getInstance(),
+                    sigType.effectiveJavaType().asSubclass(jnr.ffi.Struct.class)).jffiType();
+        }
+
+        return jffiType(sigType.getNativeType());
+    }
+
     static NativeType nativeType(jnr.ffi.Type jnrType) {
         return jnrType.getNativeType();
     }
@@ -192,10 +234,10 @@ final class InvokerUtil {
         com.kenai.jffi.Type[] nativeParamTypes = new com.kenai.jffi.Type[paramTypesLength];
 
         for (int i = 0; i < nativeParamTypes.length; ++i) {
-            nativeParamTypes[i] = jffiType(parameterTypes[i].getNativeType());
+            nativeParamTypes[i] = jffiType(parameterTypes[i]);
         }
 
-        return CallContextCache.getInstance().getCallContext(jffiType(resultType.getNativeType()),
+        return CallContextCache.getInstance().getCallContext(jffiType(resultType),
                 nativeParamTypes, jffiConvention(convention), requiresErrno);
     }
 
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.LibraryOption;
+
+import java.lang.reflect.Method;
+
+/**
+ * Completes the binding of a single library method on its first invocation.
+ *
+ * @see LibraryOption#LazyBinding
+ */
+public final class LazyMethodBinder {
+    private final AsmLibraryLoader loader;
+    private final AsmLibraryLoader.LibraryContext context;
+    private final Method method;
+    private volatile Object target;
+
+    LazyMethodBinder(AsmLibraryLoader loader, AsmLibraryLoader.LibraryContext context, Method method) {
+        this.loader = loader;
+        this.context = context;
+        this.method = method;
+    }
+
+    /**
+     * Gets an implementation of the library interface which implements this binder's method.
+     *
+     * @return an instance of the library interface.
+     */
+    public Object bind() {
+        Object t = target;
+        if (t == null) {
+            synchronized (this) {
+                if ((t = target) == null) {
+                    target = t = loader.bindMethod(context, method);
+                }
+            }
+        }
+
+        return t;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.provider.Arena;
+
+import java.util.Arrays;
+
+/**
+ * An {@link Arena} that bump-allocates out of per-thread native slabs.
+ *
+ * <p>Each thread has a single {@link Allocator}, and every arena records the allocator position
+ * when it is opened, so closing it just rewinds the allocator back to that mark.
+ */
+final class NativeArena implements Arena {
+    static final int SLAB_SIZE = 64 * 1024;
+    /** Allocations larger than this get a block of their own instead of wasting the rest of a slab */
+    static final int MAX_SLAB_ALLOCATION = SLAB_SIZE / 4;
+
+    private static final com.kenai.jffi.MemoryIO IO = com.kenai.jffi.MemoryIO.getInstance();
+    private static final ThreadLocal<Allocator> allocators = new ThreadLocal<Allocator>() {
+        @Override
+        protected Allocator initialValue() {
+            return new Allocator();
+        }
+    };
+
+    private final jnr.ffi.Runtime runtime;
+    private final Allocator allocator;
+    private final Thread owner;
+    private final NativeArena parent;
+    private final int markSlab;
+    private final long markCursor;
+    private final int markBlockCount;
+    private boolean closed;
+
+    private NativeArena(jnr.ffi.Runtime runtime, Allocator allocator, NativeArena parent) {
+        this.runtime = runtime;
+        this.allocator = allocator;
+        this.owner = Thread.currentThread();
+        this.parent = parent;
+        this.markSlab = allocator.currentSlab;
+        this.markCursor = allocator.cursor;
+        this.markBlockCount = allocator.blockCount;
+    }
+
+    static Arena open(jnr.ffi.Runtime runtime) {
+        Allocator allocator = allocators.get();
+        return allocator.top = new NativeArena(runtime, allocator, allocator.top);
+    }
+
+    public Pointer allocate(int size) {
+        return allocate(size, false);
+    }
+
+    public Pointer allocate(int size, boolean clear) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size: " + size);
+        }
+
+        checkOwner();
+        if (closed) {
+            throw new IllegalStateException("arena is closed");
+        }
+
+        // Memory handed out by an enclosing arena would be reclaimed when the nested arena closes
+        if (allocator.top != this) {
+            throw new IllegalStateException("arena is not the innermost open arena on this thread");
+        }
+
+        long address = allocator.allocate(size, 8);
+        if (clear) {
+            IO.setMemory(address, size, (byte) 0);
+        }
+
+        return MemoryUtil.newPointer(runtime, address, size);
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+
+        checkOwner();
+        for (NativeArena arena = allocator.top; arena != this; arena = arena.parent) {
+            arena.closed = true;
+        }
+        closed = true;
+        allocator.top = parent;
+        allocator.rewind(markSlab, markCursor, markBlockCount);
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("arena used from a thread other than the one that opened it");
+        }
+    }
+
+    private static long align(long offset, long align) {
+        return (offset + align - 1L) & ~(align - 1L);
+    }
+
+    private static long allocateMemory(int size) {
+        long address = IO.allocateMemory(size, false);
+        if (address == 0L) {
+            throw new OutOfMemoryError("Failed to allocate " + size + " bytes");
+        }
+
+        return address;
+    }
+
+    /**
+     * The per-thread slab allocator shared by all arenas opened on a thread.
+     */
+    private static final class Allocator {
+        private NativeArena top;
+        private NativeMemoryCleaner.Cleanup[] slabs = new NativeMemoryCleaner.Cleanup[4];
+        private int slabCount;
+        private int currentSlab = -1;
+        private long cursor, limit;
+        private long[] blocks = new long[4];
+        private int blockCount;
+
+        long allocate(int size, int align) {
+            if (size > MAX_SLAB_ALLOCATION) {
+                if (blockCount == blocks.length) {
+                    blocks = Arrays.copyOf(blocks, blockCount * 2);
+                }
+
+                return blocks[blockCount++] = allocateMemory(size);
+            }
+
+            long address = align(cursor, align);
+            if (currentSlab < 0 || address + size > limit) {
+                nextSlab();
+                address = cursor;
+            }
+            cursor = address + size;
+
+            return address;
+        }
+
+        private void nextSlab() {
+            // Slabs left over from earlier nested arenas are reused before allocating new ones
+            if (++currentSlab == slabCount) {
+                if (slabCount == slabs.length) {
+                    slabs = Arrays.copyOf(slabs, slabCount * 2);
+                }
+                // Slabs are owned by the allocator, so the one kept between arenas is freed once its thread has died
+                slabs[slabCount++] = NativeMemoryCleaner.register(this, allocateMemory(SLAB_SIZE), SLAB_SIZE);
+            }
+            cursor = slabs[currentSlab].address;
+            limit = cursor + SLAB_SIZE;
+        }
+
+        void rewind(int slab, long position, int blockMark) {
+            for (int i = blockCount - 1; i >= blockMark; --i) {
+                IO.freeMemory(blocks[i]);
+            }
+            blockCount = blockMark;
+            currentSlab = slab;
+            cursor = position;
+            limit = slab >= 0 ? slabs[slab].address + SLAB_SIZE : 0L;
+
+            if (top == null) {
+                // No arenas are open on this thread any more; keep one slab around for the next one
+                for (int i = 1; i < slabCount; ++i) {
+                    slabs[i].clean();
+                    slabs[i] = null;
+                }
+                slabCount = Math.min(slabCount, 1);
+            }
+        }
+    }
+}
@@ -45,11 +45,16 @@ import static jnr.ffi.provider.jffi.InvokerUtil.getNativeCallingConvention;
  */
 public final class NativeClosureFactory<T> {
     private final jnr.ffi.Runtime runtime;
-    private final ConcurrentMap<Integer, ClosureReference> closures = new ConcurrentHashMap<Integer, ClosureReference>();
+    /**
+     * Closures keyed by the identity hash code of their callable.  The arrays are never modified once
+     * published, so lookups need no locking and updates are compare-and-swap retries.
+     */
+    private final ConcurrentMap<Integer, ClosureReference[]> closures = new ConcurrentHashMap<Integer, ClosureReference[]>();
     private final CallContext callContext;
     private final NativeClosureProxy.Factory closureProxyFactory;
     private final ConcurrentLinkedQueue<NativeClosurePointer> freeQueue = new ConcurrentLinkedQueue<NativeClosurePointer>();
-    private ClosureMagazine currentMagazine;
+    /** Each thread allocates new closures from its own magazine, so allocation is uncontended */
+    private final ThreadLocal<ClosureMagazine> currentMagazine = new ThreadLocal<ClosureMagazine>();
 
 
     protected NativeClosureFactory(jnr.ffi.Runtime runtime, CallContext callContext,
@@ -86,39 +91,49 @@ public final class NativeClosureFactory<T> {
     }
 
     private void expunge(ClosureReference ref, Integer key) {
-        // Fast case - no chained elements; can just remove from the hash map
-        if (ref.next == null && closures.remove(key, ref)) {
-            return;
-        }
+        ClosureReference[] refs;
+        do {
+            refs = closures.get(key);
+            if (refs == null) {
+                return;
+            }
 
-        // Remove from chained list
-        synchronized (closures) {
-            for (ClosureReference clref = closures.get(key), prev = clref; clref != null; prev = clref, clref = clref.next) {
-                if (clref == ref) {
-                    if (prev != clref) {
-                        // if not first element in list, just remove this one
-                        prev.next = clref.next;
-
-                    } else {
-                        // first element in list, replace with the next if non-null, else remove from map
-                        if (clref.next != null) {
-                            closures.replace(key, clref, clref.next);
-                        } else {
-                            closures.remove(key, clref);
-                        }
-                    }
-                    break;
+            int idx = indexOf(refs, ref);
+            if (idx < 0) {
+                return;
+            }
+
+            if (refs.length == 1) {
+                if (closures.remove(key, refs)) {
+                    return;
                 }
+                continue;
+            }
+
+            ClosureReference[] newRefs = new ClosureReference[refs.length - 1];
+            System.arraycopy(refs, 0, newRefs, 0, idx);
+            System.arraycopy(refs, idx + 1, newRefs, idx, newRefs.length - idx);
+            if (closures.replace(key, refs, newRefs)) {
+                return;
+            }
+        } while (true);
+    }
+
+    private static int indexOf(ClosureReference[] refs, ClosureReference ref) {
+        for (int i = 0; i < refs.length; ++i) {
+            if (refs[i] == ref) {
+                return i;
             }
         }
+
+        return -1;
     }
 
     private void recycle(NativeClosurePointer ptr) {
         freeQueue.add(ptr);
     }
 
-    final class ClosureReference extends FinalizableWeakReference<Object> {
-        volatile ClosureReference next;
+    static final class ClosureReference extends FinalizableWeakReference<Object> {
         private final NativeClosureFactory factory;
         private final NativeClosurePointer pointer;
         private final Integer key;
@@ -155,15 +170,15 @@ public final class NativeClosureFactory<T> {
 
         NativeClosureProxy proxy = closureProxyFactory.newClosureProxy();
         Closure.Handle closureHandle = null;
+        ClosureMagazine magazine = currentMagazine.get();
 
-        synchronized (this) {
-            do {
-                if (currentMagazine == null || ((closureHandle = currentMagazine.allocate(proxy)) == null)) {
-                    currentMagazine = ClosureManager.getInstance().newClosureMagazine(callContext,
-                            closureProxyFactory.getInvokeMethod());
-                }
-            } while (closureHandle == null);
-        }
+        do {
+            if (magazine == null || ((closureHandle = magazine.allocate(proxy)) == null)) {
+                magazine = ClosureManager.getInstance().newClosureMagazine(callContext,
+                        closureProxyFactory.getInvokeMethod());
+                currentMagazine.set(magazine);
+            }
+        } while (closureHandle == null);
 
         return new NativeClosurePointer(runtime, closureHandle, proxy);
     }
@@ -177,40 +192,40 @@ public final class NativeClosureFactory<T> {
         NativeClosurePointer ptr = allocateClosurePointer();
         ClosureReference ref = new ClosureReference(callable, key, this, ptr);
         ptr.proxy.closureReference = ref;
-        if (closures.putIfAbsent(key, ref) == null) {
+        if (closures.putIfAbsent(key, new ClosureReference[] { ref }) == null) {
             return ref;
         }
 
-        synchronized (closures) {
-            do {
-                // prepend and make new pointer the list head
-                ref.next = closures.get(key);
-
-                // If old value already removed (e.g. by expunge), just put the new value in
-                if (ref.next == null && closures.putIfAbsent(key, ref) == null) {
+        // Identity hash code clash - add the new reference to the head of the existing ones
+        ClosureReference[] refs;
+        do {
+            refs = closures.get(key);
+            if (refs == null) {
+                // Old value already removed (e.g. by expunge), just put the new value in
+                if (closures.putIfAbsent(key, new ClosureReference[] { ref }) == null) {
                     break;
                 }
-            } while (!closures.replace(key, ref.next, ref));
-        }
+                continue;
+            }
+
+            ClosureReference[] newRefs = new ClosureReference[refs.length + 1];
+            newRefs[0] = ref;
+            System.arraycopy(refs, 0, newRefs, 1, refs.length);
+            if (closures.replace(key, refs, newRefs)) {
+                break;
+            }
+        } while (true);
 
         return ref;
     }
 
     ClosureReference getClosureReference(Object callable) {
         Integer key = System.identityHashCode(callable);
-        ClosureReference ref = closures.get(key);
-        if (ref != null) {
-            // Simple case - no identity hash code clash - just return the ptr
-            if (ref.getCallable() == callable) {
-                return ref;
-            }
-
-            // There has been a key clash, search the list
-            synchronized (closures) {
-                while ((ref = ref.next) != null) {
-                    if (ref.getCallable() == callable) {
-                        return ref;
-                    }
+        ClosureReference[] refs = closures.get(key);
+        if (refs != null) {
+            for (ClosureReference ref : refs) {
+                if (ref.getCallable() == callable) {
+                    return ref;
                 }
             }
         }
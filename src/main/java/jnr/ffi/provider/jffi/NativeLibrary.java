@@ -63,7 +63,33 @@ public class NativeLibrary {
         return address;
     }
 
-    private synchronized List<com.kenai.jffi.Library> getNativeLibraries() {
+    /**
+     * Looks up a batch of symbols.
+     *
+     * @param names the symbol names.
+     * @param addresses receives the address of each symbol, or zero if the symbol was not found.
+     * @param errors receives the error message for each symbol which was not found.
+     */
+    void findSymbolAddresses(String[] names, long[] addresses, String[] errors) {
+        List<com.kenai.jffi.Library> libraries = getNativeLibraries();
+        for (int i = 0; i < names.length; i++) {
+            long address = 0;
+            for (com.kenai.jffi.Library l : libraries) {
+                if ((address = l.getSymbolAddress(names[i])) != 0) {
+                    break;
+                }
+            }
+            addresses[i] = address;
+            errors[i] = address == 0 ? com.kenai.jffi.Library.getLastError() : null;
+        }
+    }
+
+    private List<com.kenai.jffi.Library> getNativeLibraries() {
+        List<com.kenai.jffi.Library> libraries = this.nativeLibraries;
+        return !libraries.isEmpty() ? libraries : getOrLoadNativeLibraries();
+    }
+
+    private synchronized List<com.kenai.jffi.Library> getOrLoadNativeLibraries() {
         if (!this.nativeLibraries.isEmpty()) {
             return nativeLibraries;
         }
@@ -40,6 +40,11 @@ class NativeLibraryLoader<T>  extends jnr.ffi.LibraryLoader<T> {
         NativeLibrary nativeLibrary = new NativeLibrary(libraryNames, searchPaths);
 
         try {
+            T pregenerated = new PregeneratedLibraryLoader().loadLibrary(nativeLibrary, interfaceClass, options);
+            if (pregenerated != null) {
+                return pregenerated;
+            }
+
             return ASM_ENABLED
                 ? new AsmLibraryLoader().loadLibrary(nativeLibrary, interfaceClass, options)
                 : new ReflectionLibraryLoader().loadLibrary(nativeLibrary, interfaceClass, options);
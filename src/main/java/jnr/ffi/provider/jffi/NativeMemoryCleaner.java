@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.PageManager;
+import jnr.ffi.util.ref.FinalizablePhantomReference;
+import jnr.ffi.util.ref.FinalizableReferenceQueue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Frees native memory once the java object that owns it has been garbage collected, without
+ * relying on {@code finalize()}.
+ *
+ * <p>Cleanups are phantom references on a queue of their own, so the memory is released by that
+ * queue's background thread. Threads that register new memory also free a small, bounded number of
+ * already collected blocks, so cleanup keeps pace with heavy allocation. Only cleanups are ever on
+ * the queue, so a registering thread never runs unrelated finalization code.
+ */
+public final class NativeMemoryCleaner {
+    /** The most collected blocks a registering thread frees before continuing */
+    private static final int DRAIN_LIMIT = 8;
+
+    /** Keeps strong references to the cleanups until they have run */
+    @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
+    private static final Map<Cleanup, Boolean> referenceSet = new ConcurrentHashMap<Cleanup, Boolean>();
+    private static final AtomicLong pendingBytes = new AtomicLong();
+    private static final AtomicLong freedBytes = new AtomicLong();
+
+    private NativeMemoryCleaner() {}
+
+    /**
+     * Gets the number of bytes of native memory currently owned by java objects, including memory
+     * whose owner has been collected but not yet freed.
+     *
+     * @return the number of bytes waiting to be freed.
+     */
+    public static long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * Gets the total number of bytes freed so far, either explicitly or after the owner was collected.
+     *
+     * @return the number of bytes freed.
+     */
+    public static long getFreedBytes() {
+        return freedBytes.get();
+    }
+
+    /**
+     * Registers memory allocated with {@link com.kenai.jffi.MemoryIO#allocateMemory} to be freed when
+     * {@code owner} is collected.
+     */
+    static Cleanup register(Object owner, long address, long size) {
+        return register(new MemoryCleanup(owner, address, size));
+    }
+
+    /**
+     * Registers pages allocated with {@link PageManager#allocatePages} to be freed when {@code owner} is collected.
+     */
+    static Cleanup register(Object owner, PageManager pm, long address, int pageCount) {
+        return register(new PageCleanup(owner, pm, address, pageCount));
+    }
+
+    private static Cleanup register(Cleanup cleanup) {
+        queue().drain(DRAIN_LIMIT);
+        referenceSet.put(cleanup, Boolean.TRUE);
+        pendingBytes.addAndGet(cleanup.size);
+        return cleanup;
+    }
+
+    private static FinalizableReferenceQueue queue() {
+        return QueueHolder.QUEUE;
+    }
+
+    private static final class QueueHolder {
+        static final FinalizableReferenceQueue QUEUE = new FinalizableReferenceQueue();
+    }
+
+    private static final AtomicIntegerFieldUpdater<Cleanup> FREED_UPDATER
+            = AtomicIntegerFieldUpdater.newUpdater(Cleanup.class, "freed");
+
+    static abstract class Cleanup extends FinalizablePhantomReference<Object> {
+        final long address;
+        final long size;
+        volatile int freed;
+
+        Cleanup(Object owner, long address, long size) {
+            super(owner, queue());
+            this.address = address;
+            this.size = size;
+        }
+
+        abstract void free();
+
+        /**
+         * Frees the memory now, if it has not already been freed.
+         */
+        final void clean() {
+            if (FREED_UPDATER.getAndSet(this, 1) == 0) {
+                referenceSet.remove(this);
+                try {
+                    free();
+                } finally {
+                    pendingBytes.addAndGet(-size);
+                    freedBytes.addAndGet(size);
+                }
+            }
+        }
+
+        public final void finalizeReferent() {
+            clean();
+        }
+    }
+
+    private static final class MemoryCleanup extends Cleanup {
+        MemoryCleanup(Object owner, long address, long size) {
+            super(owner, address, size);
+        }
+
+        void free() {
+            DirectMemoryIO.IO.freeMemory(address);
+        }
+    }
+
+    private static final class PageCleanup extends Cleanup {
+        private final PageManager pm;
+        private final int pageCount;
+
+        PageCleanup(Object owner, PageManager pm, long address, int pageCount) {
+            super(owner, address, pageCount * pm.pageSize());
+            this.pm = pm;
+            this.pageCount = pageCount;
+        }
+
+        void free() {
+            try {
+                pm.freePages(address, pageCount);
+            } catch (Throwable t) {
+                Logger.getLogger(getClass().getName()).log(Level.WARNING,
+                    "Exception when freeing native pages: {0}", t.getLocalizedMessage());
+            }
+        }
+    }
+}
@@ -19,12 +19,13 @@
 package jnr.ffi.provider.jffi;
 
 import jnr.ffi.Pointer;
+import jnr.ffi.provider.Arena;
 import jnr.ffi.provider.BoundedMemoryIO;
 import jnr.ffi.provider.IntPointer;
 
 import java.nio.ByteBuffer;
 
-public class NativeMemoryManager implements jnr.ffi.provider.MemoryManager {
+public class NativeMemoryManager implements jnr.ffi.provider.ArenaMemoryManager {
     private final jnr.ffi.Runtime runtime;
     private final long addressMask;
 
@@ -69,4 +70,8 @@ public class NativeMemoryManager implements jnr.ffi.provider.MemoryManager {
         return new IntPointer(runtime, address);
     }
 
+    public Arena openArena() {
+        return NativeArena.open(runtime);
+    }
+
 }
@@ -25,6 +25,7 @@ import jnr.ffi.mapper.SignatureTypeMapperAdapter;
 import jnr.ffi.provider.AbstractRuntime;
 import jnr.ffi.provider.BadType;
 import jnr.ffi.provider.DefaultObjectReferenceManager;
+import jnr.ffi.provider.HandleTableObjectReferenceManager;
 
 import java.lang.reflect.Field;
 import java.nio.ByteOrder;
@@ -39,6 +40,11 @@ import java.util.logging.Logger;
  *
  */
 public final class NativeRuntime extends AbstractRuntime {
+    /** Use the handle table based ObjectReferenceManager rather than the identity hash based one */
+    private static final boolean HANDLE_REFERENCES = Util.getBooleanProperty("jnr.ffi.handle-references.enabled", false);
+    /** Give each thread its own cache of free handle table slots */
+    private static final boolean HANDLE_REFERENCE_SLABS = Util.getBooleanProperty("jnr.ffi.handle-references.thread-slabs", false);
+
     private final NativeMemoryManager mm = new NativeMemoryManager(this);
     private final NativeClosureManager closureManager = new NativeClosureManager(this,
             new SignatureTypeMapperAdapter(new DefaultTypeMapper()),
@@ -133,7 +139,9 @@ public final class NativeRuntime extends AbstractRuntime {
 
     @Override
     public ObjectReferenceManager newObjectReferenceManager() {
-        return new DefaultObjectReferenceManager(this);
+        return HANDLE_REFERENCES
+                ? new HandleTableObjectReferenceManager(this, HANDLE_REFERENCE_SLABS)
+                : new DefaultObjectReferenceManager(this);
     }
 
     @Override
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.MemoryIO;
+
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * Reads NUL terminated strings from native memory.
+ * <p>
+ * The terminator is searched for a word at a time, and the bytes are copied into a per-thread scratch
+ * array before being decoded, so for US-ASCII and ISO-8859-1 text the returned String is the only
+ * allocation.
+ */
+final class NativeStrings {
+    private NativeStrings() {}
+
+    private static final MemoryIO IO = MemoryIO.getInstance();
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+
+    /** Strings longer than this are copied into a new array rather than the scratch array */
+    static final int SCRATCH_SIZE = 1024;
+
+    private static final ThreadLocal<byte[]> localScratch = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[SCRATCH_SIZE];
+        }
+    };
+
+    /**
+     * Finds the length of a NUL terminated string.
+     *
+     * @param address the address of the string.
+     * @param maxLength the maximum length to search.
+     * @return the number of bytes before the terminator, or {@code maxLength} if there is no terminator
+     * within {@code maxLength} bytes.
+     */
+    static int length(long address, int maxLength) {
+        // Only whole aligned words are read, so the search never touches a page the string does not reach
+        long word = address & ~7L;
+        long value = IO.getLong(word);
+        int skip = (int) (address - word);
+        if (skip != 0) {
+            // make the bytes before the start of the string non-zero
+            value |= LITTLE_ENDIAN ? (1L << (skip * 8)) - 1 : -1L << (64 - skip * 8);
+        }
+
+        for (;;) {
+            // sets the top bit of exactly those bytes which are zero
+            long zeros = ~(((value & LOW_BITS) + LOW_BITS) | value | LOW_BITS);
+            if (zeros != 0) {
+                int index = (LITTLE_ENDIAN ? Long.numberOfTrailingZeros(zeros) : Long.numberOfLeadingZeros(zeros)) >>> 3;
+                return (int) Math.min(word + index - address, maxLength);
+            }
+
+            word += 8;
+            if (word - address >= maxLength) {
+                return maxLength;
+            }
+            value = IO.getLong(word);
+        }
+    }
+
+    static String getString(long address, int maxLength, Charset charset) {
+        final int length = length(address, maxLength);
+        final byte[] bytes = length <= SCRATCH_SIZE ? localScratch.get() : new byte[length];
+        IO.getByteArray(address, bytes, 0, length);
+
+        return decode(bytes, length, charset);
+    }
+
+    @SuppressWarnings("deprecation")
+    static String decode(byte[] bytes, int length, Charset charset) {
+        String name = charset.name();
+        if ("ISO-8859-1".equals(name) || (("US-ASCII".equals(name) || "UTF-8".equals(name)) && isAscii(bytes, length))) {
+            // each byte is one char, so the String can be built straight from the bytes
+            return new String(bytes, 0, 0, length);
+        }
+
+        return new String(bytes, 0, length, charset);
+    }
+
+    private static boolean isAscii(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
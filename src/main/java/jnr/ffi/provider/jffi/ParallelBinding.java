@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.LibraryOption;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Supplies the executor used to analyze library functions in parallel.
+ *
+ * @see LibraryOption#ParallelBinding
+ */
+final class ParallelBinding {
+    private ParallelBinding() {}
+
+    /**
+     * Gets the executor to use for a library.
+     *
+     * @param libraryOptions the library options.
+     * @return an executor, or <tt>null</tt> if the analysis should run on the calling thread.
+     */
+    static Executor getExecutor(Map<LibraryOption, ?> libraryOptions) {
+        if (!libraryOptions.containsKey(LibraryOption.ParallelBinding)) {
+            return null;
+        }
+
+        Object executor = libraryOptions.get(LibraryOption.ParallelBinding);
+        if (executor instanceof Executor) {
+            return (Executor) executor;
+        }
+
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    private static final class DefaultExecutorHolder {
+        private static final int THREADS = Runtime.getRuntime().availableProcessors();
+        static final ExecutorService EXECUTOR = THREADS > 1 ? Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            private final AtomicInteger nextId = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "jnr-ffi-binding-" + nextId.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        }) : null;
+    }
+}
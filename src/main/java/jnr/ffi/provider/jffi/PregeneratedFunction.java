@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.CallContext;
+import com.kenai.jffi.Function;
+import com.kenai.jffi.HeapInvocationBuffer;
+import jnr.ffi.NativeType;
+import jnr.ffi.provider.ParameterType;
+import jnr.ffi.provider.ResultType;
+
+/**
+ * A native function called from a pregenerated library implementation.
+ * <p>
+ * All parameters and the result are passed as raw 64 bit values: integer types are sign extended,
+ * and floating point values are passed as their raw bits, as by {@link Float#floatToRawIntBits(float)}
+ * and {@link Double#doubleToRawLongBits(double)}.  Integer results are narrowed and sign or zero
+ * extended according to their native type.
+ *
+ * @see PregeneratedLibrary
+ */
+public final class PregeneratedFunction {
+    private static final com.kenai.jffi.Invoker invoker = com.kenai.jffi.Invoker.getInstance();
+    private static final boolean LONG32 = NativeRuntime.getInstance().longSize() == 4;
+
+    private final Function function;
+    private final CallContext callContext;
+    private final long functionAddress;
+    private final NativeType resultType;
+    private final NativeType[] parameterTypes;
+    private final boolean fastNumeric;
+    private final String error;
+
+    PregeneratedFunction(Function function, ResultType resultType, ParameterType[] parameterTypes, boolean fastNumeric) {
+        this.error = null;
+        this.function = function;
+        this.callContext = function.getCallContext();
+        this.functionAddress = function.getFunctionAddress();
+        this.resultType = resultType.getNativeType();
+        this.parameterTypes = new NativeType[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            this.parameterTypes[i] = parameterTypes[i].getNativeType();
+        }
+        this.fastNumeric = fastNumeric;
+    }
+
+    /**
+     * Creates a function for a native symbol which could not be found.
+     */
+    PregeneratedFunction(String error) {
+        this.error = error;
+        this.function = null;
+        this.callContext = null;
+        this.functionAddress = 0L;
+        this.resultType = NativeType.VOID;
+        this.parameterTypes = new NativeType[0];
+        this.fastNumeric = false;
+    }
+
+    public long invoke() {
+        return fastNumeric
+                ? result(invoker.invokeN0(callContext, functionAddress))
+                : invokeBuffer(newBuffer());
+    }
+
+    public long invoke(long n1) {
+        if (fastNumeric) {
+            return result(invoker.invokeN1(callContext, functionAddress, n1));
+        }
+        HeapInvocationBuffer buffer = newBuffer();
+        put(buffer, 0, n1);
+        return invokeBuffer(buffer);
+    }
+
+    public long invoke(long n1, long n2) {
+        if (fastNumeric) {
+            return result(invoker.invokeN2(callContext, functionAddress, n1, n2));
+        }
+        HeapInvocationBuffer buffer = newBuffer();
+        put(buffer, 0, n1);
+        put(buffer, 1, n2);
+        return invokeBuffer(buffer);
+    }
+
+    public long invoke(long n1, long n2, long n3) {
+        if (fastNumeric) {
+            return result(invoker.invokeN3(callContext, functionAddress, n1, n2, n3));
+        }
+        HeapInvocationBuffer buffer = newBuffer();
+        put(buffer, 0, n1);
+        put(buffer, 1, n2);
+        put(buffer, 2, n3);
+        return invokeBuffer(buffer);
+    }
+
+    public long invoke(long n1, long n2, long n3, long n4) {
+        if (fastNumeric) {
+            return result(invoker.invokeN4(callContext, functionAddress, n1, n2, n3, n4));
+        }
+        HeapInvocationBuffer buffer = newBuffer();
+        put(buffer, 0, n1);
+        put(buffer, 1, n2);
+        put(buffer, 2, n3);
+        put(buffer, 3, n4);
+        return invokeBuffer(buffer);
+    }
+
+    public long invoke(long n1, long n2, long n3, long n4, long n5) {
+        if (fastNumeric) {
+            return result(invoker.invokeN5(callContext, functionAddress, n1, n2, n3, n4, n5));
+        }
+        HeapInvocationBuffer buffer = newBuffer();
+        put(buffer, 0, n1);
+        put(buffer, 1, n2);
+        put(buffer, 2, n3);
+        put(buffer, 3, n4);
+        put(buffer, 4, n5);
+        return invokeBuffer(buffer);
+    }
+
+    public long invoke(long n1, long n2, long n3, long n4, long n5, long n6) {
+        if (fastNumeric) {
+            return result(invoker.invokeN6(callContext, functionAddress, n1, n2, n3, n4, n5, n6));
+        }
+        HeapInvocationBuffer buffer = newBuffer();
+        put(buffer, 0, n1);
+        put(buffer, 1, n2);
+        put(buffer, 2, n3);
+        put(buffer, 3, n4);
+        put(buffer, 4, n5);
+        put(buffer, 5, n6);
+        return invokeBuffer(buffer);
+    }
+
+    private HeapInvocationBuffer newBuffer() {
+        if (function == null) {
+            throw new UnsatisfiedLinkError(error);
+        }
+
+        return new HeapInvocationBuffer(callContext);
+    }
+
+    private void put(HeapInvocationBuffer buffer, int index, long n) {
+        switch (parameterTypes[index]) {
+            case SCHAR:
+            case UCHAR:
+                buffer.putByte((int) n);
+                break;
+
+            case SSHORT:
+            case USHORT:
+                buffer.putShort((int) n);
+                break;
+
+            case SINT:
+            case UINT:
+                buffer.putInt((int) n);
+                break;
+
+            case SLONG:
+            case ULONG:
+                if (LONG32) {
+                    buffer.putInt((int) n);
+                } else {
+                    buffer.putLong(n);
+                }
+                break;
+
+            case SLONGLONG:
+            case ULONGLONG:
+                buffer.putLong(n);
+                break;
+
+            case FLOAT:
+                buffer.putFloat(Float.intBitsToFloat((int) n));
+                break;
+
+            case DOUBLE:
+                buffer.putDouble(Double.longBitsToDouble(n));
+                break;
+
+            case ADDRESS:
+                buffer.putAddress(n);
+                break;
+
+            default:
+                throw new UnsupportedOperationException("unsupported parameter type: " + parameterTypes[index]);
+        }
+    }
+
+    private long invokeBuffer(HeapInvocationBuffer buffer) {
+        switch (resultType) {
+            case FLOAT:
+                return Float.floatToRawIntBits(invoker.invokeFloat(function, buffer));
+
+            case DOUBLE:
+                return Double.doubleToRawLongBits(invoker.invokeDouble(function, buffer));
+
+            case SLONGLONG:
+            case ULONGLONG:
+                return invoker.invokeLong(function, buffer);
+
+            case SLONG:
+            case ULONG:
+                return result(LONG32 ? invoker.invokeInt(function, buffer) : invoker.invokeLong(function, buffer));
+
+            case ADDRESS:
+                return result(invoker.invokeAddress(function, buffer));
+
+            default:
+                return result(invoker.invokeInt(function, buffer));
+        }
+    }
+
+    private long result(long n) {
+        switch (resultType) {
+            case SCHAR:
+                return (byte) n;
+
+            case UCHAR:
+                return n & 0xffL;
+
+            case SSHORT:
+                return (short) n;
+
+            case USHORT:
+                return n & 0xffffL;
+
+            case SINT:
+            case VOID:
+                return (int) n;
+
+            case UINT:
+                return n & 0xffffffffL;
+
+            case SLONG:
+                return LONG32 ? (int) n : n;
+
+            case ULONG:
+                return LONG32 ? n & 0xffffffffL : n;
+
+            case ADDRESS:
+                return NativeRuntime.getInstance().addressSize() == 4 ? n & 0xffffffffL : n;
+
+            default:
+                return n;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.Function;
+import jnr.ffi.CallingConvention;
+import jnr.ffi.LibraryOption;
+import jnr.ffi.mapper.CompositeTypeMapper;
+import jnr.ffi.mapper.DefaultSignatureType;
+import jnr.ffi.mapper.FromNativeContext;
+import jnr.ffi.mapper.FunctionMapper;
+import jnr.ffi.mapper.MethodResultContext;
+import jnr.ffi.mapper.SignatureType;
+import jnr.ffi.mapper.SignatureTypeMapper;
+import jnr.ffi.mapper.SignatureTypeMapperAdapter;
+import jnr.ffi.mapper.TypeMapper;
+import jnr.ffi.provider.IdentityFunctionMapper;
+import jnr.ffi.provider.NativeFunction;
+import jnr.ffi.provider.NullTypeMapper;
+import jnr.ffi.provider.ParameterType;
+import jnr.ffi.provider.ResultType;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import static jnr.ffi.provider.jffi.InvokerUtil.getCallContext;
+import static jnr.ffi.provider.jffi.InvokerUtil.getCallingConvention;
+import static jnr.ffi.provider.jffi.InvokerUtil.getParameterTypes;
+import static jnr.ffi.provider.jffi.InvokerUtil.getResultType;
+
+/**
+ * Base class of library implementations generated at build time by
+ * {@link jnr.ffi.processor.PregeneratedBindingProcessor}.
+ * <p>
+ * A pregenerated implementation of <tt>Foo</tt> is named <tt>Foo$jnr$ffi$Pregenerated</tt>, and has a
+ * constructor taking a {@link Binder}, which it uses to look up each of its functions.
+ */
+public abstract class PregeneratedLibrary extends AbstractAsmLibraryInterface {
+
+    protected PregeneratedLibrary(Binder binder) {
+        super(binder.runtime, binder.library);
+    }
+
+    /**
+     * Resolves the functions of a pregenerated library implementation.
+     */
+    public static final class Binder {
+        private final NativeRuntime runtime;
+        private final NativeLibrary library;
+        private final Class interfaceClass;
+        private final Map<LibraryOption, ?> libraryOptions;
+        private final SignatureTypeMapper typeMapper;
+        private final FunctionMapper functionMapper;
+        private final CallingConvention libraryCallingConvention;
+        private final FastNumericMethodGenerator fastNumeric = new FastNumericMethodGenerator();
+
+        Binder(NativeRuntime runtime, NativeLibrary library, Class interfaceClass, Map<LibraryOption, ?> libraryOptions) {
+            this.runtime = runtime;
+            this.library = library;
+            this.interfaceClass = interfaceClass;
+            this.libraryOptions = libraryOptions;
+            this.typeMapper = new CompositeTypeMapper(getTypeMapper(libraryOptions), new AnnotationTypeMapper());
+            this.functionMapper = libraryOptions.containsKey(LibraryOption.FunctionMapper)
+                    ? (FunctionMapper) libraryOptions.get(LibraryOption.FunctionMapper) : IdentityFunctionMapper.getInstance();
+            this.libraryCallingConvention = getCallingConvention(interfaceClass, libraryOptions);
+        }
+
+        private static SignatureTypeMapper getTypeMapper(Map<LibraryOption, ?> libraryOptions) {
+            Object tm = libraryOptions.get(LibraryOption.TypeMapper);
+            if (tm instanceof SignatureTypeMapper) {
+                return (SignatureTypeMapper) tm;
+
+            } else if (tm instanceof TypeMapper) {
+                return new SignatureTypeMapperAdapter((TypeMapper) tm);
+
+            } else {
+                return new NullTypeMapper();
+            }
+        }
+
+        /**
+         * Looks up a native function for a method of the library interface.
+         *
+         * @param methodName the name of the interface method.
+         * @param parameterTypes the parameter types of the interface method.
+         * @return the function.  If the native symbol could not be found, calling the function throws
+         * {@link UnsatisfiedLinkError}.
+         */
+        public PregeneratedFunction function(String methodName, Class... parameterTypes) {
+            Method method;
+            try {
+                method = interfaceClass.getMethod(methodName, parameterTypes);
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalStateException("pregenerated implementation does not match " + interfaceClass.getName(), ex);
+            }
+
+            NativeFunction nativeFunction = new NativeFunction(method, method.isAnnotationPresent(jnr.ffi.annotations.StdCall.class)
+                    ? CallingConvention.STDCALL : libraryCallingConvention);
+            String functionName = functionMapper.mapFunctionName(nativeFunction.name(),
+                    new NativeFunctionMapperContext(library, nativeFunction.annotations()));
+            long functionAddress;
+            try {
+                functionAddress = library.findSymbolAddress(functionName);
+            } catch (SymbolNotFoundError ex) {
+                return new PregeneratedFunction(ex.getMessage());
+            }
+
+            FromNativeContext resultContext = new MethodResultContext(runtime, method);
+            SignatureType signatureType = DefaultSignatureType.create(method.getReturnType(), resultContext);
+            ResultType resultType = getResultType(runtime, method.getReturnType(),
+                    resultContext.getAnnotations(), typeMapper.getFromNativeType(signatureType, resultContext),
+                    resultContext);
+            ParameterType[] parameters = getParameterTypes(runtime, typeMapper, method);
+            // Pregenerated code passes primitives straight through, so it cannot apply converters from a type mapper
+            if (resultType.getFromNativeConverter() != null) {
+                throw new ConvertedTypeException(method);
+            }
+            for (ParameterType parameterType : parameters) {
+                if (parameterType.getToNativeConverter() != null) {
+                    throw new ConvertedTypeException(method);
+                }
+            }
+            boolean saveError = jnr.ffi.LibraryLoader.saveError(libraryOptions, nativeFunction.hasSaveError(), nativeFunction.hasIgnoreError());
+
+            Function function = new Function(functionAddress,
+                    getCallContext(resultType, parameters, nativeFunction.convention(), saveError));
+
+            return new PregeneratedFunction(function, resultType, parameters,
+                    fastNumeric.isSupported(resultType, parameters, nativeFunction.convention()));
+        }
+    }
+
+    /**
+     * Thrown when a type mapper converts one of the types of a pregenerated method.
+     */
+    static final class ConvertedTypeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ConvertedTypeException(Method method) {
+            super("type mapper converts types of " + method);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.LibraryOption;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+
+import static jnr.ffi.provider.jffi.Util.getBooleanProperty;
+
+/**
+ * Loads library implementations generated at build time, if present.
+ *
+ * @see PregeneratedLibrary
+ */
+class PregeneratedLibraryLoader extends LibraryLoader {
+    static final boolean ENABLED = getBooleanProperty("jnr.ffi.pregenerated.enabled", true);
+    static final String CLASS_SUFFIX = "$jnr$ffi$Pregenerated";
+
+    /**
+     * Loads the pregenerated implementation of the interface.
+     *
+     * @return the library implementation, or <tt>null</tt> if there is no usable pregenerated implementation.
+     */
+    @Override
+    <T> T loadLibrary(NativeLibrary library, Class<T> interfaceClass, Map<LibraryOption, ?> libraryOptions) {
+        // Pregenerated methods are not instrumented, so leave instrumented libraries to runtime generation
+        if (!ENABLED || libraryOptions.containsKey(LibraryOption.Instrumentation)) {
+            return null;
+        }
+
+        Class<?> implClass;
+        try {
+            implClass = Class.forName(interfaceClass.getName() + CLASS_SUFFIX, true, interfaceClass.getClassLoader());
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+
+        if (!interfaceClass.isAssignableFrom(implClass) || !PregeneratedLibrary.class.isAssignableFrom(implClass)) {
+            return null;
+        }
+
+        try {
+            Constructor<?> cons = implClass.getConstructor(PregeneratedLibrary.Binder.class);
+            return interfaceClass.cast(cons.newInstance(
+                    new PregeneratedLibrary.Binder(NativeRuntime.getInstance(), library, interfaceClass, libraryOptions)));
+
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof PregeneratedLibrary.ConvertedTypeException) {
+                // A custom type mapper changes how the methods are called, so fall back to runtime generation
+                return null;
+            }
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : new RuntimeException(ex.getCause());
+
+        } catch (RuntimeException ex) {
+            throw ex;
+
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
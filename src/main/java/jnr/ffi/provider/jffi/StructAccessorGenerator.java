@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.MemoryIO;
+import jnr.ffi.NativeType;
+import jnr.ffi.Pointer;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static jnr.ffi.provider.jffi.CodegenUtils.ci;
+import static jnr.ffi.provider.jffi.CodegenUtils.p;
+import static jnr.ffi.provider.jffi.CodegenUtils.sig;
+import static jnr.ffi.provider.jffi.NumberUtil.convertPrimitive;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.V1_6;
+
+/**
+ * Generates implementations of struct field accessor interfaces.
+ * <p>
+ * Each accessor method reads or writes one field at a constant offset, either through a {@link Pointer}
+ * or directly at a native address, so there is no per-field object or offset calculation at runtime.
+ *
+ * @see jnr.ffi.Struct#accessorOf(jnr.ffi.Runtime, Class, Class)
+ */
+public final class StructAccessorGenerator {
+    private static final AtomicLong nextClassID = new AtomicLong(0);
+
+    private StructAccessorGenerator() {}
+
+    /**
+     * Describes a scalar field of a struct.
+     */
+    public static final class Field {
+        final String name;
+        final long offset;
+        final NativeType nativeType;
+
+        public Field(String name, long offset, NativeType nativeType) {
+            this.name = name;
+            this.offset = offset;
+            this.nativeType = nativeType;
+        }
+    }
+
+    /**
+     * Creates an implementation of an accessor interface.
+     *
+     * @param runtime the runtime the struct is used with.
+     * @param accessorInterface the accessor interface.
+     * @param fields the scalar fields of the struct.
+     * @param <T> the accessor interface type.
+     * @return an accessor instance.
+     */
+    public static <T> T generate(jnr.ffi.Runtime runtime, Class<T> accessorInterface, Field[] fields) {
+        if (!accessorInterface.isInterface()) {
+            throw new IllegalArgumentException(accessorInterface.getName() + " is not an interface");
+        }
+
+        Map<String, Field> fieldMap = new HashMap<String, Field>();
+        for (Field field : fields) {
+            fieldMap.put(field.name, field);
+        }
+
+        Method[] methods = accessorInterface.getMethods();
+        Accessor[] accessors = new Accessor[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            accessors[i] = new Accessor(runtime, methods[i], fieldMap.get(methods[i].getName()));
+        }
+
+        return NativeLibraryLoader.ASM_ENABLED
+                ? generateClass(accessorInterface, accessors)
+                : accessorInterface.cast(Proxy.newProxyInstance(accessorInterface.getClassLoader(),
+                        new Class[] { accessorInterface }, new ReflectionAccessor(accessors)));
+    }
+
+    /**
+     * An accessor method, and the memory operation it performs.
+     */
+    private static final class Accessor {
+        final Method method;
+        final Field field;
+        final boolean setter;
+        final boolean address;
+        final Class javaType;
+        final Class nativeClass;
+        final String pointerOp;
+        final String memoryOp;
+
+        Accessor(jnr.ffi.Runtime runtime, Method method, Field field) {
+            this.method = method;
+            if (field == null) {
+                throw new IllegalArgumentException("no scalar struct field for accessor method " + method);
+            }
+            this.field = field;
+
+            Class[] parameterTypes = method.getParameterTypes();
+            setter = parameterTypes.length == 2 && method.getReturnType() == void.class;
+            if (!setter && (parameterTypes.length != 1 || method.getReturnType() == void.class)) {
+                throw new IllegalArgumentException("accessor method must be either T " + method.getName()
+                        + "(Pointer|long) or void " + method.getName() + "(Pointer|long, T): " + method);
+            }
+            if (parameterTypes[0] != Pointer.class && parameterTypes[0] != long.class) {
+                throw new IllegalArgumentException("accessor method must take a Pointer or long address: " + method);
+            }
+            address = parameterTypes[0] == long.class;
+            javaType = setter ? parameterTypes[1] : method.getReturnType();
+
+            switch (field.nativeType) {
+                case SCHAR:
+                case UCHAR:
+                    nativeClass = byte.class;
+                    pointerOp = memoryOp = "Byte";
+                    break;
+
+                case SSHORT:
+                case USHORT:
+                    nativeClass = short.class;
+                    pointerOp = memoryOp = "Short";
+                    break;
+
+                case SINT:
+                case UINT:
+                    nativeClass = int.class;
+                    pointerOp = memoryOp = "Int";
+                    break;
+
+                case SLONG:
+                case ULONG:
+                    nativeClass = address && runtime.longSize() == 4 ? int.class : long.class;
+                    pointerOp = "NativeLong";
+                    memoryOp = runtime.longSize() == 4 ? "Int" : "Long";
+                    break;
+
+                case SLONGLONG:
+                case ULONGLONG:
+                    nativeClass = long.class;
+                    pointerOp = "LongLong";
+                    memoryOp = "Long";
+                    break;
+
+                case ADDRESS:
+                    nativeClass = long.class;
+                    pointerOp = memoryOp = "Address";
+                    break;
+
+                case FLOAT:
+                    nativeClass = float.class;
+                    pointerOp = memoryOp = "Float";
+                    break;
+
+                case DOUBLE:
+                    nativeClass = double.class;
+                    pointerOp = memoryOp = "Double";
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("unsupported struct field type " + field.nativeType + " for " + method);
+            }
+
+            boolean floatingPoint = nativeClass == float.class || nativeClass == double.class;
+            if (!javaType.isPrimitive() || javaType == char.class
+                    || floatingPoint != (javaType == float.class || javaType == double.class)) {
+                throw new IllegalArgumentException("accessor type " + javaType + " does not match struct field type "
+                        + field.nativeType + " for " + method);
+            }
+        }
+    }
+
+    private static <T> T generateClass(Class<T> accessorInterface, Accessor[] accessors) {
+        boolean debug = AsmLibraryLoader.DEBUG && !accessorInterface.isAnnotationPresent(NoTrace.class);
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        ClassVisitor cv = debug ? AsmUtil.newCheckClassAdapter(cw) : cw;
+
+        String className = p(accessorInterface) + "$jnr$ffi$StructAccessor$" + nextClassID.getAndIncrement();
+        cv.visit(V1_6, ACC_PUBLIC | ACC_FINAL, className, null, p(Object.class), new String[] { p(accessorInterface) });
+        cv.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "IO", ci(MemoryIO.class), null, null);
+
+        SkinnyMethodAdapter clinit = new SkinnyMethodAdapter(cv, ACC_STATIC, "<clinit>", sig(void.class), null, null);
+        clinit.start();
+        clinit.invokestatic(MemoryIO.class, "getInstance", MemoryIO.class);
+        clinit.putstatic(className, "IO", ci(MemoryIO.class));
+        clinit.voidreturn();
+        clinit.visitMaxs(10, 10);
+        clinit.visitEnd();
+
+        SkinnyMethodAdapter init = new SkinnyMethodAdapter(cv, ACC_PUBLIC, "<init>", sig(void.class), null, null);
+        init.start();
+        init.aload(0);
+        init.invokespecial(p(Object.class), "<init>", sig(void.class));
+        init.voidreturn();
+        init.visitMaxs(10, 10);
+        init.visitEnd();
+
+        for (Accessor accessor : accessors) {
+            generateAccessor(cv, className, accessor);
+        }
+
+        cv.visitEnd();
+
+        try {
+            byte[] bytes = cw.toByteArray();
+            if (debug) {
+                ClassVisitor trace = AsmUtil.newTraceClassVisitor(new PrintWriter(System.err));
+                new ClassReader(bytes).accept(trace, 0);
+            }
+
+            AsmClassLoader classLoader = new AsmClassLoader(accessorInterface.getClassLoader());
+            Class<? extends T> implClass = classLoader.defineClass(className.replace("/", "."), bytes);
+            return implClass.getConstructor().newInstance();
+
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static void generateAccessor(ClassVisitor cv, String className, Accessor accessor) {
+        Method m = accessor.method;
+        SkinnyMethodAdapter mv = new SkinnyMethodAdapter(cv, ACC_PUBLIC | ACC_FINAL, m.getName(),
+                sig(m.getReturnType(), m.getParameterTypes()), null, null);
+        mv.start();
+
+        // Push the memory and the offset (or absolute address) of the field
+        if (accessor.address) {
+            mv.getstatic(className, "IO", ci(MemoryIO.class));
+            mv.lload(1);
+            if (accessor.field.offset != 0) {
+                mv.ldc(accessor.field.offset);
+                mv.ladd();
+            }
+        } else {
+            mv.aload(1);
+            mv.ldc(accessor.field.offset);
+        }
+
+        Class owner = accessor.address ? MemoryIO.class : Pointer.class;
+        String op = accessor.address ? accessor.memoryOp : accessor.pointerOp;
+        if (accessor.setter) {
+            AsmUtil.load(mv, accessor.javaType, new LocalVariable(accessor.javaType, accessor.address ? 3 : 2));
+            convertValue(mv, accessor.javaType, accessor.nativeClass, accessor.field.nativeType);
+            mv.invokevirtual(owner, "put" + op, void.class, long.class, accessor.nativeClass);
+            mv.voidreturn();
+
+        } else {
+            mv.invokevirtual(owner, "get" + op, accessor.nativeClass, long.class);
+            convertValue(mv, accessor.nativeClass, accessor.javaType, accessor.field.nativeType);
+            AsmUtil.emitReturnOp(mv, accessor.javaType);
+        }
+
+        mv.visitMaxs(10, 10);
+        mv.visitEnd();
+    }
+
+    private static void convertValue(SkinnyMethodAdapter mv, Class from, Class to, NativeType nativeType) {
+        if (from == float.class && to == double.class) {
+            mv.f2d();
+        } else if (from == double.class && to == float.class) {
+            mv.d2f();
+        } else if (from != float.class && from != double.class) {
+            convertPrimitive(mv, from, to, nativeType);
+        }
+    }
+
+    /**
+     * Implements accessors by reflection, when bytecode generation is disabled.
+     */
+    private static final class ReflectionAccessor implements InvocationHandler {
+        // Absolute addresses are accessed as offsets from address zero
+        private static final Pointer NULL_BASE = new DirectMemoryIO(NativeRuntime.getInstance(), 0L);
+
+        private final Map<Method, Accessor> accessors = new HashMap<Method, Accessor>();
+
+        ReflectionAccessor(Accessor[] accessors) {
+            for (Accessor accessor : accessors) {
+                this.accessors.put(accessor.method, accessor);
+            }
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Accessor accessor = accessors.get(method);
+            if (accessor == null) {
+                // java.lang.Object methods
+                return method.invoke(this, args);
+            }
+
+            Pointer memory;
+            long offset;
+            if (accessor.address) {
+                memory = NULL_BASE;
+                offset = (Long) args[0] + accessor.field.offset;
+            } else {
+                memory = (Pointer) args[0];
+                offset = accessor.field.offset;
+            }
+
+            if (accessor.setter) {
+                put(memory, offset, accessor, (Number) (args[1] instanceof java.lang.Boolean
+                        ? ((java.lang.Boolean) args[1] ? 1 : 0) : args[1]));
+                return null;
+            }
+
+            return get(memory, offset, accessor);
+        }
+
+        private static Object get(Pointer memory, long offset, Accessor accessor) {
+            Class type = accessor.javaType;
+            if (accessor.nativeClass == float.class || accessor.nativeClass == double.class) {
+                double value = accessor.nativeClass == float.class ? memory.getFloat(offset) : memory.getDouble(offset);
+                return type == float.class ? (Object) (float) value : (Object) value;
+            }
+
+            long value;
+            switch (accessor.field.nativeType) {
+                case SCHAR: value = memory.getByte(offset); break;
+                case UCHAR: value = memory.getByte(offset) & 0xffL; break;
+                case SSHORT: value = memory.getShort(offset); break;
+                case USHORT: value = memory.getShort(offset) & 0xffffL; break;
+                case SINT: value = memory.getInt(offset); break;
+                case UINT: value = memory.getInt(offset) & 0xffffffffL; break;
+                case SLONG: case ULONG: value = memory.getNativeLong(offset); break;
+                case ADDRESS: value = memory.getAddress(offset); break;
+                default: value = memory.getLongLong(offset); break;
+            }
+
+            if (type == boolean.class) return (value & 1) != 0;
+            if (type == byte.class) return (byte) value;
+            if (type == short.class) return (short) value;
+            if (type == int.class) return (int) value;
+            return value;
+        }
+
+        private static void put(Pointer memory, long offset, Accessor accessor, Number value) {
+            switch (accessor.field.nativeType) {
+                case SCHAR: case UCHAR: memory.putByte(offset, value.byteValue()); break;
+                case SSHORT: case USHORT: memory.putShort(offset, value.shortValue()); break;
+                case SINT: case UINT: memory.putInt(offset, value.intValue()); break;
+                case SLONG: case ULONG: memory.putNativeLong(offset, value.longValue()); break;
+                case ADDRESS: memory.putAddress(offset, value.longValue()); break;
+                case FLOAT: memory.putFloat(offset, value.floatValue()); break;
+                case DOUBLE: memory.putDouble(offset, value.doubleValue()); break;
+                default: memory.putLongLong(offset, value.longValue()); break;
+            }
+        }
+    }
+}
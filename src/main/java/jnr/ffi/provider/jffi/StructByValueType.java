@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.HeapInvocationBuffer;
+import jnr.ffi.NativeType;
+import jnr.ffi.Pointer;
+import jnr.ffi.Struct;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Describes a {@link Struct} subclass that is passed to, or returned from, native functions by value.
+ *
+ * <p>The native aggregate type is derived once per struct class from the member layout of a
+ * prototype instance.
+ */
+public final class StructByValueType extends jnr.ffi.Type {
+    private static final ConcurrentMap<Class<? extends Struct>, StructByValueType> types
+            = new ConcurrentHashMap<Class<? extends Struct>, StructByValueType>();
+
+    private final jnr.ffi.Runtime runtime;
+    private final Constructor<? extends Struct> constructor;
+    private final com.kenai.jffi.Struct jffiType;
+
+    private StructByValueType(jnr.ffi.Runtime runtime, Constructor<? extends Struct> constructor, com.kenai.jffi.Struct jffiType) {
+        this.runtime = runtime;
+        this.constructor = constructor;
+        this.jffiType = jffiType;
+    }
+
+    static StructByValueType getInstance(jnr.ffi.Runtime runtime, Class<? extends Struct> structClass) {
+        StructByValueType type = types.get(structClass);
+        if (type == null) {
+            StructByValueType existing = types.putIfAbsent(structClass, type = newStructByValueType(runtime, structClass));
+            return existing != null ? existing : type;
+        }
+
+        return type;
+    }
+
+    private static StructByValueType newStructByValueType(jnr.ffi.Runtime runtime, Class<? extends Struct> structClass) {
+        Constructor<? extends Struct> constructor;
+        try {
+            constructor = structClass.getConstructor(jnr.ffi.Runtime.class);
+        } catch (NoSuchMethodException nsme) {
+            throw new IllegalArgumentException("struct subclass " + structClass.getName() + " has no constructor that takes a "
+                    + jnr.ffi.Runtime.class.getName() + " argument");
+        }
+
+        NativeType[] layout = Struct.getNativeLayout(newInstance(constructor, runtime));
+        if (layout.length < 1) {
+            throw new IllegalArgumentException("struct subclass " + structClass.getName() + " has no fields");
+        }
+
+        com.kenai.jffi.Type[] fields = new com.kenai.jffi.Type[layout.length];
+        for (int i = 0; i < fields.length; ++i) {
+            fields[i] = InvokerUtil.jffiType(layout[i]);
+        }
+
+        return new StructByValueType(runtime, constructor, com.kenai.jffi.Struct.newStruct(fields));
+    }
+
+    private static Struct newInstance(Constructor<? extends Struct> constructor, jnr.ffi.Runtime runtime) {
+        try {
+            return constructor.newInstance(runtime);
+
+        } catch (InstantiationException ex) {
+            throw new RuntimeException(ex);
+
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+
+        } catch (InvocationTargetException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    @Override
+    public int size() {
+        return jffiType.size();
+    }
+
+    @Override
+    public int alignment() {
+        return jffiType.alignment();
+    }
+
+    @Override
+    public NativeType getNativeType() {
+        return NativeType.STRUCT;
+    }
+
+    com.kenai.jffi.Type jffiType() {
+        return jffiType;
+    }
+
+    /**
+     * Creates a new struct instance backed by the native return value.  The array is used directly, not copied.
+     */
+    Struct newInstance(byte[] data) {
+        Struct struct = newInstance(constructor, runtime);
+        struct.useMemory(new ArrayMemoryIO(runtime, data, 0, data.length));
+        return struct;
+    }
+
+    /**
+     * Copies the struct contents into the invocation buffer, straight from the struct memory if it is large enough.
+     */
+    void marshal(HeapInvocationBuffer buffer, Struct struct) {
+        Pointer memory = Struct.getMemory(struct);
+        final int size = jffiType.size();
+
+        if (memory.isDirect() && memory.size() >= size) {
+            buffer.putStruct(memory.address());
+
+        } else if (memory.hasArray() && memory.arrayLength() >= size) {
+            buffer.putStruct((byte[]) memory.array(), memory.arrayOffset());
+
+        } else {
+            byte[] data = new byte[size];
+            memory.get(0, data, 0, (int) Math.min(size, memory.size()));
+            buffer.putStruct(data, 0);
+        }
+    }
+}
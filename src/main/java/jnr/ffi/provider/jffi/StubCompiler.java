@@ -20,11 +20,19 @@ package jnr.ffi.provider.jffi;
 
 import com.kenai.jffi.*;
 import jnr.ffi.CallingConvention;
+import jnr.ffi.annotations.SaveErrorOnFailure;
 import jnr.ffi.provider.ParameterType;
 import jnr.ffi.provider.ResultType;
 import jnr.x86asm.Assembler;
 import jnr.x86asm.CPU;
 
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static jnr.ffi.provider.jffi.Util.getBooleanProperty;
+
 /**
  * Compiles asm trampoline stubs for java class methods
  */
@@ -33,7 +41,41 @@ abstract class StubCompiler {
     // then it is recent enough to support PageManager and NativeMethods as well.
     static final long errnoFunctionAddress = getErrnoSaveFunction();
     static final boolean hasPageManager = hasPageManager();
+
+    // The AArch64 stubs are opt-in, and also need __clear_cache to make freshly written code visible to the I-cache
+    static final boolean aarch64Enabled = getBooleanProperty("jnr.ffi.aarch64asm.enabled", false);
+    static final long clearCacheFunctionAddress = getClearCacheFunction();
     static final boolean hasAssembler = hasAssembler();
+
+    private static final class StaticDataHolder {
+        // Keep a reference from the loaded class to the pages holding the code for that class.
+        static final Map<Class, PageHolder> PAGES
+                = Collections.synchronizedMap(new WeakHashMap<Class, PageHolder>());
+    }
+
+    /**
+     * Owns the pages holding the code for a class; they are freed once the class, and so this holder, is collected.
+     */
+    static final class PageHolder {
+        final long memory;
+        final long pageCount;
+
+        public PageHolder(PageManager pm, long memory, long pageCount) {
+            this.memory = memory;
+            this.pageCount = pageCount;
+            NativeMemoryCleaner.register(this, pm, memory, (int) pageCount);
+        }
+    }
+
+    /**
+     * Keeps the pages holding the code for a class alive for as long as the class is.
+     *
+     * @param clazz the class the native methods were registered on.
+     * @param pages the pages holding the code.
+     */
+    static void retainPages(Class clazz, PageHolder pages) {
+        StaticDataHolder.PAGES.put(clazz, pages);
+    }
     
     public static StubCompiler newCompiler(jnr.ffi.Runtime runtime) {
         if (errnoFunctionAddress != 0 && hasPageManager && hasAssembler) {
@@ -48,12 +90,41 @@ abstract class StubCompiler {
                         return new X86_64StubCompiler(runtime);
                     }
                     break;
+                case AARCH64:
+                    if (Platform.getPlatform().getOS() == Platform.OS.LINUX) {
+                        return new AArch64StubCompiler();
+                    }
+                    break;
             }
         }
 
         return new DummyStubCompiler();
     }
 
+    /**
+     * Gets the native result which signals that a call failed, for a method which only needs errno saved
+     * when the call fails.
+     *
+     * @param resultType the result type of the method.
+     * @return the failure result, or {@code null} if errno must be saved after every call.
+     */
+    static Long getFailureResult(ResultType resultType) {
+        switch (resultType.getNativeType()) {
+            case VOID:
+            case FLOAT:
+            case DOUBLE:
+                return null;
+        }
+
+        for (Annotation annotation : resultType.annotations()) {
+            if (annotation instanceof SaveErrorOnFailure) {
+                return ((SaveErrorOnFailure) annotation).value();
+            }
+        }
+
+        return null;
+    }
+
     abstract boolean canCompile(ResultType returnType, ParameterType[] parameterTypes, CallingConvention convention);
     
     abstract void compile(Function function, String name, ResultType returnType, ParameterType[] parameterTypes,
@@ -89,6 +160,26 @@ abstract class StubCompiler {
         }
     }
 
+    private static long getClearCacheFunction() {
+        if (!aarch64Enabled || Platform.getPlatform().getCPU() != Platform.CPU.AARCH64) {
+            return 0;
+        }
+
+        try {
+            // __clear_cache lives in libgcc, which is loaded by the JVM itself, but look in libgcc_s too just in case
+            long address = Library.getDefault().getSymbolAddress("__clear_cache");
+            if (address == 0) {
+                Library libgcc = Library.getCachedInstance("libgcc_s.so.1", Library.LAZY | Library.LOCAL);
+                address = libgcc != null ? libgcc.getSymbolAddress("__clear_cache") : 0;
+            }
+
+            return address;
+
+        } catch (Throwable t) {
+            return 0;
+        }
+    }
+
     private static boolean hasPageManager() {
         try {
             // Just try and allocate/free a page to check the PageManager is working
@@ -109,6 +200,9 @@ abstract class StubCompiler {
                 case X86_64:
                     new Assembler(CPU.X86_64);
                     return true;
+                case AARCH64:
+                    // AArch64 instructions are encoded by AArch64StubCompiler itself
+                    return aarch64Enabled && clearCacheFunctionAddress != 0;
                 default:
                     return false;
             }
@@ -21,6 +21,7 @@ package jnr.ffi.provider.jffi;
 import jnr.ffi.Address;
 import jnr.ffi.NativeType;
 import jnr.ffi.Pointer;
+import jnr.ffi.Struct;
 import jnr.ffi.Type;
 import jnr.ffi.annotations.TypeDefinition;
 
@@ -119,6 +120,10 @@ class Types {
         } else if (type.isArray()) {
             return runtime.findType(NativeType.ADDRESS);
 
+        } else if (Struct.class.isAssignableFrom(type)) {
+            // Only structs passed by value reach here; by-reference structs are converted to a Pointer first
+            return StructByValueType.getInstance(runtime, type.asSubclass(Struct.class));
+
         } else {
             throw new IllegalArgumentException("unsupported type: " + type);
         }
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import static jnr.ffi.provider.jffi.DefaultInvokerFactory.getMarshaller;
+import static jnr.ffi.provider.jffi.InvokerUtil.getCallContext;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import jnr.ffi.CallingConvention;
+import jnr.ffi.Pointer;
+import jnr.ffi.annotations.Meta;
+import jnr.ffi.mapper.DefaultSignatureType;
+import jnr.ffi.mapper.SignatureTypeMapper;
+import jnr.ffi.mapper.ToNativeContext;
+import jnr.ffi.mapper.ToNativeConverter;
+import jnr.ffi.mapper.ToNativeType;
+import jnr.ffi.provider.InvocationSession;
+import jnr.ffi.provider.ParameterType;
+import jnr.ffi.provider.SigType;
+import jnr.ffi.util.AnnotationProxy;
+
+import com.kenai.jffi.CallContext;
+import com.kenai.jffi.Function;
+import com.kenai.jffi.HeapInvocationBuffer;
+
+/**
+ * A native function taking a variable number of arguments.
+ *
+ * <p>The native signature depends on the classes of the variable arguments, so a {@link Plan}
+ * (the CallContext and marshallers) is built once per distinct shape of the variable arguments
+ * and cached.  This is used both by the reflective invoker and by generated code.
+ */
+public final class VariadicFunction {
+    /** The maximum number of distinct varargs shapes cached per function */
+    private static final int MAX_CACHED_PLANS = 64;
+
+    private final jnr.ffi.Runtime runtime;
+    private final SignatureTypeMapper typeMapper;
+    private final ParameterType[] fixedParameterTypes;
+    private final long functionAddress;
+    private final SigType resultType;
+    private final boolean requiresErrno;
+    private final CallingConvention callingConvention;
+    private final ConcurrentMap<Shape, Plan> plans = new ConcurrentHashMap<Shape, Plan>();
+    private volatile Plan lastPlan;
+
+    /**
+     * Creates a new variadic function.
+     *
+     * @param fixedParameterTypes the parameter types of the java method, the last of which is the
+     * {@code Object[]} holding the variable arguments.
+     */
+    VariadicFunction(jnr.ffi.Runtime runtime, SignatureTypeMapper typeMapper, ParameterType[] fixedParameterTypes,
+                     long functionAddress, SigType resultType, boolean requiresErrno, CallingConvention callingConvention) {
+        this.runtime = runtime;
+        this.typeMapper = typeMapper;
+        this.fixedParameterTypes = fixedParameterTypes;
+        this.functionAddress = functionAddress;
+        this.resultType = resultType;
+        this.requiresErrno = requiresErrno;
+        this.callingConvention = callingConvention;
+    }
+
+    /**
+     * Gets the invocation plan for the variable arguments of one call.
+     *
+     * @param varargs the variable arguments.
+     * @return the plan for the shape of {@code varargs}.
+     */
+    public Plan getPlan(Object[] varargs) {
+        // Fast path - repeated calls from the same call site almost always have the same shape
+        Plan plan = lastPlan;
+        if (plan != null && plan.shape.matches(varargs)) {
+            return plan;
+        }
+
+        Shape shape = new Shape(varargs);
+        plan = plans.get(shape);
+        if (plan == null) {
+            plan = createPlan(shape, varargs);
+            if (plans.size() < MAX_CACHED_PLANS) {
+                Plan existing = plans.putIfAbsent(shape, plan);
+                if (existing != null) {
+                    plan = existing;
+                }
+            }
+        }
+
+        return lastPlan = plan;
+    }
+
+    private Plan createPlan(Shape shape, Object[] varargs) {
+        ParameterType[] argTypes = new ParameterType[fixedParameterTypes.length + varargs.length];
+        System.arraycopy(fixedParameterTypes, 0, argTypes, 0, fixedParameterTypes.length - 1);
+
+        int variableArgsCount = 0;
+        List<Class<? extends Annotation>> paramAnnotations = new ArrayList<Class<? extends Annotation>>();
+
+        for (Object arg : varargs) {
+            if (isAnnotationMarker(arg)) {
+                paramAnnotations.add((Class)arg);
+            } else {
+                Class<?> argClass;
+                ToNativeConverter<?, ?> toNativeConverter = null;
+                Collection<Annotation> annos = getAnnotations(paramAnnotations);
+                paramAnnotations.clear();
+                ToNativeContext toNativeContext = new SimpleNativeContext(runtime, annos);
+
+                if (arg != null) {
+                    ToNativeType toNativeType = typeMapper.getToNativeType(DefaultSignatureType.create(arg.getClass(), toNativeContext), toNativeContext);
+                    toNativeConverter = toNativeType == null ? null : toNativeType.getToNativeConverter();
+                    argClass = toNativeConverter == null ? arg.getClass() : toNativeConverter.nativeType();
+                } else {
+                    argClass = Pointer.class;
+                }
+
+                argTypes[fixedParameterTypes.length + variableArgsCount - 1] = new ParameterType(
+                        argClass, 
+                        Types.getType(runtime, argClass, annos).getNativeType(), 
+                        annos, 
+                        toNativeConverter, 
+                        new SimpleNativeContext(runtime, annos));
+                variableArgsCount++;
+            }
+        }
+        
+        //Add one extra vararg of NULL to meet the common convention of ending
+        //varargs with a NULL.  Functions that get a length from the fixed arguments
+        //will ignore the extra, and funtions that expect the extra NULL will get it.
+        //This matches what JNA does.
+        argTypes[fixedParameterTypes.length + variableArgsCount - 1] = new ParameterType(
+                Pointer.class, 
+                Types.getType(runtime, Pointer.class, Collections.<Annotation>emptyList()).getNativeType(), 
+                Collections.<Annotation>emptyList(), 
+                null, 
+                new SimpleNativeContext(runtime, Collections.<Annotation>emptyList()));
+        variableArgsCount++;
+
+        Function function = new Function(functionAddress,
+                getCallContext(resultType, argTypes, variableArgsCount + fixedParameterTypes.length - 1, callingConvention, requiresErrno));
+
+        DefaultInvokerFactory.Marshaller[] marshallers = new DefaultInvokerFactory.Marshaller[variableArgsCount];
+        for (int i = 0; i < variableArgsCount; ++i) {
+            marshallers[i] = getMarshaller(argTypes[i + fixedParameterTypes.length - 1]);
+        }
+
+        return new Plan(shape, function, marshallers);
+    }
+
+    private static Collection<Annotation> getAnnotations(Collection<Class<? extends Annotation>> klasses) {
+        List<Annotation> ret = new ArrayList<Annotation>();
+        for (Class<? extends Annotation> klass : klasses) {
+            if (klass.getAnnotation(Meta.class) != null) {
+                for (Annotation anno : klass.getAnnotations()) {
+                    if (anno.annotationType().getName().startsWith("java") 
+                            || Meta.class.equals(anno.annotationType())) {
+                        continue;
+                    }
+                    ret.add(anno);
+                }
+            } else {
+                ret.add(AnnotationProxy.newProxy(klass));
+            }
+        }
+        return ret;
+    }
+
+    private static boolean isAnnotationMarker(Object arg) {
+        return arg instanceof Class && Annotation.class.isAssignableFrom((Class) arg);
+    }
+
+    /**
+     * Returns the element of a varargs shape for an argument - the annotation class itself
+     * for annotation markers, otherwise the class of the argument (or null for a null argument).
+     */
+    private static Object shapeOf(Object arg) {
+        return arg == null || isAnnotationMarker(arg) ? arg : arg.getClass();
+    }
+
+    /**
+     * The argument classes and annotation markers of one call to a variadic function.
+     */
+    private static final class Shape {
+        private final Object[] elements;
+        private final int hashCode;
+
+        Shape(Object[] varargs) {
+            elements = new Object[varargs.length];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = shapeOf(varargs[i]);
+            }
+            hashCode = Arrays.hashCode(elements);
+        }
+
+        boolean matches(Object[] varargs) {
+            if (varargs.length != elements.length) {
+                return false;
+            }
+            for (int i = 0; i < elements.length; i++) {
+                if (shapeOf(varargs[i]) != elements[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Shape && Arrays.equals(elements, ((Shape) o).elements);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The precomputed native function and marshallers for one shape of variable arguments.
+     */
+    public static final class Plan {
+        private final Shape shape;
+        private final Function function;
+        private final DefaultInvokerFactory.Marshaller[] marshallers;
+        private final boolean sessionRequired;
+
+        private Plan(Shape shape, Function function, DefaultInvokerFactory.Marshaller[] marshallers) {
+            this.shape = shape;
+            this.function = function;
+            this.marshallers = marshallers;
+            boolean sessionRequired = false;
+            for (DefaultInvokerFactory.Marshaller marshaller : marshallers) {
+                sessionRequired |= marshaller instanceof DefaultInvokerFactory.ToNativeConverterMarshaller;
+            }
+            this.sessionRequired = sessionRequired;
+        }
+
+        Function getFunction() {
+            return function;
+        }
+
+        public CallContext getCallContext() {
+            return function.getCallContext();
+        }
+
+        public long getFunctionAddress() {
+            return function.getFunctionAddress();
+        }
+
+        /**
+         * Returns true if {@link #marshal} needs an {@link InvocationSession} - i.e. if any of the
+         * variable arguments is converted by a {@link jnr.ffi.mapper.ToNativeConverter}.
+         */
+        public boolean isSessionRequired() {
+            return sessionRequired;
+        }
+
+        /**
+         * Marshals the variable arguments, and the trailing NULL argument, into {@code buffer}.
+         * The fixed arguments must already have been marshalled.
+         *
+         * @param session the session for the call, or null if {@link #isSessionRequired()} is false.
+         */
+        public void marshal(InvocationSession session, HeapInvocationBuffer buffer, Object[] varargs) {
+            int variableArgsCount = 0;
+            for (Object arg : varargs) {
+                if (!isAnnotationMarker(arg)) {
+                    marshallers[variableArgsCount++].marshal(session, buffer, arg);
+                }
+            }
+
+            marshallers[variableArgsCount].marshal(session, buffer, null);
+        }
+    }
+}
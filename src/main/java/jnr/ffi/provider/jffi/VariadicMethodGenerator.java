@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import static jnr.ffi.provider.jffi.AsmUtil.unboxedReturnType;
+import static jnr.ffi.provider.jffi.BaseMethodGenerator.emitEpilogue;
+import static jnr.ffi.provider.jffi.CodegenUtils.ci;
+import static jnr.ffi.provider.jffi.CodegenUtils.p;
+import static jnr.ffi.provider.jffi.CodegenUtils.sig;
+import static jnr.ffi.provider.jffi.NumberUtil.convertPrimitive;
+import static jnr.ffi.provider.jffi.Util.getBooleanProperty;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+
+import jnr.ffi.provider.InvocationSession;
+import jnr.ffi.provider.ParameterType;
+import jnr.ffi.provider.ResultType;
+
+import com.kenai.jffi.CallContext;
+import com.kenai.jffi.HeapInvocationBuffer;
+import com.kenai.jffi.Invoker;
+
+import org.objectweb.asm.Label;
+
+/**
+ * Generates methods for variadic native functions.
+ *
+ * <p>The fixed parameters are marshalled straight into a {@link HeapInvocationBuffer} as
+ * {@link BufferMethodGenerator} does, and the variable arguments are marshalled by the cached
+ * {@link VariadicFunction.Plan} for their shape, so the fixed parameters are never boxed.
+ */
+final class VariadicMethodGenerator {
+    static final boolean ENABLED = getBooleanProperty("jnr.ffi.fast-varargs.enabled", true);
+
+    private final boolean pooled;
+
+    /**
+     * @param pooled true if the invocation buffers and sessions should be taken from the per-thread
+     * {@link InvocationBufferPool}.
+     */
+    VariadicMethodGenerator(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    boolean isSupported(ResultType resultType, ParameterType[] parameterTypes) {
+        if (!ENABLED || !BufferMethodGenerator.invokeOps.containsKey(resultType.getNativeType())) {
+            return false;
+        }
+
+        // The last parameter is the Object[] of variable arguments, which is always supported
+        for (int i = 0; i < parameterTypes.length - 1; i++) {
+            if (!BufferMethodGenerator.isSupportedParameter(parameterTypes[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    void generate(AsmBuilder builder, String functionName, VariadicFunction function,
+                  final ResultType resultType, final ParameterType[] parameterTypes) {
+        Class[] javaParameterTypes = new Class[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            javaParameterTypes[i] = parameterTypes[i].getDeclaredType();
+        }
+
+        final SkinnyMethodAdapter mv = new SkinnyMethodAdapter(builder.getClassVisitor(), ACC_PUBLIC | ACC_FINAL,
+                functionName, sig(resultType.getDeclaredType(), javaParameterTypes), null, null);
+        mv.start();
+
+        LocalVariableAllocator localVariableAllocator = new LocalVariableAllocator(parameterTypes);
+        final LocalVariable[] parameters = AsmUtil.getParameterVariables(parameterTypes);
+        final LocalVariable[] converted = new LocalVariable[parameterTypes.length];
+        final LocalVariable varargs = parameters[parameters.length - 1];
+        final LocalVariable plan = localVariableAllocator.allocate(VariadicFunction.Plan.class);
+        final LocalVariable session = localVariableAllocator.allocate(InvocationSession.class);
+        final LocalVariable buffer = localVariableAllocator.allocate(HeapInvocationBuffer.class);
+
+        // Look up the plan for the shape of the variable arguments
+        AsmBuilder.ObjectField functionField = builder.getObjectField(function, VariadicFunction.class);
+        mv.aload(0);
+        mv.getfield(builder.getClassNamePath(), functionField.name, ci(VariadicFunction.class));
+        mv.aload(varargs);
+        mv.invokevirtual(VariadicFunction.class, "getPlan", VariadicFunction.Plan.class, Object[].class);
+        mv.astore(plan);
+
+        // Only create a session if the fixed parameters or the plan's marshallers need one
+        final boolean sessionRequired = BufferMethodGenerator.isSessionRequired(parameterTypes);
+        Label noSession = new Label();
+        Label sessionCreated = new Label();
+        if (!sessionRequired) {
+            mv.aload(plan);
+            mv.invokevirtual(VariadicFunction.Plan.class, "isSessionRequired", boolean.class);
+            mv.ifeq(noSession);
+        }
+        if (pooled) {
+            mv.invokestatic(AsmRuntime.class, "acquireInvocationSession", InvocationSession.class);
+        } else {
+            mv.newobj(p(InvocationSession.class));
+            mv.dup();
+            mv.invokespecial(InvocationSession.class, "<init>", void.class);
+        }
+        if (!sessionRequired) {
+            mv.go_to(sessionCreated);
+            mv.label(noSession);
+            mv.aconst_null();
+            mv.label(sessionCreated);
+        }
+        mv.astore(session);
+
+        // Retrieve the static 'ffi' Invoker instance, and the call context and function address from the plan
+        mv.getstatic(p(AbstractAsmLibraryInterface.class), "ffi", ci(Invoker.class));
+        mv.aload(plan);
+        mv.invokevirtual(VariadicFunction.Plan.class, "getCallContext", CallContext.class);
+        mv.aload(plan);
+        mv.invokevirtual(VariadicFunction.Plan.class, "getFunctionAddress", long.class);
+
+        mv.aload(plan);
+        mv.invokevirtual(VariadicFunction.Plan.class, "getCallContext", CallContext.class);
+        mv.invokestatic(AsmRuntime.class, pooled ? "acquireHeapInvocationBuffer" : "newHeapInvocationBuffer",
+                HeapInvocationBuffer.class, CallContext.class);
+        mv.dup();
+        mv.astore(buffer);
+        // [ stack contains: Invoker, CallContext, address, HeapInvocationBuffer ]
+
+        for (int i = 0; i < parameterTypes.length - 1; ++i) {
+            mv.dup(); // dup ref to HeapInvocationBuffer
+            converted[i] = BufferMethodGenerator.emitMarshalParameter(builder, mv, localVariableAllocator,
+                    parameters[i], parameterTypes[i], session);
+        }
+
+        mv.aload(plan);
+        mv.aload(session);
+        mv.aload(buffer);
+        mv.aload(varargs);
+        mv.invokevirtual(VariadicFunction.Plan.class, "marshal", void.class,
+                InvocationSession.class, HeapInvocationBuffer.class, Object[].class);
+
+        BufferMethodGenerator.InvokeOp iop = BufferMethodGenerator.invokeOps.get(resultType.getNativeType());
+        mv.invokevirtual(Invoker.class, iop.methodName, iop.primitiveClass, CallContext.class, long.class, HeapInvocationBuffer.class);
+
+        if (pooled) {
+            // The buffer is only returned to the pool once the call completes normally
+            mv.aload(plan);
+            mv.invokevirtual(VariadicFunction.Plan.class, "getCallContext", CallContext.class);
+            mv.aload(buffer);
+            mv.invokestatic(AsmRuntime.class, "releaseHeapInvocationBuffer", void.class, CallContext.class, HeapInvocationBuffer.class);
+        }
+
+        // box and/or narrow/widen the return value if needed
+        convertPrimitive(mv, iop.primitiveClass, unboxedReturnType(resultType.effectiveJavaType()), resultType.getNativeType());
+        emitEpilogue(builder, mv, resultType, parameterTypes, parameters, converted, new Runnable() {
+            public void run() {
+                Label noSession = new Label();
+                if (!sessionRequired) {
+                    mv.aload(session);
+                    mv.ifnull(noSession);
+                }
+                mv.aload(session);
+                if (pooled) {
+                    mv.invokestatic(AsmRuntime.class, "finishInvocationSession", void.class, InvocationSession.class);
+                } else {
+                    mv.invokevirtual(p(InvocationSession.class), "finish", "()V");
+                }
+                if (!sessionRequired) {
+                    mv.label(noSession);
+                }
+            }
+        });
+
+        mv.visitMaxs(100, localVariableAllocator.getSpaceUsed());
+        mv.visitEnd();
+    }
+}
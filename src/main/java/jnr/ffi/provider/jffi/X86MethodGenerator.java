@@ -43,6 +43,7 @@ import static org.objectweb.asm.Opcodes.*;
  */
 class X86MethodGenerator implements MethodGenerator {
     private static final boolean ENABLED = getBooleanProperty("jnr.ffi.x86asm.enabled", true);
+    private static final int MAX_OBJECT_PARAMETERS = 6;
     private final AtomicLong nextMethodID = new AtomicLong(0);
     private final StubCompiler compiler;
 
@@ -61,7 +62,8 @@ class X86MethodGenerator implements MethodGenerator {
             return false;
         }
 
-        if (!platform.getCPU().equals(Platform.CPU.I386) && !platform.getCPU().equals(Platform.CPU.X86_64)) {
+        if (!platform.getCPU().equals(Platform.CPU.I386) && !platform.getCPU().equals(Platform.CPU.X86_64)
+                && !(platform.getCPU().equals(Platform.CPU.AARCH64) && StubCompiler.aarch64Enabled)) {
             return false;
         }
 
@@ -80,10 +82,9 @@ class X86MethodGenerator implements MethodGenerator {
             }
         }
 
-        if (objectCount > 0) {
-            if (parameterTypes.length > 4 || objectCount > 3) {
-                return false;
-            }
+        // Heap objects are passed via the Invoker.invokeN methods, which accept up to 6 parameters, any of them objects
+        if (objectCount > 0 && parameterTypes.length > MAX_OBJECT_PARAMETERS) {
+            return false;
         }
 
         return isSupportedResult(resultType)
@@ -276,7 +277,9 @@ class X86MethodGenerator implements MethodGenerator {
 
 
     private static boolean isSupportedObjectParameterType(ParameterType type) {
-        return Pointer.class.isAssignableFrom(type.effectiveJavaType());
+        return Pointer.class.isAssignableFrom(type.effectiveJavaType())
+                || (type.getNativeType() == NativeType.ADDRESS
+                    && FastNumericMethodGenerator.isSupportedPointerParameterType(type.effectiveJavaType()));
     }
 
 
@@ -27,6 +27,7 @@ import jnr.x86asm.REG;
 import jnr.x86asm.Register;
 
 import static jnr.ffi.provider.jffi.CodegenUtils.sig;
+import static jnr.ffi.provider.jffi.NumberUtil.sizeof;
 import static jnr.x86asm.Asm.*;
 
 /**
@@ -190,7 +191,7 @@ final class X86_64StubCompiler extends AbstractX86StubCompiler {
 
         // For args 5 & 6 of the function, they would have been pushed on the stack
         for (int i = 4; i < iCount; i++) {
-            int disp = 8 + ((4 - i) * 8);
+            int disp = 8 + ((i - 4) * 8);
             switch (parameterTypes[i].getNativeType()) {
                 case SCHAR:
                     a.movsx(dstRegisters64[i], byte_ptr(rsp, disp));
@@ -268,7 +269,23 @@ final class X86_64StubCompiler extends AbstractX86StubCompiler {
             }
 
             // Save the errno in a thread-local variable
-            a.call(imm(errnoFunctionAddress));
+            Long failure = getFailureResult(resultType);
+            if (failure != null) {
+                // Only save errno if the function failed, by branching over the call on success.
+                // The assembler cannot bind labels, so space is left for a short jne which is patched in
+                // once the length of the call is known.
+                emitFailureCompare(a, resultType.getNativeType(), failure);
+                int branch = a.offset();
+                a.nop();
+                a.nop();
+                a.mov(r11, imm(errnoFunctionAddress));
+                a.call(r11);
+                a.setByteAt(branch, (byte) 0x75); // jne rel8
+                a.setByteAt(branch + 1, (byte) (a.offset() - (branch + 2)));
+
+            } else {
+                a.call(imm(errnoFunctionAddress));
+            }
 
             // Retrieve return value and put it back in the appropriate return register
             switch (resultType.getNativeType()) {
@@ -388,4 +405,32 @@ final class X86_64StubCompiler extends AbstractX86StubCompiler {
 
         return iCount;
     }
+
+    /**
+     * Compares the result of a function, which is still in %rax, with the result which signals failure.
+     */
+    private static void emitFailureCompare(Assembler a, NativeType resultType, long failure) {
+        switch (sizeof(resultType)) {
+            case 1:
+                a.cmp(al, imm((byte) failure));
+                break;
+
+            case 2:
+                a.cmp(ax, imm((short) failure));
+                break;
+
+            case 4:
+                a.cmp(eax, imm((int) failure));
+                break;
+
+            default:
+                if (failure == (int) failure) {
+                    a.cmp(rax, imm(failure));
+                } else {
+                    a.mov(r10, imm(failure));
+                    a.cmp(rax, r10);
+                }
+                break;
+        }
+    }
 }
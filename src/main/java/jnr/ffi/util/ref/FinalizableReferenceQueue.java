@@ -139,20 +139,43 @@ public class FinalizableReferenceQueue {
     }
   }
   
+  /**
+   * Finalizes at most {@code limit} references that have already been enqueued, on the calling
+   * thread. Threads that create many references can use this to help the background thread keep
+   * up, without blocking for longer than it takes to finalize {@code limit} references.
+   *
+   * @param limit the maximum number of references to finalize
+   * @return the number of references that were finalized
+   */
+  public int drain(int limit) {
+    int count = 0;
+    Reference<?> reference;
+    while (count < limit && (reference = queue.poll()) != null) {
+      finalizeReference(reference);
+      ++count;
+    }
+
+    return count;
+  }
+
   private void pollReferenceQueue() {
 
     Reference<?> reference;
     while ((reference = queue.poll()) != null) {
-      /*
-       * This is for the benefit of phantom references. Weak and soft references will have already
-       * been cleared by this point.
-       */
-      reference.clear();
-      try {
-        ((FinalizableReference) reference).finalizeReferent();
-      } catch (Throwable t) {
-        logger.log(Level.SEVERE, "Error cleaning up after reference.", t);
-      }
+      finalizeReference(reference);
+    }
+  }
+
+  private static void finalizeReference(Reference<?> reference) {
+    /*
+     * This is for the benefit of phantom references. Weak and soft references will have already
+     * been cleared by this point.
+     */
+    reference.clear();
+    try {
+      ((FinalizableReference) reference).finalizeReferent();
+    } catch (Throwable t) {
+      logger.log(Level.SEVERE, "Error cleaning up after reference.", t);
     }
   }
 
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import jnr.ffi.provider.Arena;
+import jnr.ffi.provider.jffi.NativeMemoryCleaner;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link Memory#openArena(Runtime)}
+ */
+public class ArenaTest {
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        runtime = Runtime.getSystemRuntime();
+    }
+
+    @Test
+    public void allocate() {
+        Arena arena = Memory.openArena(runtime);
+        try {
+            Pointer p = arena.allocate(16, true);
+            assertTrue(p.isDirect());
+            assertEquals(16, p.size());
+            assertEquals(0L, p.getLongLong(8));
+            p.putInt(0, 0xdeadbeef);
+            assertEquals(0xdeadbeef, p.getInt(0));
+        } finally {
+            arena.close();
+        }
+    }
+
+    @Test
+    public void allocationsDoNotOverlap() {
+        Arena arena = Memory.openArena(runtime);
+        try {
+            // Enough small and large blocks to spill into several slabs
+            Pointer[] blocks = new Pointer[200];
+            for (int i = 0; i < blocks.length; ++i) {
+                blocks[i] = arena.allocate((i % 10 == 0) ? 32 * 1024 : 1000);
+                blocks[i].putInt(0, i);
+                blocks[i].putInt(blocks[i].size() - 4, i);
+            }
+            for (int i = 0; i < blocks.length; ++i) {
+                assertEquals(i, blocks[i].getInt(0));
+                assertEquals(i, blocks[i].getInt(blocks[i].size() - 4));
+            }
+        } finally {
+            arena.close();
+        }
+    }
+
+    @Test
+    public void nestedArenasReuseMemory() {
+        Arena outer = Memory.openArena(runtime);
+        try {
+            Pointer first = outer.allocate(8);
+            first.putLongLong(0, 42L);
+
+            Arena inner = Memory.openArena(runtime);
+            long innerAddress = inner.allocate(8).address();
+            inner.close();
+
+            inner = Memory.openArena(runtime);
+            assertEquals(innerAddress, inner.allocate(8).address());
+            inner.close();
+
+            assertEquals(42L, first.getLongLong(0));
+        } finally {
+            outer.close();
+        }
+    }
+
+    @Test
+    public void outerArenaCannotAllocateWhileInnerIsOpen() {
+        Arena outer = Memory.openArena(runtime);
+        try {
+            Arena inner = Memory.openArena(runtime);
+            try {
+                outer.allocate(8);
+                fail("allocation from enclosing arena should fail");
+            } catch (IllegalStateException expected) {
+            } finally {
+                inner.close();
+            }
+            outer.allocate(8);
+        } finally {
+            outer.close();
+        }
+    }
+
+    @Test
+    public void closingOuterArenaClosesInner() {
+        Arena outer = Memory.openArena(runtime);
+        Arena inner = Memory.openArena(runtime);
+        outer.close();
+        try {
+            inner.allocate(8);
+            fail("allocation from closed arena should fail");
+        } catch (IllegalStateException expected) {
+        }
+        inner.close();
+    }
+
+    @Test
+    public void otherThread() throws InterruptedException {
+        final Arena arena = Memory.openArena(runtime);
+        final Throwable[] error = new Throwable[1];
+        try {
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        arena.allocate(8);
+                    } catch (Throwable ex) {
+                        error[0] = ex;
+                    }
+                }
+            });
+            t.start();
+            t.join();
+        } finally {
+            arena.close();
+        }
+        assertTrue(error[0] instanceof IllegalStateException);
+    }
+
+    @Test
+    public void deadThreadSlabIsFreed() throws InterruptedException {
+        long freed = NativeMemoryCleaner.getFreedBytes();
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                Arena arena = Memory.openArena(runtime);
+                try {
+                    arena.allocate(8);
+                } finally {
+                    arena.close();
+                }
+            }
+        });
+        t.start();
+        t.join();
+        t = null;
+
+        // The slab kept for the thread's next arena is only freed once the thread's allocator is collected
+        for (int i = 0; i < 100 && NativeMemoryCleaner.getFreedBytes() < freed + 64 * 1024; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(NativeMemoryCleaner.getFreedBytes() >= freed + 64 * 1024);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import jnr.ffi.annotations.LongLong;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link LibraryOption#Instrumentation}
+ */
+public class InstrumentationTest {
+    public static interface TestLib {
+        int add_int32_t(int i1, int i2);
+        @LongLong long add_int64_t(@LongLong long i1, @LongLong long i2);
+        boolean string_equals(String s1, String s2);
+        void jnr_ffi_instrumentation_missing_function();
+    }
+
+    private static TestLib load(Object statistics) {
+        return TstUtil.loadTestLib(TestLib.class, Collections.singletonMap(LibraryOption.Instrumentation, statistics));
+    }
+
+    private static CallStatistics.Snapshot find(CallStatistics statistics, String methodName) {
+        for (CallStatistics.Snapshot snapshot : statistics.snapshot()) {
+            if (snapshot.getMethod().getName().equals(methodName)) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    @Test
+    public void countsCalls() {
+        CallStatistics statistics = new CallStatistics();
+        TestLib testlib = load(statistics);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1, testlib.add_int32_t(i, 1));
+        }
+        assertEquals(0x100000001L, testlib.add_int64_t(1, 0x100000000L));
+        assertTrue(testlib.string_equals("test", "test"));
+
+        List<CallStatistics.Snapshot> snapshots = statistics.snapshot();
+        assertEquals(3, snapshots.size());
+
+        CallStatistics.Snapshot add = find(statistics, "add_int32_t");
+        assertEquals("TestLib.add_int32_t", add.getName());
+        assertEquals("add_int32_t", add.getFunctionName());
+        assertEquals(100, add.getCallCount());
+        assertEquals(100, sum(add.getHistogram()));
+        assertTrue(add.getTotalNanos() > 0);
+        assertEquals(-1L, add.getAllocatedBytes());
+
+        assertEquals(1, find(statistics, "add_int64_t").getCallCount());
+        assertEquals(1, find(statistics, "string_equals").getCallCount());
+    }
+
+    @Test
+    public void countersAreSharedBetweenLoads() {
+        CallStatistics statistics = new CallStatistics();
+        load(statistics).add_int32_t(1, 2);
+        load(statistics).add_int32_t(3, 4);
+        assertEquals(2, find(statistics, "add_int32_t").getCallCount());
+    }
+
+    @Test
+    public void reset() {
+        CallStatistics statistics = new CallStatistics();
+        TestLib testlib = load(statistics);
+        testlib.add_int32_t(1, 2);
+        statistics.reset();
+        assertTrue(statistics.snapshot().isEmpty());
+        testlib.add_int32_t(1, 2);
+        assertEquals(1, find(statistics, "add_int32_t").getCallCount());
+    }
+
+    @Test
+    public void defaultStatistics() {
+        TestLib testlib = load(Boolean.TRUE);
+        CallStatistics.Snapshot before = find(CallStatistics.getDefault(), "add_int32_t");
+        testlib.add_int32_t(1, 2);
+        long count = before != null ? before.getCallCount() : 0;
+        assertEquals(count + 1, find(CallStatistics.getDefault(), "add_int32_t").getCallCount());
+    }
+
+    @Test
+    public void lazyBinding() {
+        final CallStatistics statistics = new CallStatistics();
+        TestLib testlib = TstUtil.loadTestLib(TestLib.class,
+                new java.util.HashMap<LibraryOption, Object>() {{
+                    put(LibraryOption.Instrumentation, statistics);
+                    put(LibraryOption.LazyBinding, Boolean.TRUE);
+                }});
+        assertEquals(3, testlib.add_int32_t(1, 2));
+        assertEquals(3, testlib.add_int32_t(1, 2));
+        assertEquals(2, find(statistics, "add_int32_t").getCallCount());
+    }
+
+    @Test
+    public void trackAllocations() {
+        CallStatistics statistics = new CallStatistics(true);
+        TestLib testlib = load(statistics);
+        testlib.string_equals("test", "test");
+        CallStatistics.Snapshot snapshot = find(statistics, "string_equals");
+        if (statistics.isTrackingAllocations()) {
+            assertTrue(snapshot.getAllocatedBytes() >= 0);
+        } else {
+            assertEquals(-1L, snapshot.getAllocatedBytes());
+        }
+    }
+
+    @Test(expected = UnsatisfiedLinkError.class)
+    public void missingFunction() {
+        load(new CallStatistics()).jnr_ffi_instrumentation_missing_function();
+    }
+
+    @Test
+    public void notInstrumentedByDefault() {
+        TestLib testlib = TstUtil.loadTestLib(TestLib.class);
+        for (Method m : testlib.getClass().getDeclaredMethods()) {
+            assertFalse(m.getName(), m.getName().contains("$jnr$raw$"));
+        }
+    }
+
+    @Test
+    public void histogramBuckets() {
+        assertEquals(63L, CallStatistics.getBucketUpperBound(0));
+        assertEquals(127L, CallStatistics.getBucketUpperBound(1));
+        assertEquals(Long.MAX_VALUE, CallStatistics.getBucketUpperBound(CallStatistics.HISTOGRAM_BUCKETS - 1));
+        assertEquals(0, CallStatistics.bucketOf(0));
+        assertEquals(0, CallStatistics.bucketOf(63));
+        assertEquals(1, CallStatistics.bucketOf(64));
+        assertEquals(1, CallStatistics.bucketOf(127));
+        assertEquals(CallStatistics.HISTOGRAM_BUCKETS - 1, CallStatistics.bucketOf(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import jnr.ffi.annotations.Delegate;
+import jnr.ffi.annotations.LongLong;
+import jnr.ffi.types.size_t;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link LibraryOption#LazyBinding}
+ */
+public class LazyBindingTest {
+    public static interface TestLib {
+        int add_int32_t(int i1, int i2);
+        @LongLong long add_int64_t(@LongLong long i1, @LongLong long i2);
+        double add_double(double f1, double f2);
+        short add_int16_t(short i1, short i2);
+        short add_int16_t(Short i1, short i2);
+        boolean string_equals(String s1, String s2);
+        void jnr_ffi_lazy_binding_missing_function();
+
+        public static interface Callback {
+            @Delegate int call(int value);
+        }
+        int testClosureIrIIIIIII(Callback closure, int a1, int a2, int a3, int a4, int a5, int a6);
+        int testClosureIrIIIIIII(Callback closure, Integer a1, int a2, int a3, int a4, int a5, int a6);
+    }
+
+    public static interface C {
+        int snprintf(Pointer buffer, @size_t long bufferSize, String format, Object... varargs);
+    }
+
+    static TestLib testlib;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        testlib = TstUtil.loadTestLib(TestLib.class,
+                Collections.singletonMap(LibraryOption.LazyBinding, Boolean.TRUE));
+    }
+
+    @Test
+    public void primitiveCalls() {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1, testlib.add_int32_t(i, 1));
+            assertEquals(i + 0x100000000L, testlib.add_int64_t(i, 0x100000000L));
+            assertEquals(i + 0.5d, testlib.add_double(i, 0.5d), 0d);
+        }
+    }
+
+    @Test
+    public void overloadedMethods() {
+        assertEquals((short) 3, testlib.add_int16_t((short) 1, (short) 2));
+        assertEquals((short) 7, testlib.add_int16_t(Short.valueOf((short) 3), (short) 4));
+    }
+
+    @Test
+    public void objectParameters() {
+        assertTrue(testlib.string_equals("test", "test"));
+    }
+
+    @Test
+    public void callbacksSharedBetweenMethods() {
+        // Both overloads are bound separately, but share the closure manager of the library
+        TestLib.Callback identity = new TestLib.Callback() {
+            public int call(int value) {
+                return value;
+            }
+        };
+        assertEquals(1 + 15, testlib.testClosureIrIIIIIII(identity, 1, 1, 2, 3, 4, 5));
+        assertEquals(2 + 15, testlib.testClosureIrIIIIIII(identity, Integer.valueOf(2), 1, 2, 3, 4, 5));
+    }
+
+    @Test
+    public void missingFunctionFailsOnCall() {
+        try {
+            testlib.jnr_ffi_lazy_binding_missing_function();
+            fail("calling a missing function should throw UnsatisfiedLinkError");
+        } catch (UnsatisfiedLinkError expected) {
+        }
+    }
+
+    @Test
+    public void varargs() {
+        C c = LibraryLoader.create(C.class).option(LibraryOption.LazyBinding, true)
+                .load(Platform.getNativePlatform().getStandardCLibraryName());
+        Pointer ptr = Memory.allocate(Runtime.getRuntime(c), 128);
+        int size = c.snprintf(ptr, 128, "%d %s", 42, "x");
+        assertEquals("42 x", ptr.getString(0, size, Charset.defaultCharset()));
+    }
+
+    @Test
+    public void concurrentFirstCall() throws InterruptedException {
+        final TestLib lib = TstUtil.loadTestLib(TestLib.class,
+                Collections.singletonMap(LibraryOption.LazyBinding, Boolean.TRUE));
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int base = t * 1000;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < 100; i++) {
+                        if (lib.add_int32_t(base, i) != base + i) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+    }
+}
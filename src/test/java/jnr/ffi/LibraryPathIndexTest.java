@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LibraryPathIndexTest {
+    private File tmpDir;
+    private File libDir;
+
+    @Before
+    public void createTempDir() throws IOException {
+        tmpDir = new File(System.getProperty("java.io.tmpdir"), "jnr-ffi-index-" + System.nanoTime());
+        libDir = new File(tmpDir, "lib");
+        assertTrue(libDir.mkdirs());
+    }
+
+    @After
+    public void deleteTempDir() {
+        rmDir(tmpDir);
+    }
+
+    private static void rmDir(File dir) {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    rmDir(child);
+                } else {
+                    child.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+
+    private void touch(String name) throws IOException {
+        assertTrue(new File(libDir, name).createNewFile());
+    }
+
+    private void setLastModified(long secondsAgo) {
+        // use whole seconds so coarse file system timestamps compare equal
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        assertTrue(libDir.setLastModified(now - secondsAgo * 1000));
+    }
+
+    private static String find(LibraryPathIndex index, File dir, String libName) {
+        LibraryPathIndex.Entry entry = index.find(dir.getAbsolutePath(), libName);
+        return entry != null ? entry.fileName : null;
+    }
+
+    @Test
+    public void highestVersionInDirectory() throws Exception {
+        touch("libfoo.so");
+        touch("libfoo.so.1");
+        touch("libfoo.so.1.10");
+        touch("libfoo.so.1.9.2");
+        touch("libfoo.so.2.x");
+        touch("libfoobar.so.3");
+        LibraryPathIndex index = new LibraryPathIndex(null);
+
+        assertEquals("libfoo.so.1.10", find(index, libDir, "foo"));
+        assertEquals("libfoobar.so.3", find(index, libDir, "foobar"));
+        assertNull(find(index, libDir, "bar"));
+    }
+
+    @Test
+    public void libraryNameIsNotAPattern() throws Exception {
+        touch("libstdc++.so.6");
+        touch("libfooXbar.so.1");
+        LibraryPathIndex index = new LibraryPathIndex(null);
+
+        assertEquals("libstdc++.so.6", find(index, libDir, "stdc++"));
+        assertNull(find(index, libDir, "foo.bar"));
+    }
+
+    @Test
+    public void rescannedWhenDirectoryChanges() throws Exception {
+        touch("libfoo.so.1");
+        setLastModified(60);
+        LibraryPathIndex index = new LibraryPathIndex(null);
+        assertEquals("libfoo.so.1", find(index, libDir, "foo"));
+
+        // an unchanged directory is not rescanned
+        touch("libfoo.so.2");
+        setLastModified(60);
+        assertEquals("libfoo.so.1", find(index, libDir, "foo"));
+
+        setLastModified(30);
+        assertEquals("libfoo.so.2", find(index, libDir, "foo"));
+    }
+
+    @Test
+    public void recentlyModifiedDirectoryIsNotCached() throws Exception {
+        touch("libfoo.so.1");
+        LibraryPathIndex index = new LibraryPathIndex(null);
+        assertEquals("libfoo.so.1", find(index, libDir, "foo"));
+
+        long lastModified = libDir.lastModified();
+        touch("libfoo.so.2");
+        libDir.setLastModified(lastModified);
+        assertEquals("libfoo.so.2", find(index, libDir, "foo"));
+    }
+
+    @Test
+    public void persistentIndex() throws Exception {
+        File indexFile = new File(tmpDir, "index");
+        touch("libfoo.so.1");
+        setLastModified(60);
+        assertEquals("libfoo.so.1", find(new LibraryPathIndex(indexFile), libDir, "foo"));
+        assertTrue(indexFile.isFile());
+
+        // a new index uses the saved entries while the directory is unchanged
+        assertTrue(new File(libDir, "libfoo.so.1").delete());
+        setLastModified(60);
+        assertEquals("libfoo.so.1", find(new LibraryPathIndex(indexFile), libDir, "foo"));
+
+        setLastModified(30);
+        assertNull(find(new LibraryPathIndex(indexFile), libDir, "foo"));
+    }
+
+    @Test
+    public void missingDirectory() throws Exception {
+        LibraryPathIndex index = new LibraryPathIndex(null);
+        assertNull(find(index, new File(tmpDir, "missing"), "foo"));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import jnr.ffi.annotations.LongLong;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link LibraryOption#ParallelBinding}
+ */
+public class ParallelBindingTest {
+    public static interface TestLib {
+        byte add_int8_t(byte i1, byte i2);
+        short add_int16_t(short i1, short i2);
+        int add_int32_t(int i1, int i2);
+        @LongLong long add_int64_t(@LongLong long i1, @LongLong long i2);
+        float add_float(float f1, float f2);
+        double add_double(double f1, double f2);
+        boolean string_equals(String s1, String s2);
+        int sum_int32_t_8(int a1, int a2, int a3, int a4, int a5, int a6, int a7, int a8);
+        void jnr_ffi_parallel_binding_missing_function();
+    }
+
+    private static void check(TestLib lib) {
+        assertEquals((byte) 3, lib.add_int8_t((byte) 1, (byte) 2));
+        assertEquals((short) 3, lib.add_int16_t((short) 1, (short) 2));
+        assertEquals(3, lib.add_int32_t(1, 2));
+        assertEquals(0x100000001L, lib.add_int64_t(1L, 0x100000000L));
+        assertEquals(3.5f, lib.add_float(1.25f, 2.25f), 0f);
+        assertEquals(3.5d, lib.add_double(1.25d, 2.25d), 0d);
+        assertTrue(lib.string_equals("test", "test"));
+        assertEquals(36, lib.sum_int32_t_8(1, 2, 3, 4, 5, 6, 7, 8));
+        try {
+            lib.jnr_ffi_parallel_binding_missing_function();
+            fail("calling a missing function should throw UnsatisfiedLinkError");
+        } catch (UnsatisfiedLinkError expected) {
+        }
+    }
+
+    @Test
+    public void defaultExecutor() {
+        check(TstUtil.loadTestLib(TestLib.class, Collections.singletonMap(LibraryOption.ParallelBinding, Boolean.TRUE)));
+    }
+
+    @Test
+    public void customExecutor() {
+        final AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                threads.incrementAndGet();
+                return new Thread(r);
+            }
+        });
+        try {
+            check(TstUtil.loadTestLib(TestLib.class, Collections.singletonMap(LibraryOption.ParallelBinding, executor)));
+            assertTrue(threads.get() > 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void tasksNotStartedByExecutor() {
+        // tasks the executor never starts are run on the loading thread
+        check(TstUtil.loadTestLib(TestLib.class, Collections.singletonMap(LibraryOption.ParallelBinding, new Executor() {
+            public void execute(Runnable command) {
+                // drop the task
+            }
+        })));
+    }
+}
@@ -29,6 +29,7 @@ import java.nio.charset.Charset;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  *
@@ -395,6 +396,7 @@ public class PointerTest {
         TestLib.Foo foo = structs[0];
 
         testlib.fill_struct_from_longs(0xdeadL, 0xbeefL, structs, 0x1eefcafe);
+        assertSame(foo, structs[0]);
         assertEquals(0xdeadL, foo.l1.get());
         assertEquals(0xbeefL, foo.l2.get());
         assertEquals(0x1eefcafeL, foo.l3.get());
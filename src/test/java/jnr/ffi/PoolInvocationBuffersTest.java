@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+
+import jnr.ffi.annotations.Delegate;
+import jnr.ffi.types.size_t;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link LibraryOption#PoolInvocationBuffers}
+ */
+public class PoolInvocationBuffersTest {
+    public static interface TestLib {
+        public static interface Callback {
+            @Delegate int call(int value);
+        }
+        int testClosureIrIIIIIII(Callback closure, int a1, int a2, int a3, int a4, int a5, int a6);
+    }
+
+    public static interface C {
+        int snprintf(Pointer buffer, @size_t long bufferSize, String format, Object... varargs);
+    }
+
+    static TestLib testlib;
+    static C c;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        testlib = TstUtil.loadTestLib(TestLib.class,
+                Collections.singletonMap(LibraryOption.PoolInvocationBuffers, Boolean.TRUE));
+        c = LibraryLoader.create(C.class).option(LibraryOption.PoolInvocationBuffers, true)
+                .load(Platform.getNativePlatform().getStandardCLibraryName());
+    }
+
+    @Test
+    public void repeatedCalls() {
+        TestLib.Callback identity = new TestLib.Callback() {
+            public int call(int value) {
+                return value;
+            }
+        };
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i + 15, testlib.testClosureIrIIIIIII(identity, i, 1, 2, 3, 4, 5));
+        }
+    }
+
+    @Test
+    public void reentrantCalls() {
+        TestLib.Callback recurse = new TestLib.Callback() {
+            public int call(int value) {
+                return value > 100 ? value : testlib.testClosureIrIIIIIII(this, value, 1, 1, 1, 1, 1) + 1;
+            }
+        };
+        // recurses with 0, 5, ... 100, then each of those 21 levels adds 1 on the way out
+        assertEquals(105 + 21, testlib.testClosureIrIIIIIII(recurse, 0, 0, 0, 0, 0, 0));
+    }
+
+    @Test
+    public void varargs() {
+        Pointer ptr = Memory.allocate(Runtime.getRuntime(c), 128);
+        for (int i = 0; i < 100; i++) {
+            int size = c.snprintf(ptr, 128, "%d %s", i, "x");
+            assertEquals(i + " x", ptr.getString(0, size, Charset.defaultCharset()));
+        }
+    }
+
+    @Test
+    public void varargsAfterException() {
+        Pointer ptr = Memory.allocate(Runtime.getRuntime(c), 128);
+        try {
+            c.snprintf(ptr, 128, "%d %d", 1, new Object());
+            fail("marshalling an Object should fail");
+        } catch (RuntimeException expected) {
+        }
+
+        int size = c.snprintf(ptr, 128, "%d %d", 1, 2);
+        assertEquals("1 2", ptr.getString(0, size, Charset.defaultCharset()));
+    }
+}
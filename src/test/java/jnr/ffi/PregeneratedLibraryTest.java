@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi;
+
+import jnr.ffi.annotations.Pregenerate;
+import jnr.ffi.provider.jffi.PregeneratedLibrary;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Tests for {@link jnr.ffi.processor.PregeneratedBindingProcessor}
+ */
+public class PregeneratedLibraryTest {
+    private static final String SOURCE =
+            "package jnr.ffi.pregenerated;\n" +
+            "import jnr.ffi.annotations.*;\n" +
+            "@Pregenerate public interface TestLib {\n" +
+            "    int add_int32_t(int i1, int i2);\n" +
+            "    @LongLong long add_int64_t(@LongLong long i1, @LongLong long i2);\n" +
+            "    byte add_int8_t(byte i1, byte i2);\n" +
+            "    short add_uint16_t(short i1, short i2);\n" +
+            "    float add_float(float f1, float f2);\n" +
+            "    double add_double(double f1, double f2);\n" +
+            "    long add_long(long i1, long i2);\n" +
+            "    void jnr_ffi_pregenerated_missing_function();\n" +
+            "    @Pregenerate public interface ManyParametersLib {\n" +
+            "        int sum_int32_t_8(int a1, int a2, int a3, int a4, int a5, int a6, int a7, int a8);\n" +
+            "        double sum_mixed_8(int a1, double a2, @LongLong long a3, float a4, byte a5, double a6, short a7, float a8);\n" +
+            "    }\n" +
+            "}\n" +
+            "@Pregenerate interface UnsupportedLib {\n" +
+            "    int string_equals(String s1, String s2);\n" +
+            "}\n";
+
+    private static Class<?> testLibClass;
+    private static Object testlib;
+    private static Class<?> manyParametersLibClass;
+    private static Object manyParametersLib;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+
+        File dir = createTempDirectory();
+        File sourceDir = new File(dir, "jnr/ffi/pregenerated");
+        sourceDir.mkdirs();
+        File source = new File(sourceDir, "TestLib.java");
+        FileWriter writer = new FileWriter(source);
+        try {
+            writer.write(SOURCE);
+        } finally {
+            writer.close();
+        }
+
+        String classPath = location(Pregenerate.class) + File.pathSeparator + location(com.kenai.jffi.Function.class);
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int result = compiler.run(null, null, err, "-classpath", classPath, "-d", dir.getPath(), "-s", dir.getPath(),
+                "-processor", "jnr.ffi.processor.PregeneratedBindingProcessor", source.getPath());
+        assertEquals(err.toString(), 0, result);
+        assertTrue("unsupported interface should be reported", err.toString().contains("cannot be pregenerated"));
+        assertFalse(new File(sourceDir, "UnsupportedLib$jnr$ffi$Pregenerated.java").exists());
+        assertTrue("interface with too many parameters should be reported", err.toString().contains("more than 6 parameters"));
+        assertFalse(new File(sourceDir, "TestLib$ManyParametersLib$jnr$ffi$Pregenerated.java").exists());
+
+        ClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() }, PregeneratedLibraryTest.class.getClassLoader());
+        testLibClass = Class.forName("jnr.ffi.pregenerated.TestLib", true, loader);
+        testlib = TstUtil.loadTestLib(testLibClass);
+        manyParametersLibClass = Class.forName("jnr.ffi.pregenerated.TestLib$ManyParametersLib", true, loader);
+        manyParametersLib = TstUtil.loadTestLib(manyParametersLibClass);
+    }
+
+    private static File createTempDirectory() throws IOException {
+        File dir = File.createTempFile("pregenerated", "");
+        dir.delete();
+        dir.mkdirs();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    private static String location(Class klass) throws Exception {
+        return new File(klass.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    private static Object invoke(String name, Object... args) throws Throwable {
+        return invoke(testLibClass, testlib, name, args);
+    }
+
+    private static Object invoke(Class<?> libraryClass, Object library, String name, Object... args) throws Throwable {
+        for (Method m : libraryClass.getMethods()) {
+            if (m.getName().equals(name)) {
+                try {
+                    return m.invoke(library, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    @Test
+    public void pregeneratedClassIsUsed() {
+        assertTrue(testlib instanceof PregeneratedLibrary);
+        assertEquals("jnr.ffi.pregenerated.TestLib$jnr$ffi$Pregenerated", testlib.getClass().getName());
+    }
+
+    @Test
+    public void fastNumericCalls() throws Throwable {
+        assertEquals(3, invoke("add_int32_t", 1, 2));
+        assertEquals(0x100000001L, invoke("add_int64_t", 1L, 0x100000000L));
+        assertEquals((byte) -128, invoke("add_int8_t", (byte) 127, (byte) 1));
+        assertEquals((short) 0x8000, invoke("add_uint16_t", (short) 0x7fff, (short) 1));
+        assertEquals(3.5f, (Float) invoke("add_float", 1.25f, 2.25f), 0f);
+        assertEquals(3.5d, (Double) invoke("add_double", 1.25d, 2.25d), 0d);
+        assertEquals(-1L, invoke("add_long", -2L, 1L));
+    }
+
+    @Test
+    public void manyParametersLeftToRuntime() throws Throwable {
+        assertFalse(manyParametersLib instanceof PregeneratedLibrary);
+        assertEquals(36, invoke(manyParametersLibClass, manyParametersLib, "sum_int32_t_8", 1, 2, 3, 4, 5, 6, 7, 8));
+        assertEquals(1 + 2.5d + 0x100000000L + 0.5f + -1 + 3.25d + 300 + 0.25f,
+                (Double) invoke(manyParametersLibClass, manyParametersLib, "sum_mixed_8", 1, 2.5d, 0x100000000L, 0.5f, (byte) -1, 3.25d, (short) 300, 0.25f), 0d);
+    }
+
+    @Test(expected = UnsatisfiedLinkError.class)
+    public void missingFunction() throws Throwable {
+        invoke("jnr_ffi_pregenerated_missing_function");
+    }
+}
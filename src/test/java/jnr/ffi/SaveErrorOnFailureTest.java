@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi;
+
+import jnr.ffi.annotations.SaveErrorOnFailure;
+import jnr.ffi.annotations.IgnoreError;
+import jnr.ffi.types.int64_t;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class SaveErrorOnFailureTest {
+    private static final int MAGIC = 0x1234;
+
+    public interface SaveOnFailure {
+        @IgnoreError
+        @SaveErrorOnFailure
+        int setLastError(int error);
+
+        @IgnoreError
+        @SaveErrorOnFailure
+        int setLastErrorAndReturn(int error, int result);
+    }
+
+    public interface SaveOnZero {
+        @SaveErrorOnFailure(value = 0, returnErrno = true)
+        int setLastError(int error);
+    }
+
+    public interface ReturnErrno {
+        @SaveErrorOnFailure(returnErrno = true)
+        int setLastError(int error);
+
+        @SaveErrorOnFailure(returnErrno = true)
+        long setLastErrorAndReturnLongLong(int error, @int64_t long result);
+    }
+
+    @Test
+    public void savesErrorOnFailure() {
+        SaveOnFailure lib = TstUtil.loadTestLib(SaveOnFailure.class);
+        Runtime runtime = Runtime.getRuntime(lib);
+        runtime.setLastError(0);
+
+        assertEquals(-1, lib.setLastError(MAGIC));
+        assertEquals(MAGIC, runtime.getLastError());
+    }
+
+    @Test
+    public void returnsResultOnSuccess() {
+        SaveOnZero lib = TstUtil.loadTestLib(SaveOnZero.class);
+        assertEquals(-1, lib.setLastError(MAGIC));
+    }
+
+    @Test
+    public void returnsNegatedErrno() {
+        ReturnErrno lib = TstUtil.loadTestLib(ReturnErrno.class);
+        assertEquals(-MAGIC, lib.setLastError(MAGIC));
+        assertEquals(MAGIC, Runtime.getRuntime(lib).getLastError());
+    }
+
+    @Test
+    public void successSkipsSavingError() {
+        // Only the x86_64 stubs branch on the result; the other invokers save errno after every call
+        Platform platform = Platform.getNativePlatform();
+        assumeTrue(platform.getCPU() == Platform.CPU.X86_64 && platform.getOS() != Platform.OS.WINDOWS
+                && Boolean.valueOf(System.getProperty("jnr.ffi.asm.enabled", "true"))
+                && Boolean.valueOf(System.getProperty("jnr.ffi.x86asm.enabled", "true")));
+
+        SaveOnFailure lib = TstUtil.loadTestLib(SaveOnFailure.class);
+        Runtime runtime = Runtime.getRuntime(lib);
+        runtime.setLastError(0);
+
+        assertEquals(0, lib.setLastErrorAndReturn(MAGIC, 0));
+        assertEquals(0, runtime.getLastError());
+        assertEquals(-1, lib.setLastErrorAndReturn(MAGIC, -1));
+        assertEquals(MAGIC, runtime.getLastError());
+    }
+
+    @Test
+    public void returnsNegatedErrnoForLong() {
+        ReturnErrno lib = TstUtil.loadTestLib(ReturnErrno.class);
+        assertEquals(0x123456789L, lib.setLastErrorAndReturnLongLong(MAGIC, 0x123456789L));
+        assertEquals(-MAGIC, lib.setLastErrorAndReturnLongLong(MAGIC, -1L));
+    }
+}
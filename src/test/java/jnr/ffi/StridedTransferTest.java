@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the strided bulk transfer methods of {@link Pointer} and the column methods of {@link StructLayout}
+ */
+public class StridedTransferTest {
+    private static final int COUNT = 17;
+    private static final int STRIDE = 24;
+
+    private final Runtime runtime = Runtime.getSystemRuntime();
+
+    public static final class Particle extends StructLayout {
+        public final Signed32 id = new Signed32();
+        public final Signed8 flags = new Signed8();
+        public final Double x = new Double();
+        public final Float mass = new Float();
+
+        public Particle(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    private Pointer[] memories() {
+        Pointer direct = runtime.getMemoryManager().allocateDirect(COUNT * STRIDE);
+        return new Pointer[] {
+            direct,
+            Pointer.wrap(runtime, direct.address()),
+            runtime.getMemoryManager().allocate(COUNT * STRIDE),
+            runtime.getMemoryManager().allocate(COUNT * STRIDE + 8).slice(8),
+        };
+    }
+
+    @Test
+    public void getStrided() {
+        for (Pointer memory : memories()) {
+            for (int i = 0; i < COUNT; i++) {
+                memory.putByte(i * STRIDE, (byte) i);
+                memory.putShort(i * STRIDE + 2, (short) (i * 3));
+                memory.putInt(i * STRIDE + 4, i * 7);
+                memory.putLongLong(i * STRIDE + 8, i * 0x100000001L);
+                memory.putDouble(i * STRIDE + 16, i * 0.25d);
+            }
+            byte[] bytes = new byte[COUNT + 1];
+            short[] shorts = new short[COUNT];
+            int[] ints = new int[COUNT];
+            long[] longs = new long[COUNT];
+            double[] doubles = new double[COUNT];
+            memory.getStrided(0, STRIDE, bytes, 1, COUNT);
+            memory.getStrided(2, STRIDE, shorts, 0, COUNT);
+            memory.getStrided(4, STRIDE, ints, 0, COUNT);
+            memory.getStrided(8, STRIDE, longs, 0, COUNT);
+            memory.getStrided(16, STRIDE, doubles, 0, COUNT);
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals((byte) i, bytes[i + 1]);
+                assertEquals((short) (i * 3), shorts[i]);
+                assertEquals(i * 7, ints[i]);
+                assertEquals(i * 0x100000001L, longs[i]);
+                assertEquals(i * 0.25d, doubles[i], 0d);
+            }
+        }
+    }
+
+    @Test
+    public void putStrided() {
+        for (Pointer memory : memories()) {
+            short[] shorts = new short[COUNT];
+            float[] floats = new float[COUNT];
+            for (int i = 0; i < COUNT; i++) {
+                shorts[i] = (short) -i;
+                floats[i] = i * 1.5f;
+            }
+            memory.putStrided(2, STRIDE, shorts, 0, COUNT);
+            memory.putStrided(20, STRIDE, floats, 0, COUNT);
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals((short) -i, memory.getShort(i * STRIDE + 2));
+                assertEquals(i * 1.5f, memory.getFloat(i * STRIDE + 20), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void contiguousStride() {
+        for (Pointer memory : memories()) {
+            int[] src = new int[COUNT];
+            for (int i = 0; i < COUNT; i++) {
+                src[i] = i * 11;
+            }
+            memory.putStrided(0, 4, src, 0, COUNT);
+            int[] dst = new int[COUNT];
+            memory.get(0, dst, 0, COUNT);
+            assertArrayEquals(src, dst);
+            memory.getStrided(0, 4, dst = new int[COUNT], 0, COUNT);
+            assertArrayEquals(src, dst);
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfBoundsDirect() {
+        runtime.getMemoryManager().allocateDirect(COUNT * STRIDE).getStrided(4, STRIDE, new int[COUNT + 1], 0, COUNT + 1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfBoundsHeap() {
+        runtime.getMemoryManager().allocate(COUNT * STRIDE).putStrided(STRIDE - 2, STRIDE, new int[COUNT], 0, COUNT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeStride() {
+        runtime.getMemoryManager().allocate(COUNT * STRIDE).getStrided(COUNT * STRIDE - 4, -STRIDE, new int[COUNT], 0, COUNT);
+    }
+
+    @Test
+    public void columns() {
+        Particle layout = new Particle(runtime);
+        assertEquals(STRIDE, layout.size());
+        for (Pointer memory : memories()) {
+            int[] ids = new int[COUNT];
+            double[] xs = new double[COUNT];
+            float[] masses = new float[COUNT];
+            for (int i = 0; i < COUNT; i++) {
+                ids[i] = 1000 + i;
+                xs[i] = i / 4d;
+                masses[i] = i * 2f;
+            }
+            layout.id.putColumn(memory, ids, 0, COUNT);
+            layout.x.putColumn(memory, xs, 0, COUNT);
+            layout.mass.putColumn(memory, masses, 0, COUNT);
+            for (int i = 0; i < COUNT; i++) {
+                Pointer p = memory.slice(i * layout.size());
+                assertEquals(1000 + i, layout.id.get(p));
+                assertEquals(i / 4d, layout.x.get(p), 0d);
+                assertEquals(i * 2f, layout.mass.get(p), 0f);
+            }
+
+            int[] readIds = new int[COUNT];
+            layout.id.getColumn(memory, readIds, 0, COUNT);
+            assertArrayEquals(ids, readIds);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnTypeMismatch() {
+        Particle layout = new Particle(runtime);
+        layout.id.getColumn(runtime.getMemoryManager().allocate(COUNT * STRIDE), new float[COUNT], 0, COUNT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void columnSizeMismatch() {
+        Particle layout = new Particle(runtime);
+        layout.flags.getColumn(runtime.getMemoryManager().allocate(COUNT * STRIDE), new int[COUNT], 0, COUNT);
+    }
+}
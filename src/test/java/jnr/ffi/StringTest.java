@@ -18,12 +18,16 @@
 
 package jnr.ffi;
 
+import jnr.ffi.annotations.Encoding;
 import jnr.ffi.annotations.In;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+
+import java.nio.charset.Charset;
+
 import static org.junit.Assert.*;
 
 /**
@@ -43,6 +47,14 @@ public class StringTest {
         void string_concat(StringBuffer dst, CharSequence src);
         String ptr_return_array_element(@In String[] array, int index);
     }
+
+    public static interface EncodingLib {
+        @Encoding("UTF-8") boolean string_equals(String s1, byte[] s2);
+        @Encoding("ISO-8859-1") boolean string_equals(CharSequence s1, byte[] s2);
+        @Encoding("US-ASCII") boolean string_equals(StringBuilder s1, byte[] s2);
+        @Encoding("UTF-8") boolean string_equals(String s1, String s2);
+    }
+
     static TestLib testlib;
     @BeforeClass
     public static void setUpClass() throws Exception {
@@ -112,4 +124,40 @@ public class StringTest {
         final String MAGIC = "deadbeef";
         assertEquals(MAGIC, testlib.ptr_return_array_element(new String[] { MAGIC }, 0));
     }
+
+    private static byte[] nulTerminated(String s, String charset) {
+        byte[] bytes = s.getBytes(Charset.forName(charset));
+        byte[] terminated = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, terminated, 0, bytes.length);
+        return terminated;
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    @Test public void encodedStringParams() {
+        EncodingLib lib = TstUtil.loadTestLib(EncodingLib.class);
+        String[] strings = {
+                "", "deadbeef", "caf\u00e9", "\u20ac100", "\ud83d\ude00 smile", "bad \ud83d surrogate", "bad \ude00 surrogate\ud83d",
+                repeat("\u20ac", 1365), repeat("\u20ac", 1366), repeat("x", 5000)
+        };
+        for (String s : strings) {
+            assertTrue("UTF-8 encoding of " + s, lib.string_equals(s, nulTerminated(s, "UTF-8")));
+            assertTrue("ISO-8859-1 encoding of " + s, lib.string_equals((CharSequence) s, nulTerminated(s, "ISO-8859-1")));
+            assertTrue("US-ASCII encoding of " + s, lib.string_equals(new StringBuilder(s), nulTerminated(s, "US-ASCII")));
+        }
+    }
+
+    @Test public void encodedStringParamsAreDistinct() {
+        EncodingLib lib = TstUtil.loadTestLib(EncodingLib.class);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(lib.string_equals("caf\u00e9" + i, "caf\u00e9" + i));
+            assertFalse(lib.string_equals("caf\u00e9" + i, "caf\u00e9" + (i + 1)));
+        }
+    }
 }
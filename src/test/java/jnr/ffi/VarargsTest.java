@@ -1,6 +1,7 @@
 package jnr.ffi;
 
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
 import java.nio.charset.Charset;
 
 import jnr.ffi.annotations.Encoding;
@@ -10,6 +11,7 @@ import jnr.ffi.types.size_t;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -57,6 +59,36 @@ public class VarargsTest {
         Assert.assertEquals(expected, result);
     }
 
+    @Test public void testRepeatedShapes() {
+        Pointer ptr = Runtime.getRuntime(c).getMemoryManager().allocate(5000);
+        for (int i = 0; i < 3; i++) {
+            int size = c.snprintf(ptr, 5000, "%d-%s", i, "abc");
+            Assert.assertEquals("" + i + "-abc", ptr.getString(0, size, Charset.defaultCharset()));
+
+            size = c.snprintf(ptr, 5000, "%s", UTF8Encoding.class, "\u7684");
+            Assert.assertEquals("\u7684", ptr.getString(0, size, Charset.forName("UTF-8")));
+
+            size = c.snprintf(ptr, 5000, "%zu %d", size_t.class, 12345L + i, 7);
+            Assert.assertEquals((12345 + i) + " 7", ptr.getString(0, size, Charset.defaultCharset()));
+
+            size = c.snprintf(ptr, 5000, "%.1f", 1.5d);
+            Assert.assertEquals("1.5", ptr.getString(0, size, Charset.defaultCharset()));
+        }
+    }
+
+    @Test public void testGeneratedMethod() {
+        Assume.assumeTrue(Boolean.valueOf(System.getProperty("jnr.ffi.asm.enabled", "true"))
+                && Boolean.valueOf(System.getProperty("jnr.ffi.fast-varargs.enabled", "true")));
+
+        // The generated method holds the VariadicFunction itself; the reflective fallback holds an Invoker
+        boolean variadicFunction = false;
+        for (Field field : c.getClass().getDeclaredFields()) {
+            Assert.assertFalse(field.toString(), jnr.ffi.provider.Invoker.class.isAssignableFrom(field.getType()));
+            variadicFunction |= field.getType().getName().equals("jnr.ffi.provider.jffi.VariadicFunction");
+        }
+        Assert.assertTrue(variadicFunction);
+    }
+
     @Meta
     @Encoding(value="ASCII")
     public static @interface AsciiEncoding {
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.byref;
+
+import java.util.Collections;
+
+import jnr.ffi.LibraryLoader;
+import jnr.ffi.LibraryOption;
+import jnr.ffi.Platform;
+import jnr.ffi.Pointer;
+import jnr.ffi.TstUtil;
+import jnr.ffi.annotations.In;
+import jnr.ffi.annotations.Out;
+import jnr.ffi.types.size_t;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link LibraryOption#ScratchByReference}
+ */
+public class ScratchByReferenceTest {
+    public static interface TestLib {
+        int ptr_ret_int32_t(@In IntByReference p, int offset);
+        void ptr_set_int32_t(@Out IntByReference p, int offset, int value);
+        double ptr_ret_double(DoubleByReference p, int offset);
+        void ptr_set_double(DoubleByReference p, int offset, double value);
+    }
+
+    public static interface C {
+        Pointer memcpy(@Out LongLongByReference dst, @In LongLongByReference src, @size_t long size);
+    }
+
+    static TestLib testlib;
+    static C c;
+
+    @BeforeClass
+    public static void setUpClass() {
+        testlib = TstUtil.loadTestLib(TestLib.class,
+                Collections.singletonMap(LibraryOption.ScratchByReference, Boolean.TRUE));
+        c = LibraryLoader.create(C.class).option(LibraryOption.ScratchByReference, true)
+                .load(Platform.getNativePlatform().getStandardCLibraryName());
+    }
+
+    @Test
+    public void inOut() {
+        DoubleByReference ref = new DoubleByReference(1.5d);
+        assertEquals(1.5d, testlib.ptr_ret_double(ref, 0), 0d);
+        testlib.ptr_set_double(ref, 0, 2.5d);
+        assertEquals(2.5d, ref.getValue(), 0d);
+    }
+
+    @Test
+    public void repeatedCalls() {
+        IntByReference ref = new IntByReference();
+        for (int i = 0; i < 10000; i++) {
+            testlib.ptr_set_int32_t(ref, 0, i);
+            assertEquals(i, ref.intValue());
+            assertEquals(i, testlib.ptr_ret_int32_t(ref, 0));
+        }
+    }
+
+    @Test
+    public void multipleReferences() {
+        LongLongByReference dst = new LongLongByReference();
+        for (long i = 0; i < 1000; i++) {
+            c.memcpy(dst, new LongLongByReference(i * 0x100000001L), 8);
+            assertEquals(i * 0x100000001L, dst.longValue());
+        }
+    }
+}
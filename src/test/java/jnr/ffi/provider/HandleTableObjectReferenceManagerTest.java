@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider;
+
+import jnr.ffi.ObjectReferenceManager;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HandleTableObjectReferenceManagerTest {
+
+    @Test public void sameObjectReturned() {
+        ObjectReferenceManager<String> referenceManager = new HandleTableObjectReferenceManager<String>(Runtime.getSystemRuntime());
+        String bar = "bar";
+        Pointer ptr = referenceManager.add(bar);
+        assertSame(bar, referenceManager.get(ptr));
+        assertNotEquals(0L, ptr.address());
+    }
+
+    @Test public void differentPointerReturnedForSameObject() {
+        ObjectReferenceManager<String> referenceManager = new HandleTableObjectReferenceManager<String>(Runtime.getSystemRuntime());
+        String bar = "bar";
+        Pointer ptr = referenceManager.add(bar);
+        Pointer ptr2 = referenceManager.add(bar);
+        assertSame(bar, referenceManager.get(ptr));
+        assertSame(bar, referenceManager.get(ptr2));
+        assertNotEquals(ptr, ptr2);
+    }
+
+    @Test public void remove() {
+        ObjectReferenceManager<String> referenceManager = new HandleTableObjectReferenceManager<String>(Runtime.getSystemRuntime());
+        Pointer ptr = referenceManager.add("bar");
+        assertTrue(referenceManager.remove(ptr));
+        assertNull(referenceManager.get(ptr));
+        assertFalse(referenceManager.remove(ptr));
+    }
+
+    @Test public void staleReferenceAfterSlotReuse() {
+        ObjectReferenceManager<String> referenceManager = new HandleTableObjectReferenceManager<String>(Runtime.getSystemRuntime());
+        Pointer ptr = referenceManager.add("foo");
+        referenceManager.remove(ptr);
+        Pointer ptr2 = referenceManager.add("bar");
+        assertNull(referenceManager.get(ptr));
+        assertFalse(referenceManager.remove(ptr));
+        assertEquals("bar", referenceManager.get(ptr2));
+    }
+
+    @Test public void unknownReference() {
+        ObjectReferenceManager<String> referenceManager = new HandleTableObjectReferenceManager<String>(Runtime.getSystemRuntime());
+        Pointer ptr = Runtime.getSystemRuntime().getMemoryManager().newPointer(0xdeadbeefL);
+        assertNull(referenceManager.get(ptr));
+        assertFalse(referenceManager.remove(ptr));
+    }
+
+    @Test public void manyReferences() {
+        ObjectReferenceManager<Integer> referenceManager = new HandleTableObjectReferenceManager<Integer>(Runtime.getSystemRuntime());
+        List<Pointer> pointers = new ArrayList<Pointer>();
+        for (int i = 0; i < 5000; ++i) {
+            pointers.add(referenceManager.add(i));
+        }
+        for (int i = 0; i < pointers.size(); ++i) {
+            assertEquals(Integer.valueOf(i), referenceManager.get(pointers.get(i)));
+        }
+        for (Pointer ptr : pointers) {
+            assertTrue(referenceManager.remove(ptr));
+        }
+    }
+
+    @Test public void threadSlabs() throws InterruptedException {
+        final ObjectReferenceManager<Object> referenceManager = new HandleTableObjectReferenceManager<Object>(Runtime.getSystemRuntime(), true);
+        final Throwable[] errors = new Throwable[4];
+        Thread[] threads = new Thread[errors.length];
+        for (int t = 0; t < threads.length; ++t) {
+            final int index = t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        List<Pointer> pointers = new ArrayList<Pointer>();
+                        List<Object> objects = new ArrayList<Object>();
+                        for (int i = 0; i < 10000; ++i) {
+                            Object obj = new Object();
+                            objects.add(obj);
+                            pointers.add(referenceManager.add(obj));
+                            // release some of the references straight away, so slots are recycled
+                            if (i % 3 == 0) {
+                                assertTrue(referenceManager.remove(pointers.remove(pointers.size() - 1)));
+                                objects.remove(objects.size() - 1);
+                            }
+                        }
+                        for (int i = 0; i < pointers.size(); ++i) {
+                            assertSame(objects.get(i), referenceManager.get(pointers.get(i)));
+                            assertTrue(referenceManager.remove(pointers.get(i)));
+                        }
+                    } catch (Throwable ex) {
+                        errors[index] = ex;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Throwable error : errors) {
+            if (error != null) {
+                throw new AssertionError(error);
+            }
+        }
+    }
+
+    @Test public void deadThreadSlabsReclaimed() throws InterruptedException {
+        final ObjectReferenceManager<Object> referenceManager = new HandleTableObjectReferenceManager<Object>(Runtime.getSystemRuntime(), true);
+        long indexMask = Runtime.getSystemRuntime().addressSize() == 4 ? 0xfffffL : 0xffffffffL;
+        for (int i = 0; i < 1000; ++i) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    assertTrue(referenceManager.remove(referenceManager.add(new Object())));
+                }
+            });
+            thread.start();
+            thread.join();
+            if (i % 50 == 0) {
+                System.gc();
+            }
+        }
+        System.gc();
+        Thread.sleep(10);
+
+        // Without reclaiming, every dead thread would keep a batch of free slots and the table would keep growing
+        Pointer ptr = referenceManager.add(new Object());
+        assertTrue((ptr.address() & indexMask) < 1000 * 32 / 4);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.provider.converters;
+
+import java.util.Collections;
+
+import jnr.ffi.LibraryLoader;
+import jnr.ffi.LibraryOption;
+import jnr.ffi.Platform;
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.annotations.In;
+import jnr.ffi.annotations.Out;
+import jnr.ffi.byref.ByReference;
+import jnr.ffi.byref.LongLongByReference;
+import jnr.ffi.types.size_t;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ScratchMemory}
+ */
+public class ScratchMemoryTest {
+    public static interface C {
+        Pointer memcpy(@Out LongLongByReference dst, @In ByReference src, @size_t long size);
+    }
+
+    /** A reference which fails to convert, abandoning the call after the regions of earlier parameters were carved */
+    static final class BrokenReference implements ByReference<Long> {
+        public int nativeSize(Runtime runtime) {
+            return 8;
+        }
+
+        public void toNative(Runtime runtime, Pointer memory, long offset) {
+            throw new IllegalStateException("broken");
+        }
+
+        public void fromNative(Runtime runtime, Pointer memory, long offset) {
+        }
+
+        public Long getValue() {
+            return null;
+        }
+    }
+
+    private final Runtime runtime = Runtime.getSystemRuntime();
+
+    @Test
+    public void rewoundWhenAllReleased() {
+        ScratchMemory scratch = ScratchMemory.getInstance(runtime);
+        Pointer a = scratch.allocate(4);
+        Pointer b = scratch.allocate(12);
+        Pointer c = scratch.allocate(8);
+        assertEquals(ScratchMemory.UNIT_SIZE, b.address() - a.address());
+        assertEquals(3 * ScratchMemory.UNIT_SIZE, c.address() - a.address());
+
+        // releasing out of order keeps the live regions intact until the last one is released
+        assertTrue(scratch.release(a));
+        assertTrue(scratch.release(c));
+        assertTrue(scratch.release(b));
+        assertSame(a, scratch.allocate(8));
+        assertTrue(scratch.release(a));
+    }
+
+    @Test
+    public void regionsAreCleared() {
+        ScratchMemory scratch = ScratchMemory.getInstance(runtime);
+        Pointer a = scratch.allocate(8);
+        a.putLongLong(0, -1L);
+        scratch.release(a);
+        assertEquals(0L, scratch.allocate(8).getLongLong(0));
+        scratch.release(a);
+    }
+
+    @Test
+    public void exhausted() {
+        ScratchMemory scratch = ScratchMemory.getInstance(runtime);
+        assertNull(scratch.allocate(ScratchMemory.UNIT_COUNT * ScratchMemory.UNIT_SIZE + 1));
+        Pointer all = scratch.allocate(ScratchMemory.UNIT_COUNT * ScratchMemory.UNIT_SIZE);
+        assertNotNull(all);
+        assertNull(scratch.allocate(1));
+        scratch.release(all);
+        assertNotNull(all = scratch.allocate(1));
+        scratch.release(all);
+    }
+
+    @Test
+    public void foreignPointersNotReleased() {
+        ScratchMemory scratch = ScratchMemory.getInstance(runtime);
+        Pointer a = scratch.allocate(8);
+        assertFalse(scratch.release(runtime.getMemoryManager().allocate(8)));
+        assertFalse(scratch.release(runtime.getMemoryManager().allocateDirect(8)));
+        assertFalse(scratch.release(a.slice(4)));
+        assertTrue(scratch.release(a));
+    }
+
+    @Test
+    public void scopeReclaimsUnreleasedRegions() {
+        ScratchMemory scratch = ScratchMemory.getInstance(runtime);
+        Pointer outer = scratch.allocate(8);
+
+        scratch.enterScope();
+        scratch.allocate(8);
+        scratch.enterScope();
+        Pointer inner = scratch.allocate(16);
+        scratch.exitScope();
+        assertSame(inner, scratch.allocate(8));
+        scratch.exitScope();
+
+        // only the outer region is still live, so releasing it rewinds the whole slab
+        assertTrue(scratch.release(outer));
+        Pointer all = scratch.allocate(ScratchMemory.UNIT_COUNT * ScratchMemory.UNIT_SIZE);
+        assertNotNull(all);
+        scratch.release(all);
+    }
+
+    @Test
+    public void abandonedCallReclaimed() {
+        C c = LibraryLoader.create(C.class).option(LibraryOption.ScratchByReference, true)
+                .load(Platform.getNativePlatform().getStandardCLibraryName());
+        LongLongByReference dst = new LongLongByReference();
+        for (int i = 0; i < ScratchMemory.UNIT_COUNT; i++) {
+            try {
+                c.memcpy(dst, new BrokenReference(), 8);
+                fail("conversion should fail");
+            } catch (IllegalStateException expected) {
+            }
+        }
+        c.memcpy(dst, new LongLongByReference(1234L), 8);
+        assertEquals(1234L, dst.longValue());
+
+        ScratchMemory scratch = ScratchMemory.getInstance(Runtime.getRuntime(c));
+        Pointer all = scratch.allocate(ScratchMemory.UNIT_COUNT * ScratchMemory.UNIT_SIZE);
+        assertNotNull("scratch memory leaked by abandoned calls", all);
+        scratch.release(all);
+    }
+}
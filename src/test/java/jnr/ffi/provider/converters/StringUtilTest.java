@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.provider.converters;
+
+import jnr.ffi.provider.ParameterFlags;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link StringUtil}
+ */
+public class StringUtilTest {
+    private static final String TEXT = "a\u00e9\u20ac\ud83d\ude00\ud800z";
+
+    @Test
+    public void convertersInterned() {
+        Charset utf16 = Charset.forName("UTF-16LE");
+        assertSame(CharSequenceParameterConverter.getInstance(utf16, null),
+                CharSequenceParameterConverter.getInstance(StringUtil.forName("UTF-16LE"), null));
+        assertSame(StringResultConverter.getInstance(utf16), StringResultConverter.getInstance(utf16));
+        assertSame(StringBuilderParameterConverter.getInstance(utf16, ParameterFlags.IN, null),
+                StringBuilderParameterConverter.getInstance(utf16, ParameterFlags.IN, null));
+        assertNotSame(StringBuilderParameterConverter.getInstance(utf16, ParameterFlags.IN, null),
+                StringBuilderParameterConverter.getInstance(utf16, ParameterFlags.OUT, null));
+    }
+
+    @Test
+    public void codersReused() {
+        Charset utf16 = Charset.forName("UTF-16LE");
+        assertSame(StringUtil.getEncoder(utf16), StringUtil.getEncoder(utf16));
+        assertSame(StringUtil.getDecoder(utf16), StringUtil.getDecoder(utf16));
+        assertEquals(utf16, StringUtil.getEncoder(utf16).charset());
+    }
+
+    @Test
+    public void fastEncodingMatchesCharset() {
+        assertFastEncoding("UTF-8");
+        assertFastEncoding("US-ASCII");
+        assertFastEncoding("ISO-8859-1");
+    }
+
+    private static void assertFastEncoding(String name) {
+        Charset charset = Charset.forName(name);
+        int fastEncoding = StringUtil.fastEncoding(charset);
+        ByteBuffer expected = charset.encode(TEXT);
+        byte[] expectedBytes = new byte[expected.remaining()];
+        expected.get(expectedBytes);
+
+        ByteBuffer buffer = ByteBuffer.allocate(StringUtil.encodedLength(TEXT, fastEncoding));
+        assertEquals(name, buffer.capacity(), StringUtil.encode(TEXT, buffer, fastEncoding));
+        assertArrayEquals(name, expectedBytes, buffer.array());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.Platform;
+import jnr.ffi.NativeType;
+import jnr.ffi.Runtime;
+import jnr.ffi.TstUtil;
+import jnr.ffi.annotations.SaveErrorOnFailure;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests for the code generated by {@link AArch64StubCompiler}.  The expected encodings are taken from the
+ * ARM architecture reference manual.  The stubs are only executed on AArch64 with
+ * {@code jnr.ffi.aarch64asm.enabled=true}, e.g. by {@code mvn test -Paarch64-qemu}.
+ */
+public class AArch64StubCompilerTest {
+    private static final long FUNCTION = 0x0000ffff12345678L;
+    private static final long ERRNO = 0x0000ffff9abcdef0L;
+
+    @Test
+    public void tailCall() {
+        int[] code = AArch64StubCompiler.generate(FUNCTION, NativeType.SINT, int.class,
+                new NativeType[] { NativeType.SINT, NativeType.ADDRESS }, new Class[] { int.class, long.class }, 0L, null);
+        assertArrayEquals(new int[] {
+                0x2a0203e0, // mov w0, w2
+                0xaa0303e1, // mov x1, x3
+                0x58000050, // ldr x16, #8
+                0xd61f0200, // br x16
+                0x12345678, 0x0000ffff,
+        }, code);
+    }
+
+    @Test
+    public void floatParametersStayInPlace() {
+        int[] code = AArch64StubCompiler.generate(FUNCTION, NativeType.DOUBLE, double.class,
+                new NativeType[] { NativeType.DOUBLE, NativeType.SCHAR, NativeType.FLOAT, NativeType.USHORT },
+                new Class[] { double.class, int.class, float.class, int.class }, 0L, null);
+        assertArrayEquals(new int[] {
+                0x13001c40, // sxtb w0, w2
+                0x53003c61, // uxth w1, w3
+                0x58000050, // ldr x16, #8
+                0xd61f0200, // br x16
+                0x12345678, 0x0000ffff,
+        }, code);
+    }
+
+    @Test
+    public void intToLongParameters() {
+        int[] code = AArch64StubCompiler.generate(FUNCTION, NativeType.VOID, void.class,
+                new NativeType[] { NativeType.SLONGLONG, NativeType.ULONGLONG, NativeType.UCHAR },
+                new Class[] { int.class, int.class, int.class }, 0L, null);
+        assertEquals(0x93407c40, code[0]); // sxtw x0, w2
+        assertEquals(0x2a0303e1, code[1]); // mov w1, w3
+        assertEquals(0x53001c82, code[2]); // uxtb w2, w4
+    }
+
+    @Test
+    public void resultConversion() {
+        int[] code = AArch64StubCompiler.generate(FUNCTION, NativeType.SCHAR, int.class,
+                new NativeType[0], new Class[0], 0L, null);
+        assertArrayEquals(new int[] {
+                0xa9be7bfd, // stp x29, x30, [sp, #-32]!
+                0x910003fd, // mov x29, sp
+                0x580000d0, // ldr x16, #24
+                0xd63f0200, // blr x16
+                0x13001c00, // sxtb w0, w0
+                0xa8c27bfd, // ldp x29, x30, [sp], #32
+                0xd65f03c0, // ret
+                0xd503201f, // nop
+                0x12345678, 0x0000ffff,
+        }, code);
+    }
+
+    @Test
+    public void saveErrno() {
+        int[] code = AArch64StubCompiler.generate(FUNCTION, NativeType.UINT, long.class,
+                new NativeType[] { NativeType.SINT }, new Class[] { int.class }, ERRNO, null);
+        assertArrayEquals(new int[] {
+                0xa9be7bfd, // stp x29, x30, [sp, #-32]!
+                0x910003fd, // mov x29, sp
+                0x2a0203e0, // mov w0, w2
+                0x58000170, // ldr x16, #44
+                0xd63f0200, // blr x16
+                0xf9000be0, // str x0, [sp, #16]
+                0xfd000fe0, // str d0, [sp, #24]
+                0x58000130, // ldr x16, #36
+                0xd63f0200, // blr x16
+                0xf9400be0, // ldr x0, [sp, #16]
+                0xfd400fe0, // ldr d0, [sp, #24]
+                0x2a0003e0, // mov w0, w0
+                0xa8c27bfd, // ldp x29, x30, [sp], #32
+                0xd65f03c0, // ret
+                0x12345678, 0x0000ffff,
+                0x9abcdef0, 0x0000ffff,
+        }, code);
+    }
+
+    @Test
+    public void saveErrnoOnFailure() {
+        int[] code = AArch64StubCompiler.generate(FUNCTION, NativeType.SINT, int.class,
+                new NativeType[0], new Class[0], ERRNO, -1L);
+        assertArrayEquals(new int[] {
+                0xa9be7bfd, // stp x29, x30, [sp, #-32]!
+                0x910003fd, // mov x29, sp
+                0x580001d0, // ldr x16, #56
+                0xd63f0200, // blr x16
+                0xf9000be0, // str x0, [sp, #16]
+                0xfd000fe0, // str d0, [sp, #24]
+                0x58000191, // ldr x17, #48
+                0x6b11001f, // cmp w0, w17
+                0x54000061, // b.ne #12
+                0x58000170, // ldr x16, #44
+                0xd63f0200, // blr x16
+                0xf9400be0, // ldr x0, [sp, #16]
+                0xfd400fe0, // ldr d0, [sp, #24]
+                0xa8c27bfd, // ldp x29, x30, [sp], #32
+                0xd65f03c0, // ret
+                0xd503201f, // nop
+                0x12345678, 0x0000ffff,
+                0xffffffff, 0xffffffff,
+                0x9abcdef0, 0x0000ffff,
+        }, code);
+    }
+
+    public interface Lib {
+        int add_int32_t(int i1, int i2);
+        byte add_int8_t(byte i1, byte i2);
+        double add_double(double f1, double f2);
+        double sum_mixed_8(int a1, double a2, long a3, float a4, byte a5, double a6, short a7, float a8);
+        @SaveErrorOnFailure(returnErrno = true)
+        int setLastError(int error);
+    }
+
+    @Test
+    public void executeStubs() {
+        assumeTrue(Platform.getPlatform().getCPU() == Platform.CPU.AARCH64 && StubCompiler.aarch64Enabled);
+        assertTrue(StubCompiler.newCompiler(Runtime.getSystemRuntime()) instanceof AArch64StubCompiler);
+
+        Lib lib = TstUtil.loadTestLib(Lib.class);
+        assertTrue("stub not used", hasNativeMethod(lib.getClass(), "add_int32_t"));
+        assertEquals(3, lib.add_int32_t(1, 2));
+        assertEquals((byte) -128, lib.add_int8_t((byte) 127, (byte) 1));
+        assertEquals(3.5d, lib.add_double(1.25d, 2.25d), 0d);
+        assertEquals(36d, lib.sum_mixed_8(1, 2d, 3L, 4f, (byte) 5, 6d, (short) 7, 8f), 0d);
+        assertEquals(-1234, lib.setLastError(1234));
+    }
+
+    private static boolean hasNativeMethod(Class klass, String name) {
+        for (Method m : klass.getDeclaredMethods()) {
+            if (m.getName().startsWith(name) && Modifier.isNative(m.getModifiers())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import com.kenai.jffi.ArrayFlags;
+import com.kenai.jffi.CallContext;
+import com.kenai.jffi.CallingConvention;
+import com.kenai.jffi.HeapInvocationBuffer;
+import com.kenai.jffi.Type;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class InvocationBufferPoolTest {
+    private static final CallContext CALL_CONTEXT = CallContext.getCallContext(Type.SINT,
+            new Type[] { Type.POINTER }, CallingConvention.DEFAULT, false);
+
+    @Test
+    public void bufferIsReused() {
+        InvocationBufferPool pool = InvocationBufferPool.getInstance();
+        HeapInvocationBuffer buffer = pool.acquireBuffer(CALL_CONTEXT);
+        buffer.putArray(new byte[16], 0, 16, ArrayFlags.IN);
+        pool.releaseBuffer(CALL_CONTEXT, buffer);
+
+        assertSame(buffer, pool.acquireBuffer(CALL_CONTEXT));
+    }
+
+    @Test
+    public void releasedBufferDoesNotKeepArraysReachable() throws InterruptedException {
+        InvocationBufferPool pool = InvocationBufferPool.getInstance();
+        HeapInvocationBuffer buffer = pool.acquireBuffer(CALL_CONTEXT);
+        byte[] array = new byte[16];
+        WeakReference<byte[]> ref = new WeakReference<byte[]>(array);
+        buffer.putArray(array, 0, array.length, ArrayFlags.IN);
+        pool.releaseBuffer(CALL_CONTEXT, buffer);
+        array = null;
+
+        for (int i = 0; i < 100 && ref.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class NativeMemoryCleanerTest {
+    @Test
+    public void collectedMemoryIsFreed() throws InterruptedException {
+        Runtime runtime = Runtime.getSystemRuntime();
+        long freed = NativeMemoryCleaner.getFreedBytes();
+        long pending = NativeMemoryCleaner.getPendingBytes();
+
+        Pointer memory = runtime.getMemoryManager().allocateDirect(1024 * 1024);
+        assertTrue(NativeMemoryCleaner.getPendingBytes() >= pending + 1024 * 1024);
+        memory.putInt(0, 1);
+        memory = null;
+
+        for (int i = 0; i < 100 && NativeMemoryCleaner.getFreedBytes() < freed + 1024 * 1024; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(NativeMemoryCleaner.getFreedBytes() >= freed + 1024 * 1024);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link NativeStrings}
+ */
+public class NativeStringsTest {
+    private final Runtime runtime = Runtime.getSystemRuntime();
+
+    @Test
+    public void lengthAtEveryAlignment() {
+        Pointer memory = runtime.getMemoryManager().allocateDirect(64);
+        for (int offset = 0; offset < 16; offset++) {
+            for (int length = 0; length < 24; length++) {
+                memory.setMemory(0, 64, (byte) 1);
+                memory.putByte(offset + length, (byte) 0);
+                assertEquals("offset " + offset, length, NativeStrings.length(memory.address() + offset, 40));
+            }
+        }
+    }
+
+    @Test
+    public void lengthLimited() {
+        Pointer memory = runtime.getMemoryManager().allocateDirect(64);
+        memory.setMemory(0, 64, (byte) 0x80);
+        memory.putByte(63, (byte) 0);
+        assertEquals(5, NativeStrings.length(memory.address() + 3, 5));
+        assertEquals(17, NativeStrings.length(memory.address() + 1, 17));
+        assertEquals(60, NativeStrings.length(memory.address() + 3, 100));
+    }
+
+    @Test
+    public void decode() {
+        Pointer memory = runtime.getMemoryManager().allocateDirect(16);
+        memory.put(0, new byte[] { 'a', (byte) 0xc3, (byte) 0xa9, 0 }, 0, 4);
+        assertEquals("a\u00c3\u00a9", memory.getString(0, 16, Charset.forName("ISO-8859-1")));
+        assertEquals("a\u00e9", memory.getString(0, 16, Charset.forName("UTF-8")));
+        assertEquals("a\ufffd\ufffd", memory.getString(0, 16, Charset.forName("US-ASCII")));
+        assertEquals("a", memory.getString(0, 1, Charset.forName("UTF-8")));
+        assertEquals("", memory.getString(3, 13, Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void longerThanScratch() {
+        int length = NativeStrings.SCRATCH_SIZE + 7;
+        Pointer memory = runtime.getMemoryManager().allocateDirect(length + 1);
+        memory.setMemory(0, length, (byte) 'x');
+        memory.putByte(length, (byte) 0);
+        String s = memory.getString(0);
+        assertEquals(length, s.length());
+        assertEquals('x', s.charAt(length - 1));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.provider.jffi;
+
+import jnr.ffi.Platform;
+import jnr.ffi.TstUtil;
+import jnr.ffi.annotations.In;
+import jnr.ffi.annotations.Out;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests for signatures with several array and buffer parameters, which {@link X86MethodGenerator} compiles
+ * to a stub for direct memory and to the {@code Invoker.invokeN} fallback for heap objects.
+ */
+public class X86MethodGeneratorTest {
+    public static interface TestLib {
+        void addIntBuffers3(@Out int[] dst, @In int[] a, @In int[] b, @In int[] c, int size);
+        void addIntBuffers4(@Out int[] dst, @In int[] a, @In int[] b, @In int[] c, @In int[] d, int size);
+        void addIntBuffers3(@Out IntBuffer dst, @In IntBuffer a, @In IntBuffer b, @In IntBuffer c, int size);
+        void addIntBuffers4(@Out IntBuffer dst, @In IntBuffer a, @In IntBuffer b, @In IntBuffer c, @In IntBuffer d, int size);
+        void addIntBuffers4(@Out ByteBuffer dst, @In ByteBuffer a, @In ByteBuffer b, @In ByteBuffer c, @In ByteBuffer d, int size);
+    }
+
+    private static final int[] A = { 1, 2, 3, 4 };
+    private static final int[] B = { 10, 20, 30, 40 };
+    private static final int[] C = { 100, 200, 300, 400 };
+    private static final int[] D = { 1000, 2000, 3000, 4000 };
+
+    static TestLib lib;
+
+    @BeforeClass
+    public static void setUpClass() {
+        lib = TstUtil.loadTestLib(TestLib.class);
+    }
+
+    @Test
+    public void methodsAreCompiled() {
+        Platform platform = Platform.getNativePlatform();
+        assumeTrue(platform.getOS() != Platform.OS.WINDOWS
+                && (platform.getCPU() == Platform.CPU.I386 || platform.getCPU() == Platform.CPU.X86_64)
+                && Boolean.valueOf(System.getProperty("jnr.ffi.asm.enabled", "true"))
+                && Boolean.valueOf(System.getProperty("jnr.ffi.x86asm.enabled", "true")));
+
+        int nativeMethods = 0;
+        for (Method m : lib.getClass().getDeclaredMethods()) {
+            if (m.getName().startsWith("addIntBuffers") && Modifier.isNative(m.getModifiers())) {
+                nativeMethods++;
+            }
+        }
+        assertEquals(5, nativeMethods);
+    }
+
+    @Test
+    public void heapArrays5() {
+        int[] dst = new int[4];
+        lib.addIntBuffers3(dst, A, B, C, dst.length);
+        assertArrayEquals(new int[] { 111, 222, 333, 444 }, dst);
+    }
+
+    @Test
+    public void heapArrays6() {
+        int[] dst = new int[4];
+        lib.addIntBuffers4(dst, A, B, C, D, dst.length);
+        assertArrayEquals(new int[] { 1111, 2222, 3333, 4444 }, dst);
+    }
+
+    @Test
+    public void heapBuffers5() {
+        int[] dst = new int[4];
+        lib.addIntBuffers3(IntBuffer.wrap(dst), IntBuffer.wrap(A), IntBuffer.wrap(B), IntBuffer.wrap(C), dst.length);
+        assertArrayEquals(new int[] { 111, 222, 333, 444 }, dst);
+    }
+
+    @Test
+    public void heapBuffers6() {
+        int[] dst = new int[4];
+        lib.addIntBuffers4(IntBuffer.wrap(dst), IntBuffer.wrap(A), IntBuffer.wrap(B), IntBuffer.wrap(C), IntBuffer.wrap(D),
+                dst.length);
+        assertArrayEquals(new int[] { 1111, 2222, 3333, 4444 }, dst);
+    }
+
+    @Test
+    public void heapBuffersWithPosition() {
+        int[] dst = new int[4];
+        lib.addIntBuffers4(IntBuffer.wrap(dst, 1, 3), IntBuffer.wrap(A, 1, 3), IntBuffer.wrap(B, 1, 3),
+                IntBuffer.wrap(C, 1, 3), IntBuffer.wrap(D, 1, 3), 3);
+        assertArrayEquals(new int[] { 0, 2222, 3333, 4444 }, dst);
+    }
+
+    @Test
+    public void heapByteBuffers6() {
+        ByteBuffer dst = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+        lib.addIntBuffers4(dst, heap(A), heap(B), heap(C), heap(D), 4);
+        assertArrayEquals(new int[] { 1111, 2222, 3333, 4444 }, toArray(dst.asIntBuffer()));
+    }
+
+    @Test
+    public void directBuffers5() {
+        IntBuffer dst = direct(new int[4]);
+        lib.addIntBuffers3(dst, direct(A), direct(B), direct(C), 4);
+        assertArrayEquals(new int[] { 111, 222, 333, 444 }, toArray(dst));
+    }
+
+    @Test
+    public void directBuffers6() {
+        IntBuffer dst = direct(new int[4]);
+        lib.addIntBuffers4(dst, direct(A), direct(B), direct(C), direct(D), 4);
+        assertArrayEquals(new int[] { 1111, 2222, 3333, 4444 }, toArray(dst));
+    }
+
+    @Test
+    public void mixedBuffers6() {
+        IntBuffer dst = direct(new int[4]);
+        lib.addIntBuffers4(dst, IntBuffer.wrap(A), direct(B), IntBuffer.wrap(C), direct(D), 4);
+        assertArrayEquals(new int[] { 1111, 2222, 3333, 4444 }, toArray(dst));
+
+        int[] heapDst = new int[4];
+        lib.addIntBuffers4(IntBuffer.wrap(heapDst), direct(A), direct(B), direct(C), direct(D), 4);
+        assertArrayEquals(new int[] { 1111, 2222, 3333, 4444 }, heapDst);
+    }
+
+    private static ByteBuffer heap(int[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        buffer.asIntBuffer().put(values);
+        return buffer;
+    }
+
+    private static IntBuffer direct(int[] values) {
+        IntBuffer buffer = ByteBuffer.allocateDirect(values.length * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        buffer.put(values).flip();
+        return buffer;
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        int[] values = new int[buffer.capacity()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.get(i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.Struct;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link Struct#accessorOf(Runtime, Class, Class)}
+ */
+public class StructAccessorTest {
+    public static final class Record extends Struct {
+        public final Signed8 s8 = new Signed8();
+        public final Unsigned8 u8 = new Unsigned8();
+        public final Signed16 s16 = new Signed16();
+        public final Unsigned16 u16 = new Unsigned16();
+        public final Signed32 s32 = new Signed32();
+        public final Unsigned32 u32 = new Unsigned32();
+        public final Signed64 s64 = new Signed64();
+        public final SignedLong slong = new SignedLong();
+        public final Float f = new Float();
+        public final Double d = new Double();
+        public final Pointer p = new Pointer();
+
+        public Record(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static interface RecordAccessor {
+        byte s8(jnr.ffi.Pointer memory);
+        void s8(jnr.ffi.Pointer memory, byte value);
+        short u8(jnr.ffi.Pointer memory);
+        void u8(jnr.ffi.Pointer memory, short value);
+        short s16(jnr.ffi.Pointer memory);
+        int u16(jnr.ffi.Pointer memory);
+        int s32(jnr.ffi.Pointer memory);
+        void s32(jnr.ffi.Pointer memory, int value);
+        long u32(jnr.ffi.Pointer memory);
+        void u32(jnr.ffi.Pointer memory, long value);
+        long s64(jnr.ffi.Pointer memory);
+        void s64(jnr.ffi.Pointer memory, long value);
+        long slong(jnr.ffi.Pointer memory);
+        float f(jnr.ffi.Pointer memory);
+        void f(jnr.ffi.Pointer memory, float value);
+        double d(jnr.ffi.Pointer memory);
+        void d(jnr.ffi.Pointer memory, double value);
+        long p(jnr.ffi.Pointer memory);
+
+        int s32(long address);
+        void s32(long address, int value);
+        long u32(long address);
+        double d(long address);
+        void d(long address, double value);
+        int u16(long address);
+        boolean s8(long address);
+    }
+
+    public static interface MissingField {
+        int nonexistent(jnr.ffi.Pointer memory);
+    }
+
+    public static interface WrongType {
+        double s32(jnr.ffi.Pointer memory);
+    }
+
+    public static interface BadSignature {
+        int s32(int offset);
+    }
+
+    static Runtime runtime;
+    static RecordAccessor accessor;
+
+    @BeforeClass
+    public static void setUpClass() {
+        runtime = Runtime.getSystemRuntime();
+        accessor = Struct.accessorOf(runtime, Record.class, RecordAccessor.class);
+    }
+
+    private static Record newRecord() {
+        Record record = new Record(runtime);
+        record.useMemory(runtime.getMemoryManager().allocateDirect(Struct.size(record), true));
+        return record;
+    }
+
+    @Test
+    public void readFields() {
+        Record record = newRecord();
+        jnr.ffi.Pointer memory = Struct.getMemory(record);
+        record.s8.set((byte) -5);
+        record.u8.set((short) 0xfe);
+        record.s16.set((short) -300);
+        record.u16.set(0xfffe);
+        record.s32.set(-123456);
+        record.u32.set(0xfffffffeL);
+        record.s64.set(0x123456789abcdefL);
+        record.slong.set(-42);
+        record.f.set(1.5f);
+        record.d.set(2.25d);
+        record.p.set(memory);
+
+        assertEquals((byte) -5, accessor.s8(memory));
+        assertEquals((short) 0xfe, accessor.u8(memory));
+        assertEquals((short) -300, accessor.s16(memory));
+        assertEquals(0xfffe, accessor.u16(memory));
+        assertEquals(-123456, accessor.s32(memory));
+        assertEquals(0xfffffffeL, accessor.u32(memory));
+        assertEquals(0x123456789abcdefL, accessor.s64(memory));
+        assertEquals(-42L, accessor.slong(memory));
+        assertEquals(1.5f, accessor.f(memory), 0f);
+        assertEquals(2.25d, accessor.d(memory), 0d);
+        assertEquals(memory.address(), accessor.p(memory));
+    }
+
+    @Test
+    public void writeFields() {
+        Record record = newRecord();
+        jnr.ffi.Pointer memory = Struct.getMemory(record);
+        accessor.s8(memory, (byte) 7);
+        accessor.u8(memory, (short) 0xff);
+        accessor.s32(memory, 99);
+        accessor.u32(memory, 0xffffffffL);
+        accessor.s64(memory, -1L);
+        accessor.f(memory, 0.5f);
+        accessor.d(memory, -8.5d);
+
+        assertEquals((byte) 7, record.s8.get());
+        assertEquals((short) 0xff, record.u8.get());
+        assertEquals(99, record.s32.get());
+        assertEquals(0xffffffffL, record.u32.get());
+        assertEquals(-1L, record.s64.get());
+        assertEquals(0.5f, record.f.get(), 0f);
+        assertEquals(-8.5d, record.d.get(), 0d);
+    }
+
+    @Test
+    public void absoluteAddress() {
+        Record record = newRecord();
+        long address = Struct.getMemory(record).address();
+        accessor.s32(address, 1234);
+        accessor.d(address, 3.75d);
+        record.u32.set(0x80000000L);
+        record.u16.set(0x8001);
+        record.s8.set((byte) 3);
+
+        assertEquals(1234, record.s32.get());
+        assertEquals(1234, accessor.s32(address));
+        assertEquals(3.75d, accessor.d(address), 0d);
+        assertEquals(0x80000000L, accessor.u32(address));
+        assertEquals(0x8001, accessor.u16(address));
+        assertTrue(accessor.s8(address));
+    }
+
+    @Test
+    public void structArray() {
+        jnr.ffi.StructArray<Record> array = jnr.ffi.StructArray.allocate(runtime, Record.class, 10);
+        for (int i = 0; i < array.length(); i++) {
+            array.get(i).s32.set(i);
+        }
+
+        jnr.ffi.Pointer memory = array.getMemory();
+        long total = 0;
+        for (int i = 0; i < array.length(); i++) {
+            total += accessor.s32(memory.address() + (long) i * array.stride());
+        }
+        assertEquals(45, total);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingField() {
+        Struct.accessorOf(runtime, Record.class, MissingField.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongType() {
+        Struct.accessorOf(runtime, Record.class, WrongType.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badSignature() {
+        Struct.accessorOf(runtime, Record.class, BadSignature.class);
+    }
+}
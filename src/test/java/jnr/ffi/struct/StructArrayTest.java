@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2012 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jnr.ffi.struct;
+
+import jnr.ffi.Pointer;
+import jnr.ffi.Runtime;
+import jnr.ffi.Struct;
+import jnr.ffi.StructArray;
+import jnr.ffi.StructLayout;
+import jnr.ffi.TstUtil;
+import jnr.ffi.annotations.LongLong;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link StructArray} and {@link StructLayout.Cursor}
+ */
+public class StructArrayTest {
+    public static interface TestLib {
+        int struct_field_Signed32(StructureTest.struct1 s);
+        @LongLong long struct_field_Signed64(StructureTest.struct1 s);
+    }
+
+    public static final class Padded extends Struct {
+        public final Signed32 i = new Signed32();
+        public final Signed8 b = new Signed8();
+
+        public Padded(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static final class PaddedLayout extends StructLayout {
+        public final Signed32 i = new Signed32();
+        public final Signed8 b = new Signed8();
+
+        public PaddedLayout(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    static TestLib testlib;
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() {
+        testlib = TstUtil.loadTestLib(TestLib.class);
+        runtime = Runtime.getRuntime(testlib);
+    }
+
+    @Test
+    public void stride() {
+        StructArray<Padded> array = StructArray.allocate(runtime, Padded.class, 10);
+        assertEquals(8, array.stride());
+        assertEquals(10, array.length());
+        assertEquals(80, array.getMemory().size());
+    }
+
+    @Test
+    public void getAndSet() {
+        StructArray<Padded> array = StructArray.allocate(runtime, Padded.class, 1000);
+        for (int i = 0; i < array.length(); i++) {
+            Padded p = array.get(i);
+            p.i.set(i * 3);
+            p.b.set((byte) i);
+        }
+
+        Pointer memory = array.getMemory();
+        for (int i = 0; i < array.length(); i++) {
+            assertEquals(i * 3, memory.getInt(i * 8));
+            assertEquals((byte) i, memory.getByte(i * 8 + 4));
+            assertEquals(i * 3, array.get(i).i.get());
+        }
+    }
+
+    @Test
+    public void flyweightIsReused() {
+        StructArray<Padded> array = StructArray.allocate(runtime, Padded.class, 3);
+        Padded first = array.get(0);
+        assertSame(first, array.get(2));
+
+        int count = 0;
+        for (Padded p : array) {
+            assertSame(first, p);
+            p.i.set(count++);
+        }
+        assertEquals(3, count);
+        assertEquals(2, array.getMemory().getInt(16));
+    }
+
+    @Test
+    public void iteratorEnds() {
+        Iterator<Padded> it = StructArray.allocate(runtime, Padded.class, 1).iterator();
+        it.next();
+        assertFalse(it.hasNext());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexOutOfBounds() {
+        StructArray.allocate(runtime, Padded.class, 2).get(2);
+    }
+
+    @Test
+    public void wrapExistingMemory() {
+        Pointer memory = runtime.getMemoryManager().allocateDirect(8 * 4);
+        for (int i = 0; i < 4; i++) {
+            memory.putInt(i * 8, i + 100);
+        }
+
+        StructArray<Padded> array = StructArray.wrap(new Padded(runtime), memory, 4);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 100, array.get(i).i.get());
+        }
+    }
+
+    @Test
+    public void passPositionedStruct() {
+        StructArray<StructureTest.struct1> array = StructArray.allocate(runtime, StructureTest.struct1.class, 4);
+        for (int i = 0; i < array.length(); i++) {
+            array.get(i).i.set(i + 10);
+            array.get(i).i64.set(i + 0x100000000L);
+        }
+
+        for (int i = 0; i < array.length(); i++) {
+            StructureTest.struct1 s = array.get(i);
+            assertEquals(array.getMemory().address() + (long) i * array.stride(), Struct.getMemory(s).address());
+            assertEquals(i + 10, testlib.struct_field_Signed32(s));
+            assertEquals(i + 0x100000000L, testlib.struct_field_Signed64(s));
+        }
+    }
+
+    @Test
+    public void useMemoryResetsPosition() {
+        StructArray<Padded> array = StructArray.allocate(runtime, Padded.class, 2);
+        array.getMemory().putInt(0, 42);
+        Padded p = array.get(1);
+        p.useMemory(array.getMemory());
+        assertEquals(42, p.i.get());
+    }
+
+    @Test
+    public void layoutCursor() {
+        PaddedLayout layout = new PaddedLayout(runtime);
+        Pointer memory = runtime.getMemoryManager().allocateDirect(8 * 100);
+        StructLayout.Cursor cursor = layout.cursor(memory, 100);
+        assertEquals(8, cursor.stride());
+
+        for (int i = 0; i < cursor.length(); i++) {
+            Pointer p = cursor.get(i);
+            layout.i.set(p, i * 7);
+            layout.b.set(p, (byte) i);
+        }
+
+        for (int i = 0; i < cursor.length(); i++) {
+            assertEquals(i * 7, memory.getInt(i * 8));
+            assertEquals((byte) i, memory.getByte(i * 8 + 4));
+            assertEquals(i * 7, layout.i.get(cursor.get(i)));
+        }
+
+        // a slice stays at the position it was taken from
+        Pointer slice = cursor.get(3).slice(0);
+        cursor.get(5);
+        assertEquals(21, slice.getInt(0));
+        assertEquals(memory.address() + 24, slice.address());
+    }
+}
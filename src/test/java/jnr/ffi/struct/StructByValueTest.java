@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2007-2010 Wayne Meissner
+ *
+ * This file is part of the JNR project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jnr.ffi.struct;
+
+import jnr.ffi.Runtime;
+import jnr.ffi.Struct;
+import jnr.ffi.TstUtil;
+import jnr.ffi.annotations.ByValue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StructByValueTest {
+    public static final class Mixed extends Struct {
+        public final Signed8 c = new Signed8();
+        public final Signed32 i = new Signed32();
+        public final Signed64 j = new Signed64();
+        public final Double d = new Double();
+
+        public Mixed(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static final class FloatPair extends Struct {
+        public final Float x = new Float();
+        public final Float y = new Float();
+
+        public FloatPair(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static final class Big extends Struct {
+        public final Signed64 a = new Signed64();
+        public final Signed64 b = new Signed64();
+        public final Signed64 c = new Signed64();
+
+        public Big(Runtime runtime) {
+            super(runtime);
+        }
+    }
+
+    public static interface TestLib {
+        double struct_by_value_sum(@ByValue Mixed s);
+        @ByValue Mixed struct_by_value_make(byte c, int i, long j, double d);
+        @ByValue FloatPair struct_by_value_scale(@ByValue FloatPair p, float f);
+        @ByValue Big struct_by_value_rotate(@ByValue Big b);
+    }
+
+    static TestLib testlib;
+    static Runtime runtime;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        testlib = TstUtil.loadTestLib(TestLib.class);
+        runtime = Runtime.getRuntime(testlib);
+    }
+
+    @Test public void heapParameter() {
+        Mixed s = new Mixed(runtime);
+        s.c.set(1);
+        s.i.set(20);
+        s.j.set(300L);
+        s.d.set(0.5);
+        assertEquals(321.5, testlib.struct_by_value_sum(s), 0d);
+    }
+
+    @Test public void directParameter() {
+        Mixed s = new Mixed(runtime);
+        s.useMemory(runtime.getMemoryManager().allocateDirect(Struct.size(s)));
+        s.c.set(2);
+        s.i.set(30);
+        s.j.set(400L);
+        s.d.set(0.25);
+        assertEquals(432.25, testlib.struct_by_value_sum(s), 0d);
+    }
+
+    @Test public void result() {
+        Mixed s = testlib.struct_by_value_make((byte) 3, 0x12345678, 0x123456789abcdefL, 1.5);
+        assertEquals(3, s.c.get());
+        assertEquals(0x12345678, s.i.get());
+        assertEquals(0x123456789abcdefL, s.j.get());
+        assertEquals(1.5, s.d.get(), 0d);
+    }
+
+    @Test public void floatParameterAndResult() {
+        FloatPair p = new FloatPair(runtime);
+        p.x.set(1.5f);
+        p.y.set(-2f);
+        FloatPair r = testlib.struct_by_value_scale(p, 2f);
+        assertEquals(3f, r.x.get(), 0f);
+        assertEquals(-4f, r.y.get(), 0f);
+    }
+
+    @Test public void largeParameterAndResult() {
+        Big b = new Big(runtime);
+        b.a.set(1L);
+        b.b.set(2L);
+        b.c.set(3L);
+        Big r = testlib.struct_by_value_rotate(b);
+        assertEquals(2L, r.a.get());
+        assertEquals(3L, r.b.get());
+        assertEquals(1L, r.c.get());
+    }
+
+    @Test public void nativeLayout() {
+        Mixed s = new Mixed(runtime);
+        assertEquals(4, Struct.getNativeLayout(s).length);
+    }
+}